@@ -0,0 +1,30 @@
+package com.aarw.fitdata.config;
+
+import com.aarw.fitdata.tracing.TracedCaffeineCacheManager;
+import io.micrometer.observation.ObservationRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.List;
+
+/**
+ * Replaces the auto-configured Caffeine cache manager with one whose lookups are traced, keeping
+ * the caches and spec configured under {@code spring.cache}.
+ */
+@Configuration
+public class CacheConfig {
+
+    @Bean
+    CacheManager cacheManager(
+            ObservationRegistry observationRegistry,
+            @Value("${spring.cache.cache-names}") List<String> cacheNames,
+            @Value("${spring.cache.caffeine.spec}") String spec
+    ) {
+        TracedCaffeineCacheManager cacheManager = new TracedCaffeineCacheManager(observationRegistry);
+        cacheManager.setCacheSpecification(spec);
+        cacheManager.setCacheNames(cacheNames);
+        return cacheManager;
+    }
+}
@@ -0,0 +1,27 @@
+package com.aarw.fitdata.config;
+
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.filter.ShallowEtagHeaderFilter;
+
+/**
+ * ETags for the data endpoints that are built from Fitbit calls rather than stored rows, and so
+ * have no version to derive one from before loading. The filter hashes the body while it is
+ * written, so it is serialized once; responses that already carry an ETag keep it.
+ * <p>
+ * The filter buffers the whole body, it must not be mapped to the NDJSON streams.
+ */
+@Configuration
+public class HttpCacheConfig {
+
+    @Bean
+    FilterRegistrationBean<ShallowEtagHeaderFilter> etagFilter() {
+        ShallowEtagHeaderFilter filter = new ShallowEtagHeaderFilter();
+        filter.setWriteWeakETag(true);
+        FilterRegistrationBean<ShallowEtagHeaderFilter> registration = new FilterRegistrationBean<>(filter);
+        registration.addUrlPatterns("/api/profile", "/api/heartrate", "/api/heartrate/intraday", "/api/sleep",
+                "/api/readiness", "/api/dashboard");
+        return registration;
+    }
+}
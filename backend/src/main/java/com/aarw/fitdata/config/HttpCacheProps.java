@@ -0,0 +1,15 @@
+package com.aarw.fitdata.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * @param closedMaxAge how long browsers reuse data of closed days without asking
+ * @param openMaxAge   the same for data that includes an open day; zero makes browsers revalidate every time
+ */
+@ConfigurationProperties(prefix = "http-cache")
+public record HttpCacheProps(
+        Duration closedMaxAge,
+        Duration openMaxAge
+) {}
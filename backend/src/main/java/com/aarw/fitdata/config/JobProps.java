@@ -0,0 +1,25 @@
+package com.aarw.fitdata.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * @param enabled           claim and run jobs on this node
+ * @param pollInterval      pause between claims when the last one found no work
+ * @param batchSize         jobs claimed at once; they run in parallel
+ * @param visibilityTimeout how long a claimed job is owned by its worker before others may take it
+ * @param maxAttempts       failed runs after which a job is parked
+ * @param backoff           delay before the first retry, doubled on each further one
+ * @param maxBackoff        upper bound of the retry delay
+ */
+@ConfigurationProperties(prefix = "jobs")
+public record JobProps(
+        boolean enabled,
+        Duration pollInterval,
+        int batchSize,
+        Duration visibilityTimeout,
+        int maxAttempts,
+        Duration backoff,
+        Duration maxBackoff
+) {}
@@ -0,0 +1,48 @@
+package com.aarw.fitdata.config;
+
+import com.aarw.fitdata.live.bus.LiveBus;
+import com.aarw.fitdata.live.bus.LocalLiveBus;
+import com.aarw.fitdata.live.bus.PostgresLiveBus;
+import com.aarw.fitdata.live.bus.RedisLiveBus;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import tools.jackson.databind.ObjectMapper;
+
+import javax.sql.DataSource;
+
+@Configuration
+public class LiveBusConfig {
+
+    @Bean
+    @ConditionalOnProperty(prefix = "live.bus", name = "type", havingValue = "local", matchIfMissing = true)
+    public LiveBus localLiveBus() {
+        return new LocalLiveBus();
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "live.bus", name = "type", havingValue = "redis")
+    public RedisMessageListenerContainer liveBusListenerContainer(RedisConnectionFactory connectionFactory) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        return container;
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "live.bus", name = "type", havingValue = "redis")
+    public LiveBus redisLiveBus(ObjectMapper objectMapper,
+                                LiveProps props,
+                                StringRedisTemplate redisTemplate,
+                                RedisMessageListenerContainer liveBusListenerContainer) {
+        return new RedisLiveBus(objectMapper, props.bus(), redisTemplate, liveBusListenerContainer);
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "live.bus", name = "type", havingValue = "postgres")
+    public LiveBus postgresLiveBus(ObjectMapper objectMapper, LiveProps props, DataSource dataSource) {
+        return new PostgresLiveBus(objectMapper, props.bus(), dataSource);
+    }
+}
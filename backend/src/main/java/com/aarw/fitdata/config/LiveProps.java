@@ -0,0 +1,39 @@
+package com.aarw.fitdata.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "live")
+public record LiveProps(
+        Bus bus,
+        Subscribers subscribers
+) {
+    /**
+     * @param type          {@code local} (single node), {@code redis} or {@code postgres}
+     * @param channel       pub/sub channel name
+     * @param flushInterval how long samples are held back to be sent in one message
+     * @param maxBatchSize  number of pending samples that triggers an immediate send
+     */
+    public record Bus(
+            String type,
+            String channel,
+            Duration flushInterval,
+            int maxBatchSize
+    ) {}
+
+    /**
+     * @param heartbeatInterval how often idle connections get a keep-alive (SSE comment, WebSocket ping)
+     * @param idleTimeout       a subscriber without a successful send for this long is reaped
+     * @param maxConnectionAge  SSE streams are completed after this long, clients reconnect
+     * @param maxPerUser        concurrent subscriptions per user
+     * @param maxTotal          concurrent subscriptions per node
+     */
+    public record Subscribers(
+            Duration heartbeatInterval,
+            Duration idleTimeout,
+            Duration maxConnectionAge,
+            int maxPerUser,
+            int maxTotal
+    ) {}
+}
@@ -0,0 +1,24 @@
+package com.aarw.fitdata.config;
+
+import com.aarw.fitdata.live.ws.LiveWebSocketHandler;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+
+@Configuration
+@EnableWebSocket
+public class LiveWebSocketConfig implements WebSocketConfigurer {
+
+    private final LiveWebSocketHandler liveWebSocketHandler;
+
+    public LiveWebSocketConfig(LiveWebSocketHandler liveWebSocketHandler) {
+        this.liveWebSocketHandler = liveWebSocketHandler;
+    }
+
+    @Override
+    public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+        registry.addHandler(liveWebSocketHandler, "/api/live/ws")
+                .setAllowedOriginPatterns("*");
+    }
+}
@@ -0,0 +1,36 @@
+package com.aarw.fitdata.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.session.config.annotation.web.http.EnableSpringHttpSession;
+import org.springframework.session.web.http.CookieSerializer;
+import org.springframework.session.web.http.DefaultCookieSerializer;
+
+/**
+ * Puts the session filter in front of Spring Security, backed by
+ * {@link com.aarw.fitdata.session.CachingSessionRepository}. The session cookie keeps the
+ * attributes configured under {@code server.servlet.session.cookie}.
+ */
+@Configuration
+@EnableSpringHttpSession
+public class SessionConfig {
+
+    @Bean
+    CookieSerializer cookieSerializer(
+            @Value("${server.servlet.session.cookie.name:JSESSIONID}") String name,
+            @Value("${server.servlet.session.cookie.http-only:true}") boolean httpOnly,
+            @Value("${server.servlet.session.cookie.secure:true}") boolean secure,
+            @Value("${server.servlet.session.cookie.same-site:Lax}") String sameSite,
+            @Value("${server.servlet.session.cookie.partitioned:false}") boolean partitioned
+    ) {
+        DefaultCookieSerializer serializer = new DefaultCookieSerializer();
+        serializer.setCookieName(name);
+        serializer.setUseHttpOnlyCookie(httpOnly);
+        serializer.setUseSecureCookie(secure);
+        serializer.setSameSite(sameSite);
+        serializer.setPartitioned(partitioned);
+        serializer.setUseBase64Encoding(false);
+        return serializer;
+    }
+}
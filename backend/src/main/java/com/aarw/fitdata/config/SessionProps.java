@@ -0,0 +1,22 @@
+package com.aarw.fitdata.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * @param timeout         inactivity after which a session expires
+ * @param cacheSize       sessions kept in memory per node
+ * @param cacheTtl        how long a node trusts its in-memory copy before re-reading the row;
+ *                        bounds how late a logout on another node is noticed
+ * @param touchInterval   minimum age of the stored last-access time before it is written again
+ * @param cleanupInterval pause between deletions of expired sessions
+ */
+@ConfigurationProperties(prefix = "sessions")
+public record SessionProps(
+        Duration timeout,
+        long cacheSize,
+        Duration cacheTtl,
+        Duration touchInterval,
+        Duration cleanupInterval
+) {}
@@ -0,0 +1,63 @@
+package com.aarw.fitdata.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.Map;
+
+@ConfigurationProperties(prefix = "snapshots")
+public record SnapshotProps(
+        Migration migration,
+        Cache cache,
+        Jobs jobs,
+        Retention retention
+) {
+    /**
+     * @param enabled   convert text snapshots to the compressed payload in the background
+     * @param batchSize rows converted per transaction
+     * @param interval  pause between batches
+     */
+    public record Migration(
+            boolean enabled,
+            int batchSize,
+            Duration interval
+    ) {}
+
+    /**
+     * @param maxSize total size of compressed snapshots kept in memory
+     */
+    public record Cache(
+            DataSize maxSize
+    ) {}
+
+    /**
+     * @param workers              snapshot builds running at the same time
+     * @param queueCapacity        builds waiting for a worker before new ones are rejected
+     * @param maxConcurrentPerUser builds of one user running at the same time
+     * @param maxPendingPerUser    builds of one user queued or running before new ones are rejected
+     * @param retention            how long finished jobs can still be polled
+     */
+    public record Jobs(
+            int workers,
+            int queueCapacity,
+            int maxConcurrentPerUser,
+            int maxPendingPerUser,
+            Duration retention
+    ) {}
+
+    /**
+     * @param ttl          age after which snapshots are purged, {@code null} keeps them forever
+     * @param userTtls     shorter TTLs for single users, by Fitbit user id
+     * @param detach       detach expired partitions (to archive them) instead of dropping them
+     * @param monthsAhead  monthly partitions created in advance
+     * @param batchSize    rows per delete statement when purging by user TTL
+     */
+    public record Retention(
+            Duration ttl,
+            Map<String, Duration> userTtls,
+            boolean detach,
+            int monthsAhead,
+            int batchSize
+    ) {}
+}
@@ -0,0 +1,31 @@
+package com.aarw.fitdata.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * @param enabled      run the background sync
+ * @param interval     pause between sync runs
+ * @param initialDays  days fetched for a metric that has never been synced
+ * @param reserveCalls Fitbit calls per user and hour left to interactive requests
+ */
+@ConfigurationProperties(prefix = "sync")
+public record SyncProps(
+        boolean enabled,
+        Duration interval,
+        int initialDays,
+        int reserveCalls,
+        Backfill backfill
+) {
+    /**
+     * @param enabled  import the history of users when they connect
+     * @param months   how far back to import
+     * @param interval pause between backfill runs of a user; each run uses the rate-limit budget above the reserve
+     */
+    public record Backfill(
+            boolean enabled,
+            int months,
+            Duration interval
+    ) {}
+}
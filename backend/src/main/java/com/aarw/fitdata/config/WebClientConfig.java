@@ -1,5 +1,9 @@
 package com.aarw.fitdata.config;
 
+import com.aarw.fitdata.fitbit.FitbitCallMetrics;
+import com.aarw.fitdata.fitbit.FitbitClientObservationConvention;
+import com.aarw.fitdata.fitbit.FitbitRateLimitTracker;
+import io.micrometer.observation.ObservationRegistry;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.reactive.function.client.WebClient;
@@ -8,7 +12,14 @@ import org.springframework.web.reactive.function.client.WebClient;
 public class WebClientConfig {
 
     @Bean
-    public WebClient.Builder webClientBuilder() {
-        return WebClient.builder();
+    public WebClient.Builder webClientBuilder(FitbitCallMetrics callMetrics, FitbitRateLimitTracker rateLimitTracker,
+                                              ObservationRegistry observationRegistry) {
+        // Metrics first, so the timings include the other filters
+        return WebClient.builder()
+                .filter(callMetrics)
+                .filter(rateLimitTracker)
+                // One span per call, a child of whatever observation is current where the call is blocked on
+                .observationRegistry(observationRegistry)
+                .observationConvention(new FitbitClientObservationConvention());
     }
-}
\ No newline at end of file
+}
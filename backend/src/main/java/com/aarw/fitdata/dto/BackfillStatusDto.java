@@ -0,0 +1,35 @@
+package com.aarw.fitdata.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * @param status     {@code PENDING}, {@code RUNNING} or {@code DONE}
+ * @param targetFrom oldest day to import
+ * @param progress   share of the target days imported, over all metric groups (0 to 1)
+ * @param calls      Fitbit calls made so far
+ * @param lastError  error of the last run, it is retried on the next one
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record BackfillStatusDto(
+        String status,
+        LocalDate targetFrom,
+        double progress,
+        int calls,
+        String lastError,
+        Instant startedAt,
+        Instant finishedAt,
+        List<Resource> resources
+) {
+    /**
+     * @param backfilledFrom oldest day imported so far, absent before the first range
+     */
+    public record Resource(
+            String resource,
+            LocalDate backfilledFrom,
+            boolean done
+    ) {}
+}
@@ -1,17 +1,40 @@
 package com.aarw.fitdata.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
 import java.time.LocalDate;
 import java.util.List;
 
+/**
+ * @param granularity {@code DAY}, {@code WEEK} or {@code MONTH}; long ranges are returned per week or month
+ */
 public record HeartRateRangeDto(
         String range,
         LocalDate startDate,
         LocalDate endDate,
+        String granularity,
         List<Point> points
 ) {
+    public HeartRateRangeDto(String range, LocalDate startDate, LocalDate endDate, List<Point> points) {
+        this(range, startDate, endDate, "DAY", points);
+    }
+
+    /**
+     * @param date          the day, or the first day of the week or month
+     * @param restingHr     resting heart rate of the day, or the rounded mean of the week or month
+     * @param zones         minutes per zone, {@code null} for weeks and months
+     * @param restingHrMin  lowest resting heart rate of the week or month, absent for single days
+     * @param restingHrMax  highest resting heart rate of the week or month, absent for single days
+     */
     public record Point(
             LocalDate date,
             Integer restingHr,
-            HeartRateDayDto.Zones zones
-    ) {}
-}
\ No newline at end of file
+            HeartRateDayDto.Zones zones,
+            @JsonInclude(JsonInclude.Include.NON_NULL) Integer restingHrMin,
+            @JsonInclude(JsonInclude.Include.NON_NULL) Integer restingHrMax
+    ) {
+        public Point(LocalDate date, Integer restingHr, HeartRateDayDto.Zones zones) {
+            this(date, restingHr, zones, null, null);
+        }
+    }
+}
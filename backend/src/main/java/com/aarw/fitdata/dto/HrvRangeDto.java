@@ -0,0 +1,19 @@
+package com.aarw.fitdata.dto;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Daily heart rate variability; days without a measurement have no point.
+ */
+public record HrvRangeDto(
+        String range,
+        LocalDate startDate,
+        LocalDate endDate,
+        List<Point> points
+) {
+    /**
+     * @param rmssd daily RMSSD in milliseconds
+     */
+    public record Point(LocalDate date, double rmssd) {}
+}
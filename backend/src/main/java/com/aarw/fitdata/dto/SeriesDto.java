@@ -0,0 +1,18 @@
+package com.aarw.fitdata.dto;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Several daily metrics over one window, as columns aligned by index with {@code dates}.
+ *
+ * @param dates   every day of the window, ascending
+ * @param columns one list per requested metric, in request order; {@code null} where a day has no value
+ */
+public record SeriesDto(
+        LocalDate startDate,
+        LocalDate endDate,
+        List<LocalDate> dates,
+        Map<String, List<Number>> columns
+) {}
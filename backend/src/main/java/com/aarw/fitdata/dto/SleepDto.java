@@ -1,8 +1,14 @@
 package com.aarw.fitdata.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
 import java.time.LocalDateTime;
 import java.util.List;
 
+/**
+ * @param levelsSummary minutes per stage, absent if not requested
+ * @param segments      stage changes of the night, absent if not requested
+ */
 public record SleepDto(
     String date,
     int totalMinutesAsleep,
@@ -10,8 +16,8 @@ public record SleepDto(
     Integer sleepScore,
     String startTime,
     String endTime,
-    LevelsSummary levelsSummary,
-    List<SleepLevelSegment> segments
+    @JsonInclude(JsonInclude.Include.NON_NULL) LevelsSummary levelsSummary,
+    @JsonInclude(JsonInclude.Include.NON_NULL) List<SleepLevelSegment> segments
 ) {
     public record SleepLevelSegment(
         LocalDateTime startTime,
@@ -0,0 +1,18 @@
+package com.aarw.fitdata.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.UUID;
+
+/**
+ * @param status     {@code QUEUED}, {@code RUNNING}, {@code SUCCEEDED} or {@code FAILED}
+ * @param snapshotId set once the job succeeded
+ * @param error      set if the job failed
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record SnapshotJobDto(
+        UUID id,
+        String status,
+        UUID snapshotId,
+        String error
+) {}
@@ -1,13 +1,35 @@
 package com.aarw.fitdata.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
 import java.time.LocalDate;
 import java.util.List;
 
+/**
+ * @param granularity {@code DAY}, {@code WEEK} or {@code MONTH}; long ranges are returned per week or month
+ */
 public record WeightSeriesDto(
         String range,
         LocalDate startDate,
         LocalDate endDate,
+        String granularity,
         List<Point> points
 ) {
-    public record Point(LocalDate date, Double weight) {}
+    public WeightSeriesDto(String range, LocalDate startDate, LocalDate endDate, List<Point> points) {
+        this(range, startDate, endDate, "DAY", points);
+    }
+
+    /**
+     * @param date   the day, or the first day of the week or month
+     * @param weight weight of the day, or the mean of the week or month
+     * @param min    lowest weight of the week or month, absent for single days
+     * @param max    highest weight of the week or month, absent for single days
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public record Point(LocalDate date, Double weight, Double min, Double max) {
+
+        public Point(LocalDate date, Double weight) {
+            this(date, weight, null, null);
+        }
+    }
 }
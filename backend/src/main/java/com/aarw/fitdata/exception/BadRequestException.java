@@ -0,0 +1,16 @@
+package com.aarw.fitdata.exception;
+
+import java.io.Serial;
+
+/**
+ * An invalid request parameter, answered with 400 and the message. Other
+ * {@link IllegalArgumentException}s are server bugs and answered with 500.
+ */
+public class BadRequestException extends IllegalArgumentException {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    public BadRequestException(String message) {
+        super(message);
+    }
+}
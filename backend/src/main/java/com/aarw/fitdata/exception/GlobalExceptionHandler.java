@@ -1,6 +1,9 @@
 package com.aarw.fitdata.exception;
 
 import com.aarw.fitdata.fitbit.FitbitRateLimitException;
+import com.aarw.fitdata.live.service.LiveCapacityExceededException;
+import com.aarw.fitdata.snapshot.SnapshotCorruptException;
+import com.aarw.fitdata.snapshot.SnapshotJobRejectedException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpHeaders;
@@ -32,6 +35,33 @@ public class GlobalExceptionHandler {
                 ));
     }
 
+    // No body: the client of a rejected stream asked for text/event-stream
+    @ExceptionHandler(LiveCapacityExceededException.class)
+    public ResponseEntity<Void> handleLiveCapacityExceededException(LiveCapacityExceededException ex) {
+        log.info("Live stream rejected: {}", ex.getMessage());
+        return ResponseEntity
+                .status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, "30")
+                .build();
+    }
+
+    @ExceptionHandler(SnapshotJobRejectedException.class)
+    public ResponseEntity<Map<String, String>> handleSnapshotJobRejectedException(SnapshotJobRejectedException ex) {
+        log.info("Snapshot job rejected: {}", ex.getMessage());
+        return ResponseEntity
+                .status(ex.isUserLimit() ? HttpStatus.TOO_MANY_REQUESTS : HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "10")
+                .body(Map.of("error", ex.getMessage()));
+    }
+
+    @ExceptionHandler(SnapshotCorruptException.class)
+    public ResponseEntity<Map<String, String>> handleSnapshotCorruptException(SnapshotCorruptException ex) {
+        log.error("Corrupt snapshot: {}", ex.getMessage());
+        return ResponseEntity
+                .status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body(Map.of("error", "Snapshot cannot be read"));
+    }
+
     @ExceptionHandler(IllegalStateException.class)
     public ResponseEntity<Map<String, String>> handleIllegalStateException(IllegalStateException ex) {
         log.warn("Illegal state: {}", ex.getMessage());
@@ -40,6 +70,14 @@ public class GlobalExceptionHandler {
                 .body(Map.of("error", ex.getMessage()));
     }
 
+    @ExceptionHandler(BadRequestException.class)
+    public ResponseEntity<Map<String, String>> handleBadRequestException(BadRequestException ex) {
+        log.debug("Bad request: {}", ex.getMessage());
+        return ResponseEntity
+                .status(HttpStatus.BAD_REQUEST)
+                .body(Map.of("error", ex.getMessage()));
+    }
+
     @ExceptionHandler(org.springframework.web.servlet.resource.NoResourceFoundException.class)
     public ResponseEntity<Void> handleNoResourceFoundException(org.springframework.web.servlet.resource.NoResourceFoundException ex) {
         // Log at trace or debug level to avoid cluttering logs with scanner probes
@@ -11,6 +11,10 @@ import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
 import reactor.core.publisher.Mono;
 
+/**
+ * Fitbit Web API calls. Every call is cached per user and arguments with {@code sync = true}, so
+ * concurrent callers asking for the same resource share one upstream request.
+ */
 @Component
 public class FitbitApiClient {
 
@@ -30,13 +34,14 @@ public class FitbitApiClient {
      * @param token the FitbitTokenEntity containing the access token for the API request
      * @return a FitbitProfileResponse containing the user profile information
      */
-    @Cacheable(value = "fitbit_profile", key = "#token.fitbitUserId")
+    @Cacheable(value = "fitbit_profile", key = "#token.fitbitUserId", sync = true)
     public FitbitProfileResponse getProfile(FitbitTokenEntity token) {
         String url = props.apiBaseUri() + "/1/user/-/profile.json";
         try {
             return webClient.get()
                     .uri(url)
                     .header(HttpHeaders.AUTHORIZATION, "Bearer " + token.getAccessToken())
+                    .attribute(FitbitRateLimitTracker.USER_ATTRIBUTE, token.getFitbitUserId())
                     .retrieve()
                     .onStatus(status -> status.value() == 429, resp ->
                             resp.bodyToMono(String.class).defaultIfEmpty("")
@@ -62,13 +67,14 @@ public class FitbitApiClient {
      * @param endDate  the end date for the steps series data, in ISO 8601 format (yyyy-MM-dd)
      * @return a FitbitStepsSeriesResponse containing the daily steps series data
      */
-    @Cacheable(value = "fitbit_steps", key = "#token.fitbitUserId + '-' + #startDate + '-' + #endDate")
+    @Cacheable(value = "fitbit_steps", key = "#token.fitbitUserId + '-' + #startDate + '-' + #endDate", sync = true)
     public FitbitStepsSeriesResponse getDailyStepsSeries(FitbitTokenEntity token, String startDate, String endDate) {
         String url = props.apiBaseUri() + "/1/user/-/activities/steps/date/" + startDate + "/" + endDate + ".json";
         try {
             return webClient.get()
                     .uri(url)
                     .header(HttpHeaders.AUTHORIZATION, "Bearer " + token.getAccessToken())
+                    .attribute(FitbitRateLimitTracker.USER_ATTRIBUTE, token.getFitbitUserId())
                     .retrieve()
                     .onStatus(status -> status.value() == 429, resp ->
                             resp.bodyToMono(String.class).defaultIfEmpty("")
@@ -86,13 +92,14 @@ public class FitbitApiClient {
         }
     }
 
-    @Cacheable(value = "fitbit_heart_range", key = "#token.fitbitUserId + '-' + #startDateIso + '-' + #endDateIso")
+    @Cacheable(value = "fitbit_heart_range", key = "#token.fitbitUserId + '-' + #startDateIso + '-' + #endDateIso", sync = true)
     public FitbitHeartDailyRangeResponse getHeartByDateRange(FitbitTokenEntity token, String startDateIso, String endDateIso) {
         String url = props.apiBaseUri() + "/1/user/-/activities/heart/date/" + startDateIso + "/" + endDateIso + ".json";
         try {
             return webClient.get()
                     .uri(url)
                     .header(HttpHeaders.AUTHORIZATION, "Bearer " + token.getAccessToken())
+                    .attribute(FitbitRateLimitTracker.USER_ATTRIBUTE, token.getFitbitUserId())
                     .retrieve()
                     .onStatus(status -> status.value() == 429, resp ->
                             resp.bodyToMono(String.class).defaultIfEmpty("")
@@ -111,7 +118,7 @@ public class FitbitApiClient {
     }
 
 
-    @Cacheable(value = "fitbit_heart_intraday", key = "#token.fitbitUserId + '-' + #dateIso + '-' + #detailLevel")
+    @Cacheable(value = "fitbit_heart_intraday", key = "#token.fitbitUserId + '-' + #dateIso + '-' + #detailLevel", sync = true)
     public FitbitHeartIntradayResponse getHeartIntraday(FitbitTokenEntity token, String dateIso, String detailLevel) {
         String url = props.apiBaseUri() + "/1/user/-/activities/heart/date/" + dateIso + "/1d/" + detailLevel + ".json";
 
@@ -119,6 +126,7 @@ public class FitbitApiClient {
             return webClient.get()
                     .uri(url)
                     .header(HttpHeaders.AUTHORIZATION, "Bearer " + token.getAccessToken())
+                    .attribute(FitbitRateLimitTracker.USER_ATTRIBUTE, token.getFitbitUserId())
                     .retrieve()
                     .onStatus(status -> status.value() == 429, resp ->
                             resp.bodyToMono(String.class).defaultIfEmpty("")
@@ -146,13 +154,14 @@ public class FitbitApiClient {
         }
     }
 
-    @Cacheable(value = "fitbit_heart_day", key = "#token.fitbitUserId + '-' + #dateIso")
+    @Cacheable(value = "fitbit_heart_day", key = "#token.fitbitUserId + '-' + #dateIso", sync = true)
     public FitbitHeartDailyRangeResponse getHeartForDay(FitbitTokenEntity token, String dateIso) {
         String url = props.apiBaseUri() + "/1/user/-/activities/heart/date/" + dateIso + "/" + dateIso + ".json";
         try {
             return webClient.get()
                     .uri(url)
                     .header(HttpHeaders.AUTHORIZATION, "Bearer " + token.getAccessToken())
+                    .attribute(FitbitRateLimitTracker.USER_ATTRIBUTE, token.getFitbitUserId())
                     .retrieve()
                     .onStatus(status -> status.value() == 429, resp ->
                             resp.bodyToMono(String.class).defaultIfEmpty("")
@@ -170,13 +179,14 @@ public class FitbitApiClient {
         }
     }
 
-    @Cacheable(value = "fitbit_activity_summary", key = "#token.fitbitUserId + '-' + #dateIso")
+    @Cacheable(value = "fitbit_activity_summary", key = "#token.fitbitUserId + '-' + #dateIso", sync = true)
     public FitbitActivitiesSummaryResponse getActivitiesSummaryForDay(FitbitTokenEntity token, String dateIso) {
         String url = props.apiBaseUri() + "/1/user/-/activities/date/" + dateIso + ".json";
         try {
             return webClient.get()
                     .uri(url)
                     .header(HttpHeaders.AUTHORIZATION, "Bearer " + token.getAccessToken())
+                    .attribute(FitbitRateLimitTracker.USER_ATTRIBUTE, token.getFitbitUserId())
                     .retrieve()
                     .onStatus(status -> status.value() == 429, resp ->
                             resp.bodyToMono(String.class).defaultIfEmpty("")
@@ -194,13 +204,14 @@ public class FitbitApiClient {
         }
     }
 
-    @Cacheable(value = "fitbit_weight", key = "#token.fitbitUserId + '-' + #startDate + '-' + #endDate")
+    @Cacheable(value = "fitbit_weight", key = "#token.fitbitUserId + '-' + #startDate + '-' + #endDate", sync = true)
     public FitbitWeightResponse getWeightSeries(FitbitTokenEntity token, String startDate, String endDate) {
         String url = props.apiBaseUri() + "/1/user/-/body/log/weight/date/" + startDate + "/" + endDate + ".json";
         try {
             return webClient.get()
                     .uri(url)
                     .header(HttpHeaders.AUTHORIZATION, "Bearer " + token.getAccessToken())
+                    .attribute(FitbitRateLimitTracker.USER_ATTRIBUTE, token.getFitbitUserId())
                     .retrieve()
                     .onStatus(status -> status.value() == 429, resp ->
                             resp.bodyToMono(String.class).defaultIfEmpty("")
@@ -228,13 +239,14 @@ public class FitbitApiClient {
         }
     }
 
-    @Cacheable(value = "fitbit_sleep", key = "#token.fitbitUserId + '-' + #date")
+    @Cacheable(value = "fitbit_sleep", key = "#token.fitbitUserId + '-' + #date", sync = true)
     public FitbitSleepResponse getSleep(FitbitTokenEntity token, String date) {
         String url = props.apiBaseUri() + "/1.2/user/-/sleep/date/" + date + ".json";
         try {
             return webClient.get()
                     .uri(url)
                     .header(HttpHeaders.AUTHORIZATION, "Bearer " + token.getAccessToken())
+                    .attribute(FitbitRateLimitTracker.USER_ATTRIBUTE, token.getFitbitUserId())
                     .retrieve()
                     .onStatus(status -> status.value() == 429, resp ->
                             resp.bodyToMono(String.class).defaultIfEmpty("")
@@ -262,13 +274,52 @@ public class FitbitApiClient {
         }
     }
 
-    @Cacheable(value = "fitbit_vo2max", key = "#token.fitbitUserId + '-' + #date")
+    /**
+     * The sleep logs of every night from {@code startDate} to {@code endDate}, at most 100 days.
+     */
+    @Cacheable(value = "fitbit_sleep_range", key = "#token.fitbitUserId + '-' + #startDate + '-' + #endDate", sync = true)
+    public FitbitSleepResponse getSleepRange(FitbitTokenEntity token, String startDate, String endDate) {
+        String url = props.apiBaseUri() + "/1.2/user/-/sleep/date/" + startDate + "/" + endDate + ".json";
+        try {
+            return webClient.get()
+                    .uri(url)
+                    .header(HttpHeaders.AUTHORIZATION, "Bearer " + token.getAccessToken())
+                    .attribute(FitbitRateLimitTracker.USER_ATTRIBUTE, token.getFitbitUserId())
+                    .retrieve()
+                    .onStatus(status -> status.value() == 429, resp ->
+                            resp.bodyToMono(String.class).defaultIfEmpty("")
+                                    .flatMap(body -> {
+                                        String retryAfter = resp.headers().asHttpHeaders().getFirst(HttpHeaders.RETRY_AFTER);
+                                        return Mono.error(new FitbitRateLimitException("Fitbit API rate limit exceeded. Retry after: " + retryAfter, retryAfter, body));
+                                    })
+                    )
+                    .onStatus(HttpStatusCode::isError, resp ->
+                            resp.bodyToMono(String.class).defaultIfEmpty("")
+                                    .map(body -> new RuntimeException("Fitbit Sleep range API error: HTTP " + resp.statusCode() + " body=" + body))
+                    )
+                    .bodyToMono(FitbitSleepResponse.class)
+                    .block();
+        } catch (FitbitRateLimitException e) {
+            throw e;
+        } catch (WebClientResponseException e) {
+            if (e.getStatusCode().value() == 429) {
+                String retryAfter = e.getHeaders().getFirst(HttpHeaders.RETRY_AFTER);
+                throw new FitbitRateLimitException("Fitbit API rate limit exceeded. Retry after: " + retryAfter, retryAfter, e.getResponseBodyAsString());
+            }
+            throw new RuntimeException("Fitbit Sleep range call failed: HTTP " + e.getStatusCode() + " body=" + e.getResponseBodyAsString(), e);
+        } catch (Exception e) {
+            throw new RuntimeException("Fitbit Sleep range call failed: " + url, e);
+        }
+    }
+
+    @Cacheable(value = "fitbit_vo2max", key = "#token.fitbitUserId + '-' + #date", sync = true)
     public FitbitVo2MaxResponse getVo2Max(FitbitTokenEntity token, String date) {
         String url = props.apiBaseUri() + "/1/user/-/cardioscore/date/" + date + ".json";
         try {
             return webClient.get()
                     .uri(url)
                     .header(HttpHeaders.AUTHORIZATION, "Bearer " + token.getAccessToken())
+                    .attribute(FitbitRateLimitTracker.USER_ATTRIBUTE, token.getFitbitUserId())
                     .retrieve()
                     .onStatus(status -> status.value() == 429, resp ->
                             resp.bodyToMono(String.class).defaultIfEmpty("")
@@ -303,13 +354,14 @@ public class FitbitApiClient {
         }
     }
 
-    @Cacheable(value = "fitbit_hrv", key = "#token.fitbitUserId + '-' + #date")
+    @Cacheable(value = "fitbit_hrv", key = "#token.fitbitUserId + '-' + #date", sync = true)
     public FitbitHrvResponse getHrv(FitbitTokenEntity token, String date) {
         String url = props.apiBaseUri() + "/1/user/-/hrv/date/" + date + ".json";
         try {
             return webClient.get()
                     .uri(url)
                     .header(HttpHeaders.AUTHORIZATION, "Bearer " + token.getAccessToken())
+                    .attribute(FitbitRateLimitTracker.USER_ATTRIBUTE, token.getFitbitUserId())
                     .retrieve()
                     .onStatus(status -> status.value() == 429, resp ->
                             resp.bodyToMono(String.class).defaultIfEmpty("")
@@ -345,13 +397,14 @@ public class FitbitApiClient {
         }
     }
 
-    @Cacheable(value = "fitbit_hrv_range", key = "#token.fitbitUserId + '-' + #startDate + '-' + #endDate")
+    @Cacheable(value = "fitbit_hrv_range", key = "#token.fitbitUserId + '-' + #startDate + '-' + #endDate", sync = true)
     public FitbitHrvResponse getHrvRange(FitbitTokenEntity token, String startDate, String endDate) {
         String url = props.apiBaseUri() + "/1/user/-/hrv/date/" + startDate + "/" + endDate + ".json";
         try {
             return webClient.get()
                     .uri(url)
                     .header(HttpHeaders.AUTHORIZATION, "Bearer " + token.getAccessToken())
+                    .attribute(FitbitRateLimitTracker.USER_ATTRIBUTE, token.getFitbitUserId())
                     .retrieve()
                     .onStatus(status -> status.value() == 429, resp ->
                             resp.bodyToMono(String.class).defaultIfEmpty("")
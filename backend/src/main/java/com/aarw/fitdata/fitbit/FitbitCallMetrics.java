@@ -0,0 +1,107 @@
+package com.aarw.fitdata.fitbit;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records every Fitbit call, tagged by endpoint family rather than URL so the dates in the paths
+ * do not multiply the series:
+ * <ul>
+ *     <li>{@code fitbit.client.requests}: time until the body is read, by endpoint, status and outcome</li>
+ *     <li>{@code fitbit.client.response.size}: body bytes by endpoint</li>
+ *     <li>{@code fitbit.client.rate.limited}: 429 responses by endpoint</li>
+ *     <li>{@code fitbit.rate.limit.remaining}: fewest calls any user has left in the current window</li>
+ * </ul>
+ */
+@Component
+public class FitbitCallMetrics implements ExchangeFilterFunction {
+
+    private final MeterRegistry meterRegistry;
+
+    public FitbitCallMetrics(MeterRegistry meterRegistry, FitbitRateLimitTracker rateLimitTracker) {
+        this.meterRegistry = meterRegistry;
+        Gauge.builder("fitbit.rate.limit.remaining", rateLimitTracker, FitbitRateLimitTracker::lowestRemaining)
+                .description("Fewest Fitbit calls any user has left in the current window")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
+        String endpoint = endpoint(request.url());
+        Timer.Sample sample = Timer.start(meterRegistry);
+        return next.exchange(request)
+                .doOnError(e -> sample.stop(timer(endpoint, "IO_ERROR", "UNKNOWN")))
+                .map(response -> {
+                    HttpStatusCode status = response.statusCode();
+                    if (status.value() == 429) {
+                        Counter.builder("fitbit.client.rate.limited")
+                                .description("Fitbit calls answered with 429")
+                                .tag("endpoint", endpoint)
+                                .register(meterRegistry)
+                                .increment();
+                    }
+                    // The call is over once the body has been read or released
+                    AtomicLong bytes = new AtomicLong();
+                    return response.mutate()
+                            .body(body -> body
+                                    .doOnNext(buffer -> bytes.addAndGet(buffer.readableByteCount()))
+                                    .doFinally(_ -> {
+                                        sample.stop(timer(endpoint, String.valueOf(status.value()), outcome(status)));
+                                        DistributionSummary.builder("fitbit.client.response.size")
+                                                .description("Body size of Fitbit responses")
+                                                .baseUnit("bytes")
+                                                .tag("endpoint", endpoint)
+                                                .register(meterRegistry)
+                                                .record(bytes.get());
+                                    }))
+                            .build();
+                });
+    }
+
+    private Timer timer(String endpoint, String status, String outcome) {
+        return Timer.builder("fitbit.client.requests")
+                .description("Fitbit calls until their body is read")
+                .tag("endpoint", endpoint)
+                .tag("status", status)
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    private static String outcome(HttpStatusCode status) {
+        if (status.is2xxSuccessful()) return "SUCCESS";
+        if (status.value() == 429) return "RATE_LIMITED";
+        if (status.is4xxClientError()) return "CLIENT_ERROR";
+        if (status.is5xxServerError()) return "SERVER_ERROR";
+        return "UNKNOWN";
+    }
+
+    /**
+     * The endpoint family of a Fitbit URL, e.g. {@code heart-intraday} or {@code weight}.
+     */
+    static String endpoint(URI url) {
+        String path = url.getPath();
+        if (path.endsWith("/oauth2/token")) return "token";
+        if (path.endsWith("/profile.json")) return "profile";
+        if (path.contains("/activities/heart/")) return path.contains("/1d/") ? "heart-intraday" : "heart";
+        if (path.contains("/activities/steps/")) return "steps";
+        if (path.contains("/activities/date/")) return "activities";
+        if (path.contains("/body/log/weight/")) return "weight";
+        if (path.contains("/sleep/")) return "sleep";
+        if (path.contains("/cardioscore/")) return "vo2max";
+        if (path.contains("/hrv/")) return "hrv";
+        return "other";
+    }
+}
@@ -0,0 +1,28 @@
+package com.aarw.fitdata.fitbit;
+
+import io.micrometer.common.KeyValue;
+import org.springframework.web.reactive.function.client.ClientRequestObservationContext;
+import org.springframework.web.reactive.function.client.DefaultClientRequestObservationConvention;
+
+/**
+ * Names the spans of Fitbit calls after their endpoint family, e.g. {@code fitbit heart-intraday},
+ * and tags them with it instead of the URL. The client is given full URLs rather than templates,
+ * so the default {@code uri} would be {@code none} and the dates in the paths must stay out of
+ * the tags.
+ */
+public class FitbitClientObservationConvention extends DefaultClientRequestObservationConvention {
+
+    @Override
+    public String getContextualName(ClientRequestObservationContext context) {
+        return "fitbit " + endpoint(context);
+    }
+
+    @Override
+    protected KeyValue uri(ClientRequestObservationContext context) {
+        return KeyValue.of("uri", endpoint(context));
+    }
+
+    private static String endpoint(ClientRequestObservationContext context) {
+        return context.getRequest() == null ? "other" : FitbitCallMetrics.endpoint(context.getRequest().url());
+    }
+}
@@ -0,0 +1,118 @@
+package com.aarw.fitdata.fitbit;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import reactor.core.publisher.Mono;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers the per-user rate-limit budget Fitbit reports on every response
+ * ({@code fitbit-rate-limit-remaining} and {@code fitbit-rate-limit-reset}), so background work can
+ * back off before it eats into the calls interactive requests need.
+ * <p>
+ * Requests are attributed to a user through the {@link #USER_ATTRIBUTE} request attribute; requests
+ * without it (e.g. the token endpoint) are ignored.
+ */
+@Component
+public class FitbitRateLimitTracker implements ExchangeFilterFunction {
+
+    public static final String USER_ATTRIBUTE = FitbitRateLimitTracker.class.getName() + ".user";
+
+    /**
+     * Fitbit's documented limit per user and hour, assumed until a response says otherwise.
+     */
+    static final int DEFAULT_LIMIT = 150;
+
+    public record Budget(int limit, int remaining, Instant resetAt) {}
+
+    private final Map<String, Budget> budgets = new ConcurrentHashMap<>();
+    private final Clock clock;
+
+    public FitbitRateLimitTracker() {
+        this(Clock.systemUTC());
+    }
+
+    FitbitRateLimitTracker(Clock clock) {
+        this.clock = clock;
+    }
+
+    @Override
+    public Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
+        Object userId = request.attribute(USER_ATTRIBUTE).orElse(null);
+        if (userId == null) {
+            return next.exchange(request);
+        }
+        return next.exchange(request).doOnNext(response -> record(userId.toString(), response));
+    }
+
+    /**
+     * Calls the user can still make in the current window; the full default limit if nothing is
+     * known or the window has passed.
+     */
+    public int remaining(String userId) {
+        Budget budget = budgets.get(userId);
+        if (budget == null || !budget.resetAt().isAfter(clock.instant())) {
+            return budget == null ? DEFAULT_LIMIT : budget.limit();
+        }
+        return budget.remaining();
+    }
+
+    /**
+     * The fewest calls any user has left in a current window; the default limit if no window is known.
+     */
+    public int lowestRemaining() {
+        Instant now = clock.instant();
+        return budgets.values().stream()
+                .filter(budget -> budget.resetAt().isAfter(now))
+                .mapToInt(Budget::remaining)
+                .min()
+                .orElse(DEFAULT_LIMIT);
+    }
+
+    /**
+     * @return when the current window of the user ends, {@code null} if unknown or already over
+     */
+    public Instant resetAt(String userId) {
+        Budget budget = budgets.get(userId);
+        return budget == null || !budget.resetAt().isAfter(clock.instant()) ? null : budget.resetAt();
+    }
+
+    private void record(String userId, ClientResponse response) {
+        HttpHeaders headers = response.headers().asHttpHeaders();
+        Integer remaining = parse(headers.getFirst("fitbit-rate-limit-remaining"));
+        Integer resetSeconds = parse(headers.getFirst("fitbit-rate-limit-reset"));
+        if (response.statusCode().value() == 429) {
+            remaining = 0;
+            if (resetSeconds == null) {
+                resetSeconds = parse(headers.getFirst(HttpHeaders.RETRY_AFTER));
+            }
+        }
+        if (remaining == null || resetSeconds == null) {
+            return;
+        }
+        Integer limit = parse(headers.getFirst("fitbit-rate-limit-limit"));
+        budgets.put(userId, new Budget(
+                limit == null ? DEFAULT_LIMIT : limit,
+                remaining,
+                clock.instant().plusSeconds(resetSeconds)));
+    }
+
+    private static Integer parse(String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
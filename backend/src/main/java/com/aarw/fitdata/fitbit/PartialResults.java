@@ -0,0 +1,37 @@
+package com.aarw.fitdata.fitbit;
+
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+/**
+ * Marks the response of the current request as partial: a Fitbit call it depends on failed and
+ * was answered with nothing (a {@code null} field, an empty series) instead of an error. Such a
+ * response must not be cached like complete data of a closed day, the next request may get it all.
+ * <p>
+ * Tasks started with {@link com.aarw.fitdata.tracing.FanOut} mark the request that started them.
+ * Outside of a request (e.g. snapshot jobs) marking does nothing.
+ */
+public final class PartialResults {
+
+    private static final String ATTRIBUTE = PartialResults.class.getName();
+
+    private PartialResults() {
+    }
+
+    public static void mark() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null) {
+            return;
+        }
+        try {
+            attributes.setAttribute(ATTRIBUTE, Boolean.TRUE, RequestAttributes.SCOPE_REQUEST);
+        } catch (IllegalStateException e) {
+            // A task that outlived its request, the response is gone already
+        }
+    }
+
+    public static boolean isMarked() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        return attributes != null && attributes.getAttribute(ATTRIBUTE, RequestAttributes.SCOPE_REQUEST) != null;
+    }
+}
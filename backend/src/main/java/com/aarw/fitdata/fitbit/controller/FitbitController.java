@@ -5,14 +5,21 @@ import com.aarw.fitdata.fitbit.dto.FitbitProfileResponse;
 import com.aarw.fitdata.dto.StepsSeriesDto;
 import com.aarw.fitdata.fitbit.service.StepsService;
 import com.aarw.fitdata.fitbit.util.StepsRange;
+import com.aarw.fitdata.fitbit.util.StepsRangeCalculator;
+import com.aarw.fitdata.history.DailyMetric;
+import com.aarw.fitdata.history.Granularity;
 import com.aarw.fitdata.oauth.token.FitbitTokenEntity;
 import com.aarw.fitdata.oauth.token.FitbitTokenService;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.LocalDate;
+import java.util.EnumSet;
 
 @RestController
 public class FitbitController {
@@ -20,26 +27,61 @@ public class FitbitController {
     private final FitbitTokenService tokenService;
     private final FitbitApiClient apiClient;
     private final StepsService stepsService;
+    private final HttpCaching httpCaching;
+    private final NdjsonStreams ndjsonStreams;
 
 
-    public FitbitController(FitbitTokenService tokenService, FitbitApiClient apiClient, StepsService stepsService) {
+    public FitbitController(FitbitTokenService tokenService, FitbitApiClient apiClient, StepsService stepsService,
+                            HttpCaching httpCaching, NdjsonStreams ndjsonStreams) {
         this.tokenService = tokenService;
         this.apiClient = apiClient;
         this.stepsService = stepsService;
+        this.httpCaching = httpCaching;
+        this.ndjsonStreams = ndjsonStreams;
     }
 
     @GetMapping("/api/profile")
-    public FitbitProfileResponse profile() {
+    public ResponseEntity<FitbitProfileResponse> profile() {
         FitbitTokenEntity token = tokenService.getValidTokenOrThrow();
-        return apiClient.getProfile(token);
+        return httpCaching.ok(null, apiClient.getProfile(token));
     }
 
+    /**
+     * Either a fixed {@code range} up to {@code baseDate}, or a custom window from {@code start} to {@code end}.
+     */
     @GetMapping("/api/steps")
-    public StepsSeriesDto steps(
+    public ResponseEntity<StepsSeriesDto> steps(
             @RequestParam(defaultValue = "LAST_7_DAYS") StepsRange range,
-            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate baseDate
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate baseDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate start,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate end,
+            HttpServletRequest request
     ) {
+        if (start != null) {
+            LocalDate effectiveEnd = end == null ? LocalDate.now() : end;
+            StepsRangeCalculator.checkWindow(start, effectiveEnd);
+            return httpCaching.stored(request, EnumSet.of(DailyMetric.STEPS), Granularity.firstDayRead(start, effectiveEnd), effectiveEnd,
+                    () -> stepsService.getSteps(start, effectiveEnd));
+        }
         LocalDate effectiveBaseDate = baseDate == null ? LocalDate.now() : baseDate;
-        return stepsService.getSteps(range, effectiveBaseDate);
+        LocalDate rangeStart = StepsRangeCalculator.startDate(range, effectiveBaseDate);
+        return httpCaching.stored(request, EnumSet.of(DailyMetric.STEPS), Granularity.firstDayRead(rangeStart, effectiveBaseDate), effectiveBaseDate,
+                () -> stepsService.getSteps(range, effectiveBaseDate));
+    }
+
+    /**
+     * Daily steps of any window as NDJSON, one day per line.
+     */
+    @GetMapping("/api/steps/stream")
+    public ResponseEntity<StreamingResponseBody> streamSteps(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate start,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate end
+    ) {
+        LocalDate effectiveEnd = end == null ? LocalDate.now() : end;
+        StepsRangeCalculator.checkWindow(start, effectiveEnd);
+        FitbitTokenEntity token = tokenService.getValidTokenOrThrow();
+        // The calls are made window by window, so the budget is checked before the status is sent
+        stepsService.checkStreamBudget(token, start, effectiveEnd);
+        return ndjsonStreams.stream(sink -> stepsService.streamSteps(token, start, effectiveEnd, sink));
     }
 }
\ No newline at end of file
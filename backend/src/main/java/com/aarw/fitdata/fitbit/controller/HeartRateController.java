@@ -3,49 +3,105 @@ package com.aarw.fitdata.fitbit.controller;
 import com.aarw.fitdata.dto.HeartRateDayDto;
 import com.aarw.fitdata.dto.HeartRateIntradayDto;
 import com.aarw.fitdata.dto.HeartRateRangeDto;
+import com.aarw.fitdata.exception.BadRequestException;
 import com.aarw.fitdata.fitbit.service.HeartRateIntradayService;
 import com.aarw.fitdata.fitbit.service.HeartRateService;
 import com.aarw.fitdata.fitbit.util.StepsRange;
+import com.aarw.fitdata.fitbit.util.StepsRangeCalculator;
+import com.aarw.fitdata.history.DailyMetric;
+import com.aarw.fitdata.history.Granularity;
+import com.aarw.fitdata.oauth.token.FitbitTokenEntity;
+import com.aarw.fitdata.oauth.token.FitbitTokenService;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.LocalDate;
+import java.util.EnumSet;
 
 @RestController
 public class HeartRateController {
 
+    private final FitbitTokenService tokenService;
     private final HeartRateService heartRateService;
     private final HeartRateIntradayService heartRateIntradayService;
+    private final HttpCaching httpCaching;
+    private final NdjsonStreams ndjsonStreams;
 
-    public HeartRateController(HeartRateService heartRateService, HeartRateIntradayService heartRateIntradayService) {
+    public HeartRateController(FitbitTokenService tokenService,
+                               HeartRateService heartRateService,
+                               HeartRateIntradayService heartRateIntradayService,
+                               HttpCaching httpCaching,
+                               NdjsonStreams ndjsonStreams) {
+        this.tokenService = tokenService;
         this.heartRateService = heartRateService;
         this.heartRateIntradayService = heartRateIntradayService;
+        this.httpCaching = httpCaching;
+        this.ndjsonStreams = ndjsonStreams;
     }
 
     @GetMapping("/api/heartrate")
-    public HeartRateDayDto day(
+    public ResponseEntity<HeartRateDayDto> day(
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate baseDate
     ) {
         LocalDate effective = baseDate == null ? LocalDate.now() : baseDate;
-        return heartRateService.getDay(effective);
+        return httpCaching.ok(effective, heartRateService.getDay(effective));
     }
 
+    /**
+     * Either a fixed {@code range} up to {@code baseDate}, or a custom window from {@code start} to {@code end}.
+     */
     @GetMapping("/api/heartrate/range")
-    public HeartRateRangeDto range(
-            @RequestParam StepsRange range,
-            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate baseDate
+    public ResponseEntity<HeartRateRangeDto> range(
+            @RequestParam(required = false) StepsRange range,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate baseDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate start,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate end,
+            HttpServletRequest request
     ) {
-        LocalDate effective = baseDate == null ? LocalDate.now() : baseDate;
-        return heartRateService.getRange(range, effective);
+        if (start != null) {
+            LocalDate effectiveEnd = end == null ? LocalDate.now() : end;
+            StepsRangeCalculator.checkWindow(start, effectiveEnd);
+            return httpCaching.stored(request, EnumSet.of(DailyMetric.HEART), Granularity.firstDayRead(start, effectiveEnd), effectiveEnd,
+                    () -> heartRateService.getRange(start, effectiveEnd));
+        } else if (range != null) {
+            LocalDate effective = baseDate == null ? LocalDate.now() : baseDate;
+            LocalDate rangeStart = StepsRangeCalculator.startDate(range, effective);
+            return httpCaching.stored(request, EnumSet.of(DailyMetric.HEART), Granularity.firstDayRead(rangeStart, effective), effective,
+                    () -> heartRateService.getRange(range, effective));
+        } else {
+            throw new BadRequestException("range or start is required");
+        }
+    }
+
+    /**
+     * Daily resting heart rate and zones of any window as NDJSON, one day per line.
+     */
+    @GetMapping("/api/heartrate/range/stream")
+    public ResponseEntity<StreamingResponseBody> streamRange(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate start,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate end
+    ) {
+        LocalDate effectiveEnd = end == null ? LocalDate.now() : end;
+        StepsRangeCalculator.checkWindow(start, effectiveEnd);
+        FitbitTokenEntity token = tokenService.getValidTokenOrThrow();
+        // The calls are made window by window, so the budget is checked before the status is sent
+        heartRateService.checkStreamBudget(token, start, effectiveEnd);
+        return ndjsonStreams.stream(sink -> heartRateService.streamRange(token, start, effectiveEnd, sink));
     }
 
     @GetMapping("/api/heartrate/intraday")
-    public HeartRateIntradayDto intraday(
-            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate baseDate
+    public ResponseEntity<HeartRateIntradayDto> intraday(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate baseDate,
+            HttpServletRequest request
     ) {
         LocalDate effective = baseDate == null ? LocalDate.now() : baseDate;
-        return heartRateIntradayService.get(effective);
+        // Archived days are versioned by the archive, the others get their ETag from the body
+        return httpCaching.stored(request, () -> heartRateIntradayService.version(effective),
+                () -> heartRateIntradayService.get(effective));
     }
 }
\ No newline at end of file
@@ -0,0 +1,54 @@
+package com.aarw.fitdata.fitbit.controller;
+
+import com.aarw.fitdata.dto.HrvRangeDto;
+import com.aarw.fitdata.exception.BadRequestException;
+import com.aarw.fitdata.fitbit.service.HrvService;
+import com.aarw.fitdata.fitbit.util.StepsRange;
+import com.aarw.fitdata.fitbit.util.StepsRangeCalculator;
+import com.aarw.fitdata.history.DailyMetric;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.LocalDate;
+import java.util.EnumSet;
+
+@RestController
+public class HrvController {
+
+    private final HrvService hrvService;
+    private final HttpCaching httpCaching;
+
+    public HrvController(HrvService hrvService, HttpCaching httpCaching) {
+        this.hrvService = hrvService;
+        this.httpCaching = httpCaching;
+    }
+
+    /**
+     * Either a fixed {@code range} up to {@code baseDate}, or a custom window from {@code start} to {@code end}.
+     */
+    @GetMapping("/api/hrv/range")
+    public ResponseEntity<HrvRangeDto> range(
+            @RequestParam(required = false) StepsRange range,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate baseDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate start,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate end,
+            HttpServletRequest request
+    ) {
+        if (start != null) {
+            LocalDate effectiveEnd = end == null ? LocalDate.now() : end;
+            StepsRangeCalculator.checkWindow(start, effectiveEnd);
+            return httpCaching.stored(request, EnumSet.of(DailyMetric.HRV), start, effectiveEnd,
+                    () -> hrvService.getRange(start, effectiveEnd));
+        } else if (range != null) {
+            LocalDate effective = baseDate == null ? LocalDate.now() : baseDate;
+            return httpCaching.stored(request, EnumSet.of(DailyMetric.HRV), StepsRangeCalculator.startDate(range, effective), effective,
+                    () -> hrvService.getRange(range, effective));
+        } else {
+            throw new BadRequestException("range or start is required");
+        }
+    }
+}
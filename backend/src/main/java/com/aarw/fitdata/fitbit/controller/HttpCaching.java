@@ -0,0 +1,124 @@
+package com.aarw.fitdata.fitbit.controller;
+
+import com.aarw.fitdata.config.HttpCacheProps;
+import com.aarw.fitdata.fitbit.PartialResults;
+import com.aarw.fitdata.history.DailyMetric;
+import com.aarw.fitdata.history.DailyMetricsStore;
+import com.aarw.fitdata.history.DataVersion;
+import com.aarw.fitdata.oauth.token.FitbitTokenService;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.function.Supplier;
+
+/**
+ * Builds data responses that browsers can cache and revalidate.
+ * <p>
+ * Responses built from stored rows carry an ETag derived from the version of those rows, read
+ * before anything is loaded: a matching {@code If-None-Match} on complete data is answered with
+ * 304 without loading or fetching. Other responses get the ETag of their serialized body from
+ * {@link com.aarw.fitdata.config.HttpCacheConfig the ETag filter}.
+ * <p>
+ * Complete data whose last day is closed no longer changes and may be reused for
+ * {@link HttpCacheProps#closedMaxAge()}; anything else (an open day, days not stored yet, a
+ * {@link PartialResults partial} response) only for {@link HttpCacheProps#openMaxAge()}.
+ * Responses depend on the session, so they are private and vary by cookie, and by {@code Accept}
+ * since the same data is served as JSON or CBOR.
+ */
+@Component
+public class HttpCaching {
+
+    private final HttpCacheProps props;
+    private final DailyMetricsStore dailyMetricsStore;
+    private final FitbitTokenService tokenService;
+
+    public HttpCaching(HttpCacheProps props, DailyMetricsStore dailyMetricsStore, FitbitTokenService tokenService) {
+        this.props = props;
+        this.dailyMetricsStore = dailyMetricsStore;
+        this.tokenService = tokenService;
+    }
+
+    /**
+     * @param lastDay the latest day the body covers, {@code null} if it is not tied to days
+     */
+    public <T> ResponseEntity<T> ok(LocalDate lastDay, T body) {
+        return headers(lastDay).body(body);
+    }
+
+    /**
+     * The caching headers for a body that is already built, for responses that need further headers.
+     *
+     * @param lastDay the latest day the body covers, {@code null} if it is not tied to days
+     */
+    public ResponseEntity.BodyBuilder headers(LocalDate lastDay) {
+        boolean closed = lastDay != null && lastDay.isBefore(dailyMetricsStore.firstOpenDay(tokenService.currentUserId()));
+        return headers(closed && !PartialResults.isMarked());
+    }
+
+    /**
+     * A response built from the daily metrics of the current user.
+     *
+     * @param metrics  the groups the body is built from
+     * @param firstDay the first stored day the body reads, e.g. the start of its first week
+     * @param lastDay  the last day the body covers
+     */
+    public <T> ResponseEntity<T> stored(HttpServletRequest request, Collection<DailyMetric> metrics,
+                                        LocalDate firstDay, LocalDate lastDay, Supplier<T> body) {
+        String userId = tokenService.currentUserId();
+        return stored(request, () -> dailyMetricsStore.version(userId, metrics, firstDay, lastDay), body);
+    }
+
+    /**
+     * A response built from stored rows.
+     *
+     * @param version the version of the rows; read once before the body is loaded and, unless it
+     *                was complete, once after, as loading may fetch and store rows
+     */
+    public <T> ResponseEntity<T> stored(HttpServletRequest request, Supplier<DataVersion> version, Supplier<T> body) {
+        DataVersion before = version.get();
+        if (before.complete()) {
+            String etag = etag(request, before);
+            if (new ServletWebRequest(request).checkNotModified(etag)) {
+                // Answered with 304 and these headers, the body is never loaded
+                return headers(true).eTag(etag).build();
+            }
+            return headers(true).eTag(etag).body(body.get());
+        }
+
+        T loaded = body.get();
+        DataVersion after = version.get();
+        ResponseEntity.BodyBuilder headers = headers(after.complete() && !PartialResults.isMarked());
+        if (after.tag() != null) {
+            headers.eTag(etag(request, after));
+        }
+        return headers.body(loaded);
+    }
+
+    private ResponseEntity.BodyBuilder headers(boolean longLived) {
+        return ResponseEntity.ok()
+                .cacheControl(cacheControl(longLived))
+                .varyBy(HttpHeaders.COOKIE, HttpHeaders.ACCEPT);
+    }
+
+    private CacheControl cacheControl(boolean longLived) {
+        var maxAge = longLived ? props.closedMaxAge() : props.openMaxAge();
+        return maxAge.isZero() ? CacheControl.noCache().cachePrivate() : CacheControl.maxAge(maxAge).cachePrivate();
+    }
+
+    /**
+     * The rows are those of the user and the window, which the URL names; the URL is part of the
+     * tag so that two views of the same rows (e.g. days and weeks) do not share one.
+     */
+    private static String etag(HttpServletRequest request, DataVersion version) {
+        String resource = request.getRequestURI() + "?" + request.getQueryString() + "#" + version.tag();
+        return "W/\"" + DigestUtils.md5DigestAsHex(resource.getBytes(StandardCharsets.UTF_8)) + "\"";
+    }
+}
@@ -0,0 +1,92 @@
+package com.aarw.fitdata.fitbit.controller;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.Serial;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Writes series as newline-delimited JSON, one point per line, while they are still being loaded.
+ * <p>
+ * Every window of points is written and flushed as soon as the service hands it over, so the
+ * first lines go out before the rest of the range is read and memory does not grow with the
+ * range. The status is sent with the first window, so a failure while loading cannot change it:
+ * the stream always ends with a line of its own, {@code {"end":true}} when every point was
+ * written and {@code {"error":"..."}} when loading failed. A stream without either line was cut
+ * off. Since a cache cannot tell the two endings apart, streams are never stored.
+ */
+@Component
+public class NdjsonStreams {
+
+    /**
+     * Produces a series in windows, in order.
+     */
+    @FunctionalInterface
+    public interface Source {
+        void forEachChunk(Consumer<List<?>> sink);
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(NdjsonStreams.class);
+
+    private static final byte[] END = "{\"end\":true}\n".getBytes(StandardCharsets.UTF_8);
+
+    private final ObjectMapper objectMapper;
+
+    public NdjsonStreams(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    public ResponseEntity<StreamingResponseBody> stream(Source source) {
+        StreamingResponseBody body = out -> {
+            try {
+                source.forEachChunk(chunk -> {
+                    try {
+                        for (Object point : chunk) {
+                            out.write(objectMapper.writeValueAsBytes(point));
+                            out.write('\n');
+                        }
+                        out.flush();
+                    } catch (IOException e) {
+                        throw new ClientGoneException(e);
+                    }
+                });
+            } catch (ClientGoneException e) {
+                log.debug("NDJSON client went away: {}", e.getCause().getMessage());
+                return;
+            } catch (RuntimeException e) {
+                // The response is already committed: the global handler could only append a JSON body to it
+                log.error("NDJSON stream failed after its status was sent", e);
+                out.write(objectMapper.writeValueAsBytes(Map.of("error", "Loading the series failed")));
+                out.write('\n');
+                out.flush();
+                return;
+            }
+            out.write(END);
+            out.flush();
+        };
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noStore())
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
+    private static final class ClientGoneException extends RuntimeException {
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        ClientGoneException(IOException cause) {
+            super(cause);
+        }
+    }
+}
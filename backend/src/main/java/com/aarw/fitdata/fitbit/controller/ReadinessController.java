@@ -3,11 +3,14 @@ package com.aarw.fitdata.fitbit.controller;
 import com.aarw.fitdata.dto.ReadinessCardDto;
 import com.aarw.fitdata.fitbit.service.ReadinessCardService;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.time.LocalDate;
+import java.util.EnumSet;
+import java.util.List;
 
 @RestController
 public class ReadinessController {
@@ -15,19 +18,26 @@ public class ReadinessController {
     private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(ReadinessController.class);
 
     private final ReadinessCardService readinessCardService;
+    private final HttpCaching httpCaching;
 
-    public ReadinessController(ReadinessCardService readinessCardService) {
+    public ReadinessController(ReadinessCardService readinessCardService, HttpCaching httpCaching) {
         this.readinessCardService = readinessCardService;
+        this.httpCaching = httpCaching;
     }
 
+    /**
+     * @param fields parts of the card to compute, all if absent; the others are {@code null}
+     */
     @GetMapping("/api/readiness")
-    public ReadinessCardDto getReadinessCard(
-            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate baseDate
+    public ResponseEntity<ReadinessCardDto> getReadinessCard(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate baseDate,
+            @RequestParam(required = false) List<ReadinessCardService.Field> fields
     ) {
         log.info("Readiness request START");
         LocalDate effective = baseDate == null ? LocalDate.now() : baseDate;
-        var result = readinessCardService.getReadinessCard(effective);
+        var result = readinessCardService.getReadinessCard(effective,
+                fields == null || fields.isEmpty() ? EnumSet.allOf(ReadinessCardService.Field.class) : EnumSet.copyOf(fields));
         log.info("Readiness request END");
-        return result;
+        return httpCaching.ok(effective, result);
     }
 }
@@ -3,28 +3,38 @@ package com.aarw.fitdata.fitbit.controller;
 import com.aarw.fitdata.dto.SleepDto;
 import com.aarw.fitdata.fitbit.service.SleepService;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.time.LocalDate;
+import java.util.EnumSet;
+import java.util.List;
 
 @RestController
 @RequestMapping("/api/sleep")
 public class SleepController {
 
     private final SleepService sleepService;
+    private final HttpCaching httpCaching;
 
-    public SleepController(SleepService sleepService) {
+    public SleepController(SleepService sleepService, HttpCaching httpCaching) {
         this.sleepService = sleepService;
+        this.httpCaching = httpCaching;
     }
 
+    /**
+     * @param fields optional parts to include, all if absent
+     */
     @GetMapping
-    public SleepDto getSleep(
-            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date
+    public ResponseEntity<SleepDto> getSleep(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date,
+            @RequestParam(required = false) List<SleepService.Field> fields
     ) {
         LocalDate effective = date == null ? LocalDate.now() : date;
-        return sleepService.getSleep(effective);
+        return httpCaching.ok(effective, sleepService.getSleep(effective,
+                fields == null || fields.isEmpty() ? EnumSet.allOf(SleepService.Field.class) : EnumSet.copyOf(fields)));
     }
 }
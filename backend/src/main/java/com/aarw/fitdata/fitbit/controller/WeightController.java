@@ -1,30 +1,80 @@
 package com.aarw.fitdata.fitbit.controller;
 
 import com.aarw.fitdata.dto.WeightSeriesDto;
+import com.aarw.fitdata.exception.BadRequestException;
 import com.aarw.fitdata.fitbit.service.WeightService;
 import com.aarw.fitdata.fitbit.util.StepsRange;
+import com.aarw.fitdata.fitbit.util.StepsRangeCalculator;
+import com.aarw.fitdata.history.DailyMetric;
+import com.aarw.fitdata.history.Granularity;
+import com.aarw.fitdata.oauth.token.FitbitTokenEntity;
+import com.aarw.fitdata.oauth.token.FitbitTokenService;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.LocalDate;
+import java.util.EnumSet;
 
 @RestController
 public class WeightController {
 
+    private final FitbitTokenService tokenService;
     private final WeightService weightService;
+    private final HttpCaching httpCaching;
+    private final NdjsonStreams ndjsonStreams;
 
-    public WeightController(WeightService weightService) {
+    public WeightController(FitbitTokenService tokenService, WeightService weightService, HttpCaching httpCaching,
+                            NdjsonStreams ndjsonStreams) {
+        this.tokenService = tokenService;
         this.weightService = weightService;
+        this.httpCaching = httpCaching;
+        this.ndjsonStreams = ndjsonStreams;
     }
 
+    /**
+     * Either a fixed {@code range} up to {@code baseDate}, or a custom window from {@code start} to {@code end}.
+     */
     @GetMapping("/api/weight/range")
-    public WeightSeriesDto range(
-            @RequestParam StepsRange range,
-            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate baseDate
+    public ResponseEntity<WeightSeriesDto> range(
+            @RequestParam(required = false) StepsRange range,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate baseDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate start,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate end,
+            HttpServletRequest request
     ) {
-        LocalDate effective = baseDate == null ? LocalDate.now() : baseDate;
-        return weightService.getWeight(range, effective);
+        if (start != null) {
+            LocalDate effectiveEnd = end == null ? LocalDate.now() : end;
+            StepsRangeCalculator.checkWindow(start, effectiveEnd);
+            return httpCaching.stored(request, EnumSet.of(DailyMetric.WEIGHT), Granularity.firstDayRead(start, effectiveEnd), effectiveEnd,
+                    () -> weightService.getWeight(start, effectiveEnd));
+        } else if (range != null) {
+            LocalDate effective = baseDate == null ? LocalDate.now() : baseDate;
+            LocalDate rangeStart = StepsRangeCalculator.startDate(range, effective);
+            return httpCaching.stored(request, EnumSet.of(DailyMetric.WEIGHT), Granularity.firstDayRead(rangeStart, effective), effective,
+                    () -> weightService.getWeight(range, effective));
+        } else {
+            throw new BadRequestException("range or start is required");
+        }
+    }
+
+    /**
+     * Weighed days of any window as NDJSON, one day per line.
+     */
+    @GetMapping("/api/weight/stream")
+    public ResponseEntity<StreamingResponseBody> stream(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate start,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate end
+    ) {
+        LocalDate effectiveEnd = end == null ? LocalDate.now() : end;
+        StepsRangeCalculator.checkWindow(start, effectiveEnd);
+        FitbitTokenEntity token = tokenService.getValidTokenOrThrow();
+        // The calls are made window by window, so the budget is checked before the status is sent
+        weightService.checkStreamBudget(token, start, effectiveEnd);
+        return ndjsonStreams.stream(sink -> weightService.streamWeight(token, start, effectiveEnd, sink));
     }
 }
@@ -7,6 +7,8 @@ public record FitbitProfileResponse(
             String encodedId,
             String fullName,
             int age,
-            String gender
+            String gender,
+            String memberSince,
+            String timezone
     ) {}
 }
\ No newline at end of file
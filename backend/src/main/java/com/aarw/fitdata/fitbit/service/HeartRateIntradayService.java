@@ -3,13 +3,19 @@ package com.aarw.fitdata.fitbit.service;
 import com.aarw.fitdata.dto.HeartRateIntradayDto;
 import com.aarw.fitdata.fitbit.FitbitApiClient;
 import com.aarw.fitdata.fitbit.FitbitRateLimitException;
+import com.aarw.fitdata.fitbit.PartialResults;
 import com.aarw.fitdata.fitbit.dto.FitbitActivitiesSummaryResponse;
 import com.aarw.fitdata.fitbit.dto.FitbitHeartDailyRangeResponse;
 import com.aarw.fitdata.fitbit.dto.FitbitHeartIntradayResponse;
+import com.aarw.fitdata.history.DailyMetricsStore;
+import com.aarw.fitdata.history.DataVersion;
+import com.aarw.fitdata.history.IntradayHeartRateRepository;
 import com.aarw.fitdata.oauth.token.FitbitTokenEntity;
 import com.aarw.fitdata.oauth.token.FitbitTokenService;
+import com.aarw.fitdata.tracing.FanOut;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
@@ -17,6 +23,10 @@ import java.util.*;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Intraday heart rate of a day. Closed days are archived after the first successful fetch and
+ * served from the archive from then on, without any Fitbit call.
+ */
 @Service
 public class HeartRateIntradayService {
 
@@ -24,22 +34,61 @@ public class HeartRateIntradayService {
 
     private final FitbitTokenService tokenService;
     private final FitbitApiClient apiClient;
+    private final DailyMetricsStore dailyMetricsStore;
+    private final IntradayHeartRateRepository archive;
+    private final FanOut fanOut;
 
     private final Map<String, String> bestDetailLevel = new ConcurrentHashMap<>();
 
-    public HeartRateIntradayService(FitbitTokenService tokenService, FitbitApiClient apiClient) {
+    public HeartRateIntradayService(FitbitTokenService tokenService,
+                                    FitbitApiClient apiClient,
+                                    DailyMetricsStore dailyMetricsStore,
+                                    IntradayHeartRateRepository archive,
+                                    FanOut fanOut) {
         this.tokenService = tokenService;
         this.apiClient = apiClient;
+        this.dailyMetricsStore = dailyMetricsStore;
+        this.archive = archive;
+        this.fanOut = fanOut;
+    }
+
+    /**
+     * The version of the archived day; days not archived have none, they are fetched on every request.
+     */
+    public DataVersion version(LocalDate date) {
+        try {
+            String userId = tokenService.currentUserId();
+            if (!date.isBefore(dailyMetricsStore.firstOpenDay(userId))) {
+                return DataVersion.UNKNOWN;
+            }
+            return archive.archivedAt(userId, date)
+                    .map(archivedAt -> new DataVersion(userId + ":" + archivedAt, true))
+                    .orElse(DataVersion.UNKNOWN);
+        } catch (DataAccessException e) {
+            log.warn("Could not read the archive state of intraday heart rate for {}: {}", date, e.getMessage());
+            return DataVersion.UNKNOWN;
+        }
     }
 
     public HeartRateIntradayDto get(LocalDate baseDate) {
-        var token = tokenService.getValidTokenOrThrow();
+        return get(tokenService.getValidTokenOrThrow(), baseDate);
+    }
+
+    public HeartRateIntradayDto get(FitbitTokenEntity token, LocalDate baseDate) {
+        boolean closed = baseDate.isBefore(dailyMetricsStore.firstOpenDay(token.getFitbitUserId()));
+        if (closed) {
+            Optional<HeartRateIntradayDto> archived = findArchived(token.getFitbitUserId(), baseDate);
+            if (archived.isPresent()) {
+                return archived.get();
+            }
+        }
+
         String dateIso = baseDate.toString();
 
         // Start async calls
-        CompletableFuture<FitbitHeartIntradayResponse> intradayFuture = CompletableFuture.supplyAsync(() -> fetchIntradayWithFallback(token, dateIso));
-        CompletableFuture<FitbitHeartDailyRangeResponse> dayFuture = CompletableFuture.supplyAsync(() -> apiClient.getHeartForDay(token, dateIso));
-        CompletableFuture<FitbitActivitiesSummaryResponse> activityFuture = CompletableFuture.supplyAsync(() -> apiClient.getActivitiesSummaryForDay(token, dateIso));
+        CompletableFuture<FitbitHeartIntradayResponse> intradayFuture = fanOut.supplyAsync("heart-intraday.series", () -> fetchIntradayWithFallback(token, dateIso));
+        CompletableFuture<FitbitHeartDailyRangeResponse> dayFuture = fanOut.supplyAsync("heart-intraday.day", () -> apiClient.getHeartForDay(token, dateIso));
+        CompletableFuture<FitbitActivitiesSummaryResponse> activityFuture = fanOut.supplyAsync("heart-intraday.activity", () -> apiClient.getActivitiesSummaryForDay(token, dateIso));
 
         CompletableFuture.allOf(intradayFuture, dayFuture, activityFuture).join();
 
@@ -78,11 +127,34 @@ public class HeartRateIntradayService {
         Integer caloriesOut = activity == null || activity.summary() == null ? null : activity.summary().caloriesOut();
         Integer activityCalories = activity == null || activity.summary() == null ? null : activity.summary().activityCalories();
 
-        return new HeartRateIntradayDto(baseDate, restingHr, minBpm, maxBpm, caloriesOut, activityCalories, zones, points);
+        HeartRateIntradayDto dto = new HeartRateIntradayDto(baseDate, restingHr, minBpm, maxBpm, caloriesOut, activityCalories, zones, points);
+        // An empty series may be a failed probe rather than a day without data, so it is fetched again next time
+        if (closed && !points.isEmpty()) {
+            archive(token.getFitbitUserId(), dto);
+        }
+        return dto;
+    }
+
+    private Optional<HeartRateIntradayDto> findArchived(String userId, LocalDate date) {
+        try {
+            return archive.find(userId, date);
+        } catch (DataAccessException | IllegalArgumentException e) {
+            log.warn("Could not read archived intraday heart rate of {} for {}, fetching from Fitbit: {}", userId, date, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    private void archive(String userId, HeartRateIntradayDto day) {
+        try {
+            archive.save(userId, day);
+        } catch (DataAccessException e) {
+            log.warn("Could not archive intraday heart rate of {} for {}: {}", userId, day.date(), e.getMessage());
+        }
     }
 
     private FitbitHeartIntradayResponse fetchIntradayWithFallback(FitbitTokenEntity token, String dateIso) {
         String knownLevel = bestDetailLevel.get(dateIso);
+        boolean failed = false;
         if (knownLevel != null) {
             try {
                 return apiClient.getHeartIntraday(token, dateIso, knownLevel);
@@ -91,6 +163,7 @@ public class HeartRateIntradayService {
                 throw e;
             } catch (Exception e) {
                 log.warn("Failed to fetch intraday for {} with known level {}. Falling back to full probe.", dateIso, knownLevel);
+                failed = true;
             }
         }
 
@@ -107,9 +180,14 @@ public class HeartRateIntradayService {
                 throw e;
             } catch (Exception e) {
                 log.debug("Probe failed for {} at level {}: {}", dateIso, level, e.getMessage());
+                failed = true;
             }
         }
 
+        // Without data after a failed call the day may well have some
+        if (failed) {
+            PartialResults.mark();
+        }
         return null;
     }
 
@@ -6,25 +6,43 @@ import com.aarw.fitdata.fitbit.FitbitApiClient;
 import com.aarw.fitdata.fitbit.dto.FitbitHeartDailyRangeResponse;
 import com.aarw.fitdata.fitbit.util.StepsRange;
 import com.aarw.fitdata.fitbit.util.StepsRangeCalculator;
+import com.aarw.fitdata.history.DailyMetric;
+import com.aarw.fitdata.history.DailyMetrics;
+import com.aarw.fitdata.history.DailyMetricsFetcher;
+import com.aarw.fitdata.history.DailyMetricsStore;
+import com.aarw.fitdata.history.Granularity;
+import com.aarw.fitdata.history.RollupMetric;
+import com.aarw.fitdata.oauth.token.FitbitTokenEntity;
 import com.aarw.fitdata.oauth.token.FitbitTokenService;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.function.Consumer;
 
 @Service
 public class HeartRateService {
 
     private final FitbitTokenService tokenService;
     private final FitbitApiClient apiClient;
+    private final DailyMetricsStore dailyMetricsStore;
+    private final DailyMetricsFetcher dailyMetricsFetcher;
 
-    public HeartRateService(FitbitTokenService tokenService, FitbitApiClient apiClient) {
+    public HeartRateService(FitbitTokenService tokenService,
+                            FitbitApiClient apiClient,
+                            DailyMetricsStore dailyMetricsStore,
+                            DailyMetricsFetcher dailyMetricsFetcher) {
         this.tokenService = tokenService;
         this.apiClient = apiClient;
+        this.dailyMetricsStore = dailyMetricsStore;
+        this.dailyMetricsFetcher = dailyMetricsFetcher;
     }
 
     public HeartRateDayDto getDay(LocalDate baseDate) {
-        var token = tokenService.getValidTokenOrThrow();
+        return getDay(tokenService.getValidTokenOrThrow(), baseDate);
+    }
+
+    public HeartRateDayDto getDay(FitbitTokenEntity token, LocalDate baseDate) {
 
         FitbitHeartDailyRangeResponse raw = apiClient.getHeartForDay(token, baseDate.toString());
         var item = firstOrNull(raw);
@@ -39,24 +57,71 @@ public class HeartRateService {
     }
 
     public HeartRateRangeDto getRange(StepsRange range, LocalDate baseDate) {
-        var token = tokenService.getValidTokenOrThrow();
+        return getRange(tokenService.getValidTokenOrThrow(), range, baseDate);
+    }
 
-        LocalDate start = StepsRangeCalculator.startDate(range, baseDate);
+    public HeartRateRangeDto getRange(FitbitTokenEntity token, StepsRange range, LocalDate baseDate) {
+        return getRange(token, range.name(), StepsRangeCalculator.startDate(range, baseDate), baseDate);
+    }
 
-        FitbitHeartDailyRangeResponse raw = apiClient.getHeartByDateRange(token, start.toString(), baseDate.toString());
-        List<FitbitHeartDailyRangeResponse.ActivityHeart> items =
-                raw == null || raw.activitiesHeart() == null ? List.of() : raw.activitiesHeart();
+    /**
+     * Resting heart rate over an inclusive custom window, per day, week or month depending on its length.
+     */
+    public HeartRateRangeDto getRange(LocalDate start, LocalDate end) {
+        return getRange(tokenService.getValidTokenOrThrow(), StepsRangeCalculator.CUSTOM, start, end);
+    }
 
-        List<HeartRateRangeDto.Point> points = items.stream()
-                .map(it -> {
-                    LocalDate d = LocalDate.parse(it.dateTime());
-                    Integer resting = it.value() == null ? null : it.value().restingHeartRate();
-                    HeartRateDayDto.Zones zones = mapZones(it.value() == null ? null : it.value().heartRateZones());
-                    return new HeartRateRangeDto.Point(d, resting, zones);
-                })
+    private HeartRateRangeDto getRange(FitbitTokenEntity token, String range, LocalDate start, LocalDate baseDate) {
+        Granularity granularity = Granularity.coarsestFor(start, baseDate);
+        if (granularity != Granularity.DAY) {
+            var buckets = dailyMetricsStore.loadRollups(token.getFitbitUserId(), RollupMetric.RESTING_HR, granularity, start, baseDate,
+                    (from, to) -> dailyMetricsFetcher.fetch(token, DailyMetric.HEART, from, to));
+            List<HeartRateRangeDto.Point> points = buckets.stream()
+                    .map(it -> new HeartRateRangeDto.Point(it.periodStart(), toInt(it.mean()), null, toInt(it.min()), toInt(it.max())))
+                    .toList();
+            return new HeartRateRangeDto(range, granularity.bucketStart(start), baseDate, granularity.name(), points);
+        }
+
+        var rows = dailyMetricsStore.load(token.getFitbitUserId(), DailyMetric.HEART, start, baseDate,
+                (from, to) -> dailyMetricsFetcher.fetch(token, DailyMetric.HEART, from, to));
+
+        List<HeartRateRangeDto.Point> points = rows.values().stream()
+                .map(HeartRateService::toPoint)
                 .toList();
 
-        return new HeartRateRangeDto(range.name(), start, baseDate, points);
+        return new HeartRateRangeDto(range, start, baseDate, points);
+    }
+
+    /**
+     * Fails before anything is streamed if the Fitbit calls {@link #streamRange} will make for the
+     * window exceed the user's remaining budget.
+     */
+    public void checkStreamBudget(FitbitTokenEntity token, LocalDate start, LocalDate end) {
+        dailyMetricsFetcher.checkBudget(token, "Streaming heart rate from " + start + " to " + end,
+                dailyMetricsStore.fetchesNeeded(token.getFitbitUserId(), DailyMetric.HEART, start, end, DailyMetricsFetcher.maxDays(DailyMetric.HEART)));
+    }
+
+    /**
+     * Daily resting heart rate and zones of an inclusive range of any length, handed to
+     * {@code sink} window by window as they are loaded.
+     */
+    public void streamRange(FitbitTokenEntity token, LocalDate start, LocalDate end, Consumer<? super List<HeartRateRangeDto.Point>> sink) {
+        dailyMetricsStore.loadChunked(token.getFitbitUserId(), DailyMetric.HEART, start, end, DailyMetricsFetcher.maxDays(DailyMetric.HEART),
+                (from, to) -> dailyMetricsFetcher.fetch(token, DailyMetric.HEART, from, to),
+                rows -> sink.accept(rows.stream().map(HeartRateService::toPoint).toList()));
+    }
+
+    private static HeartRateRangeDto.Point toPoint(DailyMetrics row) {
+        return new HeartRateRangeDto.Point(row.day(), row.restingHr(), new HeartRateDayDto.Zones(
+                orZero(row.zoneOutMin()), orZero(row.zoneFatBurnMin()), orZero(row.zoneCardioMin()), orZero(row.zonePeakMin())));
+    }
+
+    private static Integer toInt(Double value) {
+        return value == null ? null : (int) Math.round(value);
+    }
+
+    private static int orZero(Integer value) {
+        return value == null ? 0 : value;
     }
 
     private FitbitHeartDailyRangeResponse.ActivityHeart firstOrNull(FitbitHeartDailyRangeResponse raw) {
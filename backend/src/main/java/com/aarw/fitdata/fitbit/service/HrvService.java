@@ -0,0 +1,51 @@
+package com.aarw.fitdata.fitbit.service;
+
+import com.aarw.fitdata.dto.HrvRangeDto;
+import com.aarw.fitdata.fitbit.util.StepsRange;
+import com.aarw.fitdata.fitbit.util.StepsRangeCalculator;
+import com.aarw.fitdata.history.DailyMetric;
+import com.aarw.fitdata.history.DailyMetricsFetcher;
+import com.aarw.fitdata.history.DailyMetricsStore;
+import com.aarw.fitdata.oauth.token.FitbitTokenEntity;
+import com.aarw.fitdata.oauth.token.FitbitTokenService;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * HRV is always returned per day: there are no rollups of it, and even a year is a few hundred points.
+ */
+@Service
+public class HrvService {
+
+    private final FitbitTokenService tokenService;
+    private final DailyMetricsStore dailyMetricsStore;
+    private final DailyMetricsFetcher dailyMetricsFetcher;
+
+    public HrvService(FitbitTokenService tokenService, DailyMetricsStore dailyMetricsStore, DailyMetricsFetcher dailyMetricsFetcher) {
+        this.tokenService = tokenService;
+        this.dailyMetricsStore = dailyMetricsStore;
+        this.dailyMetricsFetcher = dailyMetricsFetcher;
+    }
+
+    public HrvRangeDto getRange(StepsRange range, LocalDate baseDate) {
+        return getRange(tokenService.getValidTokenOrThrow(), range.name(), StepsRangeCalculator.startDate(range, baseDate), baseDate);
+    }
+
+    public HrvRangeDto getRange(LocalDate start, LocalDate end) {
+        return getRange(tokenService.getValidTokenOrThrow(), StepsRangeCalculator.CUSTOM, start, end);
+    }
+
+    private HrvRangeDto getRange(FitbitTokenEntity token, String range, LocalDate start, LocalDate end) {
+        var rows = dailyMetricsStore.load(token.getFitbitUserId(), DailyMetric.HRV, start, end,
+                (from, to) -> dailyMetricsFetcher.fetch(token, DailyMetric.HRV, from, to));
+
+        List<HrvRangeDto.Point> points = rows.values().stream()
+                .filter(it -> it.hrv() != null)
+                .map(it -> new HrvRangeDto.Point(it.day(), it.hrv()))
+                .toList();
+
+        return new HrvRangeDto(range, start, end, points);
+    }
+}
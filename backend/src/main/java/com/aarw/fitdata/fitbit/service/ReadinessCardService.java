@@ -5,17 +5,26 @@ import com.aarw.fitdata.dto.HeartRateDayDto;
 import com.aarw.fitdata.dto.HeartRateRangeDto;
 import com.aarw.fitdata.dto.SleepDto;
 import com.aarw.fitdata.fitbit.FitbitApiClient;
+import com.aarw.fitdata.fitbit.PartialResults;
 import com.aarw.fitdata.fitbit.dto.FitbitActivitiesSummaryResponse;
 import com.aarw.fitdata.fitbit.dto.FitbitHrvResponse;
 import com.aarw.fitdata.fitbit.dto.FitbitVo2MaxResponse;
 import com.aarw.fitdata.fitbit.util.ReadinessScoreEstimator;
 import com.aarw.fitdata.fitbit.util.StepsRange;
+import com.aarw.fitdata.history.DailyMetric;
+import com.aarw.fitdata.history.DailyMetrics;
+import com.aarw.fitdata.history.DailyMetricsFetcher;
+import com.aarw.fitdata.history.DailyMetricsStore;
+import com.aarw.fitdata.oauth.token.FitbitTokenEntity;
 import com.aarw.fitdata.oauth.token.FitbitTokenService;
+import com.aarw.fitdata.tracing.FanOut;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 
 @Service
@@ -27,74 +36,75 @@ public class ReadinessCardService {
     private final FitbitApiClient apiClient;
     private final HeartRateService heartRateService;
     private final SleepService sleepService;
+    private final DailyMetricsStore dailyMetricsStore;
+    private final DailyMetricsFetcher dailyMetricsFetcher;
+    private final FanOut fanOut;
 
     public ReadinessCardService(FitbitTokenService tokenService,
                                 FitbitApiClient apiClient,
                                 HeartRateService heartRateService,
-                                SleepService sleepService) {
+                                SleepService sleepService,
+                                DailyMetricsStore dailyMetricsStore,
+                                DailyMetricsFetcher dailyMetricsFetcher,
+                                FanOut fanOut) {
         this.tokenService = tokenService;
         this.apiClient = apiClient;
         this.heartRateService = heartRateService;
         this.sleepService = sleepService;
+        this.dailyMetricsStore = dailyMetricsStore;
+        this.dailyMetricsFetcher = dailyMetricsFetcher;
+        this.fanOut = fanOut;
+    }
+
+    /**
+     * The parts of the card that can be requested separately, each with the Fitbit calls it needs.
+     */
+    public enum Field {
+        /** {@code readinessScore} and {@code readinessStatus}: heart rate, sleep, activity and HRV */
+        READINESS,
+        /** {@code cardioLoadScore} and {@code vo2Max}: one cardio fitness call */
+        VO2_MAX,
+        /** {@code exerciseDays}: activity summaries of the week so far */
+        EXERCISE_DAYS
     }
 
     public ReadinessCardDto getReadinessCard(LocalDate date) {
-        var token = tokenService.getValidTokenOrThrow();
+        return getReadinessCard(tokenService.getValidTokenOrThrow(), date);
+    }
+
+    public ReadinessCardDto getReadinessCard(LocalDate date, Set<Field> fields) {
+        return getReadinessCard(tokenService.getValidTokenOrThrow(), date, fields);
+    }
+
+    public ReadinessCardDto getReadinessCard(FitbitTokenEntity token, LocalDate date) {
+        return getReadinessCard(token, date, EnumSet.allOf(Field.class));
+    }
+
+    /**
+     * @param fields parts to compute; the values of the others are {@code null} and nothing is fetched for them
+     */
+    public ReadinessCardDto getReadinessCard(FitbitTokenEntity token, LocalDate date, Set<Field> fields) {
         String dateStr = date.toString();
 
         // 1. Fetch VO2 Max (Cardio Fitness Score) - ASYNC
-        CompletableFuture<FitbitVo2MaxResponse> vo2MaxFuture = CompletableFuture.supplyAsync(() -> {
-            try {
-                return apiClient.getVo2Max(token, dateStr);
-            } catch (Exception e) {
-                log.error("Error fetching VO2 Max for {}: {}", dateStr, e.getMessage());
-                return new FitbitVo2MaxResponse(java.util.Collections.emptyList());
-            }
-        }).exceptionally(e -> {
-            log.error("Unexpected error fetching VO2 Max for {}: {}", dateStr, e.getMessage());
-            return new FitbitVo2MaxResponse(java.util.Collections.emptyList());
-        });
+        CompletableFuture<FitbitVo2MaxResponse> vo2MaxFuture = fields.contains(Field.VO2_MAX)
+                ? fetchVo2Max(token, dateStr)
+                : CompletableFuture.completedFuture(null);
 
         // 2. Calculate Exercise Days (Current Week starting Monday) - ASYNC (partially)
-        CompletableFuture<Integer> exerciseDaysFuture = CompletableFuture.supplyAsync(() -> {
-            int exerciseDaysCount = 0;
-            try {
-                LocalDate current = date.with(java.time.DayOfWeek.MONDAY);
-                List<CompletableFuture<FitbitActivitiesSummaryResponse>> activityFutures = new ArrayList<>();
-                while (!current.isAfter(date)) {
-                    final String d = current.toString();
-                    activityFutures.add(CompletableFuture.supplyAsync(() -> apiClient.getActivitiesSummaryForDay(token, d)));
-                    current = current.plusDays(1);
-                }
-
-                for (var f : activityFutures) {
-                    try {
-                        FitbitActivitiesSummaryResponse summary = f.join();
-                        if (summary != null && summary.summary() != null) {
-                            Integer calories = summary.summary().activityCalories();
-                            if (calories != null && calories > 250) {
-                                exerciseDaysCount++;
-                            }
-                        }
-                    } catch (Exception e) {
-                        log.error("Error fetching activity summary during exercise days calculation: {}", e.getMessage());
-                    }
-                }
-            } catch (Exception e) {
-                log.error("Error calculating exercise days for {}: {}", dateStr, e.getMessage());
-            }
-            return exerciseDaysCount;
-        }).exceptionally(e -> {
-            log.error("Unexpected error calculating exercise days for {}: {}", dateStr, e.getMessage());
-            return 0;
-        });
+        CompletableFuture<Integer> exerciseDaysFuture = fields.contains(Field.EXERCISE_DAYS)
+                ? countExerciseDays(token, date)
+                : CompletableFuture.completedFuture(null);
 
         // 3. Estimate Readiness Score - ASYNC
-        CompletableFuture<Integer> readinessScoreFuture = CompletableFuture.supplyAsync(() -> estimateReadiness(date))
-                .exceptionally(e -> {
-                    log.error("Unexpected error estimating readiness for {}: {}", dateStr, e.getMessage());
-                    return 0;
-                });
+        CompletableFuture<Integer> readinessScoreFuture = fields.contains(Field.READINESS)
+                ? fanOut.supplyAsync("readiness.estimate", () -> estimateReadiness(token, date))
+                        .exceptionally(e -> {
+                            log.error("Unexpected error estimating readiness for {}: {}", dateStr, e.getMessage());
+                            PartialResults.mark();
+                            return 0;
+                        })
+                : CompletableFuture.completedFuture(null);
 
         // Wait for all to complete
         CompletableFuture.allOf(vo2MaxFuture, exerciseDaysFuture, readinessScoreFuture).join();
@@ -117,9 +127,9 @@ public class ReadinessCardService {
             }
         } catch (Exception ignored) {}
 
-        int exerciseDaysCount = exerciseDaysFuture.join();
+        Integer exerciseDaysCount = exerciseDaysFuture.join();
         Integer readinessScore = readinessScoreFuture.join();
-        String readinessStatus = "ESTIMATED";
+        String readinessStatus = fields.contains(Field.READINESS) ? "ESTIMATED" : null;
 
         return new ReadinessCardDto(
                 date,
@@ -134,44 +144,116 @@ public class ReadinessCardService {
         );
     }
 
-    private Integer estimateReadiness(LocalDate date) {
-        try {
-            var token = tokenService.getValidTokenOrThrow();
+    private CompletableFuture<FitbitVo2MaxResponse> fetchVo2Max(FitbitTokenEntity token, String dateStr) {
+        return fanOut.supplyAsync("readiness.vo2max", () -> {
+            try {
+                return apiClient.getVo2Max(token, dateStr);
+            } catch (Exception e) {
+                log.error("Error fetching VO2 Max for {}: {}", dateStr, e.getMessage());
+                PartialResults.mark();
+                return new FitbitVo2MaxResponse(java.util.Collections.emptyList());
+            }
+        }).exceptionally(e -> {
+            log.error("Unexpected error fetching VO2 Max for {}: {}", dateStr, e.getMessage());
+            PartialResults.mark();
+            return new FitbitVo2MaxResponse(java.util.Collections.emptyList());
+        });
+    }
+
+    private CompletableFuture<Integer> countExerciseDays(FitbitTokenEntity token, LocalDate date) {
+        return fanOut.supplyAsync("readiness.exercise-days", () -> {
+            int exerciseDaysCount = 0;
+            try {
+                // Past days of the week come from the local history, only the missing ones are fetched
+                var days = dailyMetricsStore.load(token.getFitbitUserId(), DailyMetric.ACTIVITY,
+                        date.with(java.time.DayOfWeek.MONDAY), date, (from, to) -> fetchActivityCalories(token, from, to));
+                for (DailyMetrics day : days.values()) {
+                    Integer calories = day.activityCalories();
+                    if (calories != null && calories > 250) {
+                        exerciseDaysCount++;
+                    }
+                }
+            } catch (Exception e) {
+                log.error("Error calculating exercise days for {}: {}", date, e.getMessage());
+                PartialResults.mark();
+            }
+            return exerciseDaysCount;
+        }).exceptionally(e -> {
+            log.error("Unexpected error calculating exercise days for {}: {}", date, e.getMessage());
+            PartialResults.mark();
+            return 0;
+        });
+    }
+
+    private List<DailyMetrics> fetchActivityCalories(FitbitTokenEntity token, LocalDate from, LocalDate to) {
+        List<CompletableFuture<DailyMetrics>> futures = new ArrayList<>();
+        for (LocalDate day = from; !day.isAfter(to); day = day.plusDays(1)) {
+            final LocalDate d = day;
+            futures.add(fanOut.supplyAsync("readiness.exercise-day", () -> {
+                FitbitActivitiesSummaryResponse summary = apiClient.getActivitiesSummaryForDay(token, d.toString());
+                Integer calories = summary == null || summary.summary() == null ? null : summary.summary().activityCalories();
+                return DailyMetrics.activity(d, calories);
+            }));
+        }
 
+        // A failed day fails the whole fetch: a day left out would be stored as fetched without data
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).join();
+        List<DailyMetrics> days = new ArrayList<>(futures.size());
+        for (var f : futures) {
+            days.add(f.join());
+        }
+        return days;
+    }
+
+    private Integer estimateReadiness(FitbitTokenEntity token, LocalDate date) {
+        try {
             // Parallelize estimation inputs
-            CompletableFuture<HeartRateDayDto> todayHrFuture = CompletableFuture.supplyAsync(() -> heartRateService.getDay(date))
+            CompletableFuture<HeartRateDayDto> todayHrFuture = fanOut.supplyAsync("readiness.heart-day", () -> heartRateService.getDay(token, date))
                     .exceptionally(e -> {
                         log.error("Error fetching today's HR for {}: {}", date, e.getMessage());
+                        PartialResults.mark();
                         return new HeartRateDayDto(date, null, null);
                     });
-            CompletableFuture<HeartRateRangeDto> last7DaysHrFuture = CompletableFuture.supplyAsync(() ->
-                    heartRateService.getRange(StepsRange.LAST_7_DAYS, date))
+            CompletableFuture<HeartRateRangeDto> last7DaysHrFuture = fanOut.supplyAsync("readiness.heart-range", () ->
+                    heartRateService.getRange(token, StepsRange.LAST_7_DAYS, date))
                     .exceptionally(e -> {
                         log.error("Error fetching 7-day HR range for {}: {}", date, e.getMessage());
+                        PartialResults.mark();
                         return new HeartRateRangeDto("LAST_7_DAYS", date.minusDays(7), date, List.of());
                     });
-            CompletableFuture<SleepDto> sleepFuture = CompletableFuture.supplyAsync(() -> sleepService.getSleep(date))
+            // Only the score is used, the stage segments are not built
+            CompletableFuture<SleepDto> sleepFuture = fanOut.supplyAsync("readiness.sleep", () ->
+                    sleepService.getSleep(token, date, EnumSet.noneOf(SleepService.Field.class)))
                     .exceptionally(e -> {
                         log.error("Error fetching sleep for {}: {}", date, e.getMessage());
+                        PartialResults.mark();
                         return new SleepDto(date.toString(), 0, 0, null, null, null, null, List.of());
                     });
-            CompletableFuture<FitbitActivitiesSummaryResponse> activityFuture = CompletableFuture.supplyAsync(() ->
+            CompletableFuture<FitbitActivitiesSummaryResponse> activityFuture = fanOut.supplyAsync("readiness.activity", () ->
                     apiClient.getActivitiesSummaryForDay(token, date.toString()))
                     .exceptionally(e -> {
                         log.error("Error fetching activities for {}: {}", date, e.getMessage());
+                        PartialResults.mark();
                         return null;
                     });
-            CompletableFuture<FitbitHrvResponse> hrvTodayFuture = CompletableFuture.supplyAsync(() ->
+            CompletableFuture<FitbitHrvResponse> hrvTodayFuture = fanOut.supplyAsync("readiness.hrv-day", () ->
                     apiClient.getHrv(token, date.toString()))
                     .exceptionally(e -> {
                         log.error("Error fetching today's HRV for {}: {}", date, e.getMessage());
+                        PartialResults.mark();
                         return new FitbitHrvResponse(List.of());
                     });
-            CompletableFuture<FitbitHrvResponse> hrvRangeFuture = CompletableFuture.supplyAsync(() -> {
+            CompletableFuture<FitbitHrvResponse> hrvRangeFuture = fanOut.supplyAsync("readiness.hrv-range", () -> {
                 LocalDate start = date.minusDays(14);
-                return apiClient.getHrvRange(token, start.toString(), date.minusDays(1).toString());
+                var days = dailyMetricsStore.load(token.getFitbitUserId(), DailyMetric.HRV, start, date.minusDays(1),
+                        (from, to) -> dailyMetricsFetcher.fetch(token, DailyMetric.HRV, from, to));
+                return new FitbitHrvResponse(days.values().stream()
+                        .filter(d -> d.hrv() != null)
+                        .map(d -> new FitbitHrvResponse.Hrv(new FitbitHrvResponse.Value(d.hrv(), null), d.day().toString()))
+                        .toList());
             }).exceptionally(e -> {
                 log.error("Error fetching HRV range for {}: {}", date, e.getMessage());
+                PartialResults.mark();
                 return new FitbitHrvResponse(List.of());
             });
 
@@ -277,6 +359,7 @@ public class ReadinessCardService {
             return score;
         } catch (Exception e) {
             log.error("CRITICAL: Failed to estimate readiness for {}: {}", date, e.getMessage(), e);
+            PartialResults.mark();
             return 0; // Return 0 instead of null to avoid frontend issues, though 1 is the minimum in clamp
         }
     }
@@ -4,6 +4,10 @@ import com.aarw.fitdata.dto.SleepDto;
 import com.aarw.fitdata.fitbit.FitbitApiClient;
 import com.aarw.fitdata.fitbit.dto.FitbitSleepResponse;
 import com.aarw.fitdata.fitbit.util.SleepScoreEstimator;
+import com.aarw.fitdata.history.DailyMetric;
+import com.aarw.fitdata.history.DailyMetrics;
+import com.aarw.fitdata.history.DailyMetricsStore;
+import com.aarw.fitdata.oauth.token.FitbitTokenEntity;
 import com.aarw.fitdata.oauth.token.FitbitTokenService;
 import org.springframework.stereotype.Service;
 
@@ -12,35 +16,63 @@ import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
 
 @Service
 public class SleepService {
 
     private final FitbitTokenService tokenService;
     private final FitbitApiClient apiClient;
+    private final DailyMetricsStore dailyMetricsStore;
 
-    public SleepService(FitbitTokenService tokenService, FitbitApiClient apiClient) {
+    public SleepService(FitbitTokenService tokenService, FitbitApiClient apiClient, DailyMetricsStore dailyMetricsStore) {
         this.tokenService = tokenService;
         this.apiClient = apiClient;
+        this.dailyMetricsStore = dailyMetricsStore;
+    }
+
+    /**
+     * The optional parts of a night; date, durations, score and times are always included.
+     */
+    public enum Field {
+        /** {@code levelsSummary}: minutes per sleep stage */
+        LEVELS,
+        /** {@code segments}: every stage change of the night, by far the largest part */
+        SEGMENTS
     }
 
     public SleepDto getSleep(LocalDate date) {
-        var token = tokenService.getValidTokenOrThrow();
+        return getSleep(tokenService.getValidTokenOrThrow(), date);
+    }
+
+    public SleepDto getSleep(LocalDate date, Set<Field> fields) {
+        return getSleep(tokenService.getValidTokenOrThrow(), date, fields);
+    }
+
+    public SleepDto getSleep(FitbitTokenEntity token, LocalDate date) {
+        return getSleep(token, date, EnumSet.allOf(Field.class));
+    }
+
+    /**
+     * @param fields optional parts to include; the others are {@code null} and not built
+     */
+    public SleepDto getSleep(FitbitTokenEntity token, LocalDate date, Set<Field> fields) {
         FitbitSleepResponse raw = apiClient.getSleep(token, date.toString());
 
         if (raw.sleep() == null || raw.sleep().isEmpty()) {
-            return new SleepDto(date.toString(), 0, 0, null, null, null, new SleepDto.LevelsSummary(0, 0, 0, 0), Collections.emptyList());
+            // Stored as a night without sleep, so a closed day is not asked for again
+            dailyMetricsStore.save(token.getFitbitUserId(), DailyMetric.SLEEP, DailyMetrics.empty(date));
+            return new SleepDto(date.toString(), 0, 0, null, null, null,
+                    fields.contains(Field.LEVELS) ? new SleepDto.LevelsSummary(0, 0, 0, 0) : null,
+                    fields.contains(Field.SEGMENTS) ? Collections.emptyList() : null);
         }
 
-        // Generally isMainSleep=true is the main sleep data.
-        FitbitSleepResponse.SleepLog mainSleep = raw.sleep().stream()
-                .filter(it -> it.isMainSleep() != null && it.isMainSleep())
-                .findFirst()
-                .orElse(raw.sleep().getFirst());
+        FitbitSleepResponse.SleepLog mainSleep = SleepScoreEstimator.mainSleep(raw.sleep());
 
-        List<SleepDto.SleepLevelSegment> segments = new ArrayList<>();
-        if (mainSleep.levels() != null && mainSleep.levels().data() != null) {
+        List<SleepDto.SleepLevelSegment> segments = fields.contains(Field.SEGMENTS) ? new ArrayList<>() : null;
+        if (segments != null && mainSleep.levels() != null && mainSleep.levels().data() != null) {
             DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS");
             for (FitbitSleepResponse.Levels.DataPoint dp : mainSleep.levels().data()) {
                 LocalDateTime startTime = LocalDateTime.parse(dp.dateTime(), formatter);
@@ -59,32 +91,12 @@ public class SleepService {
             );
         }
 
-        // Estimate sleep score using SleepScoreEstimator
         int totalSleepMin = mainSleep.minutesAsleep() != null ? mainSleep.minutesAsleep().intValue() : 0;
-        int remMin = summary.rem();
-        int deepMin = summary.deep();
-        int awakeMin = mainSleep.minutesAwake() != null ? mainSleep.minutesAwake().intValue() : 0;
-        int sessionCount = raw.sleep().size();
-        int longestSessionMin = mainSleep.duration() != null ? (int) (mainSleep.duration() / 60000) : 0;
-
-        int finalScore = 0;
-        try {
-            if (totalSleepMin > 0) {
-                var inputs = new SleepScoreEstimator.SleepInputs(
-                        totalSleepMin, remMin, deepMin, awakeMin, sessionCount, longestSessionMin
-                );
-                finalScore = SleepScoreEstimator.estimate(inputs).score();
-            }
-        } catch (Exception e) {
-            // Fallback to existing scores if estimation fails
-            if (mainSleep.sleep_score() != null && mainSleep.sleep_score() > 0) {
-                finalScore = mainSleep.sleep_score();
-            } else if (mainSleep.efficiency_score() != null && mainSleep.efficiency_score() > 0) {
-                finalScore = mainSleep.efficiency_score();
-            } else if (mainSleep.efficiency() != null) {
-                finalScore = mainSleep.efficiency().intValue();
-            }
-        }
+        // Scored like the nights synced through the range call
+        int finalScore = SleepScoreEstimator.nightScore(mainSleep, raw.sleep().size());
+
+        // Only the summary goes to the history, the segments are too large to keep per day
+        dailyMetricsStore.save(token.getFitbitUserId(), DailyMetric.SLEEP, DailyMetrics.sleep(date, totalSleepMin, finalScore));
 
         return new SleepDto(
                 mainSleep.dateOfSleep(),
@@ -93,7 +105,7 @@ public class SleepService {
                 finalScore,
                 mainSleep.startTime(),
                 mainSleep.endTime(),
-                summary,
+                fields.contains(Field.LEVELS) ? summary : null,
                 segments
         );
     }
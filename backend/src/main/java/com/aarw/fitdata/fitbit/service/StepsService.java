@@ -1,53 +1,96 @@
 package com.aarw.fitdata.fitbit.service;
 
-import com.aarw.fitdata.fitbit.FitbitApiClient;
+import com.aarw.fitdata.history.DailyMetric;
+import com.aarw.fitdata.history.DailyMetrics;
+import com.aarw.fitdata.history.DailyMetricsFetcher;
+import com.aarw.fitdata.history.DailyMetricsStore;
+import com.aarw.fitdata.history.Granularity;
+import com.aarw.fitdata.history.RollupMetric;
 import com.aarw.fitdata.fitbit.util.StepsRange;
 import com.aarw.fitdata.fitbit.util.StepsRangeCalculator;
+import com.aarw.fitdata.oauth.token.FitbitTokenEntity;
 import com.aarw.fitdata.oauth.token.FitbitTokenService;
-import com.aarw.fitdata.fitbit.dto.FitbitStepsSeriesResponse;
 import com.aarw.fitdata.dto.StepsSeriesDto;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.function.Consumer;
 
 @Service
 public class StepsService {
 
     private final FitbitTokenService tokenService;
-    private final FitbitApiClient apiClient;
+    private final DailyMetricsStore dailyMetricsStore;
+    private final DailyMetricsFetcher dailyMetricsFetcher;
 
-    public StepsService(FitbitTokenService tokenService, FitbitApiClient apiClient) {
+    public StepsService(FitbitTokenService tokenService, DailyMetricsStore dailyMetricsStore, DailyMetricsFetcher dailyMetricsFetcher) {
         this.tokenService = tokenService;
-        this.apiClient = apiClient;
+        this.dailyMetricsStore = dailyMetricsStore;
+        this.dailyMetricsFetcher = dailyMetricsFetcher;
     }
 
     public StepsSeriesDto getSteps(StepsRange range, LocalDate baseDate) {
-        var token = tokenService.getValidTokenOrThrow();
+        return getSteps(tokenService.getValidTokenOrThrow(), range, baseDate);
+    }
 
-        LocalDate start = StepsRangeCalculator.startDate(range, baseDate);
+    public StepsSeriesDto getSteps(FitbitTokenEntity token, StepsRange range, LocalDate baseDate) {
+        return getSteps(token, range.name(), StepsRangeCalculator.startDate(range, baseDate), baseDate);
+    }
 
-        FitbitStepsSeriesResponse raw = apiClient.getDailyStepsSeries(
-                token,
-                start.toString(),
-                baseDate.toString()
-        );
+    /**
+     * Steps of an inclusive custom window, per day, week or month depending on its length.
+     */
+    public StepsSeriesDto getSteps(LocalDate start, LocalDate end) {
+        return getSteps(tokenService.getValidTokenOrThrow(), StepsRangeCalculator.CUSTOM, start, end);
+    }
 
-        List<StepsSeriesDto.Point> points = raw.activitiesSteps().stream()
-                .map(it -> new StepsSeriesDto.Point(
-                        LocalDate.parse(it.dateTime()),
-                        parseSteps(it.value())
-                ))
+    private StepsSeriesDto getSteps(FitbitTokenEntity token, String range, LocalDate start, LocalDate baseDate) {
+        Granularity granularity = Granularity.coarsestFor(start, baseDate);
+        if (granularity != Granularity.DAY) {
+            var buckets = dailyMetricsStore.loadRollups(token.getFitbitUserId(), RollupMetric.STEPS, granularity, start, baseDate,
+                    (from, to) -> dailyMetricsFetcher.fetch(token, DailyMetric.STEPS, from, to));
+            List<StepsSeriesDto.Point> points = buckets.stream()
+                    .map(it -> new StepsSeriesDto.Point(it.periodStart(),
+                            it.mean() == null ? 0 : (int) Math.round(it.mean()), toInt(it.min()), toInt(it.max())))
+                    .toList();
+            return new StepsSeriesDto(range, granularity.bucketStart(start), baseDate, granularity.name(), points);
+        }
+
+        var rows = dailyMetricsStore.load(token.getFitbitUserId(), DailyMetric.STEPS, start, baseDate,
+                (from, to) -> dailyMetricsFetcher.fetch(token, DailyMetric.STEPS, from, to));
+
+        List<StepsSeriesDto.Point> points = rows.values().stream()
+                .map(StepsService::toPoint)
                 .toList();
 
-        return new StepsSeriesDto(range.name(), start, baseDate, points);
+        return new StepsSeriesDto(range, start, baseDate, points);
     }
 
-    private int parseSteps(String value) {
-        try {
-            return Integer.parseInt(value);
-        } catch (Exception e) {
-            return 0;
-        }
+    /**
+     * Fails before anything is streamed if the Fitbit calls {@link #streamSteps} will make for the
+     * window exceed the user's remaining budget.
+     */
+    public void checkStreamBudget(FitbitTokenEntity token, LocalDate start, LocalDate end) {
+        dailyMetricsFetcher.checkBudget(token, "Streaming steps from " + start + " to " + end,
+                dailyMetricsStore.fetchesNeeded(token.getFitbitUserId(), DailyMetric.STEPS, start, end, DailyMetricsFetcher.maxDays(DailyMetric.STEPS)));
+    }
+
+    /**
+     * Daily steps of an inclusive range of any length, handed to {@code sink} window by window as
+     * they are loaded.
+     */
+    public void streamSteps(FitbitTokenEntity token, LocalDate start, LocalDate end, Consumer<? super List<StepsSeriesDto.Point>> sink) {
+        dailyMetricsStore.loadChunked(token.getFitbitUserId(), DailyMetric.STEPS, start, end, DailyMetricsFetcher.maxDays(DailyMetric.STEPS),
+                (from, to) -> dailyMetricsFetcher.fetch(token, DailyMetric.STEPS, from, to),
+                rows -> sink.accept(rows.stream().map(StepsService::toPoint).toList()));
+    }
+
+    private static StepsSeriesDto.Point toPoint(DailyMetrics row) {
+        return new StepsSeriesDto.Point(row.day(), row.steps() == null ? 0 : row.steps());
+    }
+
+    private static Integer toInt(Double value) {
+        return value == null ? null : (int) Math.round(value);
     }
 }
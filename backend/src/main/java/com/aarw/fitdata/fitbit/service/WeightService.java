@@ -1,45 +1,92 @@
 package com.aarw.fitdata.fitbit.service;
 
 import com.aarw.fitdata.dto.WeightSeriesDto;
-import com.aarw.fitdata.fitbit.FitbitApiClient;
-import com.aarw.fitdata.fitbit.dto.FitbitWeightResponse;
 import com.aarw.fitdata.fitbit.util.StepsRange;
 import com.aarw.fitdata.fitbit.util.StepsRangeCalculator;
+import com.aarw.fitdata.history.DailyMetric;
+import com.aarw.fitdata.history.DailyMetrics;
+import com.aarw.fitdata.history.DailyMetricsFetcher;
+import com.aarw.fitdata.history.DailyMetricsStore;
+import com.aarw.fitdata.history.Granularity;
+import com.aarw.fitdata.history.RollupMetric;
+import com.aarw.fitdata.oauth.token.FitbitTokenEntity;
 import com.aarw.fitdata.oauth.token.FitbitTokenService;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
+import java.util.function.Consumer;
 
 @Service
 public class WeightService {
 
     private final FitbitTokenService tokenService;
-    private final FitbitApiClient apiClient;
+    private final DailyMetricsStore dailyMetricsStore;
+    private final DailyMetricsFetcher dailyMetricsFetcher;
 
-    public WeightService(FitbitTokenService tokenService, FitbitApiClient apiClient) {
+    public WeightService(FitbitTokenService tokenService, DailyMetricsStore dailyMetricsStore, DailyMetricsFetcher dailyMetricsFetcher) {
         this.tokenService = tokenService;
-        this.apiClient = apiClient;
+        this.dailyMetricsStore = dailyMetricsStore;
+        this.dailyMetricsFetcher = dailyMetricsFetcher;
     }
 
     public WeightSeriesDto getWeight(StepsRange range, LocalDate baseDate) {
-        var token = tokenService.getValidTokenOrThrow();
+        return getWeight(tokenService.getValidTokenOrThrow(), range, baseDate);
+    }
+
+    public WeightSeriesDto getWeight(FitbitTokenEntity token, StepsRange range, LocalDate baseDate) {
+        return getWeight(token, range.name(), StepsRangeCalculator.startDate(range, baseDate), baseDate);
+    }
 
-        LocalDate start = StepsRangeCalculator.startDate(range, baseDate);
+    /**
+     * Weight over an inclusive custom window, per day, week or month depending on its length.
+     */
+    public WeightSeriesDto getWeight(LocalDate start, LocalDate end) {
+        return getWeight(tokenService.getValidTokenOrThrow(), StepsRangeCalculator.CUSTOM, start, end);
+    }
 
-        FitbitWeightResponse raw = apiClient.getWeightSeries(
-                token,
-                start.toString(),
-                baseDate.toString()
-        );
+    private WeightSeriesDto getWeight(FitbitTokenEntity token, String range, LocalDate start, LocalDate baseDate) {
+        Granularity granularity = Granularity.coarsestFor(start, baseDate);
+        if (granularity != Granularity.DAY) {
+            var buckets = dailyMetricsStore.loadRollups(token.getFitbitUserId(), RollupMetric.WEIGHT, granularity, start, baseDate,
+                    (from, to) -> dailyMetricsFetcher.fetch(token, DailyMetric.WEIGHT, from, to));
+            List<WeightSeriesDto.Point> points = buckets.stream()
+                    .filter(it -> it.mean() != null)
+                    .map(it -> new WeightSeriesDto.Point(it.periodStart(), it.mean(), it.min(), it.max()))
+                    .toList();
+            return new WeightSeriesDto(range, granularity.bucketStart(start), baseDate, granularity.name(), points);
+        }
 
-        List<WeightSeriesDto.Point> points = raw.weight().stream()
-                .map(it -> new WeightSeriesDto.Point(
-                        LocalDate.parse(it.date()),
-                        it.weight()
-                ))
-                .toList();
+        var rows = dailyMetricsStore.load(token.getFitbitUserId(), DailyMetric.WEIGHT, start, baseDate,
+                (from, to) -> dailyMetricsFetcher.fetch(token, DailyMetric.WEIGHT, from, to));
+
+        return new WeightSeriesDto(range, start, baseDate, toPoints(rows.values()));
+    }
+
+    /**
+     * Fails before anything is streamed if the Fitbit calls {@link #streamWeight} will make for the
+     * window exceed the user's remaining budget.
+     */
+    public void checkStreamBudget(FitbitTokenEntity token, LocalDate start, LocalDate end) {
+        dailyMetricsFetcher.checkBudget(token, "Streaming weight from " + start + " to " + end,
+                dailyMetricsStore.fetchesNeeded(token.getFitbitUserId(), DailyMetric.WEIGHT, start, end, DailyMetricsFetcher.maxDays(DailyMetric.WEIGHT)));
+    }
 
-        return new WeightSeriesDto(range.name(), start, baseDate, points);
+    /**
+     * Weighed days of an inclusive range of any length, handed to {@code sink} window by window as
+     * they are loaded.
+     */
+    public void streamWeight(FitbitTokenEntity token, LocalDate start, LocalDate end, Consumer<? super List<WeightSeriesDto.Point>> sink) {
+        dailyMetricsStore.loadChunked(token.getFitbitUserId(), DailyMetric.WEIGHT, start, end, DailyMetricsFetcher.maxDays(DailyMetric.WEIGHT),
+                (from, to) -> dailyMetricsFetcher.fetch(token, DailyMetric.WEIGHT, from, to),
+                rows -> sink.accept(toPoints(rows)));
+    }
+
+    private static List<WeightSeriesDto.Point> toPoints(Collection<DailyMetrics> rows) {
+        return rows.stream()
+                .filter(it -> it.weightKg() != null)
+                .map(it -> new WeightSeriesDto.Point(it.day(), it.weightKg()))
+                .toList();
     }
 }
@@ -1,8 +1,11 @@
 package com.aarw.fitdata.fitbit.util;
 
+import com.aarw.fitdata.fitbit.dto.FitbitSleepResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.List;
+
 public final class SleepScoreEstimator {
 
     private static final Logger log = LoggerFactory.getLogger(SleepScoreEstimator.class);
@@ -30,6 +33,47 @@ public final class SleepScoreEstimator {
             double longestRatio
     ) {}
 
+    /**
+     * The main sleep of a night's logs: the one Fitbit marks as main, otherwise the first.
+     */
+    public static FitbitSleepResponse.SleepLog mainSleep(List<FitbitSleepResponse.SleepLog> logs) {
+        return logs.stream()
+                .filter(it -> it.isMainSleep() != null && it.isMainSleep())
+                .findFirst()
+                .orElse(logs.getFirst());
+    }
+
+    /**
+     * The score of a night as the sleep card shows it: estimated from the main sleep, or Fitbit's
+     * own score if the inputs cannot be estimated; 0 for a night without minutes asleep.
+     *
+     * @param sessionCount sleep logs of the night, the main sleep included
+     */
+    public static int nightScore(FitbitSleepResponse.SleepLog mainSleep, int sessionCount) {
+        int totalSleepMin = mainSleep.minutesAsleep() != null ? mainSleep.minutesAsleep().intValue() : 0;
+        var stages = mainSleep.levels() != null ? mainSleep.levels().summary() : null;
+        int remMin = stages != null && stages.rem() != null && stages.rem().minutes() != null ? stages.rem().minutes() : 0;
+        int deepMin = stages != null && stages.deep() != null && stages.deep().minutes() != null ? stages.deep().minutes() : 0;
+        int awakeMin = mainSleep.minutesAwake() != null ? mainSleep.minutesAwake().intValue() : 0;
+        int longestSessionMin = mainSleep.duration() != null ? (int) (mainSleep.duration() / 60000) : 0;
+
+        try {
+            if (totalSleepMin > 0) {
+                return estimate(new SleepInputs(totalSleepMin, remMin, deepMin, awakeMin, sessionCount, longestSessionMin)).score();
+            }
+            return 0;
+        } catch (RuntimeException e) {
+            if (mainSleep.sleep_score() != null && mainSleep.sleep_score() > 0) {
+                return mainSleep.sleep_score();
+            } else if (mainSleep.efficiency_score() != null && mainSleep.efficiency_score() > 0) {
+                return mainSleep.efficiency_score();
+            } else if (mainSleep.efficiency() != null) {
+                return mainSleep.efficiency().intValue();
+            }
+            return 0;
+        }
+    }
+
     public static SleepScoreResult estimate(SleepInputs in) {
         validate(in);
 
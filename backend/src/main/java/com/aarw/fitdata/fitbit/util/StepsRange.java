@@ -4,5 +4,8 @@ public enum StepsRange {
     LAST_7_DAYS,
     LAST_14_DAYS,
     CURRENT_WEEK,
-    LAST_30_DAYS
+    LAST_30_DAYS,
+    LAST_90_DAYS,
+    LAST_6_MONTHS,
+    LAST_YEAR
 }
@@ -1,18 +1,57 @@
 package com.aarw.fitdata.fitbit.util;
 
+import com.aarw.fitdata.exception.BadRequestException;
 
 import java.time.DayOfWeek;
 import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
 
 public final class StepsRangeCalculator {
 
+    /**
+     * The range name of series over an explicit start and end date.
+     */
+    public static final String CUSTOM = "CUSTOM";
+
     private StepsRangeCalculator() {}
 
+    /**
+     * Longest custom window, three years of daily rows like {@code /api/series}.
+     */
+    public static final int MAX_WINDOW_DAYS = 1096;
+
+    /**
+     * Checks a custom window against the server's today. Fitbit days are in the user's timezone, which
+     * may be a day ahead of the server's, so tomorrow is still accepted as an end.
+     *
+     * @throws BadRequestException if {@code start} is after {@code end}, {@code end} is in the future
+     *                             or the window is longer than {@value #MAX_WINDOW_DAYS} days
+     */
+    public static void checkWindow(LocalDate start, LocalDate end) {
+        checkWindow(start, end, LocalDate.now());
+    }
+
+    static void checkWindow(LocalDate start, LocalDate end, LocalDate today) {
+        if (start.isAfter(end)) {
+            throw new BadRequestException("start " + start + " is after end " + end);
+        }
+        if (end.isAfter(today.plusDays(1))) {
+            throw new BadRequestException("end " + end + " is in the future");
+        }
+        long days = ChronoUnit.DAYS.between(start, end) + 1;
+        if (days > MAX_WINDOW_DAYS) {
+            throw new BadRequestException("Window of " + days + " days is longer than " + MAX_WINDOW_DAYS);
+        }
+    }
+
     public static LocalDate startDate(StepsRange range, LocalDate baseDate) {
         return switch (range) {
             case LAST_7_DAYS -> baseDate.minusDays(6);
             case LAST_14_DAYS -> baseDate.minusDays(13);
             case LAST_30_DAYS -> baseDate.minusDays(29);
+            case LAST_90_DAYS -> baseDate.minusDays(89);
+            case LAST_6_MONTHS -> baseDate.minusMonths(6).plusDays(1);
+            case LAST_YEAR -> baseDate.minusYears(1).plusDays(1);
             case CURRENT_WEEK -> baseDate.with(DayOfWeek.MONDAY);
         };
     }
@@ -0,0 +1,32 @@
+package com.aarw.fitdata.history;
+
+import java.util.List;
+
+/**
+ * Metric groups of {@code daily_metrics}. Each group is fetched from Fitbit as a unit and has its
+ * own bit in {@code fetched_mask}.
+ */
+public enum DailyMetric {
+    STEPS(0x01, List.of("steps")),
+    HEART(0x02, List.of("resting_hr", "zone_out_min", "zone_fat_burn_min", "zone_cardio_min", "zone_peak_min")),
+    HRV(0x04, List.of("hrv_rmssd")),
+    WEIGHT(0x08, List.of("weight_kg")),
+    SLEEP(0x10, List.of("sleep_minutes", "sleep_score")),
+    ACTIVITY(0x20, List.of("activity_calories"));
+
+    private final int bit;
+    private final List<String> columns;
+
+    DailyMetric(int bit, List<String> columns) {
+        this.bit = bit;
+        this.columns = columns;
+    }
+
+    public int bit() {
+        return bit;
+    }
+
+    List<String> columns() {
+        return columns;
+    }
+}
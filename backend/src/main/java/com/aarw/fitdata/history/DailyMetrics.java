@@ -0,0 +1,72 @@
+package com.aarw.fitdata.history;
+
+import java.time.LocalDate;
+
+/**
+ * One row of {@code daily_metrics}. Fields of metric groups that were not loaded are {@code null}.
+ */
+public record DailyMetrics(
+        LocalDate day,
+        Integer steps,
+        Integer restingHr,
+        Integer zoneOutMin,
+        Integer zoneFatBurnMin,
+        Integer zoneCardioMin,
+        Integer zonePeakMin,
+        Double hrv,
+        Double weightKg,
+        Integer sleepMinutes,
+        Integer sleepScore,
+        Integer activityCalories,
+        int fetchedMask
+) {
+
+    public static DailyMetrics empty(LocalDate day) {
+        return new DailyMetrics(day, null, null, null, null, null, null, null, null, null, null, null, 0);
+    }
+
+    public static DailyMetrics steps(LocalDate day, Integer steps) {
+        return new DailyMetrics(day, steps, null, null, null, null, null, null, null, null, null, null, 0);
+    }
+
+    public static DailyMetrics heart(LocalDate day, Integer restingHr, int outMin, int fatBurnMin, int cardioMin, int peakMin) {
+        return new DailyMetrics(day, null, restingHr, outMin, fatBurnMin, cardioMin, peakMin, null, null, null, null, null, 0);
+    }
+
+    public static DailyMetrics hrv(LocalDate day, Double hrv) {
+        return new DailyMetrics(day, null, null, null, null, null, null, hrv, null, null, null, null, 0);
+    }
+
+    public static DailyMetrics weight(LocalDate day, Double weightKg) {
+        return new DailyMetrics(day, null, null, null, null, null, null, null, weightKg, null, null, null, 0);
+    }
+
+    public static DailyMetrics sleep(LocalDate day, Integer minutes, Integer score) {
+        return new DailyMetrics(day, null, null, null, null, null, null, null, null, minutes, score, null, 0);
+    }
+
+    public static DailyMetrics activity(LocalDate day, Integer activityCalories) {
+        return new DailyMetrics(day, null, null, null, null, null, null, null, null, null, null, activityCalories, 0);
+    }
+
+    public boolean isFetched(DailyMetric metric) {
+        return (fetchedMask & metric.bit()) != 0;
+    }
+
+    Object column(String column) {
+        return switch (column) {
+            case "steps" -> steps;
+            case "resting_hr" -> restingHr;
+            case "zone_out_min" -> zoneOutMin;
+            case "zone_fat_burn_min" -> zoneFatBurnMin;
+            case "zone_cardio_min" -> zoneCardioMin;
+            case "zone_peak_min" -> zonePeakMin;
+            case "hrv_rmssd" -> hrv;
+            case "weight_kg" -> weightKg;
+            case "sleep_minutes" -> sleepMinutes;
+            case "sleep_score" -> sleepScore;
+            case "activity_calories" -> activityCalories;
+            default -> throw new IllegalArgumentException("Unknown daily metrics column: " + column);
+        };
+    }
+}
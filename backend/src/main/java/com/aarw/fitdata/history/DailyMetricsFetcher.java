@@ -0,0 +1,287 @@
+package com.aarw.fitdata.history;
+
+import com.aarw.fitdata.fitbit.FitbitApiClient;
+import com.aarw.fitdata.fitbit.FitbitRateLimitException;
+import com.aarw.fitdata.fitbit.FitbitRateLimitTracker;
+import com.aarw.fitdata.fitbit.dto.FitbitHeartDailyRangeResponse;
+import com.aarw.fitdata.fitbit.dto.FitbitHrvResponse;
+import com.aarw.fitdata.fitbit.dto.FitbitProfileResponse;
+import com.aarw.fitdata.fitbit.dto.FitbitSleepResponse;
+import com.aarw.fitdata.fitbit.dto.FitbitStepsSeriesResponse;
+import com.aarw.fitdata.fitbit.dto.FitbitWeightResponse;
+import com.aarw.fitdata.fitbit.util.SleepScoreEstimator;
+import com.aarw.fitdata.oauth.token.FitbitTokenEntity;
+import com.aarw.fitdata.tracing.FanOut;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Loads metric groups from the Fitbit range endpoints and maps them to {@link DailyMetrics} rows.
+ */
+@Component
+public class DailyMetricsFetcher {
+
+    private static final Logger log = LoggerFactory.getLogger(DailyMetricsFetcher.class);
+
+    /**
+     * Chunks of one range fetched at the same time.
+     */
+    static final int MAX_PARALLEL_CHUNKS = 4;
+
+    // Chunks block on WebClient calls, like the snapshot sections
+    private static final Executor CHUNKS = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("metrics-chunk-", 0).factory());
+
+    private final FitbitApiClient apiClient;
+    private final FitbitRateLimitTracker rateLimitTracker;
+    private final FanOut fanOut;
+    private final UserTimezones timezones;
+
+    public DailyMetricsFetcher(FitbitApiClient apiClient, FitbitRateLimitTracker rateLimitTracker, FanOut fanOut,
+                               UserTimezones timezones) {
+        this.apiClient = apiClient;
+        this.rateLimitTracker = rateLimitTracker;
+        this.fanOut = fanOut;
+        this.timezones = timezones;
+    }
+
+    /**
+     * @return whether the group has a range endpoint; the others are fetched day by day
+     */
+    public static boolean supportsRange(DailyMetric metric) {
+        return maxDays(metric) > 0;
+    }
+
+    /**
+     * Longest range Fitbit accepts in one call, or 0 if the group has no range endpoint.
+     */
+    public static int maxDays(DailyMetric metric) {
+        return switch (metric) {
+            case STEPS -> 1095;
+            case HEART -> 365;
+            case WEIGHT -> 31;
+            case HRV -> 30;
+            case SLEEP -> 100;
+            case ACTIVITY -> 0;
+        };
+    }
+
+    /**
+     * Fetches an inclusive range of days, split into calls of at most {@link #maxDays(DailyMetric)}
+     * days. Up to {@value #MAX_PARALLEL_CHUNKS} calls run at the same time; the rows come back in
+     * day order. Fitbit has nothing before the account was created, so days before the profile's
+     * {@code memberSince} are not fetched and come back without rows.
+     *
+     * @throws IllegalArgumentException if the group has no range endpoint
+     * @throws FitbitRateLimitException if the user's remaining Fitbit budget cannot cover all
+     *                                  calls, before any is made
+     */
+    public List<DailyMetrics> fetch(FitbitTokenEntity token, DailyMetric metric, LocalDate from, LocalDate to) {
+        if (!supportsRange(metric)) {
+            throw new IllegalArgumentException("No Fitbit range endpoint for " + metric);
+        }
+        LocalDate memberSince = memberSince(token);
+        if (memberSince != null && from.isBefore(memberSince)) {
+            if (to.isBefore(memberSince)) {
+                return List.of();
+            }
+            from = memberSince;
+        }
+        List<LocalDate[]> chunks = new ArrayList<>();
+        for (LocalDate chunkStart = from; !chunkStart.isAfter(to); chunkStart = chunkStart.plusDays(maxDays(metric))) {
+            LocalDate chunkEnd = chunkStart.plusDays(maxDays(metric) - 1);
+            chunks.add(new LocalDate[]{chunkStart, chunkEnd.isAfter(to) ? to : chunkEnd});
+        }
+        if (chunks.size() == 1) {
+            return fetchChunk(token, metric, from, to);
+        }
+
+        // Half a range is of no use to the caller, so do not spend the calls on it
+        checkBudget(token, "Fetching " + metric + " from " + from + " to " + to, chunks.size());
+
+        Semaphore permits = new Semaphore(MAX_PARALLEL_CHUNKS);
+        List<CompletableFuture<List<DailyMetrics>>> futures = chunks.stream()
+                .map(chunk -> fanOut.supplyAsync("metrics.chunk", () -> {
+                    permits.acquireUninterruptibly();
+                    try {
+                        return fetchChunk(token, metric, chunk[0], chunk[1]);
+                    } finally {
+                        permits.release();
+                    }
+                }, CHUNKS))
+                .toList();
+
+        List<DailyMetrics> rows = new ArrayList<>();
+        try {
+            for (CompletableFuture<List<DailyMetrics>> future : futures) {
+                rows.addAll(future.join());
+            }
+        } catch (CompletionException e) {
+            futures.forEach(it -> it.cancel(false));
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+        return rows;
+    }
+
+    /**
+     * @param what  the work the calls are for, for the message
+     * @param calls the Fitbit calls it takes
+     * @throws FitbitRateLimitException if the user has fewer calls left in the current window
+     */
+    public void checkBudget(FitbitTokenEntity token, String what, int calls) {
+        int remaining = rateLimitTracker.remaining(token.getFitbitUserId());
+        if (remaining < calls) {
+            Instant resetAt = rateLimitTracker.resetAt(token.getFitbitUserId());
+            throw new FitbitRateLimitException(
+                    what + " takes " + calls + " calls, " + remaining + " left",
+                    resetAt == null ? null : String.valueOf(Math.max(1, Duration.between(Instant.now(), resetAt).toSeconds())),
+                    null);
+        }
+    }
+
+    private LocalDate memberSince(FitbitTokenEntity token) {
+        try {
+            FitbitProfileResponse profile = apiClient.getProfile(token);
+            // The profile is at hand on every fetch, which keeps the user's day boundaries current
+            timezones.record(token.getFitbitUserId(), profile);
+            return profile == null || profile.user() == null || profile.user().memberSince() == null
+                    ? null
+                    : LocalDate.parse(profile.user().memberSince());
+        } catch (FitbitRateLimitException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            // Only saves calls, the range is fetched as asked
+            log.debug("Could not read the membership date of {}: {}", token.getFitbitUserId(), e.getMessage());
+            return null;
+        }
+    }
+
+    private List<DailyMetrics> fetchChunk(FitbitTokenEntity token, DailyMetric metric, LocalDate from, LocalDate to) {
+        return switch (metric) {
+            case STEPS -> steps(token, from, to);
+            case HEART -> heart(token, from, to);
+            case WEIGHT -> weight(token, from, to);
+            case HRV -> hrv(token, from, to);
+            case SLEEP -> sleep(token, from, to);
+            case ACTIVITY -> throw new IllegalStateException("No Fitbit range endpoint for " + metric);
+        };
+    }
+
+    private List<DailyMetrics> steps(FitbitTokenEntity token, LocalDate from, LocalDate to) {
+        FitbitStepsSeriesResponse raw = apiClient.getDailyStepsSeries(token, from.toString(), to.toString());
+        if (raw == null || raw.activitiesSteps() == null) {
+            return List.of();
+        }
+        return raw.activitiesSteps().stream()
+                .map(it -> DailyMetrics.steps(LocalDate.parse(it.dateTime()), parseSteps(it.value())))
+                .toList();
+    }
+
+    private List<DailyMetrics> heart(FitbitTokenEntity token, LocalDate from, LocalDate to) {
+        FitbitHeartDailyRangeResponse raw = apiClient.getHeartByDateRange(token, from.toString(), to.toString());
+        if (raw == null || raw.activitiesHeart() == null) {
+            return List.of();
+        }
+        return raw.activitiesHeart().stream()
+                .map(it -> {
+                    Integer resting = it.value() == null ? null : it.value().restingHeartRate();
+                    int[] zones = zoneMinutes(it.value() == null ? null : it.value().heartRateZones());
+                    return DailyMetrics.heart(LocalDate.parse(it.dateTime()), resting, zones[0], zones[1], zones[2], zones[3]);
+                })
+                .toList();
+    }
+
+    private List<DailyMetrics> weight(FitbitTokenEntity token, LocalDate from, LocalDate to) {
+        FitbitWeightResponse raw = apiClient.getWeightSeries(token, from.toString(), to.toString());
+        if (raw == null || raw.weight() == null) {
+            return List.of();
+        }
+        // Logs come in chronological order, the last one of a day wins
+        Map<LocalDate, DailyMetrics> byDay = new LinkedHashMap<>();
+        for (FitbitWeightResponse.WeightLog it : raw.weight()) {
+            LocalDate day = LocalDate.parse(it.date());
+            byDay.put(day, DailyMetrics.weight(day, it.weight()));
+        }
+        return List.copyOf(byDay.values());
+    }
+
+    private List<DailyMetrics> hrv(FitbitTokenEntity token, LocalDate from, LocalDate to) {
+        FitbitHrvResponse raw = apiClient.getHrvRange(token, from.toString(), to.toString());
+        if (raw == null || raw.hrv() == null) {
+            return List.of();
+        }
+        return raw.hrv().stream()
+                .filter(r -> r.dateTime() != null)
+                .map(r -> DailyMetrics.hrv(LocalDate.parse(r.dateTime()), r.value() == null ? null : r.value().dailySample()))
+                .toList();
+    }
+
+    /**
+     * One row per night with sleep, scored like the sleep card; nights without a log have no row.
+     */
+    private List<DailyMetrics> sleep(FitbitTokenEntity token, LocalDate from, LocalDate to) {
+        FitbitSleepResponse raw = apiClient.getSleepRange(token, from.toString(), to.toString());
+        if (raw == null || raw.sleep() == null) {
+            return List.of();
+        }
+        Map<LocalDate, List<FitbitSleepResponse.SleepLog>> nights = new TreeMap<>();
+        for (FitbitSleepResponse.SleepLog it : raw.sleep()) {
+            if (it.dateOfSleep() != null) {
+                nights.computeIfAbsent(LocalDate.parse(it.dateOfSleep()), _ -> new ArrayList<>()).add(it);
+            }
+        }
+        List<DailyMetrics> rows = new ArrayList<>(nights.size());
+        nights.forEach((day, logs) -> {
+            FitbitSleepResponse.SleepLog main = SleepScoreEstimator.mainSleep(logs);
+            int minutes = main.minutesAsleep() != null ? main.minutesAsleep().intValue() : 0;
+            rows.add(DailyMetrics.sleep(day, minutes, SleepScoreEstimator.nightScore(main, logs.size())));
+        });
+        return rows;
+    }
+
+    /**
+     * @return minutes out of range, fat burn, cardio and peak
+     */
+    private static int[] zoneMinutes(List<FitbitHeartDailyRangeResponse.Zone> zones) {
+        int[] minutes = new int[4];
+        if (zones == null) {
+            return minutes;
+        }
+        for (var z : zones) {
+            String name = z.name() == null ? "" : z.name().toLowerCase();
+            int m = z.minutes() == null ? 0 : z.minutes();
+
+            if (name.contains("out")) minutes[0] += m;
+            else if (name.contains("fat")) minutes[1] += m;
+            else if (name.contains("cardio")) minutes[2] += m;
+            else if (name.contains("peak")) minutes[3] += m;
+        }
+        return minutes;
+    }
+
+    private static int parseSteps(String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (Exception e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.aarw.fitdata.history;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+@Repository
+public class DailyMetricsRepository {
+
+    private static final RowMapper<DailyMetrics> ROW_MAPPER = DailyMetricsRepository::mapRow;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Map<DailyMetric, String> upsertSql = new EnumMap<>(DailyMetric.class);
+
+    public DailyMetricsRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        for (DailyMetric metric : DailyMetric.values()) {
+            String columns = String.join(", ", metric.columns());
+            String placeholders = String.join(", ", metric.columns().stream().map(_ -> "?").toList());
+            String updates = String.join(", ", metric.columns().stream().map(c -> c + " = EXCLUDED." + c).toList());
+            String current = String.join(", ", metric.columns().stream().map(c -> "daily_metrics." + c).toList());
+            String excluded = String.join(", ", metric.columns().stream().map(c -> "EXCLUDED." + c).toList());
+            upsertSql.put(metric, "INSERT INTO daily_metrics (user_id, day, fetched_mask, " + columns + ") " +
+                    "VALUES (?, ?, ?, " + placeholders + ") " +
+                    "ON CONFLICT (user_id, day) DO UPDATE SET " + updates + ", " +
+                    "fetched_mask = daily_metrics.fetched_mask | EXCLUDED.fetched_mask, updated_at = now() " +
+                    // Unchanged rows keep their updated_at, which versions the responses built from them
+                    "WHERE (" + current + ", daily_metrics.fetched_mask) IS DISTINCT FROM " +
+                    "(" + excluded + ", daily_metrics.fetched_mask | EXCLUDED.fetched_mask)");
+        }
+    }
+
+    public List<DailyMetrics> findRange(String userId, LocalDate start, LocalDate end) {
+        return jdbcTemplate.query(
+                "SELECT * FROM daily_metrics WHERE user_id = ? AND day BETWEEN ? AND ? ORDER BY day",
+                ROW_MAPPER, userId, Date.valueOf(start), Date.valueOf(end));
+    }
+
+    /**
+     * @param fetchedDays days of the range with every bit of the mask set
+     * @param rows        days of the range with a row
+     * @param lastUpdate  latest change of any row of the range, {@code null} without rows
+     */
+    public record RangeState(int fetchedDays, int rows, Instant lastUpdate) {}
+
+    public RangeState rangeState(String userId, int mask, LocalDate start, LocalDate end) {
+        return jdbcTemplate.queryForObject("""
+                SELECT count(*) FILTER (WHERE fetched_mask & ? = ?) AS fetched_days, count(*) AS row_count, max(updated_at) AS last_update
+                FROM daily_metrics WHERE user_id = ? AND day BETWEEN ? AND ?
+                """, (rs, _) -> {
+                    Timestamp lastUpdate = rs.getTimestamp("last_update");
+                    return new RangeState(rs.getInt("fetched_days"), rs.getInt("row_count"),
+                            lastUpdate == null ? null : lastUpdate.toInstant());
+                }, mask, mask, userId, Date.valueOf(start), Date.valueOf(end));
+    }
+
+    /**
+     * Writes the columns of one metric group, leaving the other groups of existing rows untouched.
+     *
+     * @param isFinal whether the rows are final and get the metric's fetched bit; indexed like {@code rows}
+     */
+    public void upsert(String userId, DailyMetric metric, List<DailyMetrics> rows, List<Boolean> isFinal) {
+        List<Object[]> args = new ArrayList<>(rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            DailyMetrics row = rows.get(i);
+            Object[] values = new Object[3 + metric.columns().size()];
+            values[0] = userId;
+            values[1] = Date.valueOf(row.day());
+            values[2] = isFinal.get(i) ? metric.bit() : 0;
+            for (int c = 0; c < metric.columns().size(); c++) {
+                values[3 + c] = row.column(metric.columns().get(c));
+            }
+            args.add(values);
+        }
+        jdbcTemplate.batchUpdate(upsertSql.get(metric), args);
+    }
+
+    private static DailyMetrics mapRow(ResultSet rs, int rowNum) throws SQLException {
+        return new DailyMetrics(
+                rs.getDate("day").toLocalDate(),
+                rs.getObject("steps", Integer.class),
+                rs.getObject("resting_hr", Integer.class),
+                rs.getObject("zone_out_min", Integer.class),
+                rs.getObject("zone_fat_burn_min", Integer.class),
+                rs.getObject("zone_cardio_min", Integer.class),
+                rs.getObject("zone_peak_min", Integer.class),
+                rs.getObject("hrv_rmssd", Double.class),
+                rs.getObject("weight_kg", Double.class),
+                rs.getObject("sleep_minutes", Integer.class),
+                rs.getObject("sleep_score", Integer.class),
+                rs.getObject("activity_calories", Integer.class),
+                rs.getInt("fetched_mask")
+        );
+    }
+}
@@ -0,0 +1,343 @@
+package com.aarw.fitdata.history;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+
+/**
+ * Read-through access to the local daily metrics history.
+ * <p>
+ * A day is served locally once its metric group was fetched after the day had closed. Open days
+ * (today and yesterday in the user's timezone, which Fitbit still updates as the device syncs) and days never fetched
+ * are loaded from Fitbit in one call spanning the first to the last such day, and written back.
+ */
+@Service
+public class DailyMetricsStore {
+
+    private static final Logger log = LoggerFactory.getLogger(DailyMetricsStore.class);
+
+    /**
+     * Days before today whose values can still change.
+     */
+    static final int OPEN_DAYS = 1;
+
+    private final DailyMetricsRepository repository;
+    private final MetricRollupRepository rollups;
+    private final UserTimezones timezones;
+    private final Clock clock;
+
+    @Autowired
+    public DailyMetricsStore(DailyMetricsRepository repository, MetricRollupRepository rollups, UserTimezones timezones) {
+        this(repository, rollups, timezones, Clock.systemUTC());
+    }
+
+    DailyMetricsStore(DailyMetricsRepository repository, MetricRollupRepository rollups, UserTimezones timezones, Clock clock) {
+        this.repository = repository;
+        this.rollups = rollups;
+        this.timezones = timezones;
+        this.clock = clock;
+    }
+
+    /**
+     * Returns a row for every day of the range, fetching the missing part first. Days without a
+     * value have the group's fields {@code null}.
+     *
+     * @param fetch loads the metric group from Fitbit for an inclusive range of days; days it
+     *              returns nothing for are stored as fetched without a value
+     * @return rows by day, ascending
+     */
+    public TreeMap<LocalDate, DailyMetrics> load(String userId,
+                                                 DailyMetric metric,
+                                                 LocalDate start,
+                                                 LocalDate end,
+                                                 BiFunction<LocalDate, LocalDate, List<DailyMetrics>> fetch) {
+        return load(userId, metric, start, end, fetch, false);
+    }
+
+    /**
+     * @param byRun fetch every run of consecutive missing days on its own instead of one range
+     *              from the first missing day to the last
+     */
+    private TreeMap<LocalDate, DailyMetrics> load(String userId,
+                                                  DailyMetric metric,
+                                                  LocalDate start,
+                                                  LocalDate end,
+                                                  BiFunction<LocalDate, LocalDate, List<DailyMetrics>> fetch,
+                                                  boolean byRun) {
+        TreeMap<LocalDate, DailyMetrics> rows = new TreeMap<>();
+        try {
+            for (DailyMetrics row : repository.findRange(userId, start, end)) {
+                rows.put(row.day(), row);
+            }
+        } catch (DataAccessException e) {
+            // The history is an optimization, Fitbit remains the source of truth
+            log.warn("Could not read daily metrics of {}, fetching from Fitbit: {}", userId, e.getMessage());
+        }
+
+        LocalDate firstOpen = firstOpenDay(userId);
+        LocalDate fetchFrom = null;
+        LocalDate fetchTo = null;
+        for (LocalDate day = start; !day.isAfter(end); day = day.plusDays(1)) {
+            if (needsFetch(rows.get(day), metric, day, firstOpen)) {
+                if (fetchFrom == null) {
+                    fetchFrom = day;
+                }
+                fetchTo = day;
+            } else if (byRun && fetchFrom != null) {
+                fetchRange(userId, metric, fetchFrom, fetchTo, firstOpen, fetch, rows);
+                fetchFrom = null;
+            }
+        }
+        if (fetchFrom != null) {
+            fetchRange(userId, metric, fetchFrom, fetchTo, firstOpen, fetch, rows);
+        }
+        return rows;
+    }
+
+    private void fetchRange(String userId,
+                            DailyMetric metric,
+                            LocalDate fetchFrom,
+                            LocalDate fetchTo,
+                            LocalDate firstOpen,
+                            BiFunction<LocalDate, LocalDate, List<DailyMetrics>> fetch,
+                            TreeMap<LocalDate, DailyMetrics> rows) {
+        log.debug("Fetching {} for {} from {} to {}", metric, userId, fetchFrom, fetchTo);
+        List<DailyMetrics> fetched = fetch.apply(fetchFrom, fetchTo);
+
+        TreeMap<LocalDate, DailyMetrics> byDay = new TreeMap<>();
+        for (DailyMetrics row : fetched) {
+            if (!row.day().isBefore(fetchFrom) && !row.day().isAfter(fetchTo)) {
+                byDay.put(row.day(), row);
+            }
+        }
+        List<DailyMetrics> upserts = new ArrayList<>();
+        List<Boolean> finals = new ArrayList<>();
+        for (LocalDate day = fetchFrom; !day.isAfter(fetchTo); day = day.plusDays(1)) {
+            DailyMetrics row = byDay.getOrDefault(day, DailyMetrics.empty(day));
+            upserts.add(row);
+            finals.add(day.isBefore(firstOpen));
+            rows.put(day, row);
+        }
+        write(userId, metric, upserts, finals);
+    }
+
+    /**
+     * The stored rows of the range without fetching anything. Days never stored have no row.
+     *
+     * @return rows by day, ascending; empty if the history cannot be read
+     */
+    public TreeMap<LocalDate, DailyMetrics> loadStored(String userId, LocalDate start, LocalDate end) {
+        TreeMap<LocalDate, DailyMetrics> rows = new TreeMap<>();
+        try {
+            for (DailyMetrics row : repository.findRange(userId, start, end)) {
+                rows.put(row.day(), row);
+            }
+        } catch (DataAccessException e) {
+            log.warn("Could not read daily metrics of {}: {}", userId, e.getMessage());
+        }
+        return rows;
+    }
+
+    /**
+     * Like {@link #load}, but one window of at most {@code chunkDays} days at a time: each
+     * window's rows are handed to {@code sink} before the next one is read, so only one window is
+     * held in memory however long the range is.
+     *
+     * @param sink receives the rows of each window by day, ascending; windows arrive in order
+     */
+    public void loadChunked(String userId,
+                            DailyMetric metric,
+                            LocalDate start,
+                            LocalDate end,
+                            int chunkDays,
+                            BiFunction<LocalDate, LocalDate, List<DailyMetrics>> fetch,
+                            Consumer<List<DailyMetrics>> sink) {
+        for (LocalDate chunkStart = start; !chunkStart.isAfter(end); chunkStart = chunkStart.plusDays(chunkDays)) {
+            LocalDate chunkEnd = chunkStart.plusDays(chunkDays - 1);
+            var rows = load(userId, metric, chunkStart, chunkEnd.isAfter(end) ? end : chunkEnd, fetch);
+            sink.accept(List.copyOf(rows.values()));
+        }
+    }
+
+    /**
+     * The number of fetches {@link #loadChunked} makes for the range: one for every window with a
+     * day that is open or not stored yet.
+     */
+    public int fetchesNeeded(String userId, DailyMetric metric, LocalDate start, LocalDate end, int chunkDays) {
+        Map<LocalDate, DailyMetrics> rows = loadStored(userId, start, end);
+        LocalDate firstOpen = firstOpenDay(userId);
+        int fetches = 0;
+        for (LocalDate chunkStart = start; !chunkStart.isAfter(end); chunkStart = chunkStart.plusDays(chunkDays)) {
+            LocalDate chunkEnd = chunkStart.plusDays(chunkDays - 1);
+            for (LocalDate day = chunkStart; !day.isAfter(chunkEnd) && !day.isAfter(end); day = day.plusDays(1)) {
+                if (needsFetch(rows.get(day), metric, day, firstOpen)) {
+                    fetches++;
+                    break;
+                }
+            }
+        }
+        return fetches;
+    }
+
+    /**
+     * The version of the stored days of the range, for every group in {@code metrics}. It is
+     * complete if the range is closed and every day of it is stored for all the groups.
+     */
+    public DataVersion version(String userId, Collection<DailyMetric> metrics, LocalDate start, LocalDate end) {
+        int mask = 0;
+        for (DailyMetric metric : metrics) {
+            mask |= metric.bit();
+        }
+        try {
+            DailyMetricsRepository.RangeState state = repository.rangeState(userId, mask, start, end);
+            boolean complete = end.isBefore(firstOpenDay(userId)) && state.fetchedDays() == ChronoUnit.DAYS.between(start, end) + 1;
+            return new DataVersion(userId + ":" + state.rows() + "@" + state.lastUpdate(), complete);
+        } catch (DataAccessException e) {
+            log.warn("Could not read the version of the daily metrics of {}: {}", userId, e.getMessage());
+            return DataVersion.UNKNOWN;
+        }
+    }
+
+    /**
+     * Returns weekly or monthly buckets covering the window, from the first bucket touching
+     * {@code start}. The rollups are used as they are if every closed day of every bucket is
+     * stored; otherwise the missing days are loaded like in {@link #load} first, each run of
+     * consecutive missing days on its own, so an old gap does not refetch everything after it.
+     *
+     * @param fetch as for {@link #load}, for the metric's group
+     * @return one bucket per period with any stored day, ascending
+     */
+    public List<MetricRollup> loadRollups(String userId,
+                                          RollupMetric metric,
+                                          Granularity granularity,
+                                          LocalDate start,
+                                          LocalDate end,
+                                          BiFunction<LocalDate, LocalDate, List<DailyMetrics>> fetch) {
+        LocalDate from = granularity.bucketStart(start);
+        try {
+            List<MetricRollup> buckets = rollups.find(userId, metric, granularity, from, end);
+            if (isComplete(userId, buckets, granularity, from, end)) {
+                return buckets;
+            }
+        } catch (DataAccessException e) {
+            log.warn("Could not read {} rollups of {}: {}", metric, userId, e.getMessage());
+        }
+
+        TreeMap<LocalDate, DailyMetrics> days = load(userId, metric.group(), from, end, fetch, true);
+        try {
+            // Days stored earlier may not have reached the rollups, e.g. if a refresh failed
+            rollups.refresh(userId, metric.group(), from, end);
+            return rollups.find(userId, metric, granularity, from, end);
+        } catch (DataAccessException e) {
+            log.warn("Could not refresh {} rollups of {}, aggregating in memory: {}", metric, userId, e.getMessage());
+            return aggregate(days, metric, granularity);
+        }
+    }
+
+    /**
+     * Stores values fetched elsewhere (e.g. a single-day call), marking closed days as fetched.
+     */
+    public void save(String userId, DailyMetric metric, DailyMetrics row) {
+        write(userId, metric, List.of(row), List.of(row.day().isBefore(firstOpenDay(userId))));
+    }
+
+    /**
+     * Today in the timezone of the user's Fitbit profile, where Fitbit days start.
+     */
+    public LocalDate today(String userId) {
+        return LocalDate.ofInstant(clock.instant(), timezones.zoneOf(userId));
+    }
+
+    /**
+     * The first day that is still refetched on every load; all days before it are final once fetched.
+     */
+    public LocalDate firstOpenDay(String userId) {
+        return today(userId).minusDays(OPEN_DAYS);
+    }
+
+    private void write(String userId, DailyMetric metric, List<DailyMetrics> rows, List<Boolean> finals) {
+        try {
+            repository.upsert(userId, metric, rows, finals);
+        } catch (DataAccessException e) {
+            log.warn("Could not store {} daily metrics of {}: {}", metric, userId, e.getMessage());
+            return;
+        }
+        try {
+            rollups.refresh(userId, metric, rows.getFirst().day(), rows.getLast().day());
+        } catch (DataAccessException e) {
+            // The daily rows are stored, loadRollups refreshes the buckets when it finds them incomplete
+            log.warn("Could not refresh {} rollups of {}: {}", metric, userId, e.getMessage());
+        }
+    }
+
+    private static boolean needsFetch(DailyMetrics row, DailyMetric metric, LocalDate day, LocalDate firstOpen) {
+        return row == null || !row.isFetched(metric) || !day.isBefore(firstOpen);
+    }
+
+    private boolean isComplete(String userId, List<MetricRollup> buckets, Granularity granularity, LocalDate from, LocalDate end) {
+        LocalDate lastClosed = firstOpenDay(userId).minusDays(1);
+        Map<LocalDate, MetricRollup> byStart = new HashMap<>();
+        for (MetricRollup bucket : buckets) {
+            byStart.put(bucket.periodStart(), bucket);
+        }
+        for (LocalDate bucket = from; !bucket.isAfter(end); bucket = granularity.next(bucket)) {
+            LocalDate closedEnd = granularity.next(bucket).minusDays(1);
+            if (closedEnd.isAfter(lastClosed)) {
+                closedEnd = lastClosed;
+            }
+            long closedDays = ChronoUnit.DAYS.between(bucket, closedEnd) + 1;
+            if (closedDays <= 0) {
+                continue;
+            }
+            MetricRollup rollup = byStart.get(bucket);
+            if (rollup == null || rollup.daysFetched() < closedDays) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static List<MetricRollup> aggregate(TreeMap<LocalDate, DailyMetrics> days, RollupMetric metric, Granularity granularity) {
+        TreeMap<LocalDate, List<DailyMetrics>> byBucket = new TreeMap<>();
+        for (DailyMetrics day : days.values()) {
+            byBucket.computeIfAbsent(granularity.bucketStart(day.day()), _ -> new ArrayList<>()).add(day);
+        }
+        List<MetricRollup> buckets = new ArrayList<>(byBucket.size());
+        byBucket.forEach((start, rows) -> {
+            double sum = 0;
+            int count = 0;
+            int fetched = 0;
+            Double min = null;
+            Double max = null;
+            for (DailyMetrics row : rows) {
+                if (row.isFetched(metric.group())) {
+                    fetched++;
+                }
+                Object value = row.column(metric.column());
+                if (value instanceof Number n) {
+                    double v = n.doubleValue();
+                    sum += v;
+                    count++;
+                    min = min == null ? v : Math.min(min, v);
+                    max = max == null ? v : Math.max(max, v);
+                }
+            }
+            buckets.add(new MetricRollup(start, sum, count, min, max, fetched));
+        });
+        return buckets;
+    }
+}
@@ -0,0 +1,14 @@
+package com.aarw.fitdata.history;
+
+/**
+ * The version of the stored rows a response is built from, read before the response is.
+ *
+ * @param tag      changes whenever one of the rows does; {@code null} if there is nothing to tell
+ *                 by, e.g. the rows could not be read
+ * @param complete whether the rows are final: every day is closed and stored, so the response is
+ *                 built from them alone and will not change
+ */
+public record DataVersion(String tag, boolean complete) {
+
+    public static final DataVersion UNKNOWN = new DataVersion(null, false);
+}
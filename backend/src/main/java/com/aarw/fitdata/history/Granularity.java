@@ -0,0 +1,70 @@
+package com.aarw.fitdata.history;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Bucket size of a time series. Weeks start on Monday (like Postgres {@code date_trunc('week')}),
+ * months on the first.
+ */
+public enum Granularity {
+    DAY,
+    WEEK,
+    MONTH;
+
+    /**
+     * Fewest buckets a coarser granularity must still give for a window to use it.
+     */
+    static final int MIN_POINTS = 12;
+
+    /**
+     * The coarsest granularity that still gives {@value #MIN_POINTS} points over the window, e.g.
+     * weeks for 90 days and months for a year.
+     */
+    public static Granularity coarsestFor(LocalDate start, LocalDate end) {
+        for (Granularity granularity : new Granularity[]{MONTH, WEEK}) {
+            if (granularity.buckets(start, end) >= MIN_POINTS) {
+                return granularity;
+            }
+        }
+        return DAY;
+    }
+
+    /**
+     * The first day a series over the window reads: the start of its first bucket at
+     * {@link #coarsestFor} granularity.
+     */
+    public static LocalDate firstDayRead(LocalDate start, LocalDate end) {
+        return coarsestFor(start, end).bucketStart(start);
+    }
+
+    public LocalDate bucketStart(LocalDate day) {
+        return switch (this) {
+            case DAY -> day;
+            case WEEK -> day.with(DayOfWeek.MONDAY);
+            case MONTH -> day.withDayOfMonth(1);
+        };
+    }
+
+    public LocalDate next(LocalDate bucketStart) {
+        return switch (this) {
+            case DAY -> bucketStart.plusDays(1);
+            case WEEK -> bucketStart.plusWeeks(1);
+            case MONTH -> bucketStart.plusMonths(1);
+        };
+    }
+
+    /**
+     * Buckets touched by the inclusive window.
+     */
+    long buckets(LocalDate start, LocalDate end) {
+        LocalDate from = bucketStart(start);
+        LocalDate to = bucketStart(end);
+        return switch (this) {
+            case DAY -> ChronoUnit.DAYS.between(from, to) + 1;
+            case WEEK -> ChronoUnit.WEEKS.between(from, to) + 1;
+            case MONTH -> ChronoUnit.MONTHS.between(from, to) + 1;
+        };
+    }
+}
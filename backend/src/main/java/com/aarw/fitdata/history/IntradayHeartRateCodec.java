@@ -0,0 +1,161 @@
+package com.aarw.fitdata.history;
+
+import com.aarw.fitdata.dto.HeartRateIntradayDto;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Storage format of an archived intraday heart-rate day: a format byte followed by the encoded
+ * zones and samples.
+ * <pre>
+ * 0x01  zone count | (name | min | max | minutes)* | sample count | (second delta | bpm delta)*
+ * </pre>
+ * Integers are unsigned LEB128 varints; deltas are zigzag-encoded first, nullable values are
+ * stored as value + 1 with 0 for {@code null}, and names are length-prefixed UTF-8. Each sample
+ * is the difference in second-of-day and bpm to the previous one (the first to 00:00:00 and 0),
+ * so a 1-minute day takes about two bytes per sample. New formats get a new byte; existing ones
+ * must stay decodable.
+ */
+public final class IntradayHeartRateCodec {
+
+    public static final byte FORMAT_DELTA_VARINT = 0x01;
+
+    private IntradayHeartRateCodec() {}
+
+    /**
+     * Encodes the zones and samples of the day; the scalar fields are stored separately.
+     */
+    public static byte[] encode(HeartRateIntradayDto day) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(16 + 32 * day.zones().size() + 3 * day.points().size());
+        out.write(FORMAT_DELTA_VARINT);
+
+        putVarint(out, day.zones().size());
+        for (HeartRateIntradayDto.Zone zone : day.zones()) {
+            byte[] name = zone.name() == null ? new byte[0] : zone.name().getBytes(StandardCharsets.UTF_8);
+            putVarint(out, name.length);
+            out.write(name, 0, name.length);
+            putNullable(out, zone.min());
+            putNullable(out, zone.max());
+            putNullable(out, zone.minutes());
+        }
+
+        putVarint(out, day.points().size());
+        int lastSecond = 0;
+        int lastBpm = 0;
+        for (HeartRateIntradayDto.Point point : day.points()) {
+            int second = LocalTime.parse(point.time()).toSecondOfDay();
+            putVarint(out, zigzag(second - lastSecond));
+            putVarint(out, zigzag(point.bpm() - lastBpm));
+            lastSecond = second;
+            lastBpm = point.bpm();
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Rebuilds the day from its stored columns and encoded samples. Min and max bpm are taken from
+     * the samples.
+     *
+     * @throws IllegalArgumentException if the data is truncated or of an unknown format
+     */
+    public static HeartRateIntradayDto decode(LocalDate date, Integer restingHr, Integer caloriesOut,
+                                              Integer activityCalories, byte[] data) {
+        ByteBuffer buf = ByteBuffer.wrap(data);
+        try {
+            byte format = buf.get();
+            if (format != FORMAT_DELTA_VARINT) {
+                throw new IllegalArgumentException("Unknown intraday heart-rate format: " + format);
+            }
+
+            int zoneCount = getVarint(buf);
+            List<HeartRateIntradayDto.Zone> zones = new ArrayList<>(zoneCount);
+            for (int i = 0; i < zoneCount; i++) {
+                byte[] name = new byte[getVarint(buf)];
+                buf.get(name);
+                zones.add(new HeartRateIntradayDto.Zone(
+                        new String(name, StandardCharsets.UTF_8), getNullable(buf), getNullable(buf), getNullable(buf)));
+            }
+
+            int sampleCount = getVarint(buf);
+            List<HeartRateIntradayDto.Point> points = new ArrayList<>(sampleCount);
+            int second = 0;
+            int bpm = 0;
+            int minBpm = Integer.MAX_VALUE;
+            int maxBpm = Integer.MIN_VALUE;
+            for (int i = 0; i < sampleCount; i++) {
+                second += unzigzag(getVarint(buf));
+                bpm += unzigzag(getVarint(buf));
+                minBpm = Math.min(minBpm, bpm);
+                maxBpm = Math.max(maxBpm, bpm);
+                points.add(new HeartRateIntradayDto.Point(formatTime(second), bpm));
+            }
+            if (points.isEmpty()) {
+                minBpm = 0;
+                maxBpm = 0;
+            }
+
+            return new HeartRateIntradayDto(date, restingHr, minBpm, maxBpm, caloriesOut, activityCalories,
+                    List.copyOf(zones), List.copyOf(points));
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated intraday heart-rate data", e);
+        }
+    }
+
+    private static void putVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int getVarint(ByteBuffer buf) {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = buf.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint in intraday heart-rate data");
+    }
+
+    private static void putNullable(ByteArrayOutputStream out, Integer value) {
+        putVarint(out, value == null ? 0 : zigzag(value) + 1);
+    }
+
+    private static Integer getNullable(ByteBuffer buf) {
+        int value = getVarint(buf);
+        return value == 0 ? null : unzigzag(value - 1);
+    }
+
+    private static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Formats as {@code HH:mm:ss}, the format of the Fitbit dataset.
+     */
+    private static String formatTime(int secondOfDay) {
+        int hours = secondOfDay / 3600;
+        int minutes = secondOfDay / 60 % 60;
+        int seconds = secondOfDay % 60;
+        return new String(new char[]{
+                (char) ('0' + hours / 10), (char) ('0' + hours % 10), ':',
+                (char) ('0' + minutes / 10), (char) ('0' + minutes % 10), ':',
+                (char) ('0' + seconds / 10), (char) ('0' + seconds % 10)
+        });
+    }
+}
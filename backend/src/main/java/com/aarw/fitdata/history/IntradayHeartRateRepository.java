@@ -0,0 +1,71 @@
+package com.aarw.fitdata.history;
+
+import com.aarw.fitdata.dto.HeartRateIntradayDto;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Optional;
+
+/**
+ * Archive of the intraday heart rate of closed days, in the format of {@link IntradayHeartRateCodec}.
+ */
+@Repository
+public class IntradayHeartRateRepository {
+
+    private static final RowMapper<HeartRateIntradayDto> ROW_MAPPER = IntradayHeartRateRepository::mapRow;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public IntradayHeartRateRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public Optional<HeartRateIntradayDto> find(String userId, LocalDate day) {
+        return jdbcTemplate.query(
+                "SELECT * FROM intraday_heart_days WHERE user_id = ? AND day = ?",
+                ROW_MAPPER, userId, Date.valueOf(day)).stream().findFirst();
+    }
+
+    /**
+     * @return when the day was archived, empty if it was not
+     */
+    public Optional<Instant> archivedAt(String userId, LocalDate day) {
+        return jdbcTemplate.query(
+                "SELECT archived_at FROM intraday_heart_days WHERE user_id = ? AND day = ?",
+                (rs, _) -> rs.getTimestamp("archived_at").toInstant(), userId, Date.valueOf(day)).stream().findFirst();
+    }
+
+    public void save(String userId, HeartRateIntradayDto day) {
+        jdbcTemplate.update("""
+                INSERT INTO intraday_heart_days (user_id, day, resting_hr, calories_out, activity_calories, samples)
+                VALUES (?, ?, ?, ?, ?, ?)
+                ON CONFLICT (user_id, day) DO UPDATE
+                SET resting_hr = EXCLUDED.resting_hr, calories_out = EXCLUDED.calories_out,
+                    activity_calories = EXCLUDED.activity_calories, samples = EXCLUDED.samples, archived_at = now()
+                """,
+                ps -> {
+                    ps.setString(1, userId);
+                    ps.setDate(2, Date.valueOf(day.date()));
+                    ps.setObject(3, day.restingHr(), Types.SMALLINT);
+                    ps.setObject(4, day.caloriesOut(), Types.INTEGER);
+                    ps.setObject(5, day.activityCalories(), Types.INTEGER);
+                    ps.setBytes(6, IntradayHeartRateCodec.encode(day));
+                });
+    }
+
+    private static HeartRateIntradayDto mapRow(ResultSet rs, int rowNum) throws SQLException {
+        return IntradayHeartRateCodec.decode(
+                rs.getDate("day").toLocalDate(),
+                rs.getObject("resting_hr", Integer.class),
+                rs.getObject("calories_out", Integer.class),
+                rs.getObject("activity_calories", Integer.class),
+                rs.getBytes("samples"));
+    }
+}
@@ -0,0 +1,25 @@
+package com.aarw.fitdata.history;
+
+import java.time.LocalDate;
+
+/**
+ * One week or month of a {@link RollupMetric}.
+ *
+ * @param count       days with a value
+ * @param daysFetched closed days of the bucket stored as final, with or without a value
+ */
+public record MetricRollup(
+        LocalDate periodStart,
+        double sum,
+        int count,
+        Double min,
+        Double max,
+        int daysFetched
+) {
+    /**
+     * @return the mean of the daily values, {@code null} if there are none
+     */
+    public Double mean() {
+        return count == 0 ? null : sum / count;
+    }
+}
@@ -0,0 +1,82 @@
+package com.aarw.fitdata.history;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public class MetricRollupRepository {
+
+    private static final RowMapper<MetricRollup> ROW_MAPPER = (rs, rowNum) -> new MetricRollup(
+            rs.getDate("period_start").toLocalDate(),
+            rs.getDouble("value_sum"),
+            rs.getInt("value_count"),
+            rs.getObject("value_min", Double.class),
+            rs.getObject("value_max", Double.class),
+            rs.getInt("days_fetched"));
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    public MetricRollupRepository(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    /**
+     * @return the buckets starting within the window, ascending; buckets without any stored day are absent
+     */
+    public List<MetricRollup> find(String userId, RollupMetric metric, Granularity granularity, LocalDate start, LocalDate end) {
+        return jdbcTemplate.query("""
+                SELECT period_start, value_sum, value_count, value_min, value_max, days_fetched FROM metric_rollups
+                WHERE user_id = ? AND metric = ? AND period = ? AND period_start BETWEEN ? AND ?
+                ORDER BY period_start
+                """, ROW_MAPPER, userId, metric.name(), granularity.name(), Date.valueOf(start), Date.valueOf(end));
+    }
+
+    /**
+     * Recomputes the weekly and monthly buckets of the group's rollup metrics that contain any day
+     * of the window, from the daily rows.
+     * <p>
+     * Refreshes of the same user and group take turns on an advisory lock, so each one reads the
+     * daily rows written before it and the last one to run leaves the buckets up to date.
+     */
+    public void refresh(String userId, DailyMetric group, LocalDate start, LocalDate end) {
+        List<RollupMetric> metrics = RollupMetric.of(group);
+        if (metrics.isEmpty()) {
+            return;
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.queryForList("SELECT pg_advisory_xact_lock(hashtext(?))", userId + ":rollups:" + group.name());
+            for (RollupMetric metric : metrics) {
+                for (Granularity granularity : new Granularity[]{Granularity.WEEK, Granularity.MONTH}) {
+                    refresh(userId, metric, granularity, granularity.bucketStart(start), granularity.next(granularity.bucketStart(end)).minusDays(1));
+                }
+            }
+        });
+    }
+
+    private void refresh(String userId, RollupMetric metric, Granularity granularity, LocalDate from, LocalDate to) {
+        // The column name comes from the enum, never from input. Daily rows are never removed, so
+        // every bucket written before still has rows and is overwritten here.
+        jdbcTemplate.update("""
+                INSERT INTO metric_rollups (user_id, metric, period, period_start, value_sum, value_count, value_min, value_max, days_fetched)
+                SELECT user_id, ?, ?, date_trunc(?, day)::date,
+                       COALESCE(sum(%1$s), 0), count(%1$s), min(%1$s), max(%1$s), count(*) FILTER (WHERE fetched_mask & ? <> 0)
+                FROM daily_metrics
+                WHERE user_id = ? AND day BETWEEN ? AND ?
+                GROUP BY 1, 4
+                ORDER BY 4
+                ON CONFLICT (user_id, metric, period, period_start) DO UPDATE
+                SET value_sum = EXCLUDED.value_sum, value_count = EXCLUDED.value_count, value_min = EXCLUDED.value_min,
+                    value_max = EXCLUDED.value_max, days_fetched = EXCLUDED.days_fetched, updated_at = now()
+                """.formatted(metric.column()),
+                metric.name(), granularity.name(), granularity.name().toLowerCase(), metric.group().bit(),
+                userId, Date.valueOf(from), Date.valueOf(to));
+    }
+}
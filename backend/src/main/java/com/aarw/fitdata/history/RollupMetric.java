@@ -0,0 +1,33 @@
+package com.aarw.fitdata.history;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Daily values kept as weekly and monthly rollups in {@code metric_rollups}.
+ */
+public enum RollupMetric {
+    STEPS(DailyMetric.STEPS, "steps"),
+    RESTING_HR(DailyMetric.HEART, "resting_hr"),
+    WEIGHT(DailyMetric.WEIGHT, "weight_kg");
+
+    private final DailyMetric group;
+    private final String column;
+
+    RollupMetric(DailyMetric group, String column) {
+        this.group = group;
+        this.column = column;
+    }
+
+    public DailyMetric group() {
+        return group;
+    }
+
+    String column() {
+        return column;
+    }
+
+    static List<RollupMetric> of(DailyMetric group) {
+        return Arrays.stream(values()).filter(it -> it.group == group).toList();
+    }
+}
@@ -0,0 +1,80 @@
+package com.aarw.fitdata.history;
+
+import com.aarw.fitdata.fitbit.dto.FitbitProfileResponse;
+import com.aarw.fitdata.oauth.token.FitbitTokenEntity;
+import com.aarw.fitdata.oauth.token.FitbitTokenRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+
+import java.time.DateTimeException;
+import java.time.Duration;
+import java.time.ZoneId;
+import java.util.Objects;
+
+/**
+ * The timezone of each user's Fitbit profile, in which Fitbit days start. It is stored with the
+ * token whenever a profile is read, and kept in memory for the many day boundaries a request needs.
+ * Users whose profile was never read get the server's zone.
+ */
+@Component
+public class UserTimezones {
+
+    private static final Logger log = LoggerFactory.getLogger(UserTimezones.class);
+
+    private final FitbitTokenRepository tokenRepository;
+    // Bounded staleness for zones changed by another node
+    private final Cache<String, ZoneId> zones = Caffeine.newBuilder()
+            .expireAfterWrite(Duration.ofMinutes(10))
+            .maximumSize(10_000)
+            .build();
+
+    public UserTimezones(FitbitTokenRepository tokenRepository) {
+        this.tokenRepository = tokenRepository;
+    }
+
+    /**
+     * @param userId the Fitbit user, {@code null} outside an authenticated request
+     */
+    public ZoneId zoneOf(String userId) {
+        return userId == null ? ZoneId.systemDefault() : zones.get(userId, this::load);
+    }
+
+    /**
+     * Stores the timezone of a profile just read, if it changed.
+     */
+    public void record(String userId, FitbitProfileResponse profile) {
+        if (profile == null || profile.user() == null || profile.user().timezone() == null) {
+            return;
+        }
+        ZoneId zone;
+        try {
+            zone = ZoneId.of(profile.user().timezone());
+        } catch (DateTimeException e) {
+            log.warn("Ignoring unknown timezone {} of {}", profile.user().timezone(), userId);
+            return;
+        }
+        if (Objects.equals(zones.getIfPresent(userId), zone)) {
+            return;
+        }
+        try {
+            tokenRepository.updateTimezone(userId, zone.getId());
+            zones.put(userId, zone);
+        } catch (DataAccessException e) {
+            log.warn("Could not store the timezone of {}: {}", userId, e.getMessage());
+        }
+    }
+
+    private ZoneId load(String userId) {
+        try {
+            String timezone = tokenRepository.findByFitbitUserId(userId).map(FitbitTokenEntity::getTimezone).orElse(null);
+            return timezone == null ? ZoneId.systemDefault() : ZoneId.of(timezone);
+        } catch (DataAccessException | DateTimeException e) {
+            log.warn("Could not read the timezone of {}, using the server's: {}", userId, e.getMessage());
+            return ZoneId.systemDefault();
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.aarw.fitdata.jobs;
+
+/**
+ * A claimed row of {@code job_queue}.
+ *
+ * @param key      identifies the job within its type, e.g. the user id
+ * @param attempts runs started so far, including the current one
+ */
+public record Job(
+        long id,
+        String type,
+        String key,
+        String payload,
+        int attempts
+) {}
@@ -0,0 +1,20 @@
+package com.aarw.fitdata.jobs;
+
+import java.time.Instant;
+
+/**
+ * Runs the jobs of one type. Handlers are Spring beans and are looked up by {@link #type()}.
+ * <p>
+ * A job may run more than once (a worker dying after the work but before the acknowledgement,
+ * or a run outlasting the visibility timeout), so handlers must be idempotent.
+ */
+public interface JobHandler {
+
+    String type();
+
+    /**
+     * @return when to run the job again, or {@code null} if it is done and can be removed
+     * @throws Exception to retry the job with backoff
+     */
+    Instant handle(Job job) throws Exception;
+}
@@ -0,0 +1,122 @@
+package com.aarw.fitdata.jobs;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * The {@code job_queue} table. Claims use {@code FOR UPDATE SKIP LOCKED}, so any number of nodes can
+ * poll it at the same time and each due job goes to exactly one of them. Acknowledgements only
+ * apply while the worker still owns the job.
+ */
+@Repository
+public class JobQueue {
+
+    private static final RowMapper<Job> ROW_MAPPER = (rs, rowNum) -> new Job(
+            rs.getLong("id"),
+            rs.getString("type"),
+            rs.getString("job_key"),
+            rs.getString("payload"),
+            rs.getInt("attempts"));
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public JobQueue(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Queues a job, or moves an existing one with the same key forward to {@code runAt}. A parked
+     * job is revived with fresh attempts.
+     */
+    public void enqueue(String type, String key, String payload, Instant runAt) {
+        jdbcTemplate.update("""
+                INSERT INTO job_queue (type, job_key, payload, run_at) VALUES (?, ?, ?, ?)
+                ON CONFLICT (type, job_key) DO UPDATE
+                SET run_at = CASE WHEN job_queue.failed_at IS NULL THEN LEAST(job_queue.run_at, EXCLUDED.run_at) ELSE EXCLUDED.run_at END,
+                    payload = COALESCE(EXCLUDED.payload, job_queue.payload),
+                    attempts = CASE WHEN job_queue.failed_at IS NULL THEN job_queue.attempts ELSE 0 END,
+                    failed_at = NULL,
+                    updated_at = now()
+                """, type, key, payload, Timestamp.from(runAt));
+    }
+
+    /**
+     * Queues a job per key unless one exists already. Existing jobs keep their schedule and parked
+     * ones stay parked; {@link #enqueue} revives them.
+     */
+    public void enqueueIfAbsent(String type, Collection<String> keys, Instant runAt) {
+        Timestamp at = Timestamp.from(runAt);
+        jdbcTemplate.batchUpdate("""
+                INSERT INTO job_queue (type, job_key, run_at) VALUES (?, ?, ?)
+                ON CONFLICT (type, job_key) DO NOTHING
+                """, keys.stream().map(key -> new Object[]{type, key, at}).toList());
+    }
+
+    /**
+     * Takes up to {@code limit} due jobs of the given types, oldest first, for {@code timeout}.
+     * Jobs owned by another worker whose timeout has not passed are skipped.
+     */
+    public List<Job> claim(String workerId, Collection<String> types, int limit, Duration timeout) {
+        return jdbcTemplate.query("""
+                UPDATE job_queue j
+                SET locked_by = ?, locked_until = now() + make_interval(secs => ?), attempts = j.attempts + 1, updated_at = now()
+                FROM (
+                    SELECT id FROM job_queue
+                    WHERE failed_at IS NULL AND run_at <= now() AND type = ANY(?)
+                      AND (locked_until IS NULL OR locked_until < now())
+                    ORDER BY run_at
+                    LIMIT ?
+                    FOR UPDATE SKIP LOCKED
+                ) due
+                WHERE j.id = due.id
+                RETURNING j.id, j.type, j.job_key, j.payload, j.attempts
+                """, ROW_MAPPER, workerId, (double) timeout.toMillis() / 1000, types.toArray(String[]::new), limit);
+    }
+
+    /**
+     * Removes a finished job.
+     */
+    public void complete(Job job, String workerId) {
+        jdbcTemplate.update("DELETE FROM job_queue WHERE id = ? AND locked_by = ?", job.id(), workerId);
+    }
+
+    /**
+     * Releases a successful job to run again at {@code runAt}, resetting its attempts.
+     */
+    public void reschedule(Job job, String workerId, Instant runAt) {
+        jdbcTemplate.update("""
+                UPDATE job_queue
+                SET run_at = ?, attempts = 0, last_error = NULL, locked_by = NULL, locked_until = NULL, updated_at = now()
+                WHERE id = ? AND locked_by = ?
+                """, Timestamp.from(runAt), job.id(), workerId);
+    }
+
+    /**
+     * Releases a failed job for a retry at {@code runAt}.
+     */
+    public void retry(Job job, String workerId, Instant runAt, String error) {
+        jdbcTemplate.update("""
+                UPDATE job_queue
+                SET run_at = ?, last_error = ?, locked_by = NULL, locked_until = NULL, updated_at = now()
+                WHERE id = ? AND locked_by = ?
+                """, Timestamp.from(runAt), error, job.id(), workerId);
+    }
+
+    /**
+     * Parks a job that ran out of attempts. It stays in the table until enqueued again.
+     */
+    public void park(Job job, String workerId, String error) {
+        jdbcTemplate.update("""
+                UPDATE job_queue
+                SET failed_at = now(), last_error = ?, locked_by = NULL, locked_until = NULL, updated_at = now()
+                WHERE id = ? AND locked_by = ?
+                """, error, job.id(), workerId);
+    }
+}
@@ -0,0 +1,195 @@
+package com.aarw.fitdata.jobs;
+
+import com.aarw.fitdata.config.JobProps;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.net.InetAddress;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Polls the job queue on every node and runs the claimed jobs on virtual threads.
+ * <p>
+ * There is no leader: each node claims due jobs in batches with {@code SKIP LOCKED}, so the work
+ * spreads over all nodes and no job runs twice at the same time. A node only claims job types it
+ * has a handler for. Failed jobs are retried with exponential backoff and parked after
+ * {@link JobProps#maxAttempts()} attempts.
+ * <p>
+ * Polling has a thread of its own rather than the shared {@code @Scheduled} thread: a batch may
+ * run for minutes (a backfill makes a hundred Fitbit calls), and the live heartbeats and session
+ * cleanup must not wait for it.
+ */
+@Component
+public class JobWorker implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(JobWorker.class);
+
+    private static final ExecutorService EXECUTOR = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final JobQueue queue;
+    private final JobProps props;
+    private final Map<String, JobHandler> handlers;
+    private final MeterRegistry meterRegistry;
+    private final Clock clock;
+    private final String workerId;
+
+    private volatile ScheduledExecutorService poller;
+
+    @Autowired
+    public JobWorker(JobQueue queue, JobProps props, List<JobHandler> handlers, MeterRegistry meterRegistry) {
+        this(queue, props, handlers, meterRegistry, Clock.systemUTC());
+    }
+
+    JobWorker(JobQueue queue, JobProps props, List<JobHandler> handlers, MeterRegistry meterRegistry, Clock clock) {
+        this.queue = queue;
+        this.props = props;
+        this.handlers = handlers.stream().collect(Collectors.toMap(JobHandler::type, Function.identity()));
+        this.meterRegistry = meterRegistry;
+        this.clock = clock;
+        this.workerId = hostName() + ":" + UUID.randomUUID().toString().substring(0, 8);
+    }
+
+    @Override
+    public void start() {
+        if (!props.enabled() || handlers.isEmpty()) {
+            return;
+        }
+        long intervalMs = Math.max(1, props.pollInterval().toMillis());
+        poller = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("job-poller").daemon().factory());
+        poller.scheduleWithFixedDelay(this::pollSafely, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void stop() {
+        ScheduledExecutorService current = poller;
+        poller = null;
+        if (current != null) {
+            current.shutdown();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return poller != null;
+    }
+
+    // An exception escaping a fixed-delay task would cancel all further polls
+    private void pollSafely() {
+        try {
+            poll();
+        } catch (RuntimeException e) {
+            log.error("Job queue poll failed", e);
+        }
+    }
+
+    /**
+     * Claims and runs batches until a claim comes back short of a full batch.
+     */
+    void poll() {
+        if (!props.enabled() || handlers.isEmpty()) {
+            return;
+        }
+        try {
+            while (runBatch() >= props.batchSize()) {
+                log.debug("Job queue has more due jobs, claiming the next batch");
+            }
+        } catch (DataAccessException e) {
+            log.warn("Could not poll the job queue: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * @return the number of jobs claimed
+     */
+    int runBatch() {
+        List<Job> jobs = queue.claim(workerId, handlers.keySet(), props.batchSize(), props.visibilityTimeout());
+        List<Future<?>> running = new ArrayList<>(jobs.size());
+        for (Job job : jobs) {
+            running.add(EXECUTOR.submit(() -> run(job)));
+        }
+        for (Future<?> future : running) {
+            try {
+                future.get();
+            } catch (Exception e) {
+                log.warn("Job run ended unexpectedly: {}", e.getMessage());
+            }
+        }
+        return jobs.size();
+    }
+
+    void run(Job job) {
+        Instant next;
+        try {
+            next = handlers.get(job.type()).handle(job);
+        } catch (Exception e) {
+            fail(job, e);
+            return;
+        }
+        if (next == null) {
+            queue.complete(job, workerId);
+            count(job, "completed");
+        } else {
+            queue.reschedule(job, workerId, next);
+            count(job, "rescheduled");
+        }
+    }
+
+    private void fail(Job job, Exception e) {
+        String error = e.getClass().getSimpleName() + ": " + e.getMessage();
+        if (job.attempts() >= props.maxAttempts()) {
+            log.error("Job {} {} failed {} times, parking it: {}", job.type(), job.key(), job.attempts(), error);
+            queue.park(job, workerId, error);
+            count(job, "parked");
+            return;
+        }
+        Duration delay = backoff(job.attempts());
+        log.warn("Job {} {} failed (attempt {}), retrying in {}: {}", job.type(), job.key(), job.attempts(), delay, error);
+        queue.retry(job, workerId, clock.instant().plus(delay), error);
+        count(job, "retried");
+    }
+
+    /**
+     * Doubles per attempt up to the maximum, with up to 20% jitter so failed jobs of many users do
+     * not come back at the same moment.
+     */
+    Duration backoff(int attempts) {
+        long base = props.backoff().toMillis();
+        long delay = attempts >= 31 ? Long.MAX_VALUE : base << Math.max(0, attempts - 1);
+        if (delay < 0 || delay > props.maxBackoff().toMillis()) {
+            delay = props.maxBackoff().toMillis();
+        }
+        long jitter = (long) (delay * 0.2 * ThreadLocalRandom.current().nextDouble());
+        return Duration.ofMillis(delay + jitter);
+    }
+
+    private void count(Job job, String outcome) {
+        meterRegistry.counter("jobs.runs", "type", job.type(), "outcome", outcome).increment();
+    }
+
+    private static String hostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            return "unknown";
+        }
+    }
+}
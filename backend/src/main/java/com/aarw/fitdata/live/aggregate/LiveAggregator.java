@@ -0,0 +1,77 @@
+package com.aarw.fitdata.live.aggregate;
+
+import com.aarw.fitdata.live.api.LiveAggregate;
+import com.aarw.fitdata.live.api.LiveResolution;
+import com.aarw.fitdata.live.api.LiveSample;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Maintains the 1s/10s/1m windows over the incoming live samples. Each sample updates every
+ * window in constant time; closed windows are returned to the caller for fan-out. Windows are also
+ * closed by time, so the last window before a pause in the samples is not held back until the
+ * next sample arrives.
+ */
+@Component
+public class LiveAggregator {
+
+    /**
+     * How long past its end a window waits for samples before it is closed by time: samples carry
+     * the device's timestamp and reach this node through the bus.
+     */
+    static final long CLOSE_DELAY_MILLIS = 500;
+
+    private final Map<LiveResolution, RollingWindow> windows = new EnumMap<>(LiveResolution.class);
+    private final Map<LiveResolution, LiveAggregate> lastClosed = new EnumMap<>(LiveResolution.class);
+
+    public LiveAggregator() {
+        for (LiveResolution resolution : LiveResolution.values()) {
+            if (resolution.isAggregated()) {
+                windows.put(resolution, new RollingWindow(resolution));
+            }
+        }
+    }
+
+    /**
+     * Folds the sample into all windows.
+     *
+     * @return the aggregates of the windows closed by this sample, in resolution order
+     */
+    public synchronized List<LiveAggregate> accept(LiveSample sample) {
+        List<LiveAggregate> closed = new ArrayList<>(windows.size());
+        for (var entry : windows.entrySet()) {
+            LiveAggregate aggregate = entry.getValue().accept(sample);
+            if (aggregate != null) {
+                lastClosed.put(entry.getKey(), aggregate);
+                closed.add(aggregate);
+            }
+        }
+        return closed;
+    }
+
+    /**
+     * Closes the windows that ended before {@code now}, less {@link #CLOSE_DELAY_MILLIS}.
+     *
+     * @param now epoch milliseconds
+     * @return the aggregates of the closed windows, in resolution order
+     */
+    public synchronized List<LiveAggregate> closeEnded(long now) {
+        List<LiveAggregate> closed = new ArrayList<>();
+        for (var entry : windows.entrySet()) {
+            LiveAggregate aggregate = entry.getValue().closeIfEnded(now, CLOSE_DELAY_MILLIS);
+            if (aggregate != null) {
+                lastClosed.put(entry.getKey(), aggregate);
+                closed.add(aggregate);
+            }
+        }
+        return closed;
+    }
+
+    public synchronized LiveAggregate lastClosed(LiveResolution resolution) {
+        return lastClosed.get(resolution);
+    }
+}
@@ -0,0 +1,159 @@
+package com.aarw.fitdata.live.aggregate;
+
+import com.aarw.fitdata.live.api.LiveAggregate;
+import com.aarw.fitdata.live.api.LiveResolution;
+import com.aarw.fitdata.live.api.LiveSample;
+
+/**
+ * Tumbling window accumulator for a single resolution.
+ * <p>
+ * Every sample is folded into running min/max/sum/count and the last value of each cumulative
+ * counter, so the cost per sample is constant regardless of the window length. The window is
+ * closed when a sample arrives whose timestamp belongs to a later window, or by
+ * {@link #closeIfEnded} once its end has passed. A sample of a window that was already closed only
+ * advances the counters, so the window is not emitted twice. Not thread-safe.
+ */
+class RollingWindow {
+
+    private final LiveResolution resolution;
+
+    private long windowStart = Long.MIN_VALUE;
+    private long closedUntil = Long.MIN_VALUE;
+    private int count;
+
+    private double hrMin;
+    private double hrMax;
+    private double hrSum;
+    private int hrCount;
+
+    private final Counter steps = new Counter();
+    private final Counter distance = new Counter();
+    private final Counter calories = new Counter();
+
+    RollingWindow(LiveResolution resolution) {
+        if (!resolution.isAggregated()) {
+            throw new IllegalArgumentException("Resolution " + resolution + " is not windowed");
+        }
+        this.resolution = resolution;
+    }
+
+    /**
+     * Folds the sample into the window.
+     *
+     * @return the aggregate of the previous window if this sample closed it, otherwise {@code null}
+     */
+    LiveAggregate accept(LiveSample sample) {
+        long start = sample.ts() - Math.floorMod(sample.ts(), resolution.windowMillis());
+        if (start < closedUntil) {
+            updateCounters(sample);
+            return null;
+        }
+
+        LiveAggregate closed = null;
+        if (count > 0 && start > windowStart) {
+            closed = close();
+        }
+        if (count == 0) {
+            windowStart = start;
+        }
+
+        count++;
+        if (sample.hr() != null) {
+            double hr = sample.hr();
+            if (hrCount == 0) {
+                hrMin = hr;
+                hrMax = hr;
+            } else {
+                hrMin = Math.min(hrMin, hr);
+                hrMax = Math.max(hrMax, hr);
+            }
+            hrSum += hr;
+            hrCount++;
+        }
+        updateCounters(sample);
+
+        return closed;
+    }
+
+    /**
+     * Closes the window if it ended at least {@code delayMillis} before {@code now}, leaving that
+     * long for samples still on their way.
+     *
+     * @return the aggregate of the window if it was closed, otherwise {@code null}
+     */
+    LiveAggregate closeIfEnded(long now, long delayMillis) {
+        if (count > 0 && now - delayMillis >= windowStart + resolution.windowMillis()) {
+            return close();
+        }
+        return null;
+    }
+
+    private void updateCounters(LiveSample sample) {
+        if (sample.steps() != null) {
+            steps.update(sample.steps());
+        }
+        if (sample.distance_m() != null) {
+            distance.update(sample.distance_m());
+        }
+        if (sample.calories() != null) {
+            calories.update(sample.calories());
+        }
+    }
+
+    private LiveAggregate close() {
+        Double stepsDelta = steps.closeWindow();
+        LiveAggregate aggregate = new LiveAggregate(
+                resolution.param(),
+                windowStart,
+                resolution.windowMillis(),
+                count,
+                hrCount == 0 ? null : hrMin,
+                hrCount == 0 ? null : hrMax,
+                hrCount == 0 ? null : hrSum / hrCount,
+                stepsDelta == null ? null : stepsDelta.longValue(),
+                distance.closeWindow(),
+                calories.closeWindow()
+        );
+
+        closedUntil = windowStart + resolution.windowMillis();
+        count = 0;
+        hrSum = 0;
+        hrCount = 0;
+        return aggregate;
+    }
+
+    /**
+     * Tracks a cumulative device counter. The delta of a window is measured against the last value
+     * of the previous window so consecutive deltas add up to the total; a decreasing value is treated
+     * as a device reset.
+     */
+    private static final class Counter {
+        private boolean hasBaseline;
+        private double baseline;
+        private boolean hasValue;
+        private double last;
+        private double resetCarry;
+
+        void update(double value) {
+            if (!hasBaseline) {
+                baseline = value;
+                hasBaseline = true;
+            } else if (value < last) {
+                resetCarry += last;
+            }
+            last = value;
+            hasValue = true;
+        }
+
+        Double closeWindow() {
+            if (!hasValue) {
+                return null;
+            }
+            double delta = resetCarry + last - baseline;
+            baseline = last;
+            resetCarry = 0;
+            hasValue = false;
+            return delta;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.aarw.fitdata.live.api;
+
+/**
+ * Summary of the live samples received in one tumbling window.
+ * <p>
+ * {@code hr_*} are computed over the heart rate values in the window, while {@code steps},
+ * {@code distance_m} and {@code calories} are the increase of the cumulative counters since
+ * the previous window.
+ */
+public record LiveAggregate(
+        String resolution,
+        long ts,
+        long window_ms,
+        int count,
+        Double hr_min,
+        Double hr_max,
+        Double hr_mean,
+        Long steps,
+        Double distance_m,
+        Double calories
+) {}
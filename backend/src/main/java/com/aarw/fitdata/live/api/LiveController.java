@@ -1,52 +1,36 @@
 package com.aarw.fitdata.live.api;
 
+import com.aarw.fitdata.live.service.LiveStreamService;
 import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
-import java.io.IOException;
-import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.concurrent.atomic.AtomicReference;
+import java.security.Principal;
 
 @RestController
 @RequestMapping("/api/live")
 public class LiveController {
 
-    private final AtomicReference<LiveSample> last = new AtomicReference<>();
-    private final List<SseEmitter> emitters = new CopyOnWriteArrayList<>();
+    private final LiveStreamService liveStreamService;
+
+    public LiveController(LiveStreamService liveStreamService) {
+        this.liveStreamService = liveStreamService;
+    }
 
     @PostMapping
     public void ingest(@RequestBody LiveSample sample) {
-        last.set(sample);
-
-        for (SseEmitter emitter : emitters) {
-            try {
-                emitter.send(sample, MediaType.APPLICATION_JSON);
-            } catch (IOException e) {
-                emitters.remove(emitter);
-            }
-        }
+        liveStreamService.ingest(sample);
     }
 
+    /**
+     * Streams live data as server-sent events.
+     *
+     * @param resolution {@code raw} (default) for every sample, or {@code 1s}, {@code 10s}, {@code 1m}
+     *                   for one {@link LiveAggregate} per closed window
+     * @return 429 if the user or this node has reached its stream limit
+     */
     @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
-    public SseEmitter stream() {
-        SseEmitter emitter = new SseEmitter(0L); // no timeout
-        emitters.add(emitter);
-
-        emitter.onCompletion(() -> emitters.remove(emitter));
-        emitter.onTimeout(() -> emitters.remove(emitter));
-        emitter.onError(_ -> emitters.remove(emitter));
-
-        LiveSample existing = last.get();
-        if (existing != null) {
-            try {
-                emitter.send(existing, MediaType.APPLICATION_JSON);
-            } catch (IOException e) {
-                emitters.remove(emitter);
-            }
-        }
-
-        return emitter;
+    public SseEmitter stream(@RequestParam(defaultValue = "raw") String resolution, Principal principal) {
+        return liveStreamService.subscribe(LiveResolution.fromParam(resolution), principal.getName());
     }
 }
@@ -0,0 +1,42 @@
+package com.aarw.fitdata.live.api;
+
+import com.aarw.fitdata.exception.BadRequestException;
+
+import java.util.Arrays;
+
+public enum LiveResolution {
+    RAW("raw", 0L),
+    ONE_SECOND("1s", 1_000L),
+    TEN_SECONDS("10s", 10_000L),
+    ONE_MINUTE("1m", 60_000L);
+
+    private final String param;
+    private final long windowMillis;
+
+    LiveResolution(String param, long windowMillis) {
+        this.param = param;
+        this.windowMillis = windowMillis;
+    }
+
+    public String param() {
+        return param;
+    }
+
+    public long windowMillis() {
+        return windowMillis;
+    }
+
+    public boolean isAggregated() {
+        return windowMillis > 0;
+    }
+
+    public static LiveResolution fromParam(String value) {
+        if (value == null || value.isBlank()) {
+            return RAW;
+        }
+        return Arrays.stream(values())
+                .filter(r -> r.param.equalsIgnoreCase(value.trim()) || r.name().equalsIgnoreCase(value.trim()))
+                .findFirst()
+                .orElseThrow(() -> new BadRequestException("Unsupported live resolution: " + value));
+    }
+}
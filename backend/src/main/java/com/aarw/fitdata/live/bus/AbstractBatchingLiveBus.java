@@ -0,0 +1,188 @@
+package com.aarw.fitdata.live.bus;
+
+import com.aarw.fitdata.live.api.LiveSample;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+import tools.jackson.databind.ObjectMapper;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Base class for buses backed by a pub/sub channel.
+ * <p>
+ * Outgoing samples are queued and sent as one message per flush interval (or as soon as
+ * {@code maxBatchSize} samples are pending), split further if a message would exceed the
+ * transport's payload limit. Incoming messages are dropped if they were published by this
+ * process, and entries are delivered only if their sequence number is higher than the last one
+ * seen from that origin.
+ * <p>
+ * Flushing and, in subclasses, receiving begin on {@link #start()}, once the subscribers are
+ * registered, and end on {@link #stop()}.
+ */
+public abstract class AbstractBatchingLiveBus implements LiveBus, SmartLifecycle, AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(AbstractBatchingLiveBus.class);
+
+    private final String origin = UUID.randomUUID().toString();
+    private final AtomicLong sequence = new AtomicLong();
+
+    private final ObjectMapper objectMapper;
+    private final int maxBatchSize;
+    private final int maxPayloadBytes;
+    private final long flushIntervalMs;
+
+    private final List<Consumer<LiveSample>> listeners = new CopyOnWriteArrayList<>();
+    private final Cache<String, Long> lastSeenSeq = Caffeine.newBuilder()
+            .expireAfterAccess(Duration.ofMinutes(10))
+            .build();
+
+    private volatile ScheduledExecutorService flusher;
+
+    private final Object lock = new Object();
+    private List<LiveBusMessage.Entry> pending = new ArrayList<>();
+    private LiveSample lastQueued;
+
+    protected AbstractBatchingLiveBus(ObjectMapper objectMapper, Duration flushInterval, int maxBatchSize, int maxPayloadBytes) {
+        this.objectMapper = objectMapper;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.maxPayloadBytes = maxPayloadBytes;
+        this.flushIntervalMs = Math.max(1, flushInterval.toMillis());
+    }
+
+    @Override
+    public void start() {
+        ScheduledExecutorService executor =
+                Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("live-bus-flush").daemon().factory());
+        executor.scheduleWithFixedDelay(this::flush, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+        flusher = executor;
+    }
+
+    /**
+     * Stops flushing and sends what is still pending.
+     */
+    @Override
+    public void stop() {
+        ScheduledExecutorService current = flusher;
+        flusher = null;
+        if (current != null) {
+            current.shutdown();
+        }
+        flush();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return flusher != null;
+    }
+
+    @Override
+    public void publish(LiveSample sample) {
+        List<LiveBusMessage.Entry> full = null;
+        synchronized (lock) {
+            if (sample.equals(lastQueued)) {
+                return; // sensor retransmission, the other nodes already have it
+            }
+            lastQueued = sample;
+            pending.add(new LiveBusMessage.Entry(sequence.incrementAndGet(), sample));
+            if (pending.size() >= maxBatchSize) {
+                full = pending;
+                pending = new ArrayList<>();
+            }
+        }
+        ScheduledExecutorService current = flusher;
+        if (full != null && current != null) {
+            List<LiveBusMessage.Entry> batch = full;
+            current.execute(() -> sendBatch(batch));
+        } else if (full != null) {
+            sendBatch(full);
+        }
+    }
+
+    @Override
+    public void subscribe(Consumer<LiveSample> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Sends the serialized batch to the other nodes.
+     */
+    protected abstract void send(String payload);
+
+    /**
+     * Handles a message received from the channel.
+     */
+    protected synchronized void receive(String payload) {
+        LiveBusMessage message;
+        try {
+            message = objectMapper.readValue(payload, LiveBusMessage.class);
+        } catch (Exception e) {
+            log.warn("Dropping unreadable live bus message: {}", e.getMessage());
+            return;
+        }
+        if (message.origin() == null || origin.equals(message.origin()) || message.samples() == null) {
+            return;
+        }
+
+        Long seen = lastSeenSeq.getIfPresent(message.origin());
+        long highest = seen == null ? 0 : seen;
+        for (LiveBusMessage.Entry entry : message.samples()) {
+            if (entry.seq() <= highest || entry.sample() == null) {
+                continue;
+            }
+            highest = entry.seq();
+            for (Consumer<LiveSample> listener : listeners) {
+                try {
+                    listener.accept(entry.sample());
+                } catch (Exception e) {
+                    log.warn("Live bus listener failed: {}", e.getMessage());
+                }
+            }
+        }
+        lastSeenSeq.put(message.origin(), highest);
+    }
+
+    void flush() {
+        List<LiveBusMessage.Entry> batch;
+        synchronized (lock) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = pending;
+            pending = new ArrayList<>();
+        }
+        sendBatch(batch);
+    }
+
+    private void sendBatch(List<LiveBusMessage.Entry> batch) {
+        try {
+            String payload = objectMapper.writeValueAsString(new LiveBusMessage(origin, batch));
+            if (batch.size() > 1 && payload.getBytes(StandardCharsets.UTF_8).length > maxPayloadBytes) {
+                int mid = batch.size() / 2;
+                sendBatch(batch.subList(0, mid));
+                sendBatch(batch.subList(mid, batch.size()));
+                return;
+            }
+            send(payload);
+        } catch (Exception e) {
+            log.warn("Failed to publish {} live samples to the bus: {}", batch.size(), e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        stop();
+    }
+}
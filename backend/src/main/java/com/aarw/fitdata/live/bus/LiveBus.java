@@ -0,0 +1,18 @@
+package com.aarw.fitdata.live.bus;
+
+import com.aarw.fitdata.live.api.LiveSample;
+
+import java.util.function.Consumer;
+
+/**
+ * Distributes live samples ingested on this node to the other nodes of the deployment.
+ * <p>
+ * Implementations never deliver a node's own samples back to it; local subscribers are served
+ * directly by the ingesting node.
+ */
+public interface LiveBus {
+
+    void publish(LiveSample sample);
+
+    void subscribe(Consumer<LiveSample> listener);
+}
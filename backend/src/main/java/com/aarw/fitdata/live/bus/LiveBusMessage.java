@@ -0,0 +1,19 @@
+package com.aarw.fitdata.live.bus;
+
+import com.aarw.fitdata.live.api.LiveSample;
+
+import java.util.List;
+
+/**
+ * Wire format of one batch on the bus. {@code origin} identifies the publishing process and
+ * {@code seq} increases monotonically per origin, which lets receivers drop echoes and duplicates.
+ */
+public record LiveBusMessage(
+        String origin,
+        List<Entry> samples
+) {
+    public record Entry(
+            long seq,
+            LiveSample sample
+    ) {}
+}
@@ -0,0 +1,19 @@
+package com.aarw.fitdata.live.bus;
+
+import com.aarw.fitdata.live.api.LiveSample;
+
+import java.util.function.Consumer;
+
+/**
+ * Single-node bus: there are no other nodes to reach, so publishing is a no-op.
+ */
+public class LocalLiveBus implements LiveBus {
+
+    @Override
+    public void publish(LiveSample sample) {
+    }
+
+    @Override
+    public void subscribe(Consumer<LiveSample> listener) {
+    }
+}
@@ -0,0 +1,99 @@
+package com.aarw.fitdata.live.bus;
+
+import com.aarw.fitdata.config.LiveProps;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import tools.jackson.databind.ObjectMapper;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Live bus over Postgres {@code LISTEN/NOTIFY}.
+ * <p>
+ * One pooled connection is held by a listener thread while the bus is running. NOTIFY payloads
+ * are limited to 8000 bytes, batches are split below that.
+ */
+public class PostgresLiveBus extends AbstractBatchingLiveBus {
+
+    private static final Logger log = LoggerFactory.getLogger(PostgresLiveBus.class);
+
+    private static final int MAX_PAYLOAD_BYTES = 7900;
+    private static final int POLL_TIMEOUT_MS = 500;
+
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final String channel;
+    private volatile Thread listener;
+    private volatile boolean running;
+
+    public PostgresLiveBus(ObjectMapper objectMapper, LiveProps.Bus props, DataSource dataSource) {
+        super(objectMapper, props.flushInterval(), props.maxBatchSize(), MAX_PAYLOAD_BYTES);
+        // LISTEN takes an identifier, it cannot be bound as a parameter
+        if (props.channel() == null || !props.channel().matches("[a-z_][a-z0-9_]*")) {
+            throw new IllegalArgumentException("Invalid live bus channel name: " + props.channel());
+        }
+        this.dataSource = dataSource;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.channel = props.channel();
+    }
+
+    @Override
+    public void start() {
+        super.start();
+        running = true;
+        listener = Thread.ofVirtual().name("live-bus-listen").start(this::listen);
+    }
+
+    @Override
+    protected void send(String payload) {
+        jdbcTemplate.query("select pg_notify(?, ?)", rs -> {}, channel, payload);
+    }
+
+    private void listen() {
+        while (running) {
+            try (Connection connection = dataSource.getConnection();
+                 Statement statement = connection.createStatement()) {
+                statement.execute("LISTEN " + channel);
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                log.info("Listening for live samples on Postgres channel {}", channel);
+
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications(POLL_TIMEOUT_MS);
+                    if (notifications == null) {
+                        continue;
+                    }
+                    for (PGNotification notification : notifications) {
+                        receive(notification.getParameter());
+                    }
+                }
+            } catch (SQLException e) {
+                if (!running) {
+                    return;
+                }
+                log.warn("Live bus listener connection lost, reconnecting: {}", e.getMessage());
+                try {
+                    Thread.sleep(1000);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void stop() {
+        super.stop();
+        running = false;
+        Thread current = listener;
+        if (current != null) {
+            current.interrupt();
+        }
+    }
+}
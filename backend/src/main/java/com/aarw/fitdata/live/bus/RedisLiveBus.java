@@ -0,0 +1,56 @@
+package com.aarw.fitdata.live.bus;
+
+import com.aarw.fitdata.config.LiveProps;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import tools.jackson.databind.ObjectMapper;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Live bus over Redis pub/sub.
+ */
+public class RedisLiveBus extends AbstractBatchingLiveBus implements MessageListener {
+
+    // Redis itself accepts much larger messages, this only keeps single publishes cheap
+    private static final int MAX_PAYLOAD_BYTES = 64 * 1024;
+
+    private final StringRedisTemplate redisTemplate;
+    private final String channel;
+    private final RedisMessageListenerContainer listenerContainer;
+
+    public RedisLiveBus(ObjectMapper objectMapper,
+                        LiveProps.Bus props,
+                        StringRedisTemplate redisTemplate,
+                        RedisMessageListenerContainer listenerContainer) {
+        super(objectMapper, props.flushInterval(), props.maxBatchSize(), MAX_PAYLOAD_BYTES);
+        this.redisTemplate = redisTemplate;
+        this.channel = props.channel();
+        this.listenerContainer = listenerContainer;
+    }
+
+    @Override
+    public void start() {
+        super.start();
+        listenerContainer.addMessageListener(this, new ChannelTopic(channel));
+    }
+
+    @Override
+    public void stop() {
+        listenerContainer.removeMessageListener(this);
+        super.stop();
+    }
+
+    @Override
+    protected void send(String payload) {
+        redisTemplate.convertAndSend(channel, payload);
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        receive(new String(message.getBody(), StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,18 @@
+package com.aarw.fitdata.live.service;
+
+import lombok.Getter;
+
+import java.io.Serial;
+
+@Getter
+public class LiveCapacityExceededException extends RuntimeException {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    private final String limit;
+
+    public LiveCapacityExceededException(String message, String limit) {
+        super(message);
+        this.limit = limit;
+    }
+}
@@ -0,0 +1,281 @@
+package com.aarw.fitdata.live.service;
+
+import com.aarw.fitdata.config.LiveProps;
+import com.aarw.fitdata.exception.BadRequestException;
+import com.aarw.fitdata.live.aggregate.LiveAggregator;
+import com.aarw.fitdata.live.api.LiveAggregate;
+import com.aarw.fitdata.live.api.LiveResolution;
+import com.aarw.fitdata.live.api.LiveSample;
+import com.aarw.fitdata.live.bus.LiveBus;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Fans live samples out to connected subscribers.
+ * <p>
+ * Subscribers are kept in concurrent sets, so connects and disconnects do not copy the
+ * subscriber list the way a copy-on-write list would. A periodic heartbeat writes to every
+ * subscriber; ones whose writes fail, or that have not completed a write within the idle
+ * timeout, are reaped. The number of subscriptions is capped per user and per node.
+ */
+@Service
+public class LiveStreamService {
+
+    private static final Logger log = LoggerFactory.getLogger(LiveStreamService.class);
+
+    private final LiveAggregator aggregator;
+    private final LiveBus liveBus;
+    private final LiveProps.Subscribers limits;
+
+    private final AtomicReference<LiveSample> last = new AtomicReference<>();
+    private final Map<LiveResolution, Set<LiveSubscriber>> subscribers = new EnumMap<>(LiveResolution.class);
+    private final Map<LiveSubscriber, Registration> registrations = new ConcurrentHashMap<>();
+    private final Map<String, Integer> perUser = new ConcurrentHashMap<>();
+
+    private final Counter reaped;
+    private final Counter rejectedTotal;
+    private final Counter rejectedUser;
+
+    public LiveStreamService(LiveAggregator aggregator, LiveBus liveBus, LiveProps liveProps, MeterRegistry meterRegistry) {
+        this.aggregator = aggregator;
+        this.liveBus = liveBus;
+        this.limits = liveProps.subscribers();
+        for (LiveResolution resolution : LiveResolution.values()) {
+            subscribers.put(resolution, ConcurrentHashMap.newKeySet());
+        }
+
+        Gauge.builder("live.subscribers.active", registrations, Map::size)
+                .description("Connected live subscribers")
+                .register(meterRegistry);
+        this.reaped = Counter.builder("live.subscribers.reaped")
+                .description("Subscribers dropped after a failed or stalled write")
+                .register(meterRegistry);
+        this.rejectedTotal = Counter.builder("live.subscribers.rejected")
+                .tag("limit", "total")
+                .register(meterRegistry);
+        this.rejectedUser = Counter.builder("live.subscribers.rejected")
+                .tag("limit", "user")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Runs before the bus is started, see {@link com.aarw.fitdata.live.bus.AbstractBatchingLiveBus}.
+     */
+    @PostConstruct
+    void subscribeToBus() {
+        liveBus.subscribe(this::deliver);
+    }
+
+    /**
+     * Accepts a sample posted to this node: local subscribers are served right away and the
+     * sample is handed to the bus for the other nodes.
+     *
+     * @throws BadRequestException if the steps are negative or do not fit the binary protocol's i32
+     */
+    public void ingest(LiveSample sample) {
+        if (sample.steps() != null && (sample.steps() < 0 || sample.steps() > Integer.MAX_VALUE)) {
+            throw new BadRequestException("steps " + sample.steps() + " is out of range");
+        }
+        deliver(sample);
+        liveBus.publish(sample);
+    }
+
+    /**
+     * @throws LiveCapacityExceededException if the user or this node has no subscription left
+     */
+    public SseEmitter subscribe(LiveResolution resolution, String userId) {
+        // Streams are recycled after a while; EventSource reconnects on its own
+        SseEmitter emitter = new SseEmitter(limits.maxConnectionAge().toMillis());
+        SseLiveSubscriber subscriber = new SseLiveSubscriber(emitter);
+
+        emitter.onCompletion(() -> unregister(subscriber));
+        // Completing ends the request normally instead of raising AsyncRequestTimeoutException
+        emitter.onTimeout(() -> {
+            unregister(subscriber);
+            emitter.complete();
+        });
+        emitter.onError(_ -> unregister(subscriber));
+
+        register(resolution, subscriber, userId);
+        return emitter;
+    }
+
+    /**
+     * Adds the subscriber to the given resolution and sends it the latest sample or closed window,
+     * if there is one. A subscriber that is already registered is moved to the new resolution
+     * without counting against the limits again.
+     *
+     * @throws LiveCapacityExceededException if the user or this node has no subscription left
+     */
+    public void register(LiveResolution resolution, LiveSubscriber subscriber, String userId) {
+        Registration registration = new Registration(resolution, userId);
+        Registration previous;
+        synchronized (registrations) {
+            previous = registrations.get(subscriber);
+            if (previous == null) {
+                if (registrations.size() >= limits.maxTotal()) {
+                    rejectedTotal.increment();
+                    throw new LiveCapacityExceededException("Live subscriber limit reached", "total");
+                }
+                if (perUser.getOrDefault(userId, 0) >= limits.maxPerUser()) {
+                    rejectedUser.increment();
+                    throw new LiveCapacityExceededException("Live subscriber limit reached for user", "user");
+                }
+                perUser.merge(userId, 1, Integer::sum);
+            } else if (!previous.userId.equals(userId)) {
+                throw new IllegalArgumentException("Subscriber is registered to another user");
+            }
+            registrations.put(subscriber, registration);
+        }
+        if (previous != null) {
+            subscribers.get(previous.resolution).remove(subscriber);
+        }
+        subscribers.get(resolution).add(subscriber);
+
+        try {
+            if (resolution.isAggregated()) {
+                LiveAggregate existing = aggregator.lastClosed(resolution);
+                if (existing != null) {
+                    subscriber.sendAggregate(existing);
+                }
+            } else {
+                LiveSample existing = last.get();
+                if (existing != null) {
+                    subscriber.sendSample(existing);
+                }
+            }
+        } catch (IOException e) {
+            reap(subscriber);
+        }
+    }
+
+    public void unregister(LiveSubscriber subscriber) {
+        Registration registration;
+        synchronized (registrations) {
+            registration = registrations.remove(subscriber);
+            if (registration == null) {
+                return;
+            }
+            perUser.computeIfPresent(registration.userId, (_, count) -> count > 1 ? count - 1 : null);
+        }
+        subscribers.get(registration.resolution).remove(subscriber);
+    }
+
+    /**
+     * Writes a keep-alive to every subscriber and reaps the ones that are broken or stalled.
+     * <p>
+     * The writes run on virtual threads: a write to a half-open connection can block until the
+     * socket times out, which must not hold up the scheduler or the other subscribers. A
+     * subscriber whose previous heartbeat is still blocked is skipped, and eventually reaped by the
+     * idle check.
+     */
+    @Scheduled(fixedDelayString = "${live.subscribers.heartbeat-interval}")
+    public void heartbeat() {
+        long idleBefore = System.currentTimeMillis() - limits.idleTimeout().toMillis();
+
+        registrations.forEach((subscriber, registration) -> {
+            if (registration.lastWrite < idleBefore) {
+                log.debug("Reaping live subscriber of {} idle since {}", registration.userId, registration.lastWrite);
+                reap(subscriber);
+                return;
+            }
+            if (!registration.heartbeatPending.compareAndSet(false, true)) {
+                return;
+            }
+            Thread.ofVirtual().name("live-heartbeat").start(() -> {
+                try {
+                    subscriber.heartbeat();
+                    registration.touch();
+                } catch (IOException e) {
+                    reap(subscriber);
+                } finally {
+                    registration.heartbeatPending.set(false);
+                }
+            });
+        });
+    }
+
+    /**
+     * Sends the windows that ended without a later sample closing them.
+     */
+    @Scheduled(fixedRate = 250)
+    public void closeEndedWindows() {
+        sendAggregates(aggregator.closeEnded(System.currentTimeMillis()));
+    }
+
+    private void reap(LiveSubscriber subscriber) {
+        if (registrations.containsKey(subscriber)) {
+            unregister(subscriber);
+            reaped.increment();
+            subscriber.close();
+        }
+    }
+
+    private void deliver(LiveSample sample) {
+        last.set(sample);
+
+        for (LiveSubscriber subscriber : subscribers.get(LiveResolution.RAW)) {
+            try {
+                subscriber.sendSample(sample);
+                touch(subscriber);
+            } catch (IOException e) {
+                reap(subscriber);
+            }
+        }
+
+        // Aggregated subscribers are only woken up when one of their windows closes
+        sendAggregates(aggregator.accept(sample));
+    }
+
+    private void sendAggregates(List<LiveAggregate> aggregates) {
+        for (LiveAggregate aggregate : aggregates) {
+            for (LiveSubscriber subscriber : subscribers.get(LiveResolution.fromParam(aggregate.resolution()))) {
+                try {
+                    subscriber.sendAggregate(aggregate);
+                    touch(subscriber);
+                } catch (IOException e) {
+                    reap(subscriber);
+                }
+            }
+        }
+    }
+
+    private void touch(LiveSubscriber subscriber) {
+        Registration registration = registrations.get(subscriber);
+        if (registration != null) {
+            registration.touch();
+        }
+    }
+
+    private static final class Registration {
+        final LiveResolution resolution;
+        final String userId;
+        final AtomicBoolean heartbeatPending = new AtomicBoolean();
+        volatile long lastWrite = System.currentTimeMillis();
+
+        Registration(LiveResolution resolution, String userId) {
+            this.resolution = resolution;
+            this.userId = userId;
+        }
+
+        void touch() {
+            lastWrite = System.currentTimeMillis();
+        }
+    }
+}
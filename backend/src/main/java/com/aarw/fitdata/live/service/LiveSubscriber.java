@@ -0,0 +1,27 @@
+package com.aarw.fitdata.live.service;
+
+import com.aarw.fitdata.live.api.LiveAggregate;
+import com.aarw.fitdata.live.api.LiveSample;
+
+import java.io.IOException;
+
+/**
+ * A connected client of the live stream. Subscribers registered for {@link com.aarw.fitdata.live.api.LiveResolution#RAW}
+ * receive samples, all others receive aggregates. A failed send unregisters the subscriber.
+ */
+public interface LiveSubscriber {
+
+    void sendSample(LiveSample sample) throws IOException;
+
+    void sendAggregate(LiveAggregate aggregate) throws IOException;
+
+    /**
+     * Writes a keep-alive that the client ignores, so broken connections surface as a failed send.
+     */
+    void heartbeat() throws IOException;
+
+    /**
+     * Closes the underlying connection after the subscriber has been reaped.
+     */
+    void close();
+}
@@ -0,0 +1,54 @@
+package com.aarw.fitdata.live.service;
+
+import com.aarw.fitdata.live.api.LiveAggregate;
+import com.aarw.fitdata.live.api.LiveSample;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+
+class SseLiveSubscriber implements LiveSubscriber {
+
+    private final SseEmitter emitter;
+
+    SseLiveSubscriber(SseEmitter emitter) {
+        this.emitter = emitter;
+    }
+
+    @Override
+    public void sendSample(LiveSample sample) throws IOException {
+        send(sample);
+    }
+
+    @Override
+    public void sendAggregate(LiveAggregate aggregate) throws IOException {
+        send(aggregate);
+    }
+
+    @Override
+    public void heartbeat() throws IOException {
+        try {
+            emitter.send(SseEmitter.event().comment("hb"));
+        } catch (IllegalStateException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            emitter.complete();
+        } catch (Exception ignored) {
+            // already completed
+        }
+    }
+
+    private void send(Object payload) throws IOException {
+        try {
+            emitter.send(payload, MediaType.APPLICATION_JSON);
+        } catch (IllegalStateException e) {
+            // emitter already completed
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+}
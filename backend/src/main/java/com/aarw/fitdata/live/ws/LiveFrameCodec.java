@@ -0,0 +1,218 @@
+package com.aarw.fitdata.live.ws;
+
+import com.aarw.fitdata.live.api.LiveAggregate;
+import com.aarw.fitdata.live.api.LiveResolution;
+import com.aarw.fitdata.live.api.LiveSample;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Binary framing of the live WebSocket protocol. All fields are big-endian and fixed-width.
+ *
+ * <pre>
+ * SAMPLE      0x01 | flags u8 | ts | [hr f32] [steps i32] [distance_m f32] [calories f32]
+ * AGGREGATE   0x02 | flags u8 | resolution u8 | ts | count i32
+ *                  | [hr_min f32, hr_max f32, hr_mean f32] [steps i32] [distance_m f32] [calories f32]
+ * SUBSCRIBE   0x10 | resolution u8
+ * UNSUBSCRIBE 0x11
+ * </pre>
+ *
+ * The low four flag bits mark which of the nullable fields are present (hr, steps, distance,
+ * calories). {@code ts} is an i32 millisecond delta to the previous timestamp in the same
+ * direction of the connection, or an absolute i64 epoch millisecond value when flag bit 0x80 is set
+ * (first frame, or a gap that does not fit 32 bits). A full sample is at most 26 bytes.
+ */
+public final class LiveFrameCodec {
+
+    public static final byte SAMPLE = 0x01;
+    public static final byte AGGREGATE = 0x02;
+    public static final byte SUBSCRIBE = 0x10;
+    public static final byte UNSUBSCRIBE = 0x11;
+
+    private static final int HR = 0x01;
+    private static final int STEPS = 0x02;
+    private static final int DISTANCE = 0x04;
+    private static final int CALORIES = 0x08;
+    private static final int ABSOLUTE_TS = 0x80;
+
+    private static final LiveResolution[] RESOLUTIONS = LiveResolution.values();
+
+    private LiveFrameCodec() {}
+
+    public sealed interface Frame permits SampleFrame, AggregateFrame, SubscribeFrame, UnsubscribeFrame {}
+
+    public record SampleFrame(LiveSample sample) implements Frame {}
+
+    public record AggregateFrame(LiveAggregate aggregate) implements Frame {}
+
+    public record SubscribeFrame(LiveResolution resolution) implements Frame {}
+
+    public record UnsubscribeFrame() implements Frame {}
+
+    public static ByteBuffer encodeSubscribe(LiveResolution resolution) {
+        ByteBuffer buf = ByteBuffer.allocate(2);
+        buf.put(SUBSCRIBE).put((byte) resolution.ordinal());
+        return buf.flip();
+    }
+
+    public static ByteBuffer encodeUnsubscribe() {
+        ByteBuffer buf = ByteBuffer.allocate(1);
+        buf.put(UNSUBSCRIBE);
+        return buf.flip();
+    }
+
+    /**
+     * Encodes outgoing frames of one connection. Keeps the last timestamp, so not thread-safe. A
+     * frame that cannot be encoded throws before the timestamp is taken as the next delta base.
+     */
+    public static final class Encoder {
+
+        private long lastTs;
+        private boolean hasLast;
+
+        /**
+         * @throws ArithmeticException if the steps do not fit the i32 field
+         */
+        public ByteBuffer encodeSample(LiveSample sample) {
+            Integer steps = sample.steps() == null ? null : Math.toIntExact(sample.steps());
+            int mask = presence(sample.hr(), sample.steps(), sample.distance_m(), sample.calories());
+            boolean absolute = useAbsolute(sample.ts());
+
+            ByteBuffer buf = ByteBuffer.allocate(2 + (absolute ? 8 : 4) + 4 * Integer.bitCount(mask));
+            buf.put(SAMPLE).put((byte) (mask | (absolute ? ABSOLUTE_TS : 0)));
+            putTs(buf, sample.ts(), absolute);
+            if (sample.hr() != null) buf.putFloat(sample.hr().floatValue());
+            if (steps != null) buf.putInt(steps);
+            if (sample.distance_m() != null) buf.putFloat(sample.distance_m().floatValue());
+            if (sample.calories() != null) buf.putFloat(sample.calories().floatValue());
+            return buf.flip();
+        }
+
+        /**
+         * @throws ArithmeticException if the steps do not fit the i32 field
+         */
+        public ByteBuffer encodeAggregate(LiveAggregate aggregate) {
+            Integer steps = aggregate.steps() == null ? null : Math.toIntExact(aggregate.steps());
+            boolean hasHr = aggregate.hr_min() != null && aggregate.hr_max() != null && aggregate.hr_mean() != null;
+            int mask = (hasHr ? HR : 0) | presence(null, aggregate.steps(), aggregate.distance_m(), aggregate.calories());
+            boolean absolute = useAbsolute(aggregate.ts());
+
+            int size = 3 + (absolute ? 8 : 4) + 4 + (hasHr ? 12 : 0) + 4 * Integer.bitCount(mask & ~HR);
+            ByteBuffer buf = ByteBuffer.allocate(size);
+            buf.put(AGGREGATE)
+                    .put((byte) (mask | (absolute ? ABSOLUTE_TS : 0)))
+                    .put((byte) LiveResolution.fromParam(aggregate.resolution()).ordinal());
+            putTs(buf, aggregate.ts(), absolute);
+            buf.putInt(aggregate.count());
+            if (hasHr) {
+                buf.putFloat(aggregate.hr_min().floatValue())
+                        .putFloat(aggregate.hr_max().floatValue())
+                        .putFloat(aggregate.hr_mean().floatValue());
+            }
+            if (steps != null) buf.putInt(steps);
+            if (aggregate.distance_m() != null) buf.putFloat(aggregate.distance_m().floatValue());
+            if (aggregate.calories() != null) buf.putFloat(aggregate.calories().floatValue());
+            return buf.flip();
+        }
+
+        private boolean useAbsolute(long ts) {
+            return !hasLast || ts - lastTs > Integer.MAX_VALUE || ts - lastTs < Integer.MIN_VALUE;
+        }
+
+        private void putTs(ByteBuffer buf, long ts, boolean absolute) {
+            if (absolute) {
+                buf.putLong(ts);
+            } else {
+                buf.putInt((int) (ts - lastTs));
+            }
+            lastTs = ts;
+            hasLast = true;
+        }
+    }
+
+    /**
+     * Decodes incoming frames of one connection. Keeps the last timestamp, so not thread-safe.
+     */
+    public static final class Decoder {
+
+        private long lastTs;
+        private boolean hasLast;
+
+        /**
+         * @throws IllegalArgumentException if the frame is truncated or of an unknown type
+         */
+        public Frame decode(ByteBuffer buf) {
+            try {
+                byte type = buf.get();
+                return switch (type) {
+                    case SAMPLE -> decodeSample(buf);
+                    case AGGREGATE -> decodeAggregate(buf);
+                    case SUBSCRIBE -> new SubscribeFrame(resolution(buf.get()));
+                    case UNSUBSCRIBE -> new UnsubscribeFrame();
+                    default -> throw new IllegalArgumentException("Unknown live frame type: " + type);
+                };
+            } catch (BufferUnderflowException e) {
+                throw new IllegalArgumentException("Truncated live frame", e);
+            }
+        }
+
+        private SampleFrame decodeSample(ByteBuffer buf) {
+            int flags = buf.get() & 0xFF;
+            long ts = readTs(buf, flags);
+            Double hr = (flags & HR) != 0 ? (double) buf.getFloat() : null;
+            Long steps = (flags & STEPS) != 0 ? (long) buf.getInt() : null;
+            Double distance = (flags & DISTANCE) != 0 ? (double) buf.getFloat() : null;
+            Double calories = (flags & CALORIES) != 0 ? (double) buf.getFloat() : null;
+            return new SampleFrame(new LiveSample(ts, hr, steps, distance, calories));
+        }
+
+        private AggregateFrame decodeAggregate(ByteBuffer buf) {
+            int flags = buf.get() & 0xFF;
+            LiveResolution resolution = resolution(buf.get());
+            long ts = readTs(buf, flags);
+            int count = buf.getInt();
+            Double hrMin = null, hrMax = null, hrMean = null;
+            if ((flags & HR) != 0) {
+                hrMin = (double) buf.getFloat();
+                hrMax = (double) buf.getFloat();
+                hrMean = (double) buf.getFloat();
+            }
+            Long steps = (flags & STEPS) != 0 ? (long) buf.getInt() : null;
+            Double distance = (flags & DISTANCE) != 0 ? (double) buf.getFloat() : null;
+            Double calories = (flags & CALORIES) != 0 ? (double) buf.getFloat() : null;
+            return new AggregateFrame(new LiveAggregate(
+                    resolution.param(), ts, resolution.windowMillis(), count,
+                    hrMin, hrMax, hrMean, steps, distance, calories
+            ));
+        }
+
+        private long readTs(ByteBuffer buf, int flags) {
+            long ts;
+            if ((flags & ABSOLUTE_TS) != 0) {
+                ts = buf.getLong();
+            } else if (hasLast) {
+                ts = lastTs + buf.getInt();
+            } else {
+                throw new IllegalArgumentException("First live frame must carry an absolute timestamp");
+            }
+            lastTs = ts;
+            hasLast = true;
+            return ts;
+        }
+    }
+
+    private static int presence(Double hr, Long steps, Double distance, Double calories) {
+        return (hr != null ? HR : 0)
+                | (steps != null ? STEPS : 0)
+                | (distance != null ? DISTANCE : 0)
+                | (calories != null ? CALORIES : 0);
+    }
+
+    private static LiveResolution resolution(byte code) {
+        if (code < 0 || code >= RESOLUTIONS.length) {
+            throw new IllegalArgumentException("Unknown live resolution code: " + code);
+        }
+        return RESOLUTIONS[code];
+    }
+}
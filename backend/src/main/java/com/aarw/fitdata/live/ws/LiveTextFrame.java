@@ -0,0 +1,27 @@
+package com.aarw.fitdata.live.ws;
+
+import com.aarw.fitdata.live.api.LiveAggregate;
+import com.aarw.fitdata.live.api.LiveSample;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * JSON fallback of the live WebSocket protocol, sent as text messages.
+ * <p>
+ * {@code type} is one of {@code sample}, {@code aggregate}, {@code subscribe} or
+ * {@code unsubscribe}; only the field matching the type is set.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record LiveTextFrame(
+        String type,
+        String resolution,
+        LiveSample sample,
+        LiveAggregate aggregate
+) {
+    static LiveTextFrame of(LiveSample sample) {
+        return new LiveTextFrame("sample", null, sample, null);
+    }
+
+    static LiveTextFrame of(LiveAggregate aggregate) {
+        return new LiveTextFrame("aggregate", null, null, aggregate);
+    }
+}
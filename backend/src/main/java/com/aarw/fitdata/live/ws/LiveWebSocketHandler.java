@@ -0,0 +1,123 @@
+package com.aarw.fitdata.live.ws;
+
+import com.aarw.fitdata.live.api.LiveResolution;
+import com.aarw.fitdata.live.service.LiveCapacityExceededException;
+import com.aarw.fitdata.live.service.LiveStreamService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.AbstractWebSocketHandler;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Live ingest and subscription over a single WebSocket connection.
+ * <p>
+ * Binary messages use {@link LiveFrameCodec}; text messages carry {@link LiveTextFrame} JSON.
+ * Pushes to a client use the encoding of the message it subscribed with.
+ */
+@Component
+public class LiveWebSocketHandler extends AbstractWebSocketHandler {
+
+    private static final Logger log = LoggerFactory.getLogger(LiveWebSocketHandler.class);
+
+    private final LiveStreamService liveStreamService;
+    private final ObjectMapper objectMapper;
+
+    private final Map<String, LiveWebSocketSubscriber> connections = new ConcurrentHashMap<>();
+
+    public LiveWebSocketHandler(LiveStreamService liveStreamService, ObjectMapper objectMapper) {
+        this.liveStreamService = liveStreamService;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) {
+        connections.put(session.getId(), new LiveWebSocketSubscriber(session, objectMapper));
+    }
+
+    @Override
+    protected void handleBinaryMessage(WebSocketSession session, BinaryMessage message) throws IOException {
+        LiveWebSocketSubscriber subscriber = connections.get(session.getId());
+        if (subscriber == null) {
+            return;
+        }
+
+        LiveFrameCodec.Frame frame;
+        try {
+            frame = subscriber.decoder().decode(message.getPayload());
+        } catch (IllegalArgumentException e) {
+            log.debug("Closing live socket {}: {}", session.getId(), e.getMessage());
+            session.close(CloseStatus.BAD_DATA.withReason(e.getMessage()));
+            return;
+        }
+
+        switch (frame) {
+            case LiveFrameCodec.SampleFrame f -> liveStreamService.ingest(f.sample());
+            case LiveFrameCodec.SubscribeFrame f -> subscribe(subscriber, f.resolution(), true);
+            case LiveFrameCodec.UnsubscribeFrame _ -> liveStreamService.unregister(subscriber);
+            case LiveFrameCodec.AggregateFrame _ ->
+                    session.close(CloseStatus.BAD_DATA.withReason("Aggregates are server-to-client only"));
+        }
+    }
+
+    @Override
+    protected void handleTextMessage(WebSocketSession session, TextMessage message) throws IOException {
+        LiveWebSocketSubscriber subscriber = connections.get(session.getId());
+        if (subscriber == null) {
+            return;
+        }
+
+        try {
+            LiveTextFrame frame = objectMapper.readValue(message.getPayload(), LiveTextFrame.class);
+            switch (frame.type() == null ? "" : frame.type()) {
+                case "sample" -> {
+                    if (frame.sample() == null) {
+                        throw new IllegalArgumentException("Sample frame without sample");
+                    }
+                    liveStreamService.ingest(frame.sample());
+                }
+                case "subscribe" -> subscribe(subscriber, LiveResolution.fromParam(frame.resolution()), false);
+                case "unsubscribe" -> liveStreamService.unregister(subscriber);
+                default -> throw new IllegalArgumentException("Unsupported live frame type: " + frame.type());
+            }
+        } catch (IllegalArgumentException | tools.jackson.core.JacksonException e) {
+            log.debug("Closing live socket {}: {}", session.getId(), e.getMessage());
+            session.close(CloseStatus.BAD_DATA);
+        }
+    }
+
+    @Override
+    public void handleTransportError(WebSocketSession session, Throwable exception) {
+        log.debug("Live socket {} transport error: {}", session.getId(), exception.getMessage());
+        release(session);
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        release(session);
+    }
+
+    private void subscribe(LiveWebSocketSubscriber subscriber, LiveResolution resolution, boolean binary) throws IOException {
+        subscriber.useBinary(binary);
+        try {
+            liveStreamService.register(resolution, subscriber, subscriber.userId());
+        } catch (LiveCapacityExceededException e) {
+            subscriber.session().close(CloseStatus.SERVICE_OVERLOAD.withReason(e.getMessage()));
+        }
+    }
+
+    private void release(WebSocketSession session) {
+        LiveWebSocketSubscriber subscriber = connections.remove(session.getId());
+        if (subscriber != null) {
+            liveStreamService.unregister(subscriber);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.aarw.fitdata.live.ws;
+
+import com.aarw.fitdata.live.api.LiveAggregate;
+import com.aarw.fitdata.live.api.LiveSample;
+import com.aarw.fitdata.live.service.LiveSubscriber;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.PingMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+import org.springframework.web.socket.handler.SessionLimitExceededException;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.security.Principal;
+
+/**
+ * Per-connection state: the decorated session, the frame codecs and whether the client talks
+ * binary or JSON (taken from the message type of its last subscribe).
+ */
+class LiveWebSocketSubscriber implements LiveSubscriber {
+
+    private static final int SEND_TIME_LIMIT_MS = 5_000;
+    private static final int BUFFER_SIZE_LIMIT = 64 * 1024;
+
+    private final WebSocketSession session;
+    private final ObjectMapper objectMapper;
+    private final LiveFrameCodec.Encoder encoder = new LiveFrameCodec.Encoder();
+    private final LiveFrameCodec.Decoder decoder = new LiveFrameCodec.Decoder();
+
+    private final String userId;
+
+    private volatile boolean binary = true;
+
+    LiveWebSocketSubscriber(WebSocketSession session, ObjectMapper objectMapper) {
+        this.session = new ConcurrentWebSocketSessionDecorator(session, SEND_TIME_LIMIT_MS, BUFFER_SIZE_LIMIT);
+        this.objectMapper = objectMapper;
+        Principal principal = session.getPrincipal();
+        this.userId = principal != null ? principal.getName() : "anonymous";
+    }
+
+    String userId() {
+        return userId;
+    }
+
+    LiveFrameCodec.Decoder decoder() {
+        return decoder;
+    }
+
+    void useBinary(boolean binary) {
+        this.binary = binary;
+    }
+
+    WebSocketSession session() {
+        return session;
+    }
+
+    // Encoding and enqueueing happen under one lock so timestamp deltas reach the client in order
+    @Override
+    public synchronized void sendSample(LiveSample sample) throws IOException {
+        if (binary) {
+            send(new BinaryMessage(encoder.encodeSample(sample)));
+        } else {
+            send(new TextMessage(objectMapper.writeValueAsString(LiveTextFrame.of(sample))));
+        }
+    }
+
+    @Override
+    public synchronized void sendAggregate(LiveAggregate aggregate) throws IOException {
+        if (binary) {
+            send(new BinaryMessage(encoder.encodeAggregate(aggregate)));
+        } else {
+            send(new TextMessage(objectMapper.writeValueAsString(LiveTextFrame.of(aggregate))));
+        }
+    }
+
+    @Override
+    public void heartbeat() throws IOException {
+        send(new PingMessage());
+    }
+
+    @Override
+    public void close() {
+        try {
+            session.close(CloseStatus.SESSION_NOT_RELIABLE);
+        } catch (IOException ignored) {
+            // connection already gone
+        }
+    }
+
+    private void send(WebSocketMessage<?> message) throws IOException {
+        try {
+            session.sendMessage(message);
+        } catch (SessionLimitExceededException e) {
+            // The decorator already closed the session of this slow consumer
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+}
@@ -3,6 +3,8 @@ package com.aarw.fitdata.oauth;
 import com.aarw.fitdata.config.FitbitProps;
 import com.aarw.fitdata.oauth.token.FitbitTokenEntity;
 import com.aarw.fitdata.oauth.token.FitbitTokenRepository;
+import com.aarw.fitdata.sync.BackfillService;
+import com.aarw.fitdata.sync.SyncService;
 import jakarta.servlet.http.HttpSession;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -39,11 +41,19 @@ public class FitbitOAuthController {
     private final FitbitProps props;
     private final WebClient webClient;
     private final FitbitTokenRepository tokenRepository;
-
-    public FitbitOAuthController(FitbitProps props, WebClient.Builder builder, FitbitTokenRepository tokenRepository) {
+    private final SyncService syncService;
+    private final BackfillService backfillService;
+
+    public FitbitOAuthController(FitbitProps props,
+                                 WebClient.Builder builder,
+                                 FitbitTokenRepository tokenRepository,
+                                 SyncService syncService,
+                                 BackfillService backfillService) {
         this.props = props;
         this.webClient = builder.build();
         this.tokenRepository = tokenRepository;
+        this.syncService = syncService;
+        this.backfillService = backfillService;
     }
 
     @GetMapping("/oauth/fitbit/start")
@@ -157,6 +167,9 @@ public class FitbitOAuthController {
             entity.setExpiresAt(resp.expiresAt());
 
             tokenRepository.save(entity);
+            // Import the history in the background, so the first long-range charts are local
+            syncService.start(resp.userId());
+            backfillService.start(resp.userId());
 
             // Establish SecurityContext for the session
             UsernamePasswordAuthenticationToken auth = new UsernamePasswordAuthenticationToken(
@@ -45,6 +45,13 @@ public class FitbitTokenEntity {
     @Column(name = "expires_at", nullable = false)
     private Instant expiresAt;
 
+    /**
+     * Timezone of the Fitbit profile, written by {@link FitbitTokenRepository#updateTimezone} only.
+     */
+    @Getter
+    @Column(name = "timezone", length = 64, insertable = false, updatable = false)
+    private String timezone;
+
     @Getter
     @Column(name = "created_at", nullable = false)
     private Instant createdAt;
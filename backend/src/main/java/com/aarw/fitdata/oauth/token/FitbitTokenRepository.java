@@ -1,9 +1,20 @@
 package com.aarw.fitdata.oauth.token;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Optional;
 
 public interface FitbitTokenRepository extends JpaRepository<FitbitTokenEntity, Long> {
     Optional<FitbitTokenEntity> findByFitbitUserId(String fitbitUserId);
+
+    /**
+     * Sets the timezone alone, so it never races a token refresh saving the entity.
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE FitbitTokenEntity t SET t.timezone = :timezone WHERE t.fitbitUserId = :fitbitUserId")
+    int updateTimezone(String fitbitUserId, String timezone);
 }
\ No newline at end of file
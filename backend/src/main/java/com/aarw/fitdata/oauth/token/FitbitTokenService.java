@@ -35,12 +35,23 @@ public class FitbitTokenService {
     }
 
     public FitbitTokenEntity getValidTokenOrThrow() {
-        String userId = SecurityContextHolder.getContext().getAuthentication() != null 
-                ? SecurityContextHolder.getContext().getAuthentication().getName() 
-                : null;
+        return refreshIfNeeded(currentToken());
+    }
+
+    /**
+     * The Fitbit user id of the current user, without refreshing the token, for reads of stored
+     * data that make no Fitbit call.
+     */
+    public String currentUserId() {
+        String userId = authenticatedUserId();
+        return userId != null ? userId : currentToken().getFitbitUserId();
+    }
+
+    private FitbitTokenEntity currentToken() {
+        String userId = authenticatedUserId();
 
         FitbitTokenEntity token;
-        if (userId != null && !"anonymousUser".equals(userId)) {
+        if (userId != null) {
             token = repo.findByFitbitUserId(userId)
                     .orElseThrow(() -> new IllegalStateException("No Fitbit token found for user: " + userId));
         } else {
@@ -48,7 +59,27 @@ public class FitbitTokenService {
             token = repo.findAll().stream().findFirst()
                     .orElseThrow(() -> new IllegalStateException("No Fitbit token found. Connect Fitbit first."));
         }
+        return token;
+    }
+
+    private static String authenticatedUserId() {
+        String userId = SecurityContextHolder.getContext().getAuthentication() != null
+                ? SecurityContextHolder.getContext().getAuthentication().getName()
+                : null;
+        return "anonymousUser".equals(userId) ? null : userId;
+    }
+
+    /**
+     * Same as {@link #getValidTokenOrThrow()} for a known user, for work that runs outside of a
+     * request (background jobs) and therefore has no security context.
+     */
+    public FitbitTokenEntity getValidTokenForUser(String fitbitUserId) {
+        FitbitTokenEntity token = repo.findByFitbitUserId(fitbitUserId)
+                .orElseThrow(() -> new IllegalStateException("No Fitbit token found for user: " + fitbitUserId));
+        return refreshIfNeeded(token);
+    }
 
+    private FitbitTokenEntity refreshIfNeeded(FitbitTokenEntity token) {
         if (token.getExpiresAt() != null && token.getExpiresAt().isAfter(Instant.now().plusSeconds(30))) {
             return token;
         }
@@ -0,0 +1,50 @@
+package com.aarw.fitdata.series;
+
+import com.aarw.fitdata.dto.SeriesDto;
+import com.aarw.fitdata.exception.BadRequestException;
+import com.aarw.fitdata.fitbit.controller.HttpCaching;
+import com.aarw.fitdata.fitbit.util.StepsRangeCalculator;
+import com.aarw.fitdata.history.DailyMetric;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+@RestController
+public class SeriesController {
+
+    private final SeriesService seriesService;
+    private final HttpCaching httpCaching;
+
+    public SeriesController(SeriesService seriesService, HttpCaching httpCaching) {
+        this.seriesService = seriesService;
+        this.httpCaching = httpCaching;
+    }
+
+    /**
+     * @param metrics any of {@code steps}, {@code rhr}, {@code weight}, {@code hrv} and {@code sleepScore}
+     */
+    @GetMapping("/api/series")
+    public ResponseEntity<SeriesDto> series(
+            @RequestParam List<String> metrics,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate start,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate end,
+            HttpServletRequest request
+    ) {
+        LocalDate effectiveEnd = end == null ? LocalDate.now() : end;
+        StepsRangeCalculator.checkWindow(start, effectiveEnd);
+        List<SeriesMetric> parsed = metrics.stream().map(SeriesMetric::fromParam).distinct().toList();
+        if (parsed.isEmpty()) {
+            throw new BadRequestException("metrics is empty");
+        }
+        Set<DailyMetric> groups = parsed.stream().map(SeriesMetric::group).collect(Collectors.toSet());
+        return httpCaching.stored(request, groups, start, effectiveEnd, () -> seriesService.getSeries(parsed, start, effectiveEnd));
+    }
+}
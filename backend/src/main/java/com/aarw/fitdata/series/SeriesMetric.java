@@ -0,0 +1,58 @@
+package com.aarw.fitdata.series;
+
+import com.aarw.fitdata.exception.BadRequestException;
+import com.aarw.fitdata.history.DailyMetric;
+import com.aarw.fitdata.history.DailyMetrics;
+
+import java.util.Arrays;
+import java.util.function.Function;
+
+/**
+ * Daily values that can be combined in one {@code /api/series} response.
+ */
+public enum SeriesMetric {
+    STEPS("steps", DailyMetric.STEPS, DailyMetrics::steps),
+    RESTING_HR("rhr", DailyMetric.HEART, DailyMetrics::restingHr),
+    WEIGHT("weight", DailyMetric.WEIGHT, DailyMetrics::weightKg),
+    HRV("hrv", DailyMetric.HRV, DailyMetrics::hrv),
+    SLEEP_SCORE("sleepScore", DailyMetric.SLEEP, DailyMetrics::sleepScore);
+
+    private final String paramName;
+    private final DailyMetric group;
+    private final Function<DailyMetrics, Number> value;
+
+    SeriesMetric(String paramName, DailyMetric group, Function<DailyMetrics, Number> value) {
+        this.paramName = paramName;
+        this.group = group;
+        this.value = value;
+    }
+
+    /**
+     * The name in the {@code metrics} parameter and of the column in the response.
+     */
+    public String paramName() {
+        return paramName;
+    }
+
+    public DailyMetric group() {
+        return group;
+    }
+
+    /**
+     * @return the metric's value on the row's day, {@code null} if there is none
+     */
+    public Number value(DailyMetrics row) {
+        return value.apply(row);
+    }
+
+    /**
+     * @throws BadRequestException for an unknown name
+     */
+    public static SeriesMetric fromParam(String name) {
+        return Arrays.stream(values())
+                .filter(it -> it.paramName.equals(name))
+                .findFirst()
+                .orElseThrow(() -> new BadRequestException("Unknown metric " + name + ", expected one of "
+                        + Arrays.stream(values()).map(SeriesMetric::paramName).toList()));
+    }
+}
@@ -0,0 +1,107 @@
+package com.aarw.fitdata.series;
+
+import com.aarw.fitdata.dto.SeriesDto;
+import com.aarw.fitdata.fitbit.util.StepsRangeCalculator;
+import com.aarw.fitdata.history.DailyMetric;
+import com.aarw.fitdata.history.DailyMetrics;
+import com.aarw.fitdata.history.DailyMetricsFetcher;
+import com.aarw.fitdata.history.DailyMetricsStore;
+import com.aarw.fitdata.oauth.token.FitbitTokenEntity;
+import com.aarw.fitdata.oauth.token.FitbitTokenService;
+import com.aarw.fitdata.tracing.FanOut;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * Joins daily metrics into one date-aligned series.
+ * <p>
+ * Every metric group is loaded once, all of them concurrently, through the daily metrics history;
+ * only days it does not have yet are fetched from Fitbit, sleep included, in ranges of up to 100
+ * nights. A night without sleep has no score.
+ */
+@Service
+public class SeriesService {
+
+    /**
+     * Longest window served, three years of daily rows.
+     */
+    static final int MAX_DAYS = StepsRangeCalculator.MAX_WINDOW_DAYS;
+
+    // Groups block on WebClient calls, like the snapshot sections
+    private static final Executor GROUPS = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("series-group-", 0).factory());
+
+    private final FitbitTokenService tokenService;
+    private final DailyMetricsStore dailyMetricsStore;
+    private final DailyMetricsFetcher dailyMetricsFetcher;
+    private final FanOut fanOut;
+
+    public SeriesService(FitbitTokenService tokenService, DailyMetricsStore dailyMetricsStore, DailyMetricsFetcher dailyMetricsFetcher,
+                         FanOut fanOut) {
+        this.tokenService = tokenService;
+        this.dailyMetricsStore = dailyMetricsStore;
+        this.dailyMetricsFetcher = dailyMetricsFetcher;
+        this.fanOut = fanOut;
+    }
+
+    public SeriesDto getSeries(List<SeriesMetric> metrics, LocalDate start, LocalDate end) {
+        return getSeries(tokenService.getValidTokenOrThrow(), metrics, start, end);
+    }
+
+    /**
+     * @throws IllegalArgumentException if the window is longer than {@value #MAX_DAYS} days
+     */
+    public SeriesDto getSeries(FitbitTokenEntity token, List<SeriesMetric> metrics, LocalDate start, LocalDate end) {
+        long days = ChronoUnit.DAYS.between(start, end) + 1;
+        if (days > MAX_DAYS) {
+            throw new IllegalArgumentException("Window of " + days + " days is longer than " + MAX_DAYS);
+        }
+
+        Map<DailyMetric, CompletableFuture<TreeMap<LocalDate, DailyMetrics>>> groups = new EnumMap<>(DailyMetric.class);
+        for (SeriesMetric metric : metrics) {
+            groups.computeIfAbsent(metric.group(), group ->
+                    fanOut.supplyAsync("series." + group.name().toLowerCase(), () -> load(token, group, start, end), GROUPS));
+        }
+        try {
+            CompletableFuture.allOf(groups.values().toArray(CompletableFuture[]::new)).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+
+        List<LocalDate> dates = new ArrayList<>((int) days);
+        for (LocalDate day = start; !day.isAfter(end); day = day.plusDays(1)) {
+            dates.add(day);
+        }
+        Map<String, List<Number>> columns = new LinkedHashMap<>();
+        for (SeriesMetric metric : metrics) {
+            TreeMap<LocalDate, DailyMetrics> rows = groups.get(metric.group()).join();
+            List<Number> column = new ArrayList<>(dates.size());
+            for (LocalDate day : dates) {
+                DailyMetrics row = rows.get(day);
+                column.add(row == null ? null : metric.value(row));
+            }
+            columns.put(metric.paramName(), column);
+        }
+        return new SeriesDto(start, end, dates, columns);
+    }
+
+    private TreeMap<LocalDate, DailyMetrics> load(FitbitTokenEntity token, DailyMetric group, LocalDate start, LocalDate end) {
+        return dailyMetricsStore.load(token.getFitbitUserId(), group, start, end,
+                (from, to) -> dailyMetricsFetcher.fetch(token, group, from, to));
+    }
+}
@@ -0,0 +1,192 @@
+package com.aarw.fitdata.session;
+
+import com.aarw.fitdata.config.SessionProps;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.serializer.support.DeserializingConverter;
+import org.springframework.core.serializer.support.SerializingConverter;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.session.MapSession;
+import org.springframework.session.SessionRepository;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Sessions stored in {@code http_sessions} and served from memory while they are hot.
+ * <p>
+ * Every request of a dashboard view reads the session and writes back its last-access time. A
+ * node serves a session it has read from memory for {@link SessionProps#cacheTtl()}, however often
+ * it is saved in between, and reads the row again after that; a logout on another node deletes the
+ * row and is noticed then. On save the attributes are written only if their serialized
+ * form changed, and the last-access time only once the stored one is older than
+ * {@link SessionProps#touchInterval()}; in between, saving a session costs no query at all. Saving
+ * a known session only updates its row, so a session deleted on another node is not brought back.
+ * <p>
+ * Callers always get a copy of the cached session, so parallel requests of one user do not see
+ * each other's uncommitted changes.
+ */
+@Component
+public class CachingSessionRepository implements SessionRepository<MapSession> {
+
+    private static final Logger log = LoggerFactory.getLogger(CachingSessionRepository.class);
+
+    /**
+     * @param attributes       the serialized attributes as last stored
+     * @param storedAccessTime the last-access time as last stored
+     * @param checkedAt        when the row was last read or written by this node
+     */
+    private record Entry(MapSession session, byte[] attributes, Instant storedAccessTime, Instant checkedAt) {}
+
+    private final SessionProps props;
+    private final SessionStoreRepository store;
+    private final Clock clock;
+    private final Cache<String, Entry> sessions;
+
+    private final SerializingConverter serializer = new SerializingConverter();
+    private final DeserializingConverter deserializer = new DeserializingConverter(getClass().getClassLoader());
+
+    @Autowired
+    public CachingSessionRepository(SessionProps props, SessionStoreRepository store) {
+        this(props, store, Clock.systemUTC());
+    }
+
+    CachingSessionRepository(SessionProps props, SessionStoreRepository store, Clock clock) {
+        this.props = props;
+        this.store = store;
+        this.clock = clock;
+        this.sessions = Caffeine.newBuilder()
+                .maximumSize(props.cacheSize())
+                // Only drops idle sessions from memory; the row is re-read after cacheTtl in findById
+                .expireAfterAccess(props.cacheTtl())
+                .build();
+    }
+
+    @Override
+    public MapSession createSession() {
+        Instant now = clock.instant();
+        MapSession session = new MapSession();
+        session.setCreationTime(now);
+        session.setLastAccessedTime(now);
+        session.setMaxInactiveInterval(props.timeout());
+        return session;
+    }
+
+    @Override
+    public void save(MapSession session) {
+        String originalId = session.getOriginalId();
+        Entry cached = sessions.getIfPresent(originalId);
+        byte[] attributes = serialize(session);
+        Instant storedAccessTime = session.getLastAccessedTime();
+        Instant checkedAt = clock.instant();
+
+        if (!session.getId().equals(originalId)) {
+            // Session fixation protection gave it a new id
+            sessions.invalidate(originalId);
+            store.delete(originalId);
+            store.save(toRow(session, attributes));
+        } else if (cached == null) {
+            // Not read through this repository, so a new session
+            store.save(toRow(session, attributes));
+        } else if (!Arrays.equals(cached.attributes(), attributes)
+                || !cached.session().getMaxInactiveInterval().equals(session.getMaxInactiveInterval())) {
+            if (!store.update(toRow(session, attributes))) {
+                log.debug("Session {} was deleted on another node, not saving it", session.getId());
+                sessions.invalidate(session.getId());
+                return;
+            }
+        } else {
+            checkedAt = cached.checkedAt();
+            if (Duration.between(cached.storedAccessTime(), session.getLastAccessedTime()).compareTo(props.touchInterval()) >= 0) {
+                store.touch(session.getId(), session.getLastAccessedTime());
+            } else {
+                storedAccessTime = cached.storedAccessTime();
+            }
+        }
+
+        // The copy also resets the original id, so a later save of it is not taken as a rename
+        sessions.put(session.getId(), new Entry(new MapSession(session), attributes, storedAccessTime, checkedAt));
+    }
+
+    @Override
+    public MapSession findById(String id) {
+        Entry entry = sessions.get(id, this::load);
+        if (entry != null && isExpired(entry.session())) {
+            deleteById(id);
+            return null;
+        }
+        if (entry != null && !clock.instant().isBefore(entry.checkedAt().plus(props.cacheTtl()))) {
+            // Hot sessions are re-read as well, another node may have deleted the row
+            entry = load(id);
+            if (entry == null) {
+                sessions.invalidate(id);
+            } else {
+                sessions.put(id, entry);
+            }
+        }
+        return entry == null ? null : new MapSession(entry.session());
+    }
+
+    @Override
+    public void deleteById(String id) {
+        sessions.invalidate(id);
+        store.delete(id);
+    }
+
+    @Scheduled(fixedDelayString = "${sessions.cleanup-interval}", initialDelayString = "${sessions.cleanup-interval}")
+    public void deleteExpired() {
+        try {
+            int deleted = store.deleteExpired();
+            if (deleted > 0) {
+                log.debug("Deleted {} expired sessions", deleted);
+            }
+        } catch (DataAccessException e) {
+            log.warn("Could not delete expired sessions: {}", e.getMessage());
+        }
+    }
+
+    private Entry load(String id) {
+        return store.find(id)
+                .map(row -> {
+                    MapSession session = new MapSession(row.id());
+                    session.setCreationTime(row.createdAt());
+                    session.setLastAccessedTime(row.lastAccessedAt());
+                    session.setMaxInactiveInterval(row.maxInactive());
+                    deserialize(row.attributes()).forEach(session::setAttribute);
+                    return new Entry(session, row.attributes(), row.lastAccessedAt(), clock.instant());
+                })
+                .orElse(null);
+    }
+
+    private boolean isExpired(MapSession session) {
+        Duration maxInactive = session.getMaxInactiveInterval();
+        return !maxInactive.isNegative() && !clock.instant().isBefore(session.getLastAccessedTime().plus(maxInactive));
+    }
+
+    private byte[] serialize(MapSession session) {
+        Map<String, Object> attributes = new TreeMap<>();
+        for (String name : session.getAttributeNames()) {
+            attributes.put(name, session.getAttribute(name));
+        }
+        return serializer.convert(attributes);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> deserialize(byte[] attributes) {
+        return (Map<String, Object>) deserializer.convert(attributes);
+    }
+
+    private static SessionStoreRepository.Row toRow(MapSession session, byte[] attributes) {
+        return new SessionStoreRepository.Row(session.getId(), session.getCreationTime(), session.getLastAccessedTime(),
+                session.getMaxInactiveInterval(), attributes);
+    }
+}
@@ -0,0 +1,93 @@
+package com.aarw.fitdata.session;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+
+@Repository
+public class SessionStoreRepository {
+
+    /**
+     * @param attributes the serialized attribute map
+     */
+    public record Row(String id, Instant createdAt, Instant lastAccessedAt, Duration maxInactive, byte[] attributes) {}
+
+    private static final RowMapper<Row> ROW_MAPPER = (rs, rowNum) -> new Row(
+            rs.getString("id"),
+            rs.getTimestamp("created_at").toInstant(),
+            rs.getTimestamp("last_accessed_at").toInstant(),
+            Duration.ofSeconds(rs.getInt("max_inactive_seconds")),
+            rs.getBytes("attributes"));
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public SessionStoreRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * @return the session unless it is absent or expired
+     */
+    public Optional<Row> find(String id) {
+        return jdbcTemplate.query("""
+                SELECT id, created_at, last_accessed_at, max_inactive_seconds, attributes FROM http_sessions
+                WHERE id = ? AND expires_at > now()
+                """, ROW_MAPPER, id).stream().findFirst();
+    }
+
+    public void save(Row row) {
+        jdbcTemplate.update("""
+                INSERT INTO http_sessions (id, created_at, last_accessed_at, max_inactive_seconds, expires_at, attributes)
+                VALUES (?, ?, ?, ?, ?, ?)
+                ON CONFLICT (id) DO UPDATE
+                SET last_accessed_at = EXCLUDED.last_accessed_at, max_inactive_seconds = EXCLUDED.max_inactive_seconds,
+                    expires_at = EXCLUDED.expires_at, attributes = EXCLUDED.attributes
+                """,
+                row.id(), Timestamp.from(row.createdAt()), Timestamp.from(row.lastAccessedAt()),
+                (int) row.maxInactive().toSeconds(), Timestamp.from(row.lastAccessedAt().plus(row.maxInactive())),
+                row.attributes());
+    }
+
+    /**
+     * Writes an existing session, unlike {@link #save(Row)} without inserting it again.
+     *
+     * @return whether the row was still there
+     */
+    public boolean update(Row row) {
+        return jdbcTemplate.update("""
+                UPDATE http_sessions
+                SET last_accessed_at = ?, max_inactive_seconds = ?, expires_at = ?, attributes = ?
+                WHERE id = ?
+                """,
+                Timestamp.from(row.lastAccessedAt()), (int) row.maxInactive().toSeconds(),
+                Timestamp.from(row.lastAccessedAt().plus(row.maxInactive())), row.attributes(), row.id()) > 0;
+    }
+
+    /**
+     * Moves the last access of an existing session forward; an older time than the stored one is ignored.
+     */
+    public void touch(String id, Instant lastAccessedAt) {
+        jdbcTemplate.update("""
+                UPDATE http_sessions
+                SET last_accessed_at = ?, expires_at = CAST(? AS TIMESTAMP WITH TIME ZONE) + max_inactive_seconds * INTERVAL '1 second'
+                WHERE id = ? AND last_accessed_at < ?
+                """,
+                Timestamp.from(lastAccessedAt), Timestamp.from(lastAccessedAt), id, Timestamp.from(lastAccessedAt));
+    }
+
+    public void delete(String id) {
+        jdbcTemplate.update("DELETE FROM http_sessions WHERE id = ?", id);
+    }
+
+    /**
+     * @return the number of sessions deleted
+     */
+    public int deleteExpired() {
+        return jdbcTemplate.update("DELETE FROM http_sessions WHERE expires_at <= now()");
+    }
+}
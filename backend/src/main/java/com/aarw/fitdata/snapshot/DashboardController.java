@@ -0,0 +1,59 @@
+package com.aarw.fitdata.snapshot;
+
+import com.aarw.fitdata.dto.DashboardSnapshotDto;
+import com.aarw.fitdata.fitbit.controller.HttpCaching;
+import com.aarw.fitdata.fitbit.util.StepsRange;
+import com.aarw.fitdata.oauth.token.FitbitTokenEntity;
+import com.aarw.fitdata.oauth.token.FitbitTokenService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.LocalDate;
+import java.util.EnumSet;
+import java.util.List;
+
+/**
+ * The whole dashboard of a day in one request, instead of one request per card. The token is
+ * resolved once and the sections are assembled concurrently, sharing the Fitbit calls they have
+ * in common.
+ */
+@RestController
+@RequiredArgsConstructor
+public class DashboardController {
+
+    private final FitbitTokenService tokenService;
+    private final SnapshotAssembler snapshotAssembler;
+    private final HttpCaching httpCaching;
+
+    /**
+     * @param sections sections to include, all if absent; the others are {@code null}
+     */
+    @GetMapping("/api/dashboard")
+    public ResponseEntity<DashboardSnapshotDto> dashboard(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date,
+            @RequestParam(defaultValue = "LAST_7_DAYS") StepsRange stepsRange,
+            @RequestParam(defaultValue = "LAST_7_DAYS") StepsRange weightRange,
+            @RequestParam(required = false) List<SnapshotAssembler.Section> sections
+    ) {
+        LocalDate effective = date == null ? LocalDate.now() : date;
+        FitbitTokenEntity token = tokenService.getValidTokenOrThrow();
+        SnapshotAssembler.Assembly assembly = snapshotAssembler.assemble(token, effective, stepsRange, weightRange,
+                sections == null || sections.isEmpty() ? EnumSet.allOf(SnapshotAssembler.Section.class) : EnumSet.copyOf(sections));
+        DashboardSnapshotDto snapshot = assembly.snapshot();
+        // Range sections may end after the selected day (e.g. the current week)
+        LocalDate lastDay = effective;
+        if (snapshot.steps() != null && snapshot.steps().endDate().isAfter(lastDay)) {
+            lastDay = snapshot.steps().endDate();
+        }
+        if (snapshot.weight() != null && snapshot.weight().endDate().isAfter(lastDay)) {
+            lastDay = snapshot.weight().endDate();
+        }
+        return httpCaching.headers(lastDay)
+                .header("Server-Timing", assembly.serverTiming())
+                .body(snapshot);
+    }
+}
@@ -19,9 +19,27 @@ public class Snapshot {
     @Id
     private UUID id;
 
-    @Column(nullable = false, columnDefinition = "TEXT")
+    /**
+     * Fitbit user id of the creator, used for per-user retention. Not known for snapshots created before V4.
+     */
+    @Column(name = "owner_id", length = 64)
+    private String ownerId;
+
+    /**
+     * Plain JSON of snapshots written before V3; {@code null} once the row has a payload.
+     */
+    @Column(columnDefinition = "TEXT")
     private String data;
 
-    @Column(name = "created_at", updatable = false)
+    /**
+     * Format byte plus encoded snapshot, see {@link SnapshotCodec}.
+     */
+    @Column(columnDefinition = "bytea")
+    private byte[] payload;
+
+    /**
+     * Partition key of the snapshots table (monthly partitions).
+     */
+    @Column(name = "created_at", nullable = false, updatable = false)
     private OffsetDateTime createdAt = OffsetDateTime.now();
 }
@@ -0,0 +1,156 @@
+package com.aarw.fitdata.snapshot;
+
+import com.aarw.fitdata.dto.DashboardSnapshotDto;
+import com.aarw.fitdata.fitbit.FitbitApiClient;
+import com.aarw.fitdata.fitbit.service.*;
+import com.aarw.fitdata.fitbit.util.StepsRange;
+import com.aarw.fitdata.oauth.token.FitbitTokenEntity;
+import com.aarw.fitdata.tracing.FanOut;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Builds a {@link DashboardSnapshotDto} with all sections running concurrently.
+ * <p>
+ * Sections overlap in what they fetch (readiness and the intraday chart both need the activity
+ * summary and heart rate of the day, readiness and the sleep section both need sleep). The
+ * {@link FitbitApiClient} caches synchronize per key, so whichever section asks first performs
+ * the request and the others wait for its result instead of issuing their own. The token is
+ * resolved once and handed to every section, which also keeps parallel sections from refreshing
+ * an expiring token several times.
+ * <p>
+ * Sections that are not requested are left {@code null} and fetch nothing.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class SnapshotAssembler {
+
+    // Sections block on WebClient calls, a virtual thread per section is the cheapest way to wait
+    private static final Executor SECTIONS = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("snapshot-section-", 0).factory());
+
+    private final FitbitApiClient apiClient;
+    private final ReadinessCardService readinessCardService;
+    private final StepsService stepsService;
+    private final WeightService weightService;
+    private final HeartRateIntradayService heartRateIntradayService;
+    private final SleepService sleepService;
+    private final FanOut fanOut;
+
+    /**
+     * The sections of a snapshot, in the order of the response and the timings.
+     */
+    public enum Section {
+        PROFILE("profile"),
+        READINESS("readiness"),
+        STEPS("steps"),
+        WEIGHT("weight"),
+        HEART_RATE("heartRate"),
+        SLEEP("sleep");
+
+        private final String timingName;
+
+        Section(String timingName) {
+            this.timingName = timingName;
+        }
+
+        public String timingName() {
+            return timingName;
+        }
+    }
+
+    /**
+     * @param snapshot the assembled snapshot
+     * @param timings  wall time per section in milliseconds, in section order, plus {@code total}
+     */
+    public record Assembly(DashboardSnapshotDto snapshot, Map<String, Long> timings) {
+
+        /**
+         * @return the timings formatted as a {@code Server-Timing} header value
+         */
+        public String serverTiming() {
+            return timings.entrySet().stream()
+                    .map(e -> e.getKey() + ";dur=" + e.getValue())
+                    .collect(Collectors.joining(", "));
+        }
+    }
+
+    public Assembly assemble(FitbitTokenEntity token, LocalDate selectedDate, StepsRange stepsRange, StepsRange weightRange) {
+        return assemble(token, selectedDate, stepsRange, weightRange, EnumSet.allOf(Section.class));
+    }
+
+    public Assembly assemble(FitbitTokenEntity token, LocalDate selectedDate, StepsRange stepsRange, StepsRange weightRange,
+                             Set<Section> sections) {
+        long started = System.nanoTime();
+        Map<String, Long> timings = new ConcurrentHashMap<>();
+
+        var profile = section(Section.PROFILE, sections, timings, () -> apiClient.getProfile(token));
+        var readiness = section(Section.READINESS, sections, timings, () -> readinessCardService.getReadinessCard(token, selectedDate));
+        var steps = section(Section.STEPS, sections, timings, () -> stepsService.getSteps(token, stepsRange, selectedDate));
+        var weight = section(Section.WEIGHT, sections, timings, () -> weightService.getWeight(token, weightRange, selectedDate));
+        var heartRate = section(Section.HEART_RATE, sections, timings, () -> heartRateIntradayService.get(token, selectedDate));
+        var sleep = section(Section.SLEEP, sections, timings, () -> sleepService.getSleep(token, selectedDate));
+
+        try {
+            CompletableFuture.allOf(profile, readiness, steps, weight, heartRate, sleep).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+
+        DashboardSnapshotDto snapshot = new DashboardSnapshotDto(
+                selectedDate,
+                stepsRange,
+                weightRange,
+                profile.join(),
+                readiness.join(),
+                steps.join(),
+                weight.join(),
+                heartRate.join(),
+                sleep.join()
+        );
+
+        Map<String, Long> ordered = new LinkedHashMap<>();
+        for (Section section : Section.values()) {
+            if (sections.contains(section)) {
+                ordered.put(section.timingName(), timings.get(section.timingName()));
+            }
+        }
+        ordered.put("total", (System.nanoTime() - started) / 1_000_000);
+        log.info("Snapshot for {} assembled: {}", selectedDate, ordered);
+
+        return new Assembly(snapshot, ordered);
+    }
+
+    private <T> CompletableFuture<T> section(Section section, Set<Section> sections, Map<String, Long> timings, Supplier<T> supplier) {
+        if (!sections.contains(section)) {
+            return CompletableFuture.completedFuture(null);
+        }
+        String name = section.timingName();
+        return fanOut.supplyAsync("snapshot." + name, () -> {
+            long start = System.nanoTime();
+            try {
+                return supplier.get();
+            } finally {
+                timings.put(name, (System.nanoTime() - start) / 1_000_000);
+            }
+        }, SECTIONS);
+    }
+}
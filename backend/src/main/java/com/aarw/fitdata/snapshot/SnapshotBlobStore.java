@@ -0,0 +1,112 @@
+package com.aarw.fitdata.snapshot;
+
+import com.aarw.fitdata.config.SnapshotProps;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Read side of stored snapshots: serves them as gzip-compressed JSON exactly as stored, without
+ * decoding into {@link com.aarw.fitdata.dto.DashboardSnapshotDto}. Snapshots never change after
+ * creation, so recently read ones are kept in a byte-bounded LRU.
+ */
+@Component
+public class SnapshotBlobStore {
+
+    private final SnapshotRepository snapshotRepository;
+    private final SnapshotCodec snapshotCodec;
+    private final Cache<UUID, SnapshotBlob> blobs;
+
+    public SnapshotBlobStore(SnapshotRepository snapshotRepository, SnapshotCodec snapshotCodec, SnapshotProps snapshotProps) {
+        this.snapshotRepository = snapshotRepository;
+        this.snapshotCodec = snapshotCodec;
+        this.blobs = Caffeine.newBuilder()
+                .maximumWeight(snapshotProps.cache().maxSize().toBytes())
+                .weigher((UUID _, SnapshotBlob blob) -> blob.gzipJson().length)
+                .build();
+    }
+
+    /**
+     * @param gzipJson the snapshot JSON, gzip-compressed
+     * @param etag     strong entity tag of the gzip representation, quoted
+     */
+    public record SnapshotBlob(byte[] gzipJson, String etag) {
+
+        /**
+         * @return strong entity tag of the uncompressed representation
+         */
+        public String identityEtag() {
+            return etag.substring(0, etag.length() - 1) + "-id\"";
+        }
+
+        public byte[] json() {
+            try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(gzipJson))) {
+                return in.readAllBytes();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    public Optional<SnapshotBlob> find(UUID id) {
+        SnapshotBlob cached = blobs.getIfPresent(id);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        Optional<Snapshot> stored = SnapshotIds.createdAt(id)
+                .map(createdAt -> snapshotRepository.findByIdAndCreatedAt(id, createdAt))
+                .orElseGet(() -> snapshotRepository.findById(id));
+        return stored.map(snapshot -> {
+            byte[] payload = snapshot.getPayload() != null
+                    ? snapshot.getPayload()
+                    : snapshotCodec.encodeJson(snapshot.getData().getBytes(StandardCharsets.UTF_8));
+            SnapshotBlob blob = toBlob(payload);
+            blobs.put(id, blob);
+            return blob;
+        });
+    }
+
+    /**
+     * Adds a snapshot that was just written, since a fresh snapshot link is usually opened right away.
+     */
+    public void put(UUID id, byte[] payload) {
+        blobs.put(id, toBlob(payload));
+    }
+
+    public void evict(UUID id) {
+        blobs.invalidate(id);
+    }
+
+    public void evictAll() {
+        blobs.invalidateAll();
+    }
+
+    private static SnapshotBlob toBlob(byte[] payload) {
+        if (payload.length == 0 || payload[0] != SnapshotCodec.FORMAT_GZIP_JSON) {
+            throw new SnapshotCorruptException("Unsupported snapshot payload format");
+        }
+        byte[] gzip = Arrays.copyOfRange(payload, 1, payload.length);
+        return new SnapshotBlob(gzip, etag(gzip));
+    }
+
+    private static String etag(byte[] content) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(content);
+            return "\"" + Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(digest, 16)) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.aarw.fitdata.snapshot;
+
+import com.aarw.fitdata.dto.DashboardSnapshotDto;
+import org.springframework.stereotype.Component;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Storage format of {@link Snapshot#getPayload()}: a format byte followed by the encoded snapshot.
+ * <pre>
+ * 0x01  gzip-compressed UTF-8 JSON of {@link DashboardSnapshotDto}
+ * </pre>
+ * Rows from before the payload column only have {@link Snapshot#getData()} (plain JSON) and are
+ * still readable. New formats get a new byte; existing ones must stay decodable.
+ */
+@Component
+public class SnapshotCodec {
+
+    public static final byte FORMAT_GZIP_JSON = 0x01;
+
+    private final ObjectMapper objectMapper;
+
+    public SnapshotCodec(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    public byte[] encode(DashboardSnapshotDto snapshot) {
+        return encodeJson(objectMapper.writeValueAsBytes(snapshot));
+    }
+
+    /**
+     * Wraps already serialized snapshot JSON, as found in legacy rows.
+     */
+    public byte[] encodeJson(byte[] json) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(json.length / 4 + 16);
+        out.write(FORMAT_GZIP_JSON);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(json);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    public DashboardSnapshotDto decode(Snapshot snapshot) {
+        if (snapshot.getPayload() != null) {
+            return decode(snapshot.getPayload());
+        }
+        if (snapshot.getData() != null) {
+            return objectMapper.readValue(snapshot.getData(), DashboardSnapshotDto.class);
+        }
+        throw new SnapshotCorruptException("Snapshot " + snapshot.getId() + " has no content");
+    }
+
+    public DashboardSnapshotDto decode(byte[] payload) {
+        try (InputStream json = openJson(payload)) {
+            return objectMapper.readValue(json, DashboardSnapshotDto.class);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return a stream of the snapshot JSON contained in the payload
+     * @throws IllegalArgumentException if the payload is empty or of an unknown format
+     */
+    public InputStream openJson(byte[] payload) throws IOException {
+        if (payload.length == 0) {
+            throw new IllegalArgumentException("Empty snapshot payload");
+        }
+        return switch (payload[0]) {
+            case FORMAT_GZIP_JSON -> new GZIPInputStream(new ByteArrayInputStream(payload, 1, payload.length - 1));
+            default -> throw new IllegalArgumentException("Unknown snapshot format: " + payload[0]);
+        };
+    }
+}
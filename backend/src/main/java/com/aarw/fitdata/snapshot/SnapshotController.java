@@ -1,18 +1,21 @@
 package com.aarw.fitdata.snapshot;
 
-import com.aarw.fitdata.dto.DashboardSnapshotDto;
-import com.aarw.fitdata.fitbit.FitbitApiClient;
-import com.aarw.fitdata.fitbit.service.*;
+import com.aarw.fitdata.dto.SnapshotJobDto;
 import com.aarw.fitdata.fitbit.util.StepsRange;
-import com.aarw.fitdata.oauth.token.FitbitTokenEntity;
-import com.aarw.fitdata.oauth.token.FitbitTokenService;
-import tools.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
 
+import java.net.URI;
+import java.security.Principal;
+import java.time.Duration;
 import java.time.LocalDate;
+import java.util.Optional;
 import java.util.UUID;
 
 @RestController
@@ -21,65 +24,124 @@ import java.util.UUID;
 @Slf4j
 public class SnapshotController {
 
-    private final SnapshotRepository snapshotRepository;
-    private final FitbitTokenService tokenService;
-    private final FitbitApiClient apiClient;
-    private final ReadinessCardService readinessCardService;
-    private final StepsService stepsService;
-    private final WeightService weightService;
-    private final HeartRateIntradayService heartRateIntradayService;
-    private final SleepService sleepService;
-    private final ObjectMapper objectMapper;
+    private static final int MAX_WAIT_SECONDS = 30;
+    private static final CacheControl IMMUTABLE = CacheControl.maxAge(Duration.ofDays(365)).cachePublic().immutable();
 
+    private final SnapshotJobService snapshotJobService;
+    private final SnapshotBlobStore snapshotBlobStore;
+
+    /**
+     * Queues a snapshot build and returns right away with 202 and the job to poll. An identical
+     * request that is still pending returns the existing job.
+     */
     @PostMapping
-    public ResponseEntity<UUID> createSnapshot(
+    public ResponseEntity<SnapshotJobDto> createSnapshot(
             @RequestParam LocalDate selectedDate,
             @RequestParam(defaultValue = "LAST_7_DAYS") StepsRange stepsRange,
-            @RequestParam(defaultValue = "LAST_7_DAYS") StepsRange weightRange
+            @RequestParam(defaultValue = "LAST_7_DAYS") StepsRange weightRange,
+            Principal principal
     ) {
         log.info("Creating snapshot for date={}, stepsRange={}, weightRange={}", selectedDate, stepsRange, weightRange);
-        
-        try {
-            FitbitTokenEntity token = tokenService.getValidTokenOrThrow();
-            
-            DashboardSnapshotDto data = new DashboardSnapshotDto(
-                    selectedDate,
-                    stepsRange,
-                    weightRange,
-                    apiClient.getProfile(token),
-                    readinessCardService.getReadinessCard(selectedDate),
-                    stepsService.getSteps(stepsRange, selectedDate),
-                    weightService.getWeight(weightRange, selectedDate),
-                    heartRateIntradayService.get(selectedDate),
-                    sleepService.getSleep(selectedDate)
-            );
 
-            String jsonData = objectMapper.writeValueAsString(data);
-            
-            Snapshot snapshot = new Snapshot();
-            snapshot.setId(UUID.randomUUID());
-            snapshot.setData(jsonData);
-            
-            snapshotRepository.save(snapshot);
-            
-            return ResponseEntity.ok(snapshot.getId());
-        } catch (Exception e) {
-            log.error("Failed to create snapshot", e);
-            return ResponseEntity.internalServerError().build();
+        SnapshotJob job = snapshotJobService.submit(principal.getName(), selectedDate, stepsRange, weightRange);
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/snapshots/jobs/" + job.id()))
+                .body(job.toDto());
+    }
+
+    /**
+     * Returns the state of a snapshot job.
+     *
+     * @param wait seconds to wait for the job to finish before answering (long polling), at most {@value #MAX_WAIT_SECONDS}
+     */
+    @GetMapping("/jobs/{jobId}")
+    public DeferredResult<ResponseEntity<SnapshotJobDto>> getJob(
+            @PathVariable UUID jobId,
+            @RequestParam(defaultValue = "0") int wait,
+            Principal principal
+    ) {
+        long timeoutMillis = Math.clamp(wait, 0, MAX_WAIT_SECONDS) * 1000L;
+        Optional<SnapshotJob> found = snapshotJobService.find(jobId, principal.getName());
+        if (found.isEmpty()) {
+            DeferredResult<ResponseEntity<SnapshotJobDto>> result = new DeferredResult<>();
+            result.setResult(ResponseEntity.notFound().build());
+            return result;
+        }
+
+        SnapshotJob job = found.get();
+        DeferredResult<ResponseEntity<SnapshotJobDto>> result =
+                new DeferredResult<>(Math.max(timeoutMillis, 1), () -> ResponseEntity.ok(job.toDto()));
+        if (timeoutMillis == 0 || job.completion().isDone()) {
+            result.setResult(ResponseEntity.ok(job.toDto()));
+        } else {
+            // Completes the request from the worker thread, no request thread waits meanwhile
+            job.completion().thenAccept(done -> result.setResult(ResponseEntity.ok(done.toDto())));
         }
+        return result;
     }
 
-    @GetMapping("/{id}")
-    public ResponseEntity<DashboardSnapshotDto> getSnapshot(@PathVariable UUID id) {
-        return snapshotRepository.findById(id)
-                .map(snapshot -> {
-                    try {
-                        return ResponseEntity.ok(objectMapper.readValue(snapshot.getData(), DashboardSnapshotDto.class));
-                    } catch (Exception e) {
-                        log.error("Failed to deserialize snapshot data", e);
-                        return ResponseEntity.internalServerError().<DashboardSnapshotDto>build();
+    /**
+     * Returns the stored snapshot JSON as is. Clients accepting gzip get the stored compressed
+     * bytes without any decoding; the content never changes, so responses are cacheable forever.
+     */
+    @GetMapping(value = "/{id}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<byte[]> getSnapshot(
+            @PathVariable UUID id,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding
+    ) {
+        return snapshotBlobStore.find(id)
+                .map(blob -> {
+                    ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .cacheControl(IMMUTABLE)
+                            .varyBy(HttpHeaders.ACCEPT_ENCODING);
+                    if (acceptsGzip(acceptEncoding)) {
+                        return response
+                                .eTag(blob.etag())
+                                .header(HttpHeaders.CONTENT_ENCODING, "gzip")
+                                .body(blob.gzipJson());
                     }
+                    return response.eTag(blob.identityEtag()).body(blob.json());
                 })
                 .orElse(ResponseEntity.notFound().build());
     }
+
+    /**
+     * Whether {@code Accept-Encoding} allows gzip: an explicit {@code gzip} entry decides wherever
+     * it is in the header, otherwise {@code *} does (RFC 9110, section 12.5.3).
+     */
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        Double gzip = null;
+        Double wildcard = null;
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.trim().split(";");
+            String name = parts[0].trim();
+            if (name.equalsIgnoreCase("gzip")) {
+                gzip = quality(parts);
+            } else if (name.equals("*")) {
+                wildcard = quality(parts);
+            }
+        }
+        if (gzip != null) {
+            return gzip > 0;
+        }
+        return wildcard != null && wildcard > 0;
+    }
+
+    private static double quality(String[] parts) {
+        for (int i = 1; i < parts.length; i++) {
+            String param = parts[i].trim().replace(" ", "");
+            if (param.regionMatches(true, 0, "q=", 0, 2)) {
+                try {
+                    return Double.parseDouble(param.substring(2));
+                } catch (NumberFormatException e) {
+                    return 1;
+                }
+            }
+        }
+        return 1;
+    }
 }
@@ -0,0 +1,16 @@
+package com.aarw.fitdata.snapshot;
+
+import java.io.Serial;
+
+/**
+ * A stored snapshot that cannot be read back. The snapshot exists but its row
+ * is damaged, so this is a server error and not an authentication problem.
+ */
+public class SnapshotCorruptException extends RuntimeException {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    public SnapshotCorruptException(String message) {
+        super(message);
+    }
+}
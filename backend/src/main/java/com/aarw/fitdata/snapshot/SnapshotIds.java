@@ -0,0 +1,50 @@
+package com.aarw.fitdata.snapshot;
+
+import java.security.SecureRandom;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Snapshot ids are version 7 UUIDs (RFC 9562): the first 48 bits are the creation time in Unix
+ * milliseconds, which is also stored as {@code created_at}. A lookup by id can thus name the
+ * partition key and reach a single monthly partition instead of probing all of them.
+ * <p>
+ * Snapshots created before carry random (version 4) ids and are looked up by id alone.
+ */
+final class SnapshotIds {
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private SnapshotIds() {
+    }
+
+    /**
+     * @param createdAt creation time; only its milliseconds are kept
+     */
+    static UUID newId(Instant createdAt) {
+        byte[] random = new byte[10];
+        RANDOM.nextBytes(random);
+        long msb = createdAt.toEpochMilli() << 16
+                | 0x7000L
+                | ((random[0] & 0x0FL) << 8 | random[1] & 0xFFL);
+        long lsb = 0;
+        for (int i = 2; i < 10; i++) {
+            lsb = lsb << 8 | random[i] & 0xFFL;
+        }
+        lsb = lsb & 0x3FFFFFFFFFFFFFFFL | 0x8000000000000000L;
+        return new UUID(msb, lsb);
+    }
+
+    /**
+     * @return the creation time encoded in a version 7 id; empty for older random ids
+     */
+    static Optional<OffsetDateTime> createdAt(UUID id) {
+        if (id.version() != 7) {
+            return Optional.empty();
+        }
+        return Optional.of(Instant.ofEpochMilli(id.getMostSignificantBits() >>> 16).atOffset(ZoneOffset.UTC));
+    }
+}
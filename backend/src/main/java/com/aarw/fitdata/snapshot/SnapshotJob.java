@@ -0,0 +1,72 @@
+package com.aarw.fitdata.snapshot;
+
+import com.aarw.fitdata.dto.SnapshotJobDto;
+import com.aarw.fitdata.fitbit.util.StepsRange;
+
+import java.time.LocalDate;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A requested snapshot build. {@link #completion()} completes after the job has succeeded or failed,
+ * which lets pollers wait without holding a thread.
+ */
+class SnapshotJob {
+
+    enum Status { QUEUED, RUNNING, SUCCEEDED, FAILED }
+
+    /**
+     * Identifies identical requests of one user; a pending job is reused for the same key.
+     */
+    record Key(String userId, LocalDate selectedDate, StepsRange stepsRange, StepsRange weightRange) {}
+
+    private final UUID id = UUID.randomUUID();
+    private final Key key;
+    private final CompletableFuture<SnapshotJob> completion = new CompletableFuture<>();
+
+    private volatile Status status = Status.QUEUED;
+    private volatile UUID snapshotId;
+    private volatile String error;
+
+    SnapshotJob(Key key) {
+        this.key = key;
+    }
+
+    UUID id() {
+        return id;
+    }
+
+    Key key() {
+        return key;
+    }
+
+    CompletableFuture<SnapshotJob> completion() {
+        return completion;
+    }
+
+    void started() {
+        status = Status.RUNNING;
+    }
+
+    void succeeded(UUID snapshotId) {
+        this.snapshotId = snapshotId;
+        status = Status.SUCCEEDED;
+    }
+
+    void failed(String error) {
+        this.error = error;
+        status = Status.FAILED;
+    }
+
+    boolean isFinished() {
+        return status == Status.SUCCEEDED || status == Status.FAILED;
+    }
+
+    void complete() {
+        completion.complete(this);
+    }
+
+    SnapshotJobDto toDto() {
+        return new SnapshotJobDto(id, status.name(), snapshotId, error);
+    }
+}
@@ -0,0 +1,21 @@
+package com.aarw.fitdata.snapshot;
+
+import lombok.Getter;
+
+import java.io.Serial;
+
+@Getter
+public class SnapshotJobRejectedException extends RuntimeException {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * {@code true} if the user has too many pending jobs, {@code false} if the server queue is full.
+     */
+    private final boolean userLimit;
+
+    public SnapshotJobRejectedException(String message, boolean userLimit) {
+        super(message);
+        this.userLimit = userLimit;
+    }
+}
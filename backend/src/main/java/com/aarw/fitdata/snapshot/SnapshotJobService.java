@@ -0,0 +1,221 @@
+package com.aarw.fitdata.snapshot;
+
+import com.aarw.fitdata.config.SnapshotProps;
+import com.aarw.fitdata.fitbit.FitbitRateLimitException;
+import com.aarw.fitdata.fitbit.util.StepsRange;
+import com.aarw.fitdata.oauth.token.FitbitTokenEntity;
+import com.aarw.fitdata.oauth.token.FitbitTokenService;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Ticker;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs snapshot builds in the background on a fixed pool of workers with a bounded queue.
+ * <p>
+ * Each user has a lane: at most {@code maxConcurrentPerUser} of their jobs run at a time, further
+ * ones wait in the lane without taking a pool slot, and a user can have at most
+ * {@code maxPendingPerUser} jobs outstanding. A request identical to one that is still pending
+ * gets the existing job back instead of a new one. A job can be looked up until {@code retention}
+ * after it finished, however long it waited or ran.
+ */
+@Service
+@Slf4j
+public class SnapshotJobService {
+
+    private static final Duration UNTIL_FINISHED = ChronoUnit.FOREVER.getDuration();
+
+    private final FitbitTokenService tokenService;
+    private final SnapshotAssembler snapshotAssembler;
+    private final SnapshotCodec snapshotCodec;
+    private final SnapshotRepository snapshotRepository;
+    private final SnapshotBlobStore snapshotBlobStore;
+    private final SnapshotProps.Jobs props;
+
+    private final ThreadPoolExecutor workers;
+    private final Cache<UUID, SnapshotJob> jobs;
+
+    // Guarded by "this"
+    private final Map<SnapshotJob.Key, SnapshotJob> pending = new HashMap<>();
+    private final Map<String, Lane> lanes = new HashMap<>();
+
+    private static final class Lane {
+        int running;
+        int outstanding;
+        final Deque<SnapshotJob> waiting = new ArrayDeque<>();
+    }
+
+    @Autowired
+    public SnapshotJobService(FitbitTokenService tokenService,
+                              SnapshotAssembler snapshotAssembler,
+                              SnapshotCodec snapshotCodec,
+                              SnapshotRepository snapshotRepository,
+                              SnapshotBlobStore snapshotBlobStore,
+                              SnapshotProps snapshotProps) {
+        this(tokenService, snapshotAssembler, snapshotCodec, snapshotRepository, snapshotBlobStore, snapshotProps,
+                Ticker.systemTicker());
+    }
+
+    SnapshotJobService(FitbitTokenService tokenService,
+                       SnapshotAssembler snapshotAssembler,
+                       SnapshotCodec snapshotCodec,
+                       SnapshotRepository snapshotRepository,
+                       SnapshotBlobStore snapshotBlobStore,
+                       SnapshotProps snapshotProps,
+                       Ticker ticker) {
+        this.tokenService = tokenService;
+        this.snapshotAssembler = snapshotAssembler;
+        this.snapshotCodec = snapshotCodec;
+        this.snapshotRepository = snapshotRepository;
+        this.snapshotBlobStore = snapshotBlobStore;
+        this.props = snapshotProps.jobs();
+
+        this.workers = new ThreadPoolExecutor(
+                props.workers(), props.workers(),
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(props.queueCapacity()),
+                Thread.ofPlatform().name("snapshot-job-", 0).daemon().factory()
+        );
+        // The expiry is evaluated on every write; a job is written again when it finishes
+        this.jobs = Caffeine.newBuilder()
+                .ticker(ticker)
+                .expireAfter(Expiry.<UUID, SnapshotJob>writing(
+                        (_, job) -> job.isFinished() ? props.retention() : UNTIL_FINISHED))
+                .build();
+    }
+
+    /**
+     * @throws SnapshotJobRejectedException if the user has too many jobs outstanding or the queue is full
+     */
+    public synchronized SnapshotJob submit(String userId, LocalDate selectedDate, StepsRange stepsRange, StepsRange weightRange) {
+        SnapshotJob.Key key = new SnapshotJob.Key(userId, selectedDate, stepsRange, weightRange);
+        SnapshotJob existing = pending.get(key);
+        if (existing != null) {
+            log.debug("Reusing pending snapshot job {} for {}", existing.id(), key);
+            return existing;
+        }
+
+        Lane lane = lanes.computeIfAbsent(userId, _ -> new Lane());
+        if (lane.outstanding >= props.maxPendingPerUser()) {
+            throw new SnapshotJobRejectedException("Too many snapshot jobs pending", true);
+        }
+
+        SnapshotJob job = new SnapshotJob(key);
+        if (lane.running < props.maxConcurrentPerUser()) {
+            try {
+                dispatch(job);
+            } catch (SnapshotJobRejectedException e) {
+                if (lane.outstanding == 0) {
+                    lanes.remove(userId);
+                }
+                throw e;
+            }
+            lane.running++;
+        } else {
+            lane.waiting.addLast(job);
+        }
+        lane.outstanding++;
+        pending.put(key, job);
+        jobs.put(job.id(), job);
+        return job;
+    }
+
+    /**
+     * @return the job, if it exists and belongs to the user
+     */
+    public Optional<SnapshotJob> find(UUID jobId, String userId) {
+        return Optional.ofNullable(jobs.getIfPresent(jobId))
+                .filter(job -> job.key().userId().equals(userId));
+    }
+
+    private void dispatch(SnapshotJob job) {
+        try {
+            workers.execute(() -> run(job));
+        } catch (RejectedExecutionException e) {
+            throw new SnapshotJobRejectedException("Snapshot queue is full", false);
+        }
+    }
+
+    private void run(SnapshotJob job) {
+        job.started();
+        SnapshotJob.Key key = job.key();
+        try {
+            FitbitTokenEntity token = tokenService.getValidTokenForUser(key.userId());
+            SnapshotAssembler.Assembly assembly =
+                    snapshotAssembler.assemble(token, key.selectedDate(), key.stepsRange(), key.weightRange());
+
+            Snapshot snapshot = new Snapshot();
+            UUID id = SnapshotIds.newId(Instant.now());
+            snapshot.setId(id);
+            snapshot.setCreatedAt(SnapshotIds.createdAt(id).orElseThrow());
+            snapshot.setOwnerId(key.userId());
+            snapshot.setPayload(snapshotCodec.encode(assembly.snapshot()));
+            snapshotRepository.save(snapshot);
+            snapshotBlobStore.put(snapshot.getId(), snapshot.getPayload());
+
+            log.info("Snapshot job {} created snapshot {} ({})", job.id(), snapshot.getId(), assembly.serverTiming());
+            job.succeeded(snapshot.getId());
+        } catch (FitbitRateLimitException e) {
+            log.warn("Snapshot job {} hit the Fitbit rate limit, retry after {}", job.id(), e.getRetryAfter());
+            job.failed("Fitbit API rate limit exceeded");
+        } catch (Exception e) {
+            log.error("Snapshot job {} failed", job.id(), e);
+            job.failed("Failed to create snapshot");
+        } finally {
+            finished(job);
+            retire(job);
+        }
+    }
+
+    private synchronized void finished(SnapshotJob job) {
+        pending.remove(job.key(), job);
+
+        String userId = job.key().userId();
+        Lane lane = lanes.get(userId);
+        lane.running--;
+        lane.outstanding--;
+
+        // The freed slot goes to the next job of the same user
+        while (!lane.waiting.isEmpty()) {
+            SnapshotJob next = lane.waiting.pollFirst();
+            try {
+                dispatch(next);
+                lane.running++;
+                break;
+            } catch (SnapshotJobRejectedException e) {
+                pending.remove(next.key(), next);
+                lane.outstanding--;
+                next.failed(e.getMessage());
+                retire(next);
+            }
+        }
+
+        if (lane.outstanding == 0) {
+            lanes.remove(userId);
+        }
+    }
+
+    // Written before completion, so a poller woken by it always finds the job
+    private void retire(SnapshotJob job) {
+        jobs.put(job.id(), job);
+        job.complete();
+    }
+}
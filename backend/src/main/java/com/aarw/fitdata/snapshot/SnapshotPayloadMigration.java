@@ -0,0 +1,91 @@
+package com.aarw.fitdata.snapshot;
+
+import com.aarw.fitdata.config.SnapshotProps;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Converts snapshots written as plain JSON text to the compressed payload format, a small batch
+ * at a time so the job never holds many row locks or competes with request traffic. Rows are
+ * locked with {@code SKIP LOCKED}, so several nodes can run it side by side. A short batch may
+ * only mean that the other rows are locked by another node, so it stops polling once a count
+ * finds no text rows left; new snapshots are written in the payload format directly.
+ */
+@Component
+@Slf4j
+public class SnapshotPayloadMigration {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final SnapshotCodec snapshotCodec;
+    private final SnapshotProps.Migration props;
+
+    private volatile boolean done;
+    private long migrated;
+
+    public SnapshotPayloadMigration(JdbcTemplate jdbcTemplate,
+                                    TransactionTemplate transactionTemplate,
+                                    SnapshotCodec snapshotCodec,
+                                    SnapshotProps snapshotProps) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.snapshotCodec = snapshotCodec;
+        this.props = snapshotProps.migration();
+        this.done = !props.enabled();
+    }
+
+    @Scheduled(initialDelayString = "${snapshots.migration.interval}", fixedDelayString = "${snapshots.migration.interval}")
+    public void migrateBatch() {
+        if (done) {
+            return;
+        }
+        try {
+            Integer count = transactionTemplate.execute(_ -> convertBatch());
+            int converted = count == null ? 0 : count;
+            migrated += converted;
+            if (converted < props.batchSize() && !textRowsLeft()) {
+                done = true;
+                if (migrated > 0) {
+                    log.info("Snapshot payload migration finished, {} rows converted", migrated);
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Snapshot payload migration batch failed, retrying later: {}", e.getMessage());
+        }
+    }
+
+    int convertBatch() {
+        List<Object[]> updates = new ArrayList<>();
+        jdbcTemplate.query(
+                "SELECT id, data FROM snapshots WHERE payload IS NULL AND data IS NOT NULL " +
+                        "ORDER BY created_at LIMIT ? FOR UPDATE SKIP LOCKED",
+                rs -> {
+                    UUID id = rs.getObject("id", UUID.class);
+                    byte[] json = rs.getString("data").getBytes(StandardCharsets.UTF_8);
+                    updates.add(new Object[]{snapshotCodec.encodeJson(json), id});
+                },
+                props.batchSize()
+        );
+        if (!updates.isEmpty()) {
+            jdbcTemplate.batchUpdate("UPDATE snapshots SET payload = ?, data = NULL WHERE id = ?", updates);
+        }
+        return updates.size();
+    }
+
+    /**
+     * Counts locked rows too, unlike {@link #convertBatch()}.
+     */
+    boolean textRowsLeft() {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM snapshots WHERE payload IS NULL AND data IS NOT NULL)",
+                Boolean.class));
+    }
+}
@@ -1,7 +1,15 @@
 package com.aarw.fitdata.snapshot;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.time.OffsetDateTime;
+import java.util.Optional;
 import java.util.UUID;
 
 public interface SnapshotRepository extends JpaRepository<Snapshot, UUID> {
+
+    /**
+     * Looks in the partition of {@code createdAt} only, see {@link SnapshotIds}.
+     */
+    Optional<Snapshot> findByIdAndCreatedAt(UUID id, OffsetDateTime createdAt);
 }
@@ -0,0 +1,186 @@
+package com.aarw.fitdata.snapshot;
+
+import com.aarw.fitdata.config.SnapshotProps;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Keeps the monthly partitions of the snapshots table and purges expired snapshots.
+ * <p>
+ * Partitions are created a few months ahead so inserts never land in the default partition.
+ * The global TTL is enforced per partition: a month whose newest possible row is older than the
+ * TTL is dropped (or detached, to be archived) as a whole, which frees its space at once and
+ * leaves nothing for vacuum. Per-user TTLs cut across partitions and are deleted in small
+ * batches, each its own short transaction; their space is reused after vacuum.
+ * <p>
+ * Every step is idempotent, so the job can run on several nodes at the same time.
+ */
+@Component
+@Slf4j
+public class SnapshotRetentionService {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final SnapshotBlobStore snapshotBlobStore;
+    private final SnapshotProps.Retention props;
+
+    private final Counter purgedRows;
+    private final Counter purgedBytes;
+
+    /**
+     * @param partitions partitions dropped or detached
+     * @param rows       snapshots removed
+     * @param bytes      size of the dropped partitions plus the snapshot content of deleted rows
+     */
+    public record PurgeReport(int partitions, long rows, long bytes) {
+
+        static final PurgeReport EMPTY = new PurgeReport(0, 0, 0);
+
+        PurgeReport plus(PurgeReport other) {
+            return new PurgeReport(partitions + other.partitions, rows + other.rows, bytes + other.bytes);
+        }
+    }
+
+    public SnapshotRetentionService(JdbcTemplate jdbcTemplate,
+                                    SnapshotBlobStore snapshotBlobStore,
+                                    SnapshotProps snapshotProps,
+                                    MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.snapshotBlobStore = snapshotBlobStore;
+        this.props = snapshotProps.retention();
+        this.purgedRows = Counter.builder("snapshots.retention.rows")
+                .description("Snapshots removed by retention")
+                .register(meterRegistry);
+        this.purgedBytes = Counter.builder("snapshots.retention.bytes")
+                .description("Bytes reclaimed by retention")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        ensurePartitions(LocalDate.now());
+    }
+
+    @Scheduled(cron = "${snapshots.retention.cron}")
+    public void run() {
+        Instant now = Instant.now();
+        ensurePartitions(LocalDate.now());
+
+        PurgeReport report = purgeExpiredPartitions(now).plus(purgeUserTtls(now));
+        purgedRows.increment(report.rows());
+        purgedBytes.increment(report.bytes());
+        log.info("Snapshot retention: {} partitions, {} rows, {} bytes reclaimed",
+                report.partitions(), report.rows(), report.bytes());
+    }
+
+    void ensurePartitions(LocalDate today) {
+        for (int i = 0; i <= props.monthsAhead(); i++) {
+            LocalDate month = today.withDayOfMonth(1).plusMonths(i);
+            try {
+                jdbcTemplate.queryForObject("SELECT create_snapshot_partition(?)", String.class, month);
+            } catch (DataAccessException e) {
+                if (isDuplicateTable(e)) {
+                    // Another node created it at the same moment
+                    log.debug("Snapshot partition for {} was created concurrently", month);
+                } else {
+                    log.warn("Could not create snapshot partition for {}: {}", month, e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * @return whether the statement failed because a concurrent transaction created the same table,
+     * which Postgres reports as duplicate_table or as a unique violation in its catalog
+     */
+    static boolean isDuplicateTable(DataAccessException e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException sql) {
+                return "42P07".equals(sql.getSQLState()) || "23505".equals(sql.getSQLState());
+            }
+        }
+        return false;
+    }
+
+    PurgeReport purgeExpiredPartitions(Instant now) {
+        if (props.ttl() == null) {
+            return PurgeReport.EMPTY;
+        }
+        // Partition names encode their month, the upper bound is the start of the next month
+        List<String> expired = jdbcTemplate.queryForList("""
+                SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid
+                WHERE i.inhparent = 'snapshots'::regclass
+                  AND to_date(substring(c.relname FROM '^snapshots_p([0-9]{6})$'), 'YYYYMM') + INTERVAL '1 month' <= ?
+                ORDER BY c.relname
+                """, String.class, Timestamp.from(now.minus(props.ttl())));
+
+        PurgeReport report = PurgeReport.EMPTY;
+        for (String partition : expired) {
+            try {
+                long rows = jdbcTemplate.queryForObject("SELECT count(*) FROM " + partition, Long.class);
+                long bytes = jdbcTemplate.queryForObject("SELECT pg_total_relation_size(?::regclass)", Long.class, partition);
+                if (props.detach()) {
+                    jdbcTemplate.execute("ALTER TABLE snapshots DETACH PARTITION " + partition);
+                } else {
+                    jdbcTemplate.execute("DROP TABLE IF EXISTS " + partition);
+                }
+                log.info("{} snapshot partition {} ({} rows, {} bytes)",
+                        props.detach() ? "Detached" : "Dropped", partition, rows, bytes);
+                report = report.plus(new PurgeReport(1, rows, bytes));
+            } catch (DataAccessException e) {
+                log.warn("Could not purge snapshot partition {}: {}", partition, e.getMessage());
+            }
+        }
+        if (report.partitions() > 0) {
+            snapshotBlobStore.evictAll();
+        }
+        return report;
+    }
+
+    PurgeReport purgeUserTtls(Instant now) {
+        if (props.userTtls() == null) {
+            return PurgeReport.EMPTY;
+        }
+        PurgeReport report = PurgeReport.EMPTY;
+        for (Map.Entry<String, Duration> entry : props.userTtls().entrySet()) {
+            Timestamp cutoff = Timestamp.from(now.minus(entry.getValue()));
+            int deleted;
+            do {
+                List<UUID> ids = new ArrayList<>();
+                long[] bytes = {0};
+                jdbcTemplate.query("""
+                        DELETE FROM snapshots WHERE (id, created_at) IN (
+                            SELECT id, created_at FROM snapshots
+                            WHERE owner_id = ? AND created_at < ?
+                            LIMIT ?)
+                        RETURNING id, COALESCE(octet_length(payload), 0) + COALESCE(octet_length(data), 0) AS size
+                        """, rs -> {
+                    ids.add(rs.getObject("id", UUID.class));
+                    bytes[0] += rs.getLong("size");
+                }, entry.getKey(), cutoff, props.batchSize());
+
+                ids.forEach(snapshotBlobStore::evict);
+                deleted = ids.size();
+                report = report.plus(new PurgeReport(0, deleted, bytes[0]));
+            } while (deleted == props.batchSize());
+        }
+        return report;
+    }
+}
@@ -0,0 +1,26 @@
+package com.aarw.fitdata.sync;
+
+import java.time.Instant;
+import java.time.LocalDate;
+
+/**
+ * One row of {@code sync_backfills}.
+ */
+public record Backfill(
+        String userId,
+        Status status,
+        LocalDate targetFrom,
+        int calls,
+        String lastError,
+        Instant createdAt,
+        Instant finishedAt
+) {
+    public enum Status {
+        /**
+         * Waiting for its first run, {@code targetFrom} not yet checked against the membership date
+         */
+        PENDING,
+        RUNNING,
+        DONE
+    }
+}
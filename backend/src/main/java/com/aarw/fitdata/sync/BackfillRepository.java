@@ -0,0 +1,83 @@
+package com.aarw.fitdata.sync;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public class BackfillRepository {
+
+    private static final RowMapper<Backfill> ROW_MAPPER = BackfillRepository::mapRow;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public BackfillRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Creates a pending backfill unless the user already has one.
+     *
+     * @return whether a backfill was created
+     */
+    public boolean create(String userId, LocalDate targetFrom) {
+        return jdbcTemplate.update("""
+                INSERT INTO sync_backfills (user_id, status, target_from) VALUES (?, 'PENDING', ?)
+                ON CONFLICT (user_id) DO NOTHING
+                """, userId, Date.valueOf(targetFrom)) > 0;
+    }
+
+    public Optional<Backfill> find(String userId) {
+        return jdbcTemplate.query("SELECT * FROM sync_backfills WHERE user_id = ?", ROW_MAPPER, userId)
+                .stream().findFirst();
+    }
+
+    /**
+     * @return backfills that are not done yet, oldest first
+     */
+    public List<Backfill> findUnfinished() {
+        return jdbcTemplate.query("SELECT * FROM sync_backfills WHERE status <> 'DONE' ORDER BY created_at", ROW_MAPPER);
+    }
+
+    public void start(String userId, LocalDate targetFrom) {
+        jdbcTemplate.update("""
+                UPDATE sync_backfills SET status = 'RUNNING', target_from = ?, updated_at = now() WHERE user_id = ?
+                """, Date.valueOf(targetFrom), userId);
+    }
+
+    /**
+     * Adds the Fitbit calls of one run and stores its error, {@code null} clearing the previous one.
+     */
+    public void recordRun(String userId, int calls, String error) {
+        jdbcTemplate.update("""
+                UPDATE sync_backfills SET calls = calls + ?, last_error = ?, updated_at = now() WHERE user_id = ?
+                """, calls, error, userId);
+    }
+
+    public void finish(String userId) {
+        jdbcTemplate.update("""
+                UPDATE sync_backfills SET status = 'DONE', finished_at = now(), updated_at = now() WHERE user_id = ?
+                """, userId);
+    }
+
+    private static Backfill mapRow(ResultSet rs, int rowNum) throws SQLException {
+        Timestamp finishedAt = rs.getTimestamp("finished_at");
+        return new Backfill(
+                rs.getString("user_id"),
+                Backfill.Status.valueOf(rs.getString("status")),
+                rs.getDate("target_from").toLocalDate(),
+                rs.getInt("calls"),
+                rs.getString("last_error"),
+                rs.getTimestamp("created_at").toInstant(),
+                finishedAt == null ? null : finishedAt.toInstant()
+        );
+    }
+}
@@ -0,0 +1,257 @@
+package com.aarw.fitdata.sync;
+
+import com.aarw.fitdata.config.SyncProps;
+import com.aarw.fitdata.dto.BackfillStatusDto;
+import com.aarw.fitdata.fitbit.FitbitApiClient;
+import com.aarw.fitdata.fitbit.FitbitRateLimitException;
+import com.aarw.fitdata.fitbit.FitbitRateLimitTracker;
+import com.aarw.fitdata.fitbit.dto.FitbitProfileResponse;
+import com.aarw.fitdata.history.DailyMetric;
+import com.aarw.fitdata.history.DailyMetricsFetcher;
+import com.aarw.fitdata.history.DailyMetricsStore;
+import com.aarw.fitdata.jobs.Job;
+import com.aarw.fitdata.jobs.JobHandler;
+import com.aarw.fitdata.jobs.JobQueue;
+import com.aarw.fitdata.oauth.token.FitbitTokenEntity;
+import com.aarw.fitdata.oauth.token.FitbitTokenRepository;
+import com.aarw.fitdata.oauth.token.FitbitTokenService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Imports the daily history of newly connected users in the background.
+ * <p>
+ * A backfill walks every metric group from the last closed day back to its target, newest range
+ * first and round-robin over the groups, so recent charts fill up before old ones. Each run uses
+ * the user's rate-limit budget above {@link SyncProps#reserveCalls()} and leaves the rest to the
+ * next run; progress is kept in {@code sync_checkpoints.backfilled_from}, so it survives restarts.
+ * Runs are {@value #JOB_TYPE} jobs in the {@link JobQueue}, one per user, on whichever node claims them.
+ */
+@Service
+public class BackfillService implements JobHandler {
+
+    private static final Logger log = LoggerFactory.getLogger(BackfillService.class);
+
+    static final String JOB_TYPE = "backfill";
+
+    private final SyncProps props;
+    private final BackfillRepository backfills;
+    private final SyncCheckpointRepository checkpoints;
+    private final FitbitTokenRepository tokenRepository;
+    private final FitbitTokenService tokenService;
+    private final FitbitApiClient apiClient;
+    private final DailyMetricsStore dailyMetricsStore;
+    private final DailyMetricsFetcher dailyMetricsFetcher;
+    private final FitbitRateLimitTracker rateLimitTracker;
+    private final JobQueue jobQueue;
+
+    public BackfillService(SyncProps props,
+                           BackfillRepository backfills,
+                           SyncCheckpointRepository checkpoints,
+                           FitbitTokenRepository tokenRepository,
+                           FitbitTokenService tokenService,
+                           FitbitApiClient apiClient,
+                           DailyMetricsStore dailyMetricsStore,
+                           DailyMetricsFetcher dailyMetricsFetcher,
+                           FitbitRateLimitTracker rateLimitTracker,
+                           JobQueue jobQueue) {
+        this.props = props;
+        this.backfills = backfills;
+        this.checkpoints = checkpoints;
+        this.tokenRepository = tokenRepository;
+        this.tokenService = tokenService;
+        this.apiClient = apiClient;
+        this.dailyMetricsStore = dailyMetricsStore;
+        this.dailyMetricsFetcher = dailyMetricsFetcher;
+        this.rateLimitTracker = rateLimitTracker;
+        this.jobQueue = jobQueue;
+    }
+
+    @Override
+    public String type() {
+        return JOB_TYPE;
+    }
+
+    /**
+     * Schedules the history import of a user, or resumes an unfinished one, e.g. after its job was
+     * parked. Never fails the caller.
+     */
+    public void start(String userId) {
+        if (!props.backfill().enabled()) {
+            return;
+        }
+        try {
+            if (backfills.create(userId, dailyMetricsStore.today(userId).minusMonths(props.backfill().months()))) {
+                jobQueue.enqueue(JOB_TYPE, userId, null, Instant.now());
+                log.info("Backfill of {} scheduled", userId);
+            } else if (backfills.find(userId).filter(backfill -> backfill.status() != Backfill.Status.DONE).isPresent()) {
+                jobQueue.enqueue(JOB_TYPE, userId, null, Instant.now());
+            }
+        } catch (DataAccessException e) {
+            log.warn("Could not schedule backfill of {}: {}", userId, e.getMessage());
+        }
+    }
+
+    /**
+     * Makes sure every unfinished backfill has a job at startup. Existing jobs keep their schedule,
+     * so every node may run this; parked ones stay parked until the user connects again.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void seedJobs() {
+        if (!props.backfill().enabled()) {
+            return;
+        }
+        try {
+            List<String> userIds = backfills.findUnfinished().stream().map(Backfill::userId).toList();
+            jobQueue.enqueueIfAbsent(JOB_TYPE, userIds, Instant.now());
+        } catch (DataAccessException e) {
+            log.warn("Could not queue backfill jobs: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Runs the backfill of the job's user until the budget is used up. The job comes back after
+     * {@link SyncProps.Backfill#interval()}, or when the rate-limit window resets if that is later.
+     * Other failures are left to the job queue, which retries with backoff and parks the job.
+     */
+    @Override
+    public Instant handle(Job job) {
+        Optional<Backfill> backfill = backfills.find(job.key());
+        if (backfill.isEmpty() || backfill.get().status() == Backfill.Status.DONE) {
+            return null;
+        }
+        if (tokenRepository.findByFitbitUserId(job.key()).isEmpty()) {
+            log.info("Dropping backfill of {}, the user disconnected", job.key());
+            return null;
+        }
+        if (run(backfill.get())) {
+            return null;
+        }
+        Instant next = Instant.now().plus(props.backfill().interval());
+        Instant reset = rateLimitTracker.resetAt(job.key());
+        return reset != null && reset.isAfter(next) ? reset : next;
+    }
+
+    public Optional<BackfillStatusDto> status(String userId) {
+        return backfills.find(userId).map(backfill -> {
+            Map<DailyMetric, SyncCheckpointRepository.Checkpoint> synced = checkpoints.find(userId);
+            LocalDate lastClosed = dailyMetricsStore.firstOpenDay(userId).minusDays(1);
+            long total = ChronoUnit.DAYS.between(backfill.targetFrom(), lastClosed) + 1;
+
+            List<BackfillStatusDto.Resource> resources = new ArrayList<>();
+            long imported = 0;
+            for (DailyMetric metric : SyncService.RESOURCES) {
+                LocalDate from = backfilledFrom(synced.get(metric));
+                long days = from == null ? 0 : Math.min(total, ChronoUnit.DAYS.between(from, lastClosed) + 1);
+                imported += days;
+                resources.add(new BackfillStatusDto.Resource(metric.name(), from, from != null && !from.isAfter(backfill.targetFrom())));
+            }
+            double progress = backfill.status() == Backfill.Status.DONE || total <= 0
+                    ? 1.0
+                    : (double) imported / (total * SyncService.RESOURCES.size());
+
+            return new BackfillStatusDto(backfill.status().name(), backfill.targetFrom(), progress, backfill.calls(),
+                    backfill.lastError(), backfill.createdAt(), backfill.finishedAt(), resources);
+        });
+    }
+
+    /**
+     * Imports as many ranges as the budget allows. The error of a failed run stays visible in the
+     * status until the next one.
+     *
+     * @return whether the backfill is done
+     * @throws RuntimeException if the run failed for another reason than the rate limit
+     */
+    boolean run(Backfill backfill) {
+        String userId = backfill.userId();
+        AtomicInteger calls = new AtomicInteger();
+        boolean done = false;
+        try {
+            FitbitTokenEntity token = tokenService.getValidTokenForUser(userId);
+            LocalDate target = backfill.targetFrom();
+            if (backfill.status() == Backfill.Status.PENDING) {
+                target = clampToMembership(token, target, calls);
+                backfills.start(userId, target);
+            }
+            if (importRanges(userId, token, target, calls)) {
+                backfills.finish(userId);
+                log.info("Backfill of {} finished", userId);
+                done = true;
+            }
+        } catch (FitbitRateLimitException e) {
+            log.info("Backfill of {} paused by Fitbit rate limit, retry after {}", userId, e.getRetryAfter());
+        } catch (RuntimeException e) {
+            backfills.recordRun(userId, calls.get(), e.getMessage());
+            throw e;
+        }
+        backfills.recordRun(userId, calls.get(), null);
+        return done;
+    }
+
+    /**
+     * @return whether every group reached the target
+     */
+    private boolean importRanges(String userId, FitbitTokenEntity token, LocalDate target, AtomicInteger calls) {
+        Map<DailyMetric, SyncCheckpointRepository.Checkpoint> synced = checkpoints.find(userId);
+        LocalDate lastClosed = dailyMetricsStore.firstOpenDay(userId).minusDays(1);
+
+        boolean progressed = true;
+        while (progressed) {
+            progressed = false;
+            for (DailyMetric metric : SyncService.RESOURCES) {
+                LocalDate backfilledFrom = backfilledFrom(synced.get(metric));
+                LocalDate end = backfilledFrom == null ? lastClosed : backfilledFrom.minusDays(1);
+                if (end.isBefore(target)) {
+                    continue;
+                }
+                if (rateLimitTracker.remaining(userId) <= props.reserveCalls()) {
+                    log.debug("Backfill of {} waits for rate-limit budget until {}", userId, rateLimitTracker.resetAt(userId));
+                    return false;
+                }
+
+                LocalDate start = end.minusDays(DailyMetricsFetcher.maxDays(metric) - 1);
+                if (start.isBefore(target)) {
+                    start = target;
+                }
+                dailyMetricsStore.load(userId, metric, start, end, (f, t) -> {
+                    calls.incrementAndGet();
+                    return dailyMetricsFetcher.fetch(token, metric, f, t);
+                });
+                checkpoints.backfilled(userId, metric, start, end);
+                synced.put(metric, new SyncCheckpointRepository.Checkpoint(end, start));
+                progressed = true;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Fitbit has nothing before the account was created, so ranges before it would be wasted calls.
+     */
+    private LocalDate clampToMembership(FitbitTokenEntity token, LocalDate target, AtomicInteger calls) {
+        calls.incrementAndGet();
+        FitbitProfileResponse profile = apiClient.getProfile(token);
+        if (profile == null || profile.user() == null || profile.user().memberSince() == null) {
+            return target;
+        }
+        LocalDate memberSince = LocalDate.parse(profile.user().memberSince());
+        return memberSince.isAfter(target) ? memberSince : target;
+    }
+
+    private static LocalDate backfilledFrom(SyncCheckpointRepository.Checkpoint checkpoint) {
+        return checkpoint == null ? null : checkpoint.backfilledFrom();
+    }
+}
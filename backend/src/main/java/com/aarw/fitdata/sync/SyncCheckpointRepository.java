@@ -0,0 +1,67 @@
+package com.aarw.fitdata.sync;
+
+import com.aarw.fitdata.history.DailyMetric;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.EnumMap;
+import java.util.Map;
+
+@Repository
+public class SyncCheckpointRepository {
+
+    /**
+     * @param syncedThrough  last day synced going forward
+     * @param backfilledFrom oldest day imported by the backfill, {@code null} if it has not started
+     */
+    public record Checkpoint(LocalDate syncedThrough, LocalDate backfilledFrom) {}
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public SyncCheckpointRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * @return the checkpoint per metric group; groups never synced are absent
+     */
+    public Map<DailyMetric, Checkpoint> find(String userId) {
+        Map<DailyMetric, Checkpoint> checkpoints = new EnumMap<>(DailyMetric.class);
+        jdbcTemplate.query("SELECT resource, synced_through, backfilled_from FROM sync_checkpoints WHERE user_id = ?",
+                rs -> {
+                    Date backfilledFrom = rs.getDate("backfilled_from");
+                    checkpoints.put(DailyMetric.valueOf(rs.getString("resource")), new Checkpoint(
+                            rs.getDate("synced_through").toLocalDate(),
+                            backfilledFrom == null ? null : backfilledFrom.toLocalDate()));
+                },
+                userId);
+        return checkpoints;
+    }
+
+    /**
+     * Moves the checkpoint forward; an older day than the stored one is ignored.
+     */
+    public void advance(String userId, DailyMetric metric, LocalDate syncedThrough) {
+        jdbcTemplate.update("""
+                INSERT INTO sync_checkpoints (user_id, resource, synced_through) VALUES (?, ?, ?)
+                ON CONFLICT (user_id, resource) DO UPDATE
+                SET synced_through = GREATEST(sync_checkpoints.synced_through, EXCLUDED.synced_through), updated_at = now()
+                """, userId, metric.name(), Date.valueOf(syncedThrough));
+    }
+
+    /**
+     * Records that the days from {@code from} to {@code through} have been imported by the backfill.
+     * Both ends only ever widen.
+     */
+    public void backfilled(String userId, DailyMetric metric, LocalDate from, LocalDate through) {
+        jdbcTemplate.update("""
+                INSERT INTO sync_checkpoints (user_id, resource, synced_through, backfilled_from) VALUES (?, ?, ?, ?)
+                ON CONFLICT (user_id, resource) DO UPDATE
+                SET synced_through = GREATEST(sync_checkpoints.synced_through, EXCLUDED.synced_through),
+                    backfilled_from = LEAST(COALESCE(sync_checkpoints.backfilled_from, EXCLUDED.backfilled_from), EXCLUDED.backfilled_from),
+                    updated_at = now()
+                """, userId, metric.name(), Date.valueOf(through), Date.valueOf(from));
+    }
+}
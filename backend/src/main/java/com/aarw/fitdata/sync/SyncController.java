@@ -0,0 +1,26 @@
+package com.aarw.fitdata.sync;
+
+import com.aarw.fitdata.dto.BackfillStatusDto;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.security.Principal;
+
+@RestController
+public class SyncController {
+
+    private final BackfillService backfillService;
+
+    public SyncController(BackfillService backfillService) {
+        this.backfillService = backfillService;
+    }
+
+    /**
+     * Progress of the history import started when the user connected; 404 if there is none.
+     */
+    @GetMapping("/api/sync/backfill")
+    public ResponseEntity<BackfillStatusDto> backfill(Principal principal) {
+        return ResponseEntity.of(backfillService.status(principal.getName()));
+    }
+}
@@ -0,0 +1,180 @@
+package com.aarw.fitdata.sync;
+
+import com.aarw.fitdata.config.SyncProps;
+import com.aarw.fitdata.fitbit.FitbitRateLimitException;
+import com.aarw.fitdata.fitbit.FitbitRateLimitTracker;
+import com.aarw.fitdata.history.DailyMetric;
+import com.aarw.fitdata.history.DailyMetricsFetcher;
+import com.aarw.fitdata.history.DailyMetricsStore;
+import com.aarw.fitdata.jobs.Job;
+import com.aarw.fitdata.jobs.JobHandler;
+import com.aarw.fitdata.jobs.JobQueue;
+import com.aarw.fitdata.oauth.token.FitbitTokenEntity;
+import com.aarw.fitdata.oauth.token.FitbitTokenRepository;
+import com.aarw.fitdata.oauth.token.FitbitTokenService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps the local daily history of every connected user current in the background, so
+ * interactive requests mostly find their days already stored.
+ * <p>
+ * Every user has a recurring {@value #JOB_TYPE} job in the {@link JobQueue}, so the users are
+ * spread over all nodes and none is synced twice at the same time.
+ * <p>
+ * Progress is kept per user and metric group in {@code sync_checkpoints}: a run fetches only the
+ * days after the checkpoint, in the largest ranges Fitbit accepts, and moves the checkpoint after
+ * every range, so a restart continues where the last run stopped. Open days are fetched on every
+ * run but never checkpointed. A user is skipped for the rest of the run once fewer than
+ * {@link SyncProps#reserveCalls()} calls are left in their rate-limit window.
+ */
+@Service
+public class SyncService implements JobHandler {
+
+    private static final Logger log = LoggerFactory.getLogger(SyncService.class);
+
+    static final String JOB_TYPE = "sync";
+
+    /**
+     * Metric groups with a Fitbit range endpoint, in the order they are synced.
+     */
+    static final List<DailyMetric> RESOURCES = List.of(DailyMetric.STEPS, DailyMetric.HEART, DailyMetric.WEIGHT, DailyMetric.HRV,
+            DailyMetric.SLEEP);
+
+    private final SyncProps props;
+    private final FitbitTokenRepository tokenRepository;
+    private final FitbitTokenService tokenService;
+    private final DailyMetricsStore dailyMetricsStore;
+    private final DailyMetricsFetcher dailyMetricsFetcher;
+    private final SyncCheckpointRepository checkpoints;
+    private final FitbitRateLimitTracker rateLimitTracker;
+    private final JobQueue jobQueue;
+
+    public SyncService(SyncProps props,
+                       FitbitTokenRepository tokenRepository,
+                       FitbitTokenService tokenService,
+                       DailyMetricsStore dailyMetricsStore,
+                       DailyMetricsFetcher dailyMetricsFetcher,
+                       SyncCheckpointRepository checkpoints,
+                       FitbitRateLimitTracker rateLimitTracker,
+                       JobQueue jobQueue) {
+        this.props = props;
+        this.tokenRepository = tokenRepository;
+        this.tokenService = tokenService;
+        this.dailyMetricsStore = dailyMetricsStore;
+        this.dailyMetricsFetcher = dailyMetricsFetcher;
+        this.checkpoints = checkpoints;
+        this.rateLimitTracker = rateLimitTracker;
+        this.jobQueue = jobQueue;
+    }
+
+    @Override
+    public String type() {
+        return JOB_TYPE;
+    }
+
+    /**
+     * Queues the sync of a newly connected user to run right away.
+     */
+    public void start(String userId) {
+        if (!props.enabled()) {
+            return;
+        }
+        try {
+            jobQueue.enqueue(JOB_TYPE, userId, null, Instant.now());
+        } catch (DataAccessException e) {
+            log.warn("Could not queue sync of {}: {}", userId, e.getMessage());
+        }
+    }
+
+    /**
+     * Makes sure every connected user has a sync job at startup. Existing jobs keep their schedule,
+     * so every node may run this; parked ones stay parked until the user connects again.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void seedJobs() {
+        if (!props.enabled()) {
+            return;
+        }
+        try {
+            List<String> userIds = tokenRepository.findAll().stream().map(FitbitTokenEntity::getFitbitUserId).toList();
+            jobQueue.enqueueIfAbsent(JOB_TYPE, userIds, Instant.now());
+        } catch (DataAccessException e) {
+            log.warn("Could not queue sync jobs: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Syncs the user of the job and runs it again after {@link SyncProps#interval()}.
+     */
+    @Override
+    public Instant handle(Job job) {
+        if (tokenRepository.findByFitbitUserId(job.key()).isEmpty()) {
+            log.info("Dropping sync of {}, the user disconnected", job.key());
+            return null;
+        }
+        syncUser(job.key());
+        return Instant.now().plus(props.interval());
+    }
+
+    /**
+     * Brings every metric group of the user up to today, as far as the rate-limit budget allows.
+     *
+     * @return the number of Fitbit calls made
+     */
+    public int syncUser(String userId) {
+        FitbitTokenEntity token = tokenService.getValidTokenForUser(userId);
+        Map<DailyMetric, SyncCheckpointRepository.Checkpoint> synced = checkpoints.find(userId);
+        LocalDate today = dailyMetricsStore.today(userId);
+        LocalDate lastClosed = dailyMetricsStore.firstOpenDay(userId).minusDays(1);
+        AtomicInteger calls = new AtomicInteger();
+
+        for (DailyMetric metric : RESOURCES) {
+            SyncCheckpointRepository.Checkpoint checkpoint = synced.get(metric);
+            LocalDate from = (checkpoint == null ? today.minusDays(props.initialDays()) : checkpoint.syncedThrough()).plusDays(1);
+            try {
+                while (!from.isAfter(today)) {
+                    if (rateLimitTracker.remaining(userId) <= props.reserveCalls()) {
+                        log.info("Sync of {} paused at {} {}: rate-limit budget reserved until {}",
+                                userId, metric, from, rateLimitTracker.resetAt(userId));
+                        return calls.get();
+                    }
+                    LocalDate to = from.plusDays(DailyMetricsFetcher.maxDays(metric) - 1);
+                    if (to.isAfter(today)) {
+                        to = today;
+                    }
+                    dailyMetricsStore.load(userId, metric, from, to, (f, t) -> {
+                        calls.incrementAndGet();
+                        return dailyMetricsFetcher.fetch(token, metric, f, t);
+                    });
+                    LocalDate through = to.isAfter(lastClosed) ? lastClosed : to;
+                    if (!through.isBefore(from)) {
+                        checkpoints.advance(userId, metric, through);
+                    }
+                    from = to.plusDays(1);
+                }
+            } catch (FitbitRateLimitException e) {
+                log.info("Sync of {} stopped by Fitbit rate limit, retry after {}", userId, e.getRetryAfter());
+                return calls.get();
+            } catch (Exception e) {
+                // The other groups are independent, the failed one resumes from its checkpoint next run
+                log.warn("Sync of {} for {} failed at {}: {}", metric, userId, from, e.getMessage());
+            }
+        }
+
+        if (calls.get() > 0) {
+            log.debug("Synced {} with {} Fitbit calls", userId, calls.get());
+        }
+        return calls.get();
+    }
+}
@@ -0,0 +1,60 @@
+package com.aarw.fitdata.tracing;
+
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * Runs the subtasks of a request concurrently, each in its own {@code fanout.task} observation.
+ * <p>
+ * The observation of the calling thread (e.g. the controller request) is captured when the task
+ * is submitted and becomes the parent of the task's, so the spans of the task and of the Fitbit
+ * calls it makes land in the trace of the request instead of starting new ones. The request
+ * attributes are handed over as well, so a task can mark the response as
+ * {@link com.aarw.fitdata.fitbit.PartialResults partial}.
+ */
+@Component
+public class FanOut {
+
+    // Subtasks block on WebClient calls, a virtual thread per task is the cheapest way to wait
+    private static final Executor TASKS = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("fanout-task-", 0).factory());
+
+    private final ObservationRegistry observationRegistry;
+
+    public FanOut(ObservationRegistry observationRegistry) {
+        this.observationRegistry = observationRegistry;
+    }
+
+    public <T> CompletableFuture<T> supplyAsync(String task, Supplier<T> supplier) {
+        return supplyAsync(task, supplier, TASKS);
+    }
+
+    /**
+     * @param task low-cardinality name of the subtask, the span name and the {@code task} tag
+     */
+    public <T> CompletableFuture<T> supplyAsync(String task, Supplier<T> supplier, Executor executor) {
+        Observation parent = observationRegistry.getCurrentObservation();
+        RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
+        return CompletableFuture.supplyAsync(() -> Observation.createNotStarted("fanout.task", observationRegistry)
+                .contextualName(task)
+                .lowCardinalityKeyValue("task", task)
+                .parentObservation(parent)
+                .observe(supplier), command -> executor.execute(() -> {
+            // Around the whole command, so callbacks run on completion (e.g. exceptionally) see them too
+            RequestContextHolder.setRequestAttributes(requestAttributes);
+            try {
+                command.run();
+            } finally {
+                RequestContextHolder.resetRequestAttributes();
+            }
+        }));
+    }
+}
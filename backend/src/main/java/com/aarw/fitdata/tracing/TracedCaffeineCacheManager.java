@@ -0,0 +1,112 @@
+package com.aarw.fitdata.tracing;
+
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import org.springframework.cache.Cache;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A {@link CaffeineCacheManager} whose caches put every synchronized lookup
+ * ({@code @Cacheable(sync = true)}) in a {@code fitbit.cache} observation tagged with the cache
+ * name and {@code cache.hit}. A miss is the parent of the Fitbit call that loads the value, so a
+ * trace shows which branch waited on Fitbit and which was served from memory.
+ * <p>
+ * A synchronized lookup loads each key once: concurrent callers of a key being loaded wait for
+ * that load instead of starting their own. The load runs outside Caffeine's {@code compute}, so a
+ * slow Fitbit call neither holds a lock of the cache's map, which other keys share, nor pins the
+ * virtual thread it runs on.
+ * <p>
+ * The caches stay {@link CaffeineCache}s, so the cache metrics are bound as before.
+ */
+public class TracedCaffeineCacheManager extends CaffeineCacheManager {
+
+    private final ObservationRegistry observationRegistry;
+
+    public TracedCaffeineCacheManager(ObservationRegistry observationRegistry) {
+        this.observationRegistry = observationRegistry;
+    }
+
+    @Override
+    protected Cache adaptCaffeineCache(String name, com.github.benmanes.caffeine.cache.Cache<Object, Object> cache) {
+        return new TracedCaffeineCache(name, cache, isAllowNullValues(), observationRegistry);
+    }
+
+    static class TracedCaffeineCache extends CaffeineCache {
+
+        private final ObservationRegistry observationRegistry;
+        private final ConcurrentMap<Object, CompletableFuture<Object>> loads = new ConcurrentHashMap<>();
+
+        TracedCaffeineCache(String name, com.github.benmanes.caffeine.cache.Cache<Object, Object> cache,
+                            boolean allowNullValues, ObservationRegistry observationRegistry) {
+            super(name, cache, allowNullValues);
+            this.observationRegistry = observationRegistry;
+        }
+
+        /**
+         * A caller that waits for the value another caller is loading counts as a hit: it made no call.
+         */
+        @Override
+        public <T> T get(Object key, Callable<T> valueLoader) {
+            Observation observation = Observation.createNotStarted("fitbit.cache", observationRegistry)
+                    .contextualName("cache " + getName())
+                    .lowCardinalityKeyValue("cache", getName());
+            return observation.observe(() -> {
+                boolean[] loaded = new boolean[1];
+                try {
+                    return load(key, valueLoader, loaded);
+                } finally {
+                    observation.lowCardinalityKeyValue("cache.hit", String.valueOf(!loaded[0]));
+                }
+            });
+        }
+
+        @SuppressWarnings("unchecked")
+        private <T> T load(Object key, Callable<T> valueLoader, boolean[] loaded) {
+            ValueWrapper cached = get(key);
+            if (cached != null) {
+                return (T) cached.get();
+            }
+            CompletableFuture<Object> load = new CompletableFuture<>();
+            CompletableFuture<Object> running = loads.putIfAbsent(key, load);
+            if (running != null) {
+                return (T) await(key, valueLoader, running);
+            }
+            try {
+                // The previous load may have stored the value after the lookup above
+                cached = get(key);
+                if (cached != null) {
+                    load.complete(cached.get());
+                    return (T) cached.get();
+                }
+                loaded[0] = true;
+                T value;
+                try {
+                    value = valueLoader.call();
+                } catch (Throwable ex) {
+                    load.completeExceptionally(ex);
+                    throw new ValueRetrievalException(key, valueLoader, ex);
+                }
+                put(key, value);
+                load.complete(value);
+                return value;
+            } finally {
+                loads.remove(key, load);
+            }
+        }
+
+        private static Object await(Object key, Callable<?> valueLoader, CompletableFuture<Object> running) {
+            try {
+                return running.join();
+            } catch (CompletionException ex) {
+                throw new ValueRetrievalException(key, valueLoader, ex.getCause());
+            }
+        }
+    }
+}
@@ -0,0 +1,13 @@
+-- Intraday heart rate of closed days, one row per user and day. samples holds the zones and the
+-- delta/varint-encoded series (see IntradayHeartRateCodec); the scalar fields of the day are
+-- plain columns so they can be read without decoding.
+CREATE TABLE intraday_heart_days (
+    user_id VARCHAR(64) NOT NULL,
+    day DATE NOT NULL,
+    resting_hr SMALLINT,
+    calories_out INTEGER,
+    activity_calories INTEGER,
+    samples BYTEA NOT NULL,
+    archived_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (user_id, day)
+);
@@ -0,0 +1,13 @@
+-- HTTP sessions shared by all nodes. attributes is the Java-serialized attribute map. Nodes keep
+-- hot sessions in memory and write last_accessed_at back lazily, so it (and expires_at) may lag
+-- behind the real last access by up to sessions.touch-interval.
+CREATE TABLE http_sessions (
+    id VARCHAR(64) PRIMARY KEY,
+    created_at TIMESTAMP WITH TIME ZONE NOT NULL,
+    last_accessed_at TIMESTAMP WITH TIME ZONE NOT NULL,
+    max_inactive_seconds INTEGER NOT NULL,
+    expires_at TIMESTAMP WITH TIME ZONE NOT NULL,
+    attributes BYTEA NOT NULL
+);
+
+CREATE INDEX http_sessions_expires_at_idx ON http_sessions (expires_at);
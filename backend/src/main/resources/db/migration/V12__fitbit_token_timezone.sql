@@ -0,0 +1,3 @@
+-- Timezone of the user's Fitbit profile (e.g. Europe/Berlin): Fitbit days start at midnight
+-- there, so it decides which days are still open. NULL until the profile was first read.
+ALTER TABLE fitbit_token ADD COLUMN timezone VARCHAR(64);
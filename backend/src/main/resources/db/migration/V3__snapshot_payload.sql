@@ -0,0 +1,10 @@
+-- Snapshots move from plain JSON text to a compressed payload: one format byte followed by the
+-- encoded snapshot (see SnapshotCodec). Rows written before this migration keep their text in
+-- "data" until the background migration has converted them.
+ALTER TABLE snapshots ADD COLUMN payload BYTEA;
+ALTER TABLE snapshots ALTER COLUMN data DROP NOT NULL;
+
+-- The payload is already compressed, don't let TOAST try again
+ALTER TABLE snapshots ALTER COLUMN payload SET STORAGE EXTERNAL;
+
+CREATE INDEX snapshots_unmigrated_idx ON snapshots (created_at) WHERE payload IS NULL;
@@ -0,0 +1,57 @@
+-- Snapshots become a table range-partitioned by month on created_at, so expired months can be
+-- dropped as a whole instead of deleted row by row. The partition key has to be part of the
+-- primary key; ids stay unique as they are random UUIDs.
+
+-- Creates the partition holding the month of the given day, if it does not exist yet.
+CREATE FUNCTION create_snapshot_partition(month_of DATE) RETURNS TEXT AS $$
+DECLARE
+    month_start DATE := date_trunc('month', month_of)::DATE;
+    partition_name TEXT := 'snapshots_p' || to_char(month_start, 'YYYYMM');
+BEGIN
+    IF to_regclass(partition_name) IS NULL THEN
+        EXECUTE format(
+            'CREATE TABLE %I PARTITION OF snapshots FOR VALUES FROM (%L) TO (%L)',
+            partition_name, month_start, (month_start + INTERVAL '1 month')::DATE
+        );
+        -- The payload is already compressed, don't let TOAST try again
+        EXECUTE format('ALTER TABLE %I ALTER COLUMN payload SET STORAGE EXTERNAL', partition_name);
+    END IF;
+    RETURN partition_name;
+END;
+$$ LANGUAGE plpgsql;
+
+ALTER TABLE snapshots RENAME TO snapshots_legacy;
+DROP INDEX snapshots_unmigrated_idx;
+
+CREATE TABLE snapshots (
+    id UUID NOT NULL,
+    owner_id VARCHAR(64),
+    data TEXT,
+    payload BYTEA,
+    created_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (id, created_at)
+) PARTITION BY RANGE (created_at);
+
+-- Catches rows outside of the created partitions; the retention job keeps partitions created
+-- ahead of time so this one stays empty.
+CREATE TABLE snapshots_default PARTITION OF snapshots DEFAULT;
+ALTER TABLE snapshots_default ALTER COLUMN payload SET STORAGE EXTERNAL;
+
+DO $$
+DECLARE
+    month DATE := date_trunc('month', COALESCE((SELECT min(created_at) FROM snapshots_legacy), now()))::DATE;
+BEGIN
+    WHILE month <= date_trunc('month', now() + INTERVAL '2 months') LOOP
+        PERFORM create_snapshot_partition(month);
+        month := month + INTERVAL '1 month';
+    END LOOP;
+END;
+$$;
+
+INSERT INTO snapshots (id, data, payload, created_at)
+SELECT id, data, payload, COALESCE(created_at, now()) FROM snapshots_legacy;
+
+DROP TABLE snapshots_legacy;
+
+CREATE INDEX snapshots_owner_created_idx ON snapshots (owner_id, created_at);
+CREATE INDEX snapshots_unmigrated_idx ON snapshots (created_at) WHERE payload IS NULL;
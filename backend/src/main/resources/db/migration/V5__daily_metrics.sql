@@ -0,0 +1,21 @@
+-- Local history of daily Fitbit values, one row per user and day. fetched_mask has a bit per
+-- metric group (see DailyMetric) that is set once the value of a closed day has been fetched,
+-- so a NULL value with the bit set means "Fitbit has nothing for that day".
+CREATE TABLE daily_metrics (
+    user_id VARCHAR(64) NOT NULL,
+    day DATE NOT NULL,
+    fetched_mask SMALLINT NOT NULL DEFAULT 0,
+    steps INTEGER,
+    resting_hr SMALLINT,
+    zone_out_min SMALLINT,
+    zone_fat_burn_min SMALLINT,
+    zone_cardio_min SMALLINT,
+    zone_peak_min SMALLINT,
+    hrv_rmssd REAL,
+    weight_kg REAL,
+    sleep_minutes SMALLINT,
+    sleep_score SMALLINT,
+    activity_calories INTEGER,
+    updated_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (user_id, day)
+);
@@ -0,0 +1,9 @@
+-- Progress of the background sync: every day up to synced_through has been fetched into
+-- daily_metrics for that user and metric group (see DailyMetric).
+CREATE TABLE sync_checkpoints (
+    user_id VARCHAR(64) NOT NULL,
+    resource VARCHAR(16) NOT NULL,
+    synced_through DATE NOT NULL,
+    updated_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (user_id, resource)
+);
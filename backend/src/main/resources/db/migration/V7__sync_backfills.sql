@@ -0,0 +1,15 @@
+-- History import of newly connected users, one row per user. target_from is the oldest day to
+-- import; it is moved up to the Fitbit membership date when the backfill starts.
+CREATE TABLE sync_backfills (
+    user_id VARCHAR(64) PRIMARY KEY,
+    status VARCHAR(16) NOT NULL,
+    target_from DATE NOT NULL,
+    calls INTEGER NOT NULL DEFAULT 0,
+    last_error TEXT,
+    created_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    finished_at TIMESTAMP WITH TIME ZONE
+);
+
+-- Backfill progress per metric group: every day from backfilled_from up to synced_through is stored
+ALTER TABLE sync_checkpoints ADD COLUMN backfilled_from DATE;
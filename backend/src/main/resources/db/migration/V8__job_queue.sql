@@ -0,0 +1,21 @@
+-- Background jobs shared by all nodes. Workers claim due rows with FOR UPDATE SKIP LOCKED and own
+-- them until locked_until; a job whose worker died becomes claimable again after that. A job key
+-- (e.g. the user id) is unique per type, so a job is never queued twice. Jobs that ran out of
+-- attempts keep their row with failed_at set until they are enqueued again.
+CREATE TABLE job_queue (
+    id BIGSERIAL PRIMARY KEY,
+    type VARCHAR(32) NOT NULL,
+    job_key VARCHAR(128) NOT NULL,
+    payload TEXT,
+    run_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    attempts INTEGER NOT NULL DEFAULT 0,
+    locked_by VARCHAR(128),
+    locked_until TIMESTAMP WITH TIME ZONE,
+    last_error TEXT,
+    failed_at TIMESTAMP WITH TIME ZONE,
+    created_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    CONSTRAINT job_queue_type_key_uk UNIQUE (type, job_key)
+);
+
+CREATE INDEX job_queue_due_idx ON job_queue (run_at) WHERE failed_at IS NULL;
@@ -0,0 +1,28 @@
+-- Weekly and monthly aggregates of daily_metrics for long-range charts. Buckets are recomputed from
+-- daily_metrics whenever days inside them are written. days_fetched counts the days of the bucket
+-- whose metric group is final, so readers can tell a complete bucket from one with gaps.
+CREATE TABLE metric_rollups (
+    user_id VARCHAR(64) NOT NULL,
+    metric VARCHAR(16) NOT NULL,
+    period VARCHAR(8) NOT NULL,
+    period_start DATE NOT NULL,
+    value_sum DOUBLE PRECISION NOT NULL,
+    value_count INTEGER NOT NULL,
+    value_min DOUBLE PRECISION,
+    value_max DOUBLE PRECISION,
+    days_fetched INTEGER NOT NULL,
+    updated_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (user_id, metric, period, period_start)
+);
+
+-- Roll up the history stored so far
+INSERT INTO metric_rollups (user_id, metric, period, period_start, value_sum, value_count, value_min, value_max, days_fetched)
+SELECT user_id, m.metric, p.period, date_trunc(p.unit, day)::date,
+       COALESCE(sum(m.value), 0), count(m.value), min(m.value), max(m.value),
+       count(*) FILTER (WHERE fetched_mask & m.bit <> 0)
+FROM daily_metrics
+CROSS JOIN LATERAL (VALUES ('STEPS', steps::double precision, 1),
+                           ('RESTING_HR', resting_hr::double precision, 2),
+                           ('WEIGHT', weight_kg::double precision, 8)) AS m(metric, value, bit)
+CROSS JOIN (VALUES ('WEEK', 'week'), ('MONTH', 'month')) AS p(period, unit)
+GROUP BY user_id, m.metric, p.period, date_trunc(p.unit, day);
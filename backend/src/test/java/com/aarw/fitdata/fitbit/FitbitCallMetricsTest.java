@@ -0,0 +1,54 @@
+package com.aarw.fitdata.fitbit;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FitbitCallMetricsTest {
+
+    private SimpleMeterRegistry registry;
+    private FitbitCallMetrics metrics;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        metrics = new FitbitCallMetrics(registry, new FitbitRateLimitTracker());
+    }
+
+    @Test
+    void callIsTimedAndSizedByEndpointFamily() {
+        ClientResponse response = call("/1/user/-/body/log/weight/date/2026-01-01/2026-01-31.json", HttpStatus.OK, "{\"weight\":[]}");
+        assertEquals("{\"weight\":[]}", response.bodyToMono(String.class).block());
+
+        var timer = registry.get("fitbit.client.requests").tag("endpoint", "weight").tag("status", "200").tag("outcome", "SUCCESS").timer();
+        assertEquals(1, timer.count());
+        assertEquals(13, registry.get("fitbit.client.response.size").tag("endpoint", "weight").summary().totalAmount());
+    }
+
+    @Test
+    void rateLimitedCallsAreCounted() {
+        call("/1/user/-/activities/heart/date/2026-01-01/1d/1min.json", HttpStatus.TOO_MANY_REQUESTS, "").releaseBody().block();
+
+        assertEquals(1, registry.get("fitbit.client.rate.limited").tag("endpoint", "heart-intraday").counter().count());
+        assertEquals(1, registry.get("fitbit.client.requests").tag("outcome", "RATE_LIMITED").timer().count());
+    }
+
+    @Test
+    void remainingBudgetIsExposed() {
+        assertEquals(FitbitRateLimitTracker.DEFAULT_LIMIT, registry.get("fitbit.rate.limit.remaining").gauge().value());
+    }
+
+    private ClientResponse call(String path, HttpStatus status, String body) {
+        ClientRequest request = ClientRequest.create(HttpMethod.GET, URI.create("https://api.fitbit.com" + path)).build();
+        return metrics.filter(request, _ -> Mono.just(ClientResponse.create(status).body(body).build())).block();
+    }
+}
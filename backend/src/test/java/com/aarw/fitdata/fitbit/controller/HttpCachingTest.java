@@ -0,0 +1,64 @@
+package com.aarw.fitdata.fitbit.controller;
+
+import com.aarw.fitdata.config.HttpCacheProps;
+import com.aarw.fitdata.history.DailyMetricsRepository;
+import com.aarw.fitdata.history.DailyMetricsStore;
+import com.aarw.fitdata.history.DataVersion;
+import com.aarw.fitdata.history.MetricRollupRepository;
+import com.aarw.fitdata.history.UserTimezones;
+import com.aarw.fitdata.oauth.token.FitbitTokenRepository;
+import com.aarw.fitdata.oauth.token.FitbitTokenService;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class HttpCachingTest {
+
+    private final HttpCaching httpCaching = new HttpCaching(new HttpCacheProps(Duration.ofDays(1), Duration.ZERO),
+            new DailyMetricsStore(mock(DailyMetricsRepository.class), mock(MetricRollupRepository.class),
+                new UserTimezones(mock(FitbitTokenRepository.class))),
+            mock(FitbitTokenService.class));
+
+    @Test
+    void completeDataIsRevalidatedWithoutLoading() {
+        AtomicInteger loads = new AtomicInteger();
+        DataVersion version = new DataVersion("u:7@2026-01-20T10:00:00Z", true);
+
+        var first = httpCaching.stored(request(null), () -> version, () -> "body-" + loads.incrementAndGet());
+        assertEquals("body-1", first.getBody());
+        assertEquals("max-age=86400, private", first.getHeaders().getCacheControl());
+
+        var second = httpCaching.stored(request(first.getHeaders().getETag()), () -> version, () -> "body-" + loads.incrementAndGet());
+        assertNull(second.getBody());
+        assertEquals(first.getHeaders().getETag(), second.getHeaders().getETag());
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void incompleteDataIsVersionedAfterLoading() {
+        DataVersion[] versions = {new DataVersion("u:5@2026-01-20T10:00:00Z", false), new DataVersion("u:7@2026-01-21T08:00:00Z", false)};
+        AtomicInteger reads = new AtomicInteger();
+
+        var response = httpCaching.stored(request(null), () -> versions[reads.getAndIncrement()], () -> "body");
+
+        assertEquals(2, reads.get());
+        assertEquals("no-cache, private", response.getHeaders().getCacheControl());
+        assertNotEquals(httpCaching.stored(request(null), () -> versions[0], () -> "body").getHeaders().getETag(),
+                response.getHeaders().getETag());
+    }
+
+    private static MockHttpServletRequest request(String ifNoneMatch) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/steps");
+        request.setQueryString("range=LAST_30_DAYS&baseDate=2026-01-15");
+        if (ifNoneMatch != null) {
+            request.addHeader(HttpHeaders.IF_NONE_MATCH, ifNoneMatch);
+        }
+        return request;
+    }
+}
@@ -0,0 +1,42 @@
+package com.aarw.fitdata.fitbit.controller;
+
+import org.junit.jupiter.api.Test;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NdjsonStreamsTest {
+
+    private final NdjsonStreams streams = new NdjsonStreams(JsonMapper.builder().build());
+
+    @Test
+    void aCompleteStreamEndsWithTheEndLine() throws Exception {
+        String body = write(sink -> {
+            sink.accept(List.of(Map.of("v", 1), Map.of("v", 2)));
+            sink.accept(List.of(Map.of("v", 3)));
+        });
+
+        assertEquals("{\"v\":1}\n{\"v\":2}\n{\"v\":3}\n{\"end\":true}\n", body);
+    }
+
+    @Test
+    void aFailureAfterTheFirstWindowEndsWithAnErrorLine() throws Exception {
+        String body = write(sink -> {
+            sink.accept(List.of(Map.of("v", 1)));
+            throw new IllegalStateException("Fitbit unavailable");
+        });
+
+        assertEquals("{\"v\":1}\n{\"error\":\"Loading the series failed\"}\n", body);
+    }
+
+    private String write(NdjsonStreams.Source source) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        streams.stream(source).getBody().writeTo(out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,105 @@
+package com.aarw.fitdata.fitbit.controller;
+
+import com.aarw.fitdata.config.HttpCacheProps;
+import com.aarw.fitdata.dto.SleepDto;
+import com.aarw.fitdata.fitbit.PartialResults;
+import com.aarw.fitdata.fitbit.service.SleepService;
+import com.aarw.fitdata.history.DailyMetricsRepository;
+import com.aarw.fitdata.history.DailyMetricsStore;
+import com.aarw.fitdata.history.MetricRollupRepository;
+import com.aarw.fitdata.history.UserTimezones;
+import com.aarw.fitdata.oauth.token.FitbitTokenRepository;
+import com.aarw.fitdata.oauth.token.FitbitTokenService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.filter.ShallowEtagHeaderFilter;
+import tools.jackson.dataformat.cbor.CBORMapper;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.EnumSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+class SleepControllerTest {
+
+    private SleepService sleepService;
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        sleepService = mock(SleepService.class);
+        HttpCaching httpCaching = new HttpCaching(new HttpCacheProps(Duration.ofDays(1), Duration.ZERO),
+                new DailyMetricsStore(mock(DailyMetricsRepository.class), mock(MetricRollupRepository.class),
+                new UserTimezones(mock(FitbitTokenRepository.class))),
+                mock(FitbitTokenService.class));
+        ShallowEtagHeaderFilter etagFilter = new ShallowEtagHeaderFilter();
+        etagFilter.setWriteWeakETag(true);
+        mockMvc = MockMvcBuilders.standaloneSetup(new SleepController(sleepService, httpCaching)).addFilters(etagFilter).build();
+        when(sleepService.getSleep(any(LocalDate.class), any())).thenAnswer(inv -> new SleepDto(inv.getArgument(0).toString(),
+                420, 460, 81, "23:00", "07:00", new SleepDto.LevelsSummary(60, 240, 90, 30), List.of()));
+    }
+
+    @Test
+    void pastDayIsLongLivedAndRevalidates() throws Exception {
+        String etag = mockMvc.perform(get("/api/sleep").param("date", "2026-01-15"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "max-age=86400, private"))
+                .andExpect(header().string(HttpHeaders.VARY, "Cookie, Accept"))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(get("/api/sleep").param("date", "2026-01-15").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+
+        mockMvc.perform(get("/api/sleep").param("date", "2026-01-16").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void todayIsRevalidatedEveryTime() throws Exception {
+        mockMvc.perform(get("/api/sleep").param("date", LocalDate.now().toString()))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "no-cache, private"))
+                .andExpect(header().exists(HttpHeaders.ETAG));
+    }
+
+    @Test
+    void partialPastDayIsRevalidatedEveryTime() throws Exception {
+        when(sleepService.getSleep(any(LocalDate.class), any())).thenAnswer(inv -> {
+            PartialResults.mark();
+            return new SleepDto(inv.getArgument(0).toString(), 0, 0, null, null, null, null, List.of());
+        });
+
+        mockMvc.perform(get("/api/sleep").param("date", "2026-01-15"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "no-cache, private"));
+    }
+
+    @Test
+    void negotiatesCbor() throws Exception {
+        byte[] body = mockMvc.perform(get("/api/sleep").param("date", "2026-01-15").accept(MediaType.APPLICATION_CBOR))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        assertEquals(sleepService.getSleep(LocalDate.of(2026, 1, 15), EnumSet.allOf(SleepService.Field.class)), CBORMapper.builder().build().readValue(body, SleepDto.class));
+    }
+
+    @Test
+    void passesRequestedFields() throws Exception {
+        mockMvc.perform(get("/api/sleep").param("date", "2026-01-15").param("fields", "LEVELS"))
+                .andExpect(status().isOk());
+
+        verify(sleepService).getSleep(LocalDate.of(2026, 1, 15), EnumSet.of(SleepService.Field.LEVELS));
+    }
+}
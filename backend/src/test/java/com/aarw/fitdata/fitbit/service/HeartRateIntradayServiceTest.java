@@ -1,15 +1,25 @@
 package com.aarw.fitdata.fitbit.service;
 
+import com.aarw.fitdata.dto.HeartRateIntradayDto;
 import com.aarw.fitdata.fitbit.FitbitApiClient;
 import com.aarw.fitdata.fitbit.FitbitRateLimitException;
 import com.aarw.fitdata.fitbit.dto.FitbitHeartIntradayResponse;
+import com.aarw.fitdata.history.DailyMetricsRepository;
+import com.aarw.fitdata.history.DailyMetricsStore;
+import com.aarw.fitdata.history.IntradayHeartRateRepository;
+import com.aarw.fitdata.history.MetricRollupRepository;
+import com.aarw.fitdata.history.UserTimezones;
 import com.aarw.fitdata.oauth.token.FitbitTokenEntity;
+import com.aarw.fitdata.oauth.token.FitbitTokenRepository;
 import com.aarw.fitdata.oauth.token.FitbitTokenService;
+import com.aarw.fitdata.tracing.FanOut;
+import io.micrometer.observation.ObservationRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -19,13 +29,17 @@ import static org.mockito.Mockito.*;
 class HeartRateIntradayServiceTest {
 
     private FitbitApiClient apiClient;
+    private IntradayHeartRateRepository archive;
     private HeartRateIntradayService service;
 
     @BeforeEach
     void setUp() {
         FitbitTokenService tokenService = mock(FitbitTokenService.class);
         apiClient = mock(FitbitApiClient.class);
-        service = new HeartRateIntradayService(tokenService, apiClient);
+        archive = mock(IntradayHeartRateRepository.class);
+        DailyMetricsStore store = new DailyMetricsStore(mock(DailyMetricsRepository.class), mock(MetricRollupRepository.class),
+                new UserTimezones(mock(FitbitTokenRepository.class)));
+        service = new HeartRateIntradayService(tokenService, apiClient, store, archive, new FanOut(ObservationRegistry.NOOP));
 
         when(tokenService.getValidTokenOrThrow()).thenReturn(new FitbitTokenEntity());
     }
@@ -82,4 +96,38 @@ class HeartRateIntradayServiceTest {
 
         assertThrows(FitbitRateLimitException.class, () -> service.get(date));
     }
+
+    @Test
+    void archivedDayIsServedWithoutFitbitCalls() {
+        LocalDate date = LocalDate.of(2026, 1, 14);
+        HeartRateIntradayDto archived = new HeartRateIntradayDto(date, 58, 52, 140, 2400, 700, List.of(),
+                List.of(new HeartRateIntradayDto.Point("00:00:00", 52), new HeartRateIntradayDto.Point("12:00:00", 140)));
+        when(archive.find(any(), eq(date))).thenReturn(Optional.of(archived));
+
+        assertSame(archived, service.get(date));
+        verifyNoInteractions(apiClient);
+    }
+
+    @Test
+    void closedDayWithSamplesIsArchived() {
+        LocalDate date = LocalDate.of(2026, 1, 15);
+        when(apiClient.getHeartIntraday(any(), eq(date.toString()), eq("1min"))).thenReturn(new FitbitHeartIntradayResponse(
+                new FitbitHeartIntradayResponse.Intraday(List.of(new FitbitHeartIntradayResponse.DataPoint("10:00:00", 70)), 1, "1min")));
+
+        HeartRateIntradayDto dto = service.get(date);
+
+        verify(archive).save(any(), eq(dto));
+    }
+
+    @Test
+    void openDayIsNotArchived() {
+        LocalDate today = LocalDate.now();
+        when(apiClient.getHeartIntraday(any(), eq(today.toString()), eq("1min"))).thenReturn(new FitbitHeartIntradayResponse(
+                new FitbitHeartIntradayResponse.Intraday(List.of(new FitbitHeartIntradayResponse.DataPoint("10:00:00", 70)), 1, "1min")));
+
+        service.get(today);
+
+        verify(archive, never()).find(any(), any());
+        verify(archive, never()).save(any(), any());
+    }
 }
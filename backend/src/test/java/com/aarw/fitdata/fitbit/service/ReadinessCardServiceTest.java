@@ -5,16 +5,26 @@ import com.aarw.fitdata.dto.HeartRateRangeDto;
 import com.aarw.fitdata.dto.ReadinessCardDto;
 import com.aarw.fitdata.dto.SleepDto;
 import com.aarw.fitdata.fitbit.FitbitApiClient;
+import com.aarw.fitdata.fitbit.FitbitRateLimitTracker;
 import com.aarw.fitdata.fitbit.dto.FitbitActivitiesSummaryResponse;
 import com.aarw.fitdata.fitbit.dto.FitbitHrvResponse;
 import com.aarw.fitdata.fitbit.dto.FitbitVo2MaxResponse;
+import com.aarw.fitdata.history.DailyMetricsFetcher;
+import com.aarw.fitdata.history.DailyMetricsRepository;
+import com.aarw.fitdata.history.DailyMetricsStore;
+import com.aarw.fitdata.history.MetricRollupRepository;
+import com.aarw.fitdata.history.UserTimezones;
 import com.aarw.fitdata.oauth.token.FitbitTokenEntity;
+import com.aarw.fitdata.oauth.token.FitbitTokenRepository;
 import com.aarw.fitdata.oauth.token.FitbitTokenService;
+import com.aarw.fitdata.tracing.FanOut;
+import io.micrometer.observation.ObservationRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.time.LocalDate;
 import java.util.Collections;
+import java.util.EnumSet;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -27,6 +37,7 @@ class ReadinessCardServiceTest {
     private FitbitApiClient apiClient;
     private HeartRateService heartRateService;
     private SleepService sleepService;
+    private DailyMetricsRepository dailyMetricsRepository;
     private ReadinessCardService service;
 
     @BeforeEach
@@ -35,7 +46,12 @@ class ReadinessCardServiceTest {
         apiClient = mock(FitbitApiClient.class);
         heartRateService = mock(HeartRateService.class);
         sleepService = mock(SleepService.class);
-        service = new ReadinessCardService(tokenService, apiClient, heartRateService, sleepService);
+        FanOut fanOut = new FanOut(ObservationRegistry.NOOP);
+        UserTimezones timezones = new UserTimezones(mock(FitbitTokenRepository.class));
+        dailyMetricsRepository = mock(DailyMetricsRepository.class);
+        service = new ReadinessCardService(tokenService, apiClient, heartRateService, sleepService,
+                new DailyMetricsStore(dailyMetricsRepository, mock(MetricRollupRepository.class), timezones),
+                new DailyMetricsFetcher(apiClient, new FitbitRateLimitTracker(), fanOut, timezones), fanOut);
 
         when(tokenService.getValidTokenOrThrow()).thenReturn(new FitbitTokenEntity());
     }
@@ -51,11 +67,11 @@ class ReadinessCardServiceTest {
                 )));
 
         // Mock dependencies for estimation
-        when(heartRateService.getDay(today)).thenReturn(new HeartRateDayDto(today, 60, new HeartRateDayDto.Zones(0, 0, 0, 0)));
-        when(heartRateService.getRange(any(), eq(today))).thenReturn(new HeartRateRangeDto("LAST_7_DAYS", today.minusDays(7), today, List.of(
+        when(heartRateService.getDay(any(), eq(today))).thenReturn(new HeartRateDayDto(today, 60, new HeartRateDayDto.Zones(0, 0, 0, 0)));
+        when(heartRateService.getRange(any(), any(), eq(today))).thenReturn(new HeartRateRangeDto("LAST_7_DAYS", today.minusDays(7), today, List.of(
                 new HeartRateRangeDto.Point(today, 60, new HeartRateDayDto.Zones(0, 0, 0, 0))
         )));
-        when(sleepService.getSleep(today)).thenReturn(new SleepDto(today.toString(), 480, 500, 85, "22:00", "06:00", new SleepDto.LevelsSummary(0, 0, 0, 0), List.of()));
+        when(sleepService.getSleep(any(), eq(today), any())).thenReturn(new SleepDto(today.toString(), 480, 500, 85, "22:00", "06:00", new SleepDto.LevelsSummary(0, 0, 0, 0), List.of()));
         when(apiClient.getActivitiesSummaryForDay(any(), eq(today.toString()))).thenReturn(new FitbitActivitiesSummaryResponse(new FitbitActivitiesSummaryResponse.Summary(2000, 1000)));
 
         // Mock HRV responses
@@ -86,13 +102,47 @@ class ReadinessCardServiceTest {
                 .thenReturn(new FitbitVo2MaxResponse(Collections.emptyList()));
 
         // Mock estimation dependencies to avoid NullPointerException
-        when(heartRateService.getDay(today)).thenReturn(new HeartRateDayDto(today, 60, new HeartRateDayDto.Zones(0, 0, 0, 0)));
-        when(heartRateService.getRange(any(), eq(today))).thenReturn(new HeartRateRangeDto("LAST_7_DAYS", today.minusDays(7), today, List.of()));
-        when(sleepService.getSleep(today)).thenReturn(new SleepDto(today.toString(), 0, 0, null, null, null, null, List.of()));
+        when(heartRateService.getDay(any(), eq(today))).thenReturn(new HeartRateDayDto(today, 60, new HeartRateDayDto.Zones(0, 0, 0, 0)));
+        when(heartRateService.getRange(any(), any(), eq(today))).thenReturn(new HeartRateRangeDto("LAST_7_DAYS", today.minusDays(7), today, List.of()));
+        when(sleepService.getSleep(any(), eq(today), any())).thenReturn(new SleepDto(today.toString(), 0, 0, null, null, null, null, List.of()));
 
         service.getReadinessCard(today);
 
         // Verify official endpoints are called
         verify(apiClient, times(1)).getVo2Max(any(), eq(today.toString()));
     }
+
+    @Test
+    void aFailedActivityDayStoresNothing() {
+        // A Wednesday, so Monday and Tuesday are fetched too
+        LocalDate day = LocalDate.now().with(java.time.DayOfWeek.WEDNESDAY);
+        when(apiClient.getActivitiesSummaryForDay(any(), any()))
+                .thenReturn(new FitbitActivitiesSummaryResponse(new FitbitActivitiesSummaryResponse.Summary(2000, 1000)));
+        when(apiClient.getActivitiesSummaryForDay(any(), eq(day.minusDays(1).toString())))
+                .thenThrow(new IllegalStateException("Fitbit unavailable"));
+
+        ReadinessCardDto result = service.getReadinessCard(day, EnumSet.of(ReadinessCardService.Field.EXERCISE_DAYS));
+
+        assertEquals(0, result.exerciseDays());
+        verify(dailyMetricsRepository, never()).upsert(any(), any(), any(), any());
+    }
+
+    @Test
+    void unrequestedFieldsAreNotFetched() {
+        LocalDate today = LocalDate.now();
+        when(apiClient.getVo2Max(any(), eq(today.toString())))
+                .thenReturn(new FitbitVo2MaxResponse(List.of(
+                        new FitbitVo2MaxResponse.CardioScore(today.toString(), new FitbitVo2MaxResponse.Value("45-49"))
+                )));
+
+        ReadinessCardDto result = service.getReadinessCard(today, EnumSet.of(ReadinessCardService.Field.VO2_MAX));
+
+        assertEquals(45, result.cardioLoadScore());
+        assertNull(result.readinessScore());
+        assertNull(result.readinessStatus());
+        assertNull(result.exerciseDays());
+        verifyNoInteractions(heartRateService, sleepService);
+        verify(apiClient, never()).getActivitiesSummaryForDay(any(), any());
+        verify(apiClient, never()).getHrv(any(), any());
+    }
 }
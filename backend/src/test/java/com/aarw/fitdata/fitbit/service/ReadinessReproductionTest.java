@@ -5,11 +5,20 @@ import com.aarw.fitdata.dto.HeartRateRangeDto;
 import com.aarw.fitdata.dto.ReadinessCardDto;
 import com.aarw.fitdata.dto.SleepDto;
 import com.aarw.fitdata.fitbit.FitbitApiClient;
+import com.aarw.fitdata.fitbit.FitbitRateLimitTracker;
 import com.aarw.fitdata.fitbit.dto.FitbitActivitiesSummaryResponse;
 import com.aarw.fitdata.fitbit.dto.FitbitHrvResponse;
 import com.aarw.fitdata.fitbit.dto.FitbitVo2MaxResponse;
+import com.aarw.fitdata.history.DailyMetricsFetcher;
+import com.aarw.fitdata.history.DailyMetricsRepository;
+import com.aarw.fitdata.history.DailyMetricsStore;
+import com.aarw.fitdata.history.MetricRollupRepository;
+import com.aarw.fitdata.history.UserTimezones;
 import com.aarw.fitdata.oauth.token.FitbitTokenEntity;
+import com.aarw.fitdata.oauth.token.FitbitTokenRepository;
 import com.aarw.fitdata.oauth.token.FitbitTokenService;
+import com.aarw.fitdata.tracing.FanOut;
+import io.micrometer.observation.ObservationRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
@@ -35,7 +44,11 @@ class ReadinessReproductionTest {
         apiClient = mock(FitbitApiClient.class);
         heartRateService = mock(HeartRateService.class);
         sleepService = mock(SleepService.class);
-        service = new ReadinessCardService(tokenService, apiClient, heartRateService, sleepService);
+        FanOut fanOut = new FanOut(ObservationRegistry.NOOP);
+        UserTimezones timezones = new UserTimezones(mock(FitbitTokenRepository.class));
+        service = new ReadinessCardService(tokenService, apiClient, heartRateService, sleepService,
+                new DailyMetricsStore(mock(DailyMetricsRepository.class), mock(MetricRollupRepository.class), timezones),
+                new DailyMetricsFetcher(apiClient, new FitbitRateLimitTracker(), fanOut, timezones), fanOut);
 
         when(tokenService.getValidTokenOrThrow()).thenReturn(new FitbitTokenEntity());
     }
@@ -49,16 +62,16 @@ class ReadinessReproductionTest {
         LocalDate today = LocalDate.now();
 
         // RHR is null for today
-        when(heartRateService.getDay(today)).thenReturn(new HeartRateDayDto(today, null, new HeartRateDayDto.Zones(0, 0, 0, 0)));
+        when(heartRateService.getDay(any(), eq(today))).thenReturn(new HeartRateDayDto(today, null, new HeartRateDayDto.Zones(0, 0, 0, 0)));
         // RHR is empty for the last 7 days
-        when(heartRateService.getRange(any(), eq(today))).thenReturn(new HeartRateRangeDto("LAST_7_DAYS", today.minusDays(7), today, List.of()));
+        when(heartRateService.getRange(any(), any(), eq(today))).thenReturn(new HeartRateRangeDto("LAST_7_DAYS", today.minusDays(7), today, List.of()));
 
         // VO2 Max returns empty
         when(apiClient.getVo2Max(any(), eq(today.toString()))).thenReturn(new FitbitVo2MaxResponse(Collections.emptyList()));
         // Activities
         when(apiClient.getActivitiesSummaryForDay(any(), eq(today.toString()))).thenReturn(new FitbitActivitiesSummaryResponse(new FitbitActivitiesSummaryResponse.Summary(0, 0)));
         // Sleep
-        when(sleepService.getSleep(today)).thenReturn(new SleepDto(today.toString(), 0, 0, null, null, null, null, List.of()));
+        when(sleepService.getSleep(any(), eq(today), any())).thenReturn(new SleepDto(today.toString(), 0, 0, null, null, null, null, List.of()));
         // HRV
         when(apiClient.getHrv(any(), eq(today.toString()))).thenReturn(new FitbitHrvResponse(List.of()));
         when(apiClient.getHrvRange(any(), any(), any())).thenReturn(new FitbitHrvResponse(List.of()));
@@ -78,13 +91,13 @@ class ReadinessReproductionTest {
         LocalDate today = LocalDate.now();
 
         // Simulate an exception in one of the services
-        when(heartRateService.getDay(today)).thenThrow(new RuntimeException("API Down"));
+        when(heartRateService.getDay(any(), eq(today))).thenThrow(new RuntimeException("API Down"));
         
         // Other services return valid data
-        when(heartRateService.getRange(any(), eq(today))).thenReturn(new HeartRateRangeDto("LAST_7_DAYS", today.minusDays(7), today, List.of()));
+        when(heartRateService.getRange(any(), any(), eq(today))).thenReturn(new HeartRateRangeDto("LAST_7_DAYS", today.minusDays(7), today, List.of()));
         when(apiClient.getVo2Max(any(), eq(today.toString()))).thenReturn(new FitbitVo2MaxResponse(Collections.emptyList()));
         when(apiClient.getActivitiesSummaryForDay(any(), eq(today.toString()))).thenReturn(new FitbitActivitiesSummaryResponse(new FitbitActivitiesSummaryResponse.Summary(0, 0)));
-        when(sleepService.getSleep(today)).thenReturn(new SleepDto(today.toString(), 0, 0, null, null, null, null, List.of()));
+        when(sleepService.getSleep(any(), eq(today), any())).thenReturn(new SleepDto(today.toString(), 0, 0, null, null, null, null, List.of()));
         when(apiClient.getHrv(any(), eq(today.toString()))).thenReturn(new FitbitHrvResponse(List.of()));
         when(apiClient.getHrvRange(any(), any(), any())).thenReturn(new FitbitHrvResponse(List.of()));
 
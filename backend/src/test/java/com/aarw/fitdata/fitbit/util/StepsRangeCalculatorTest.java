@@ -0,0 +1,22 @@
+package com.aarw.fitdata.fitbit.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StepsRangeCalculatorTest {
+
+    private static final LocalDate TODAY = LocalDate.of(2026, 3, 10);
+
+    @Test
+    void customWindowsAreBounded() {
+        assertDoesNotThrow(() -> StepsRangeCalculator.checkWindow(TODAY.minusDays(1095), TODAY, TODAY));
+        assertDoesNotThrow(() -> StepsRangeCalculator.checkWindow(TODAY, TODAY.plusDays(1), TODAY));
+
+        assertThrows(IllegalArgumentException.class, () -> StepsRangeCalculator.checkWindow(TODAY.minusDays(1096), TODAY, TODAY));
+        assertThrows(IllegalArgumentException.class, () -> StepsRangeCalculator.checkWindow(TODAY, TODAY.plusDays(2), TODAY));
+        assertThrows(IllegalArgumentException.class, () -> StepsRangeCalculator.checkWindow(TODAY, TODAY.minusDays(1), TODAY));
+    }
+}
@@ -0,0 +1,100 @@
+package com.aarw.fitdata.history;
+
+import com.aarw.fitdata.fitbit.FitbitApiClient;
+import com.aarw.fitdata.fitbit.FitbitRateLimitException;
+import com.aarw.fitdata.fitbit.FitbitRateLimitTracker;
+import com.aarw.fitdata.fitbit.dto.FitbitProfileResponse;
+import com.aarw.fitdata.fitbit.dto.FitbitSleepResponse;
+import com.aarw.fitdata.fitbit.dto.FitbitWeightResponse;
+import com.aarw.fitdata.oauth.token.FitbitTokenEntity;
+import com.aarw.fitdata.tracing.FanOut;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class DailyMetricsFetcherTest {
+
+    private static final LocalDate START = LocalDate.of(2025, 1, 1);
+
+    private FitbitApiClient apiClient;
+    private FitbitRateLimitTracker rateLimitTracker;
+    private UserTimezones timezones;
+    private DailyMetricsFetcher fetcher;
+    private final FitbitTokenEntity token = new FitbitTokenEntity();
+
+    @BeforeEach
+    void setUp() {
+        apiClient = mock(FitbitApiClient.class);
+        rateLimitTracker = mock(FitbitRateLimitTracker.class);
+        timezones = mock(UserTimezones.class);
+        fetcher = new DailyMetricsFetcher(apiClient, rateLimitTracker, new FanOut(ObservationRegistry.NOOP), timezones);
+        token.setFitbitUserId("u");
+        when(rateLimitTracker.remaining("u")).thenReturn(150);
+        // One log on the first day of every chunk
+        when(apiClient.getWeightSeries(any(), any(), any())).thenAnswer(inv -> new FitbitWeightResponse(
+                List.of(new FitbitWeightResponse.WeightLog(inv.getArgument(1), 80.0, 1L))));
+    }
+
+    @Test
+    void longRangesAreSplitIntoChunksAndMergedInOrder() {
+        LocalDate end = START.plusDays(99);
+
+        List<DailyMetrics> rows = fetcher.fetch(token, DailyMetric.WEIGHT, START, end);
+
+        verify(apiClient).getWeightSeries(token, "2025-01-01", "2025-01-31");
+        verify(apiClient).getWeightSeries(token, "2025-02-01", "2025-03-03");
+        verify(apiClient).getWeightSeries(token, "2025-03-04", "2025-04-03");
+        verify(apiClient).getWeightSeries(token, "2025-04-04", "2025-04-10");
+        assertEquals(List.of(START, START.plusDays(31), START.plusDays(62), START.plusDays(93)),
+                rows.stream().map(DailyMetrics::day).toList());
+    }
+
+    @Test
+    void rangeBeyondTheRemainingBudgetIsNotStarted() {
+        when(rateLimitTracker.remaining("u")).thenReturn(3);
+
+        assertThrows(FitbitRateLimitException.class, () -> fetcher.fetch(token, DailyMetric.WEIGHT, START, START.plusDays(99)));
+        verify(apiClient, never()).getWeightSeries(any(), any(), any());
+    }
+
+    @Test
+    void daysBeforeTheMembershipAreNotFetched() {
+        var profile = new FitbitProfileResponse(
+                new FitbitProfileResponse.FitbitUser("u", "Name", 30, "NA", "2025-03-20", "Europe/Berlin"));
+        when(apiClient.getProfile(token)).thenReturn(profile);
+
+        fetcher.fetch(token, DailyMetric.WEIGHT, LocalDate.of(1900, 1, 1), START.plusDays(99));
+
+        verify(apiClient).getWeightSeries(token, "2025-03-20", "2025-04-10");
+        verifyNoMoreInteractions(ignoreStubs(apiClient));
+        verify(timezones).record("u", profile);
+        assertTrue(fetcher.fetch(token, DailyMetric.WEIGHT, START, START.plusDays(30)).isEmpty());
+    }
+
+    @Test
+    void sleepRangeIsScoredPerNightFromTheMainSleep() {
+        LocalDate night = START.plusDays(1);
+        when(apiClient.getSleepRange(token, START.toString(), START.plusDays(2).toString())).thenReturn(new FitbitSleepResponse(List.of(
+                sleepLog(night, false, 40L),
+                sleepLog(night, true, 420L),
+                sleepLog(START.plusDays(2), true, 390L)), null));
+
+        List<DailyMetrics> rows = fetcher.fetch(token, DailyMetric.SLEEP, START, START.plusDays(2));
+
+        assertEquals(List.of(night, START.plusDays(2)), rows.stream().map(DailyMetrics::day).toList());
+        assertEquals(420, rows.getFirst().sleepMinutes());
+        assertNotNull(rows.getFirst().sleepScore());
+    }
+
+    private static FitbitSleepResponse.SleepLog sleepLog(LocalDate day, boolean main, long minutesAsleep) {
+        return new FitbitSleepResponse.SleepLog(day.toString(), minutesAsleep * 60_000, 90L, main, null, 1L, 0L,
+                minutesAsleep, 20L, 5L, null, null, minutesAsleep + 20, "stages", null, null, null);
+    }
+}
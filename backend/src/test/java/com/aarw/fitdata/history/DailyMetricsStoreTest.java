@@ -0,0 +1,189 @@
+package com.aarw.fitdata.history;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class DailyMetricsStoreTest {
+
+    private static final LocalDate TODAY = LocalDate.of(2026, 3, 10);
+
+    private DailyMetricsRepository repository;
+    private MetricRollupRepository rollups;
+    private UserTimezones timezones;
+    private DailyMetricsStore store;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(DailyMetricsRepository.class);
+        rollups = mock(MetricRollupRepository.class);
+        timezones = mock(UserTimezones.class);
+        when(timezones.zoneOf(any())).thenReturn(ZoneOffset.UTC);
+        // Noon UTC, when it is already tomorrow on Kiritimati (UTC+14)
+        Clock clock = Clock.fixed(TODAY.atTime(12, 0).toInstant(ZoneOffset.UTC), ZoneOffset.UTC);
+        store = new DailyMetricsStore(repository, rollups, timezones, clock);
+    }
+
+    @Test
+    void daysFollowTheUsersTimezone() {
+        when(timezones.zoneOf("east")).thenReturn(ZoneId.of("Pacific/Kiritimati"));
+
+        assertEquals(TODAY, store.today("u"));
+        assertEquals(TODAY.plusDays(1), store.today("east"));
+        assertEquals(TODAY, store.firstOpenDay("east"));
+    }
+
+    @Test
+    void closedFetchedDaysAreServedLocally() {
+        LocalDate start = TODAY.minusDays(10);
+        LocalDate end = TODAY.minusDays(5);
+        when(repository.findRange("u", start, end)).thenReturn(fetchedSteps(start, end));
+
+        var rows = store.load("u", DailyMetric.STEPS, start, end, (_, _) -> fail("Nothing should be fetched"));
+
+        assertEquals(6, rows.size());
+        verify(repository, never()).upsert(any(), any(), any(), any());
+    }
+
+    @Test
+    void missingAndOpenDaysAreFetchedInOneSpan() {
+        LocalDate start = TODAY.minusDays(6);
+        // closed days fetched, except one gap; yesterday and today are open
+        List<DailyMetrics> stored = new ArrayList<>(fetchedSteps(start, TODAY.minusDays(4)));
+        stored.addAll(fetchedSteps(TODAY.minusDays(2), TODAY.minusDays(2)));
+        when(repository.findRange("u", start, TODAY)).thenReturn(stored);
+
+        List<LocalDate[]> calls = new ArrayList<>();
+        var rows = store.load("u", DailyMetric.STEPS, start, TODAY, (from, to) -> {
+            calls.add(new LocalDate[]{from, to});
+            return List.of(DailyMetrics.steps(TODAY.minusDays(3), 100), DailyMetrics.steps(TODAY, 42));
+        });
+
+        assertEquals(1, calls.size());
+        assertEquals(TODAY.minusDays(3), calls.getFirst()[0]);
+        assertEquals(TODAY, calls.getFirst()[1]);
+        assertEquals(7, rows.size());
+        assertEquals(42, rows.get(TODAY).steps());
+        // A day Fitbit returned nothing for is kept as fetched without a value
+        assertNull(rows.get(TODAY.minusDays(1)).steps());
+
+        verify(repository).upsert(eq("u"), eq(DailyMetric.STEPS), argThat(list -> list.size() == 4),
+                eq(List.of(true, true, false, false)));
+        verify(rollups).refresh("u", DailyMetric.STEPS, TODAY.minusDays(3), TODAY);
+    }
+
+    @Test
+    void chunkedLoadHandsOverOneWindowAtATime() {
+        LocalDate start = TODAY.minusDays(40);
+        LocalDate end = TODAY.minusDays(5);
+        when(repository.findRange(eq("u"), any(), any())).thenAnswer(inv -> fetchedSteps(inv.getArgument(1), inv.getArgument(2)));
+
+        List<List<DailyMetrics>> windows = new ArrayList<>();
+        store.loadChunked("u", DailyMetric.STEPS, start, end, 30, (_, _) -> fail("Nothing should be fetched"), windows::add);
+
+        assertEquals(2, windows.size());
+        assertEquals(30, windows.get(0).size());
+        assertEquals(start, windows.get(0).getFirst().day());
+        assertEquals(6, windows.get(1).size());
+        assertEquals(end, windows.get(1).getLast().day());
+        verify(repository).findRange("u", start, start.plusDays(29));
+        verify(repository).findRange("u", start.plusDays(30), end);
+    }
+
+    @Test
+    void fetchesNeededCountsWindowsWithDaysToFetch() {
+        // 90 days in windows of 30: the first is stored, the second has a gap, the last ends today
+        LocalDate start = TODAY.minusDays(89);
+        List<DailyMetrics> stored = new ArrayList<>(fetchedSteps(start, TODAY.minusDays(45)));
+        stored.addAll(fetchedSteps(TODAY.minusDays(43), TODAY.minusDays(2)));
+        when(repository.findRange(eq("u"), any(), any())).thenAnswer(inv -> stored.stream()
+                .filter(row -> !row.day().isAfter(inv.getArgument(2)))
+                .toList());
+
+        assertEquals(2, store.fetchesNeeded("u", DailyMetric.STEPS, start, TODAY, 30));
+        assertEquals(0, store.fetchesNeeded("u", DailyMetric.STEPS, start, TODAY.minusDays(60), 30));
+    }
+
+    @Test
+    void completeRollupsAreServedWithoutReadingDays() {
+        // Weeks of 2026-02-23 and 2026-03-02 are closed, the week of 2026-03-09 has one closed day
+        LocalDate start = LocalDate.of(2026, 2, 25);
+        List<MetricRollup> buckets = List.of(
+                new MetricRollup(LocalDate.of(2026, 2, 23), 70_000, 7, 8000.0, 12000.0, 7),
+                new MetricRollup(LocalDate.of(2026, 3, 2), 63_000, 7, 7000.0, 11000.0, 7),
+                new MetricRollup(LocalDate.of(2026, 3, 9), 9_000, 2, 4000.0, 5000.0, 1));
+        when(rollups.find("u", RollupMetric.STEPS, Granularity.WEEK, LocalDate.of(2026, 2, 23), TODAY)).thenReturn(buckets);
+
+        var result = store.loadRollups("u", RollupMetric.STEPS, Granularity.WEEK, start, TODAY,
+                (_, _) -> fail("Nothing should be fetched"));
+
+        assertEquals(buckets, result);
+        verifyNoInteractions(repository);
+    }
+
+    @Test
+    void rollupsWithGapsLoadTheMissingDaysFirst() {
+        LocalDate from = LocalDate.of(2026, 2, 23);
+        List<MetricRollup> partial = List.of(new MetricRollup(from, 10_000, 1, 10000.0, 10000.0, 1));
+        List<MetricRollup> complete = List.of(new MetricRollup(from, 70_000, 7, 8000.0, 12000.0, 7));
+        when(rollups.find("u", RollupMetric.STEPS, Granularity.WEEK, from, TODAY)).thenReturn(partial).thenReturn(complete);
+        when(repository.findRange("u", from, TODAY)).thenReturn(fetchedSteps(from, from));
+
+        List<LocalDate[]> calls = new ArrayList<>();
+        var result = store.loadRollups("u", RollupMetric.STEPS, Granularity.WEEK, from, TODAY, (f, t) -> {
+            calls.add(new LocalDate[]{f, t});
+            return List.of();
+        });
+
+        assertEquals(complete, result);
+        assertEquals(from.plusDays(1), calls.getFirst()[0]);
+        verify(rollups).refresh("u", DailyMetric.STEPS, from, TODAY);
+    }
+
+    @Test
+    void anOldGapIsFetchedWithoutTheDaysAfterIt() {
+        LocalDate from = LocalDate.of(2026, 1, 5);
+        LocalDate gap = LocalDate.of(2026, 1, 7);
+        List<DailyMetrics> stored = new ArrayList<>(fetchedSteps(from, TODAY));
+        stored.removeIf(row -> row.day().equals(gap));
+        when(rollups.find("u", RollupMetric.STEPS, Granularity.WEEK, from, TODAY)).thenReturn(List.of());
+        when(repository.findRange("u", from, TODAY)).thenReturn(stored);
+
+        List<LocalDate[]> calls = new ArrayList<>();
+        store.loadRollups("u", RollupMetric.STEPS, Granularity.WEEK, from, TODAY, (f, t) -> {
+            calls.add(new LocalDate[]{f, t});
+            return List.of();
+        });
+
+        assertEquals(2, calls.size());
+        assertArrayEquals(new LocalDate[]{gap, gap}, calls.get(0));
+        assertArrayEquals(new LocalDate[]{TODAY.minusDays(DailyMetricsStore.OPEN_DAYS), TODAY}, calls.get(1));
+    }
+
+    @Test
+    void granularityIsTheCoarsestWithEnoughPoints() {
+        assertEquals(Granularity.DAY, Granularity.coarsestFor(TODAY.minusDays(29), TODAY));
+        assertEquals(Granularity.WEEK, Granularity.coarsestFor(TODAY.minusDays(89), TODAY));
+        assertEquals(Granularity.WEEK, Granularity.coarsestFor(TODAY.minusMonths(6).plusDays(1), TODAY));
+        assertEquals(Granularity.MONTH, Granularity.coarsestFor(TODAY.minusYears(1).plusDays(1), TODAY));
+    }
+
+    private static List<DailyMetrics> fetchedSteps(LocalDate start, LocalDate end) {
+        List<DailyMetrics> rows = new ArrayList<>();
+        for (LocalDate day = start; !day.isAfter(end); day = day.plusDays(1)) {
+            rows.add(new DailyMetrics(day, 1000, null, null, null, null, null, null, null, null, null, null,
+                    DailyMetric.STEPS.bit()));
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,66 @@
+package com.aarw.fitdata.history;
+
+import com.aarw.fitdata.dto.HeartRateIntradayDto;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IntradayHeartRateCodecTest {
+
+    private static final LocalDate DAY = LocalDate.of(2026, 1, 15);
+
+    private static final List<HeartRateIntradayDto.Zone> ZONES = List.of(
+            new HeartRateIntradayDto.Zone("Out of Range", 30, 98, 1200),
+            new HeartRateIntradayDto.Zone("Fat Burn", 98, 137, 180),
+            new HeartRateIntradayDto.Zone("Cardio", 137, 166, 45),
+            new HeartRateIntradayDto.Zone("Peak", 166, 220, null)
+    );
+
+    @Test
+    void fullDayRoundTrip() {
+        List<HeartRateIntradayDto.Point> points = new ArrayList<>();
+        for (int minute = 0; minute < 1440; minute++) {
+            int bpm = 55 + (minute * 7919) % 90;
+            points.add(new HeartRateIntradayDto.Point("%02d:%02d:00".formatted(minute / 60, minute % 60), bpm));
+        }
+        HeartRateIntradayDto day = new HeartRateIntradayDto(DAY, 58,
+                points.stream().mapToInt(HeartRateIntradayDto.Point::bpm).min().getAsInt(),
+                points.stream().mapToInt(HeartRateIntradayDto.Point::bpm).max().getAsInt(),
+                2400, 700, ZONES, points);
+
+        byte[] data = IntradayHeartRateCodec.encode(day);
+
+        assertEquals(IntradayHeartRateCodec.FORMAT_DELTA_VARINT, data[0]);
+        assertTrue(data.length < 4 * 1024, "1-minute day took " + data.length + " bytes");
+        assertEquals(day, IntradayHeartRateCodec.decode(DAY, 58, 2400, 700, data));
+    }
+
+    @Test
+    void irregularSamplesAndEmptyDay() {
+        HeartRateIntradayDto sparse = new HeartRateIntradayDto(DAY, null, 48, 190, null, null, List.of(), List.of(
+                new HeartRateIntradayDto.Point("00:00:05", 190),
+                new HeartRateIntradayDto.Point("07:31:42", 48),
+                new HeartRateIntradayDto.Point("23:59:59", 61)
+        ));
+        HeartRateIntradayDto empty = new HeartRateIntradayDto(DAY, null, 0, 0, null, null, ZONES, List.of());
+
+        assertEquals(sparse, IntradayHeartRateCodec.decode(DAY, null, null, null, IntradayHeartRateCodec.encode(sparse)));
+        assertEquals(empty, IntradayHeartRateCodec.decode(DAY, null, null, null, IntradayHeartRateCodec.encode(empty)));
+    }
+
+    @Test
+    void rejectsTruncatedAndUnknownData() {
+        byte[] data = IntradayHeartRateCodec.encode(new HeartRateIntradayDto(DAY, null, 70, 70, null, null, ZONES,
+                List.of(new HeartRateIntradayDto.Point("10:00:00", 70))));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> IntradayHeartRateCodec.decode(DAY, null, null, null, Arrays.copyOf(data, data.length - 1)));
+        assertThrows(IllegalArgumentException.class,
+                () -> IntradayHeartRateCodec.decode(DAY, null, null, null, new byte[]{0x7F}));
+    }
+}
@@ -0,0 +1,90 @@
+package com.aarw.fitdata.jobs;
+
+import com.aarw.fitdata.config.JobProps;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class JobWorkerTest {
+
+    private static final Instant NOW = Instant.parse("2026-03-10T12:00:00Z");
+
+    private JobQueue queue;
+    private JobHandler handler;
+    private SimpleMeterRegistry meterRegistry;
+    private JobWorker worker;
+
+    @BeforeEach
+    void setUp() {
+        queue = mock(JobQueue.class);
+        handler = mock(JobHandler.class);
+        when(handler.type()).thenReturn("sync");
+        meterRegistry = new SimpleMeterRegistry();
+        JobProps props = new JobProps(true, Duration.ofSeconds(2), 2, Duration.ofMinutes(10), 3,
+                Duration.ofSeconds(30), Duration.ofMinutes(5));
+        worker = new JobWorker(queue, props, List.of(handler), meterRegistry, Clock.fixed(NOW, ZoneOffset.UTC));
+    }
+
+    @Test
+    void claimsOnlyHandledTypesAndDrainsFullBatches() throws Exception {
+        Job a = new Job(1, "sync", "u1", null, 1);
+        Job b = new Job(2, "sync", "u2", null, 1);
+        Job c = new Job(3, "sync", "u3", null, 1);
+        when(queue.claim(anyString(), eq(java.util.Set.of("sync")), eq(2), eq(Duration.ofMinutes(10))))
+                .thenReturn(List.of(a, b))
+                .thenReturn(List.of(c));
+        when(handler.handle(any())).thenReturn(null);
+
+        worker.poll();
+
+        verify(queue, times(2)).claim(anyString(), any(), anyInt(), any());
+        verify(queue).complete(eq(a), anyString());
+        verify(queue).complete(eq(b), anyString());
+        verify(queue).complete(eq(c), anyString());
+        assertEquals(3.0, meterRegistry.counter("jobs.runs", "type", "sync", "outcome", "completed").count());
+    }
+
+    @Test
+    void recurringJobIsRescheduled() throws Exception {
+        Job job = new Job(1, "sync", "u1", null, 1);
+        Instant next = NOW.plus(Duration.ofMinutes(15));
+        when(handler.handle(job)).thenReturn(next);
+
+        worker.run(job);
+
+        verify(queue).reschedule(eq(job), anyString(), eq(next));
+    }
+
+    @Test
+    void failedJobIsRetriedWithBackoffThenParked() throws Exception {
+        Job second = new Job(1, "sync", "u1", null, 2);
+        Job last = new Job(1, "sync", "u1", null, 3);
+        when(handler.handle(any())).thenThrow(new IllegalStateException("boom"));
+
+        worker.run(second);
+        worker.run(last);
+
+        // 30s doubled once, plus at most 20% jitter
+        verify(queue).retry(eq(second), anyString(),
+                argThat(at -> !at.isBefore(NOW.plusSeconds(60)) && !at.isAfter(NOW.plusSeconds(72))),
+                eq("IllegalStateException: boom"));
+        verify(queue).park(eq(last), anyString(), eq("IllegalStateException: boom"));
+    }
+
+    @Test
+    void backoffIsCapped() {
+        Duration delay = worker.backoff(40);
+        assertTrue(delay.compareTo(Duration.ofMinutes(5)) >= 0 && delay.compareTo(Duration.ofMinutes(6)) <= 0);
+    }
+}
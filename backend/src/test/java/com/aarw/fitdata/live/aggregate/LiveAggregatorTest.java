@@ -0,0 +1,87 @@
+package com.aarw.fitdata.live.aggregate;
+
+import com.aarw.fitdata.live.api.LiveAggregate;
+import com.aarw.fitdata.live.api.LiveResolution;
+import com.aarw.fitdata.live.api.LiveSample;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LiveAggregatorTest {
+
+    @Test
+    void closesWindowWhenSampleCrossesBoundary() {
+        RollingWindow window = new RollingWindow(LiveResolution.TEN_SECONDS);
+
+        assertNull(window.accept(new LiveSample(10_000, 80.0, 100L, 50.0, 10.0)));
+        assertNull(window.accept(new LiveSample(14_000, 90.0, 110L, 58.0, 11.0)));
+        assertNull(window.accept(new LiveSample(19_999, 100.0, 130L, 70.0, 12.5)));
+
+        LiveAggregate aggregate = window.accept(new LiveSample(20_000, 95.0, 140L, 75.0, 13.0));
+
+        assertNotNull(aggregate);
+        assertEquals("10s", aggregate.resolution());
+        assertEquals(10_000, aggregate.ts());
+        assertEquals(3, aggregate.count());
+        assertEquals(80.0, aggregate.hr_min());
+        assertEquals(100.0, aggregate.hr_max());
+        assertEquals(90.0, aggregate.hr_mean(), 0.0001);
+        assertEquals(30L, aggregate.steps());
+        assertEquals(20.0, aggregate.distance_m(), 0.0001);
+        assertEquals(2.5, aggregate.calories(), 0.0001);
+    }
+
+    @Test
+    void deltasContinueFromPreviousWindowAndSurviveCounterReset() {
+        RollingWindow window = new RollingWindow(LiveResolution.ONE_SECOND);
+
+        window.accept(new LiveSample(0, null, 100L, null, null));
+        window.accept(new LiveSample(500, null, 120L, null, null));
+        LiveAggregate first = window.accept(new LiveSample(1_000, null, 5L, null, null));
+        LiveAggregate second = window.accept(new LiveSample(2_000, null, 10L, null, null));
+
+        assertEquals(20L, first.steps());
+        assertNull(first.hr_mean());
+        assertEquals(5L, second.steps());
+    }
+
+    @Test
+    void windowIsClosedByTimeAndNotReopenedByALateSample() {
+        RollingWindow window = new RollingWindow(LiveResolution.TEN_SECONDS);
+        window.accept(new LiveSample(10_000, 80.0, 100L, null, null));
+        window.accept(new LiveSample(12_000, 90.0, 110L, null, null));
+
+        assertNull(window.closeIfEnded(20_400, 500));
+        LiveAggregate closed = window.closeIfEnded(20_500, 500);
+
+        assertNotNull(closed);
+        assertEquals(10_000, closed.ts());
+        assertEquals(2, closed.count());
+        assertEquals(10L, closed.steps());
+
+        // A late sample of the closed window only moves the counter on
+        assertNull(window.accept(new LiveSample(19_000, 200.0, 115L, null, null)));
+        assertNull(window.closeIfEnded(60_000, 500));
+        assertNull(window.accept(new LiveSample(20_000, 95.0, 120L, null, null)));
+        LiveAggregate next = window.closeIfEnded(30_500, 500);
+        assertEquals(20_000, next.ts());
+        assertEquals(1, next.count());
+        assertEquals(95.0, next.hr_max());
+        assertEquals(10L, next.steps());
+    }
+
+    @Test
+    void aggregatorEmitsOnlyClosedResolutions() {
+        LiveAggregator aggregator = new LiveAggregator();
+
+        aggregator.accept(new LiveSample(0, 60.0, null, null, null));
+        List<LiveAggregate> closed = aggregator.accept(new LiveSample(1_500, 70.0, null, null, null));
+
+        assertEquals(1, closed.size());
+        assertEquals("1s", closed.getFirst().resolution());
+        assertEquals(closed.getFirst(), aggregator.lastClosed(LiveResolution.ONE_SECOND));
+        assertNull(aggregator.lastClosed(LiveResolution.ONE_MINUTE));
+    }
+}
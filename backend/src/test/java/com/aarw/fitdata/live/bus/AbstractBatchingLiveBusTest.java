@@ -0,0 +1,110 @@
+package com.aarw.fitdata.live.bus;
+
+import com.aarw.fitdata.live.api.LiveSample;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AbstractBatchingLiveBusTest {
+
+    private final ObjectMapper objectMapper = JsonMapper.builder().build();
+    private final List<String> channel = new CopyOnWriteArrayList<>();
+
+    private LoopbackBus nodeA;
+    private LoopbackBus nodeB;
+
+    @BeforeEach
+    void setUp() {
+        nodeA = new LoopbackBus();
+        nodeB = new LoopbackBus();
+    }
+
+    @AfterEach
+    void tearDown() {
+        nodeA.close();
+        nodeB.close();
+    }
+
+    @Test
+    void batchesSamplesAndSkipsOwnMessages() {
+        List<LiveSample> receivedByA = new CopyOnWriteArrayList<>();
+        List<LiveSample> receivedByB = new CopyOnWriteArrayList<>();
+        nodeA.subscribe(receivedByA::add);
+        nodeB.subscribe(receivedByB::add);
+
+        LiveSample first = new LiveSample(1_000, 80.0, 10L, null, null);
+        LiveSample second = new LiveSample(2_000, 81.0, 12L, null, null);
+        nodeA.publish(first);
+        nodeA.publish(first); // retransmission
+        nodeA.publish(second);
+        nodeA.flush();
+
+        assertEquals(1, channel.size());
+        deliverAll();
+
+        assertEquals(List.of(first, second), receivedByB);
+        assertTrue(receivedByA.isEmpty());
+    }
+
+    @Test
+    void redeliveredMessagesAreDropped() {
+        List<LiveSample> receivedByB = new CopyOnWriteArrayList<>();
+        nodeB.subscribe(receivedByB::add);
+
+        nodeA.publish(new LiveSample(1_000, 80.0, null, null, null));
+        nodeA.flush();
+        deliverAll();
+        deliverAll();
+
+        assertEquals(1, receivedByB.size());
+    }
+
+    @Test
+    void oversizedBatchesAreSplit() {
+        LoopbackBus small = new LoopbackBus(200);
+        try {
+            for (int i = 0; i < 10; i++) {
+                small.publish(new LiveSample(i, 70.0 + i, (long) i, 1.5 * i, 0.1 * i));
+            }
+            small.flush();
+
+            assertTrue(channel.size() > 1);
+            List<LiveSample> received = new CopyOnWriteArrayList<>();
+            nodeB.subscribe(received::add);
+            deliverAll();
+            assertEquals(10, received.size());
+        } finally {
+            small.close();
+        }
+    }
+
+    private void deliverAll() {
+        for (String payload : channel) {
+            nodeA.receive(payload);
+            nodeB.receive(payload);
+        }
+    }
+
+    private class LoopbackBus extends AbstractBatchingLiveBus {
+        LoopbackBus() {
+            this(8000);
+        }
+
+        LoopbackBus(int maxPayloadBytes) {
+            super(objectMapper, Duration.ofHours(1), 100, maxPayloadBytes);
+        }
+
+        @Override
+        protected void send(String payload) {
+            channel.add(payload);
+        }
+    }
+}
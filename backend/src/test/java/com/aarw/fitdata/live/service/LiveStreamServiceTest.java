@@ -0,0 +1,87 @@
+package com.aarw.fitdata.live.service;
+
+import com.aarw.fitdata.config.LiveProps;
+import com.aarw.fitdata.exception.BadRequestException;
+import com.aarw.fitdata.live.aggregate.LiveAggregator;
+import com.aarw.fitdata.live.api.LiveResolution;
+import com.aarw.fitdata.live.api.LiveSample;
+import com.aarw.fitdata.live.bus.LocalLiveBus;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class LiveStreamServiceTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private LiveStreamService service;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        LiveProps props = new LiveProps(null, new LiveProps.Subscribers(
+                Duration.ofSeconds(15), Duration.ofSeconds(60), Duration.ofMinutes(30), 2, 3));
+        service = new LiveStreamService(new LiveAggregator(), new LocalLiveBus(), props, meterRegistry);
+    }
+
+    @Test
+    void rejectsSubscribersOverTheLimits() {
+        service.register(LiveResolution.RAW, mock(LiveSubscriber.class), "alice");
+        service.register(LiveResolution.RAW, mock(LiveSubscriber.class), "alice");
+
+        LiveCapacityExceededException perUser = assertThrows(LiveCapacityExceededException.class,
+                () -> service.register(LiveResolution.RAW, mock(LiveSubscriber.class), "alice"));
+        assertEquals("user", perUser.getLimit());
+
+        service.register(LiveResolution.RAW, mock(LiveSubscriber.class), "bob");
+        LiveCapacityExceededException total = assertThrows(LiveCapacityExceededException.class,
+                () -> service.register(LiveResolution.RAW, mock(LiveSubscriber.class), "carol"));
+        assertEquals("total", total.getLimit());
+
+        assertEquals(3, meterRegistry.get("live.subscribers.active").gauge().value());
+        assertEquals(2, meterRegistry.get("live.subscribers.rejected").counters().stream()
+                .mapToDouble(c -> c.count()).sum());
+    }
+
+    @Test
+    void resubscribingMovesWithoutUsingAnotherSlot() throws IOException {
+        LiveSubscriber subscriber = mock(LiveSubscriber.class);
+        service.register(LiveResolution.RAW, subscriber, "alice");
+        service.register(LiveResolution.ONE_SECOND, subscriber, "alice");
+        service.register(LiveResolution.RAW, mock(LiveSubscriber.class), "alice");
+
+        service.ingest(new LiveSample(1_000L, 80.0, null, null, null));
+
+        verify(subscriber, never()).sendSample(any());
+        assertEquals(2, meterRegistry.get("live.subscribers.active").gauge().value());
+    }
+
+    @Test
+    void failedSendReapsAndFreesTheSlot() throws IOException {
+        LiveSubscriber broken = mock(LiveSubscriber.class);
+        doThrow(new IOException("broken pipe")).when(broken).sendSample(any());
+        service.register(LiveResolution.RAW, broken, "alice");
+        service.register(LiveResolution.RAW, mock(LiveSubscriber.class), "alice");
+
+        service.ingest(new LiveSample(1_000L, 80.0, null, null, null));
+
+        verify(broken).close();
+        assertEquals(1, meterRegistry.get("live.subscribers.reaped").counter().count());
+        assertDoesNotThrow(() -> service.register(LiveResolution.RAW, mock(LiveSubscriber.class), "alice"));
+    }
+
+    @Test
+    void samplesWithStepsOutOfRangeAreRejected() throws IOException {
+        LiveSubscriber subscriber = mock(LiveSubscriber.class);
+        service.register(LiveResolution.RAW, subscriber, "alice");
+
+        assertThrows(BadRequestException.class, () -> service.ingest(new LiveSample(1_000, null, 1L << 40, null, null)));
+        assertThrows(BadRequestException.class, () -> service.ingest(new LiveSample(1_000, null, -1L, null, null)));
+        verify(subscriber, never()).sendSample(any());
+    }
+}
@@ -0,0 +1,74 @@
+package com.aarw.fitdata.live.ws;
+
+import com.aarw.fitdata.live.api.LiveAggregate;
+import com.aarw.fitdata.live.api.LiveResolution;
+import com.aarw.fitdata.live.api.LiveSample;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LiveFrameCodecTest {
+
+    @Test
+    void samplesRoundTripWithDeltaTimestamps() {
+        LiveFrameCodec.Encoder encoder = new LiveFrameCodec.Encoder();
+        LiveFrameCodec.Decoder decoder = new LiveFrameCodec.Decoder();
+
+        LiveSample first = new LiveSample(1_760_000_000_000L, 72.5, 1200L, 850.25, 96.5);
+        LiveSample second = new LiveSample(1_760_000_000_250L, 73.0, null, null, 97.0);
+
+        ByteBuffer firstFrame = encoder.encodeSample(first);
+        ByteBuffer secondFrame = encoder.encodeSample(second);
+
+        assertEquals(26, firstFrame.remaining());
+        assertEquals(2 + 4 + 8, secondFrame.remaining());
+
+        assertEquals(first, ((LiveFrameCodec.SampleFrame) decoder.decode(firstFrame)).sample());
+        assertEquals(second, ((LiveFrameCodec.SampleFrame) decoder.decode(secondFrame)).sample());
+    }
+
+    @Test
+    void aggregateRoundTrip() {
+        LiveFrameCodec.Encoder encoder = new LiveFrameCodec.Encoder();
+        LiveFrameCodec.Decoder decoder = new LiveFrameCodec.Decoder();
+
+        LiveAggregate aggregate = new LiveAggregate("10s", 1_760_000_000_000L, 10_000, 40, 60.0, 90.0, 75.5, 12L, null, 1.5);
+
+        LiveFrameCodec.Frame frame = decoder.decode(encoder.encodeAggregate(aggregate));
+
+        assertEquals(aggregate, ((LiveFrameCodec.AggregateFrame) frame).aggregate());
+    }
+
+    @Test
+    void subscribeFrameCarriesResolution() {
+        LiveFrameCodec.Frame frame = new LiveFrameCodec.Decoder().decode(LiveFrameCodec.encodeSubscribe(LiveResolution.ONE_MINUTE));
+
+        assertEquals(new LiveFrameCodec.SubscribeFrame(LiveResolution.ONE_MINUTE), frame);
+    }
+
+    @Test
+    void rejectsDeltaWithoutBaselineAndTruncatedFrames() {
+        LiveFrameCodec.Encoder encoder = new LiveFrameCodec.Encoder();
+        encoder.encodeSample(new LiveSample(1_000, null, null, null, null));
+        ByteBuffer deltaFrame = encoder.encodeSample(new LiveSample(2_000, 80.0, null, null, null));
+
+        assertThrows(IllegalArgumentException.class, () -> new LiveFrameCodec.Decoder().decode(deltaFrame));
+        assertThrows(IllegalArgumentException.class, () -> new LiveFrameCodec.Decoder().decode(ByteBuffer.wrap(new byte[]{LiveFrameCodec.SAMPLE})));
+    }
+
+    @Test
+    void unencodableSampleLeavesTheDeltaBaseUntouched() {
+        LiveFrameCodec.Encoder encoder = new LiveFrameCodec.Encoder();
+        LiveFrameCodec.Decoder decoder = new LiveFrameCodec.Decoder();
+        LiveSample first = new LiveSample(1_000, 80.0, null, null, null);
+        LiveSample next = new LiveSample(3_000, 82.0, null, null, null);
+
+        decoder.decode(encoder.encodeSample(first));
+        assertThrows(ArithmeticException.class,
+                () -> encoder.encodeSample(new LiveSample(2_000, null, 1L << 40, null, null)));
+
+        assertEquals(next, ((LiveFrameCodec.SampleFrame) decoder.decode(encoder.encodeSample(next))).sample());
+    }
+}
@@ -2,6 +2,8 @@ package com.aarw.fitdata.oauth;
 
 import com.aarw.fitdata.config.FitbitProps;
 import com.aarw.fitdata.oauth.token.FitbitTokenRepository;
+import com.aarw.fitdata.sync.BackfillService;
+import com.aarw.fitdata.sync.SyncService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.http.ResponseEntity;
@@ -26,7 +28,7 @@ class FitbitOAuthControllerTest {
         );
         WebClient.Builder builder = mock(WebClient.Builder.class);
         FitbitTokenRepository repo = mock(FitbitTokenRepository.class);
-        controller = new FitbitOAuthController(props, builder, repo);
+        controller = new FitbitOAuthController(props, builder, repo, mock(SyncService.class), mock(BackfillService.class));
         SecurityContextHolder.clearContext();
     }
 
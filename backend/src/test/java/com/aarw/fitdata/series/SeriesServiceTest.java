@@ -0,0 +1,75 @@
+package com.aarw.fitdata.series;
+
+import com.aarw.fitdata.dto.SeriesDto;
+import com.aarw.fitdata.history.DailyMetric;
+import com.aarw.fitdata.history.DailyMetrics;
+import com.aarw.fitdata.history.DailyMetricsFetcher;
+import com.aarw.fitdata.history.DailyMetricsStore;
+import com.aarw.fitdata.oauth.token.FitbitTokenEntity;
+import com.aarw.fitdata.oauth.token.FitbitTokenService;
+import com.aarw.fitdata.tracing.FanOut;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class SeriesServiceTest {
+
+    private static final LocalDate START = LocalDate.of(2026, 2, 1);
+    private static final LocalDate END = LocalDate.of(2026, 2, 3);
+
+    private DailyMetricsStore store;
+    private SeriesService service;
+    private final FitbitTokenEntity token = new FitbitTokenEntity();
+
+    @BeforeEach
+    void setUp() {
+        store = mock(DailyMetricsStore.class);
+        service = new SeriesService(mock(FitbitTokenService.class), store, mock(DailyMetricsFetcher.class), new FanOut(ObservationRegistry.NOOP));
+        token.setFitbitUserId("u");
+    }
+
+    @Test
+    void metricsAreAlignedByDate() {
+        when(store.load(eq("u"), eq(DailyMetric.STEPS), eq(START), eq(END), any())).thenReturn(rows(
+                DailyMetrics.steps(START, 1000), DailyMetrics.steps(START.plusDays(1), 2000), DailyMetrics.steps(END, 3000)));
+        when(store.load(eq("u"), eq(DailyMetric.WEIGHT), eq(START), eq(END), any())).thenReturn(rows(
+                DailyMetrics.weight(START, null), DailyMetrics.weight(START.plusDays(1), 80.5), DailyMetrics.weight(END, null)));
+        // The middle night had no sleep
+        when(store.load(eq("u"), eq(DailyMetric.SLEEP), eq(START), eq(END), any())).thenReturn(rows(
+                DailyMetrics.sleep(START, 420, 81), DailyMetrics.empty(START.plusDays(1)), DailyMetrics.sleep(END, 390, 74)));
+
+        SeriesDto series = service.getSeries(token,
+                List.of(SeriesMetric.WEIGHT, SeriesMetric.STEPS, SeriesMetric.SLEEP_SCORE), START, END);
+
+        assertEquals(List.of(START, START.plusDays(1), END), series.dates());
+        assertEquals(List.of("weight", "steps", "sleepScore"), List.copyOf(series.columns().keySet()));
+        assertEquals(Arrays.asList(null, 80.5, null), series.columns().get("weight"));
+        assertEquals(List.of(1000, 2000, 3000), series.columns().get("steps"));
+        assertEquals(Arrays.asList(81, null, 74), series.columns().get("sleepScore"));
+    }
+
+    @Test
+    void tooLongWindowIsRejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> service.getSeries(token, List.of(SeriesMetric.STEPS), START, START.plusYears(4)));
+        verifyNoInteractions(store);
+    }
+
+    private static TreeMap<LocalDate, DailyMetrics> rows(DailyMetrics... rows) {
+        TreeMap<LocalDate, DailyMetrics> byDay = new TreeMap<>();
+        for (DailyMetrics row : rows) {
+            byDay.put(row.day(), row);
+        }
+        return byDay;
+    }
+}
@@ -0,0 +1,207 @@
+package com.aarw.fitdata.session;
+
+import com.aarw.fitdata.config.SessionProps;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.serializer.support.SerializingConverter;
+import org.springframework.session.MapSession;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Optional;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class CachingSessionRepositoryTest {
+
+    private static final Instant NOW = Instant.parse("2026-03-10T12:00:00Z");
+
+    private final MutableClock clock = new MutableClock();
+    private SessionStoreRepository store;
+    private CachingSessionRepository repository;
+
+    @BeforeEach
+    void setUp() {
+        store = mock(SessionStoreRepository.class);
+        SessionProps props = new SessionProps(Duration.ofMinutes(30), 100, Duration.ofSeconds(30),
+                Duration.ofMinutes(1), Duration.ofMinutes(10));
+        repository = new CachingSessionRepository(props, store, clock);
+    }
+
+    @Test
+    void hotSessionIsServedAndSavedWithoutQueries() {
+        MapSession session = repository.createSession();
+        session.setAttribute("user", "u1");
+        repository.save(session);
+        verify(store).save(any());
+
+        for (int i = 0; i < 8; i++) {
+            clock.advance(Duration.ofSeconds(1));
+            MapSession found = repository.findById(session.getId());
+            assertEquals("u1", found.getAttribute("user"));
+            found.setLastAccessedTime(clock.instant());
+            repository.save(found);
+        }
+
+        verify(store, never()).find(anyString());
+        verify(store, never()).touch(anyString(), any());
+        verify(store, times(1)).save(any());
+    }
+
+    @Test
+    void lastAccessIsWrittenOncePerTouchInterval() {
+        MapSession session = repository.createSession();
+        repository.save(session);
+        // Re-read once the cache TTL has passed
+        when(store.find(session.getId())).thenReturn(Optional.of(new SessionStoreRepository.Row(session.getId(),
+                NOW, NOW, Duration.ofMinutes(30), new SerializingConverter().convert(new TreeMap<String, Object>()))));
+
+        clock.advance(Duration.ofSeconds(61));
+        MapSession found = repository.findById(session.getId());
+        found.setLastAccessedTime(clock.instant());
+        repository.save(found);
+
+        clock.advance(Duration.ofSeconds(10));
+        found = repository.findById(session.getId());
+        found.setLastAccessedTime(clock.instant());
+        repository.save(found);
+
+        verify(store, times(1)).touch(session.getId(), NOW.plusSeconds(61));
+    }
+
+    @Test
+    void changedAttributesAreWrittenRightAway() {
+        when(store.update(any())).thenReturn(true);
+        MapSession session = repository.createSession();
+        repository.save(session);
+
+        MapSession found = repository.findById(session.getId());
+        found.setAttribute("SPRING_SECURITY_CONTEXT", "ctx");
+        repository.save(found);
+
+        verify(store, times(1)).save(any());
+        verify(store, times(1)).update(any());
+        assertEquals("ctx", repository.findById(session.getId()).getAttribute("SPRING_SECURITY_CONTEXT"));
+    }
+
+    @Test
+    void copiesAreIndependentUntilSaved() {
+        MapSession session = repository.createSession();
+        repository.save(session);
+
+        MapSession first = repository.findById(session.getId());
+        MapSession second = repository.findById(session.getId());
+        first.setAttribute("state", "abc");
+
+        assertNull(second.getAttribute("state"));
+        assertNull(repository.findById(session.getId()).getAttribute("state"));
+    }
+
+    @Test
+    void renamedSessionReplacesTheOldRow() {
+        MapSession session = repository.createSession();
+        repository.save(session);
+        String oldId = session.getId();
+
+        MapSession found = repository.findById(oldId);
+        String newId = found.changeSessionId();
+        repository.save(found);
+
+        verify(store).delete(oldId);
+        assertNotNull(repository.findById(newId));
+    }
+
+    @Test
+    void logoutOnAnotherNodeIsNoticedWhileTheSessionIsHot() {
+        MapSession session = repository.createSession();
+        session.setAttribute("user", "u1");
+        repository.save(session);
+
+        // Another node deletes the row; this one keeps serving and saving the session every second
+        when(store.find(session.getId())).thenReturn(Optional.empty());
+        for (int i = 0; i < 29; i++) {
+            clock.advance(Duration.ofSeconds(1));
+            MapSession found = repository.findById(session.getId());
+            assertNotNull(found);
+            found.setLastAccessedTime(clock.instant());
+            repository.save(found);
+        }
+        clock.advance(Duration.ofSeconds(1));
+
+        assertNull(repository.findById(session.getId()));
+        verify(store, times(1)).save(any());
+    }
+
+    @Test
+    void sessionDeletedOnAnotherNodeIsNotSavedAgain() {
+        MapSession session = repository.createSession();
+        repository.save(session);
+
+        MapSession found = repository.findById(session.getId());
+        found.setAttribute("user", "u1");
+        repository.save(found);
+
+        verify(store, times(1)).save(any());
+        verify(store).update(any());
+        assertNull(repository.findById(session.getId()));
+    }
+
+    @Test
+    void coldSessionIsLoadedOnceFromTheStore() {
+        TreeMap<String, Object> attributes = new TreeMap<>();
+        attributes.put("user", "u1");
+        byte[] serialized = new SerializingConverter().convert(attributes);
+        when(store.find("s1")).thenReturn(Optional.of(new SessionStoreRepository.Row(
+                "s1", NOW.minusSeconds(600), NOW.minusSeconds(5), Duration.ofMinutes(30), serialized)));
+
+        MapSession found = repository.findById("s1");
+        repository.save(found);
+        repository.findById("s1");
+
+        assertEquals("u1", found.getAttribute("user"));
+        verify(store, times(1)).find("s1");
+        verify(store, never()).save(any());
+    }
+
+    @Test
+    void expiredSessionIsDeleted() {
+        MapSession session = repository.createSession();
+        repository.save(session);
+
+        clock.advance(Duration.ofMinutes(30));
+
+        assertNull(repository.findById(session.getId()));
+        verify(store).delete(session.getId());
+    }
+
+    private static final class MutableClock extends Clock {
+
+        private Instant now = NOW;
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
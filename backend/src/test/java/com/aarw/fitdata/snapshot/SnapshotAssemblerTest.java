@@ -0,0 +1,85 @@
+package com.aarw.fitdata.snapshot;
+
+import com.aarw.fitdata.fitbit.FitbitApiClient;
+import com.aarw.fitdata.fitbit.FitbitRateLimitException;
+import com.aarw.fitdata.fitbit.service.*;
+import com.aarw.fitdata.fitbit.util.StepsRange;
+import com.aarw.fitdata.oauth.token.FitbitTokenEntity;
+import com.aarw.fitdata.tracing.FanOut;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class SnapshotAssemblerTest {
+
+    private FitbitApiClient apiClient;
+    private StepsService stepsService;
+    private SleepService sleepService;
+    private SnapshotAssembler assembler;
+
+    private final FitbitTokenEntity token = new FitbitTokenEntity();
+    private final LocalDate date = LocalDate.of(2026, 1, 15);
+
+    @BeforeEach
+    void setUp() {
+        apiClient = mock(FitbitApiClient.class);
+        stepsService = mock(StepsService.class);
+        sleepService = mock(SleepService.class);
+        assembler = new SnapshotAssembler(apiClient, mock(ReadinessCardService.class), stepsService,
+                mock(WeightService.class), mock(HeartRateIntradayService.class), sleepService, new FanOut(ObservationRegistry.NOOP));
+    }
+
+    @Test
+    void runsSectionsConcurrently() {
+        // Both sections wait for each other, so this only finishes if they run at the same time
+        CountDownLatch latch = new CountDownLatch(2);
+        when(stepsService.getSteps(eq(token), any(), eq(date))).thenAnswer(_ -> awaitOther(latch));
+        when(sleepService.getSleep(token, date)).thenAnswer(_ -> awaitOther(latch));
+
+        SnapshotAssembler.Assembly assembly = assembler.assemble(token, date, StepsRange.LAST_7_DAYS, StepsRange.LAST_7_DAYS);
+
+        assertEquals(date, assembly.snapshot().selectedDate());
+        assertTrue(assembly.timings().keySet().containsAll(
+                List.of("profile", "readiness", "steps", "weight", "heartRate", "sleep", "total")));
+        assertTrue(assembly.serverTiming().startsWith("profile;dur="));
+    }
+
+    @Test
+    void sectionFailureIsRethrownUnwrapped() {
+        when(apiClient.getProfile(token)).thenThrow(new FitbitRateLimitException("Too many requests", "60", "{}"));
+
+        assertThrows(FitbitRateLimitException.class,
+                () -> assembler.assemble(token, date, StepsRange.LAST_7_DAYS, StepsRange.LAST_7_DAYS));
+    }
+
+    @Test
+    void skipsSectionsNotRequested() {
+        SnapshotAssembler.Assembly assembly = assembler.assemble(token, date, StepsRange.LAST_7_DAYS, StepsRange.LAST_7_DAYS,
+                EnumSet.of(SnapshotAssembler.Section.STEPS, SnapshotAssembler.Section.SLEEP));
+
+        assertEquals(List.of("steps", "sleep", "total"), List.copyOf(assembly.timings().keySet()));
+        assertNull(assembly.snapshot().profile());
+        verify(stepsService).getSteps(token, StepsRange.LAST_7_DAYS, date);
+        verify(sleepService).getSleep(token, date);
+        verifyNoInteractions(apiClient);
+    }
+
+    private static Object awaitOther(CountDownLatch latch) throws InterruptedException {
+        latch.countDown();
+        if (!latch.await(5, TimeUnit.SECONDS)) {
+            throw new IllegalStateException("Sections did not overlap");
+        }
+        return null;
+    }
+}
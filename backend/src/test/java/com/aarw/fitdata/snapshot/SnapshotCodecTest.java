@@ -0,0 +1,51 @@
+package com.aarw.fitdata.snapshot;
+
+import com.aarw.fitdata.dto.DashboardSnapshotDto;
+import com.aarw.fitdata.dto.SleepDto;
+import com.aarw.fitdata.fitbit.util.StepsRange;
+import org.junit.jupiter.api.Test;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SnapshotCodecTest {
+
+    private final ObjectMapper objectMapper = JsonMapper.builder().build();
+    private final SnapshotCodec codec = new SnapshotCodec(objectMapper);
+
+    private final DashboardSnapshotDto dto = new DashboardSnapshotDto(
+            LocalDate.of(2026, 1, 15), StepsRange.LAST_7_DAYS, StepsRange.LAST_30_DAYS,
+            null, null, null, null, null,
+            new SleepDto("2026-01-15", 420, 460, 81, "23:00", "07:00", new SleepDto.LevelsSummary(60, 240, 90, 30), List.of())
+    );
+
+    @Test
+    void payloadRoundTrip() {
+        byte[] payload = codec.encode(dto);
+
+        assertEquals(SnapshotCodec.FORMAT_GZIP_JSON, payload[0]);
+        assertEquals(dto, codec.decode(payload));
+    }
+
+    @Test
+    void legacyTextRowsStayReadable() {
+        Snapshot legacy = new Snapshot();
+        legacy.setData(objectMapper.writeValueAsString(dto));
+
+        assertEquals(dto, codec.decode(legacy));
+    }
+
+    @Test
+    void aRowWithoutContentIsCorrupt() {
+        assertThrows(SnapshotCorruptException.class, () -> codec.decode(new Snapshot()));
+    }
+
+    @Test
+    void unknownFormatIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> codec.decode(new byte[]{0x7f, 1, 2}));
+    }
+}
@@ -0,0 +1,86 @@
+package com.aarw.fitdata.snapshot;
+
+import com.aarw.fitdata.config.SnapshotProps;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.util.unit.DataSize;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+class SnapshotControllerTest {
+
+    private static final String JSON = "{\"selectedDate\":\"2026-01-15\"}";
+
+    private final UUID id = UUID.randomUUID();
+    private SnapshotRepository snapshotRepository;
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        snapshotRepository = mock(SnapshotRepository.class);
+        SnapshotCodec codec = new SnapshotCodec(JsonMapper.builder().build());
+        SnapshotBlobStore blobStore = new SnapshotBlobStore(snapshotRepository, codec,
+                new SnapshotProps(null, new SnapshotProps.Cache(DataSize.ofMegabytes(1)), null, null));
+        SnapshotController controller = new SnapshotController(mock(SnapshotJobService.class), blobStore);
+        mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+
+        Snapshot snapshot = new Snapshot();
+        snapshot.setId(id);
+        snapshot.setPayload(codec.encodeJson(JSON.getBytes(StandardCharsets.UTF_8)));
+        when(snapshotRepository.findById(id)).thenReturn(Optional.of(snapshot));
+    }
+
+    @Test
+    void servesStoredGzipWithImmutableCaching() throws Exception {
+        String etag = mockMvc.perform(get("/api/snapshots/{id}", id).header(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate, br"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "max-age=31536000, public, immutable"))
+                .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(get("/api/snapshots/{id}", id)
+                        .header(HttpHeaders.ACCEPT_ENCODING, "gzip")
+                        .header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+
+        // second request came from the in-memory blob cache
+        verify(snapshotRepository, times(1)).findById(id);
+    }
+
+    @Test
+    void decompressesForClientsWithoutGzip() throws Exception {
+        String body = mockMvc.perform(get("/api/snapshots/{id}", id).header(HttpHeaders.ACCEPT_ENCODING, "gzip;q=0, identity"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(HttpHeaders.CONTENT_ENCODING))
+                .andReturn().getResponse().getContentAsString();
+
+        assertEquals(JSON, body);
+    }
+
+    @Test
+    void explicitGzipOverridesTheWildcard() {
+        assertTrue(SnapshotController.acceptsGzip("*;q=0, gzip"));
+        assertTrue(SnapshotController.acceptsGzip("br, *"));
+        assertFalse(SnapshotController.acceptsGzip("*, gzip;q=0"));
+        assertFalse(SnapshotController.acceptsGzip("*;q=0.0, br"));
+        assertFalse(SnapshotController.acceptsGzip("identity"));
+    }
+
+    @Test
+    void unknownSnapshotIsNotFound() throws Exception {
+        mockMvc.perform(get("/api/snapshots/{id}", UUID.randomUUID()))
+                .andExpect(status().isNotFound());
+    }
+}
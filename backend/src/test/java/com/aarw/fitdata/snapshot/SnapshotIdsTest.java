@@ -0,0 +1,28 @@
+package com.aarw.fitdata.snapshot;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SnapshotIdsTest {
+
+    @Test
+    void idCarriesItsCreationTime() {
+        Instant now = Instant.parse("2026-03-10T12:34:56.789123Z");
+
+        UUID id = SnapshotIds.newId(now);
+
+        assertEquals(7, id.version());
+        assertEquals(2, id.variant());
+        assertEquals(Instant.parse("2026-03-10T12:34:56.789Z"), SnapshotIds.createdAt(id).orElseThrow().toInstant());
+        assertNotEquals(id, SnapshotIds.newId(now));
+    }
+
+    @Test
+    void randomIdsHaveNoCreationTime() {
+        assertTrue(SnapshotIds.createdAt(UUID.randomUUID()).isEmpty());
+    }
+}
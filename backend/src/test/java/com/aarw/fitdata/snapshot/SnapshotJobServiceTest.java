@@ -0,0 +1,110 @@
+package com.aarw.fitdata.snapshot;
+
+import com.aarw.fitdata.config.SnapshotProps;
+import com.aarw.fitdata.dto.DashboardSnapshotDto;
+import com.aarw.fitdata.fitbit.util.StepsRange;
+import com.aarw.fitdata.oauth.token.FitbitTokenEntity;
+import com.aarw.fitdata.oauth.token.FitbitTokenService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class SnapshotJobServiceTest {
+
+    private final LocalDate date = LocalDate.of(2026, 1, 15);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final AtomicLong nanos = new AtomicLong();
+
+    private SnapshotAssembler assembler;
+    private SnapshotJobService service;
+
+    @BeforeEach
+    void setUp() {
+        FitbitTokenService tokenService = mock(FitbitTokenService.class);
+        when(tokenService.getValidTokenForUser(any())).thenReturn(new FitbitTokenEntity());
+
+        assembler = mock(SnapshotAssembler.class);
+        when(assembler.assemble(any(), any(), any(), any())).thenAnswer(invocation -> {
+            assertTrue(release.await(5, TimeUnit.SECONDS));
+            DashboardSnapshotDto dto = new DashboardSnapshotDto(invocation.getArgument(1), StepsRange.LAST_7_DAYS,
+                    StepsRange.LAST_7_DAYS, null, null, null, null, null, null);
+            return new SnapshotAssembler.Assembly(dto, Map.of());
+        });
+
+        SnapshotCodec codec = new SnapshotCodec(JsonMapper.builder().build());
+        SnapshotProps props = new SnapshotProps(null,
+                new SnapshotProps.Cache(DataSize.ofMegabytes(1)),
+                new SnapshotProps.Jobs(2, 10, 1, 2, Duration.ofMinutes(1)), null);
+        service = new SnapshotJobService(tokenService, assembler, codec, mock(SnapshotRepository.class),
+                new SnapshotBlobStore(mock(SnapshotRepository.class), codec, props), props, nanos::get);
+    }
+
+    @Test
+    void identicalPendingRequestsShareOneJob() throws Exception {
+        SnapshotJob first = service.submit("alice", date, StepsRange.LAST_7_DAYS, StepsRange.LAST_7_DAYS);
+        SnapshotJob second = service.submit("alice", date, StepsRange.LAST_7_DAYS, StepsRange.LAST_7_DAYS);
+        assertSame(first, second);
+
+        release.countDown();
+        SnapshotJob done = first.completion().get(5, TimeUnit.SECONDS);
+
+        assertEquals("SUCCEEDED", done.toDto().status());
+        assertNotNull(done.toDto().snapshotId());
+        verify(assembler, times(1)).assemble(any(), any(), any(), any());
+    }
+
+    @Test
+    void userJobsRunOneAtATimeAndAreCapped() throws Exception {
+        SnapshotJob running = service.submit("alice", date, StepsRange.LAST_7_DAYS, StepsRange.LAST_7_DAYS);
+        SnapshotJob waiting = service.submit("alice", date.minusDays(1), StepsRange.LAST_7_DAYS, StepsRange.LAST_7_DAYS);
+
+        SnapshotJobRejectedException rejected = assertThrows(SnapshotJobRejectedException.class,
+                () -> service.submit("alice", date.minusDays(2), StepsRange.LAST_7_DAYS, StepsRange.LAST_7_DAYS));
+        assertTrue(rejected.isUserLimit());
+        assertEquals("QUEUED", waiting.toDto().status());
+
+        // Other users are not affected by alice's lane
+        assertDoesNotThrow(() -> service.submit("bob", date, StepsRange.LAST_7_DAYS, StepsRange.LAST_7_DAYS));
+
+        release.countDown();
+        running.completion().get(5, TimeUnit.SECONDS);
+        assertEquals("SUCCEEDED", waiting.completion().get(5, TimeUnit.SECONDS).toDto().status());
+    }
+
+    @Test
+    void jobsAreOnlyVisibleToTheirOwner() {
+        SnapshotJob job = service.submit("alice", date, StepsRange.LAST_7_DAYS, StepsRange.LAST_7_DAYS);
+        release.countDown();
+
+        assertTrue(service.find(job.id(), "alice").isPresent());
+        assertTrue(service.find(job.id(), "bob").isEmpty());
+    }
+
+    @Test
+    void jobsExpireOnlyOnceFinished() throws Exception {
+        SnapshotJob job = service.submit("alice", date, StepsRange.LAST_7_DAYS, StepsRange.LAST_7_DAYS);
+
+        nanos.addAndGet(Duration.ofMinutes(5).toNanos());
+        assertTrue(service.find(job.id(), "alice").isPresent());
+
+        release.countDown();
+        job.completion().get(5, TimeUnit.SECONDS);
+        nanos.addAndGet(Duration.ofSeconds(59).toNanos());
+        assertTrue(service.find(job.id(), "alice").isPresent());
+
+        nanos.addAndGet(Duration.ofSeconds(2).toNanos());
+        assertTrue(service.find(job.id(), "alice").isEmpty());
+    }
+}
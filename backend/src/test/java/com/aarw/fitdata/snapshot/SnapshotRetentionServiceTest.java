@@ -0,0 +1,27 @@
+package com.aarw.fitdata.snapshot;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.BadSqlGrammarException;
+
+import java.sql.SQLException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SnapshotRetentionServiceTest {
+
+    @Test
+    void onlyAConcurrentlyCreatedPartitionCountsAsDuplicate() {
+        String sql = "SELECT create_snapshot_partition(?)";
+
+        assertTrue(SnapshotRetentionService.isDuplicateTable(new BadSqlGrammarException("create", sql,
+                new SQLException("relation \"snapshots_p202602\" already exists", "42P07"))));
+        assertTrue(SnapshotRetentionService.isDuplicateTable(new DuplicateKeyException("create",
+                new SQLException("duplicate key value violates unique constraint \"pg_type_typname_nsp_index\"", "23505"))));
+
+        assertFalse(SnapshotRetentionService.isDuplicateTable(new BadSqlGrammarException("create", sql,
+                new SQLException("function create_snapshot_partition(date) does not exist", "42883"))));
+        assertFalse(SnapshotRetentionService.isDuplicateTable(new DataAccessResourceFailureException("Connection refused")));
+    }
+}
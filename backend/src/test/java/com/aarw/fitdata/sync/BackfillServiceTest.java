@@ -0,0 +1,147 @@
+package com.aarw.fitdata.sync;
+
+import com.aarw.fitdata.config.SyncProps;
+import com.aarw.fitdata.fitbit.FitbitApiClient;
+import com.aarw.fitdata.fitbit.FitbitRateLimitTracker;
+import com.aarw.fitdata.fitbit.dto.FitbitProfileResponse;
+import com.aarw.fitdata.history.DailyMetric;
+import com.aarw.fitdata.history.DailyMetrics;
+import com.aarw.fitdata.history.DailyMetricsFetcher;
+import com.aarw.fitdata.history.DailyMetricsStore;
+import com.aarw.fitdata.jobs.Job;
+import com.aarw.fitdata.jobs.JobQueue;
+import com.aarw.fitdata.oauth.token.FitbitTokenEntity;
+import com.aarw.fitdata.oauth.token.FitbitTokenRepository;
+import com.aarw.fitdata.oauth.token.FitbitTokenService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.function.BiFunction;
+
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class BackfillServiceTest {
+
+    private static final LocalDate TODAY = LocalDate.of(2026, 3, 10);
+    private static final LocalDate LAST_CLOSED = TODAY.minusDays(2);
+
+    private BackfillRepository backfills;
+    private SyncCheckpointRepository checkpoints;
+    private FitbitApiClient apiClient;
+    private DailyMetricsFetcher fetcher;
+    private FitbitRateLimitTracker rateLimitTracker;
+    private FitbitTokenRepository tokenRepository;
+    private FitbitTokenService tokenService;
+    private FitbitTokenEntity token;
+    private BackfillService service;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        backfills = mock(BackfillRepository.class);
+        checkpoints = mock(SyncCheckpointRepository.class);
+        apiClient = mock(FitbitApiClient.class);
+        fetcher = mock(DailyMetricsFetcher.class);
+        rateLimitTracker = mock(FitbitRateLimitTracker.class);
+        tokenRepository = mock(FitbitTokenRepository.class);
+        tokenService = mock(FitbitTokenService.class);
+        DailyMetricsStore store = mock(DailyMetricsStore.class);
+        token = new FitbitTokenEntity();
+        token.setFitbitUserId("u");
+
+        when(tokenRepository.findByFitbitUserId("u")).thenReturn(Optional.of(token));
+        when(tokenService.getValidTokenForUser("u")).thenReturn(token);
+        when(store.today(any())).thenReturn(TODAY);
+        when(store.firstOpenDay(any())).thenReturn(TODAY.minusDays(1));
+        when(store.load(eq("u"), any(), any(), any(), any())).thenAnswer(inv -> {
+            BiFunction<LocalDate, LocalDate, List<DailyMetrics>> fetch = inv.getArgument(4);
+            fetch.apply(inv.getArgument(2), inv.getArgument(3));
+            return new TreeMap<>();
+        });
+        when(fetcher.fetch(any(), any(), any(), any())).thenReturn(List.of());
+        when(rateLimitTracker.remaining("u")).thenReturn(150);
+        when(checkpoints.find("u")).thenReturn(new HashMap<>());
+
+        SyncProps props = new SyncProps(true, Duration.ofMinutes(15), 30, 30,
+                new SyncProps.Backfill(true, 24, Duration.ofSeconds(30)));
+        service = new BackfillService(props, backfills, checkpoints, tokenRepository, tokenService, apiClient, store, fetcher, rateLimitTracker, mock(JobQueue.class));
+    }
+
+    @Test
+    void importsNewestRangesFirstDownToTheMembershipDate() {
+        LocalDate memberSince = LAST_CLOSED.minusDays(44);
+        when(apiClient.getProfile(token)).thenReturn(new FitbitProfileResponse(
+                new FitbitProfileResponse.FitbitUser("u", "Name", 30, "NA", memberSince.toString(), "UTC")));
+
+        service.run(backfill(Backfill.Status.PENDING, TODAY.minusMonths(24)));
+
+        verify(backfills).start("u", memberSince);
+        InOrder order = inOrder(fetcher);
+        // First pass: the most recent range of every group
+        order.verify(fetcher).fetch(token, DailyMetric.STEPS, memberSince, LAST_CLOSED);
+        order.verify(fetcher).fetch(token, DailyMetric.HEART, memberSince, LAST_CLOSED);
+        order.verify(fetcher).fetch(token, DailyMetric.WEIGHT, LAST_CLOSED.minusDays(30), LAST_CLOSED);
+        order.verify(fetcher).fetch(token, DailyMetric.HRV, LAST_CLOSED.minusDays(29), LAST_CLOSED);
+        order.verify(fetcher).fetch(token, DailyMetric.SLEEP, memberSince, LAST_CLOSED);
+        // Then older ones of the groups with shorter ranges
+        order.verify(fetcher).fetch(token, DailyMetric.WEIGHT, memberSince, LAST_CLOSED.minusDays(31));
+        order.verify(fetcher).fetch(token, DailyMetric.HRV, memberSince, LAST_CLOSED.minusDays(30));
+        verify(checkpoints).backfilled("u", DailyMetric.HRV, memberSince, LAST_CLOSED.minusDays(30));
+        verify(backfills).finish("u");
+        verify(backfills).recordRun("u", 8, null);
+    }
+
+    @Test
+    void resumesFromTheCheckpointAndPausesAtTheReserve() {
+        LocalDate target = LAST_CLOSED.minusDays(100);
+        Map<DailyMetric, SyncCheckpointRepository.Checkpoint> synced = new HashMap<>();
+        synced.put(DailyMetric.STEPS, new SyncCheckpointRepository.Checkpoint(LAST_CLOSED, target));
+        synced.put(DailyMetric.HEART, new SyncCheckpointRepository.Checkpoint(LAST_CLOSED, target));
+        synced.put(DailyMetric.WEIGHT, new SyncCheckpointRepository.Checkpoint(LAST_CLOSED, LAST_CLOSED.minusDays(30)));
+        when(checkpoints.find("u")).thenReturn(synced);
+        when(rateLimitTracker.remaining("u")).thenReturn(40, 31, 30);
+
+        service.run(backfill(Backfill.Status.RUNNING, target));
+
+        verify(apiClient, never()).getProfile(any());
+        verify(fetcher).fetch(token, DailyMetric.WEIGHT, LAST_CLOSED.minusDays(61), LAST_CLOSED.minusDays(31));
+        verify(fetcher).fetch(token, DailyMetric.HRV, LAST_CLOSED.minusDays(29), LAST_CLOSED);
+        verify(fetcher, times(2)).fetch(any(), any(), any(), any());
+        verify(backfills, never()).finish(any());
+        verify(backfills).recordRun("u", 2, null);
+    }
+
+    @Test
+    void disconnectedUserEndsTheJob() {
+        when(backfills.find("u")).thenReturn(Optional.of(backfill(Backfill.Status.RUNNING, TODAY.minusMonths(24))));
+        when(tokenRepository.findByFitbitUserId("u")).thenReturn(Optional.empty());
+
+        assertNull(service.handle(new Job(1, BackfillService.JOB_TYPE, "u", null, 1)));
+        verifyNoInteractions(tokenService, fetcher);
+    }
+
+    @Test
+    void failuresAreLeftToTheJobQueue() {
+        when(backfills.find("u")).thenReturn(Optional.of(backfill(Backfill.Status.RUNNING, TODAY.minusMonths(24))));
+        when(tokenService.getValidTokenForUser("u")).thenThrow(new IllegalStateException("Token refresh failed"));
+
+        assertThrows(IllegalStateException.class, () -> service.handle(new Job(1, BackfillService.JOB_TYPE, "u", null, 1)));
+        verify(backfills).recordRun("u", 0, "Token refresh failed");
+    }
+
+    private static Backfill backfill(Backfill.Status status, LocalDate targetFrom) {
+        return new Backfill("u", status, targetFrom, 0, null, Instant.now(), null);
+    }
+}
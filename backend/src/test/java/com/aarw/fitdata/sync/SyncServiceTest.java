@@ -0,0 +1,114 @@
+package com.aarw.fitdata.sync;
+
+import com.aarw.fitdata.config.SyncProps;
+import com.aarw.fitdata.fitbit.FitbitRateLimitTracker;
+import com.aarw.fitdata.history.DailyMetric;
+import com.aarw.fitdata.history.DailyMetrics;
+import com.aarw.fitdata.history.DailyMetricsFetcher;
+import com.aarw.fitdata.history.DailyMetricsStore;
+import com.aarw.fitdata.jobs.JobQueue;
+import com.aarw.fitdata.oauth.token.FitbitTokenEntity;
+import com.aarw.fitdata.oauth.token.FitbitTokenRepository;
+import com.aarw.fitdata.oauth.token.FitbitTokenService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.BiFunction;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class SyncServiceTest {
+
+    private static final LocalDate TODAY = LocalDate.of(2026, 3, 10);
+
+    private DailyMetricsStore store;
+    private DailyMetricsFetcher fetcher;
+    private SyncCheckpointRepository checkpoints;
+    private FitbitRateLimitTracker rateLimitTracker;
+    private FitbitTokenEntity token;
+    private SyncService service;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        store = mock(DailyMetricsStore.class);
+        fetcher = mock(DailyMetricsFetcher.class);
+        checkpoints = mock(SyncCheckpointRepository.class);
+        rateLimitTracker = mock(FitbitRateLimitTracker.class);
+        FitbitTokenService tokenService = mock(FitbitTokenService.class);
+        token = new FitbitTokenEntity();
+        token.setFitbitUserId("u");
+
+        when(tokenService.getValidTokenForUser("u")).thenReturn(token);
+        when(store.today(any())).thenReturn(TODAY);
+        when(store.firstOpenDay(any())).thenReturn(TODAY.minusDays(1));
+        when(store.load(eq("u"), any(), any(), any(), any())).thenAnswer(inv -> {
+            BiFunction<LocalDate, LocalDate, List<DailyMetrics>> fetch = inv.getArgument(4);
+            fetch.apply(inv.getArgument(2), inv.getArgument(3));
+            return new TreeMap<>();
+        });
+        when(fetcher.fetch(any(), any(), any(), any())).thenReturn(List.of());
+        when(rateLimitTracker.remaining("u")).thenReturn(150);
+
+        service = new SyncService(new SyncProps(true, Duration.ofMinutes(15), 30, 30, null),
+                mock(FitbitTokenRepository.class), tokenService, store, fetcher, checkpoints, rateLimitTracker, mock(JobQueue.class));
+    }
+
+    @Test
+    void fetchesOnlyDaysAfterTheCheckpointInMaximalChunks() {
+        when(checkpoints.find("u")).thenReturn(Map.of(
+                DailyMetric.STEPS, syncedThrough(TODAY.minusDays(2)),
+                DailyMetric.HEART, syncedThrough(TODAY.minusDays(2)),
+                DailyMetric.WEIGHT, syncedThrough(TODAY.minusDays(2)),
+                DailyMetric.HRV, syncedThrough(TODAY.minusDays(71)),
+                DailyMetric.SLEEP, syncedThrough(TODAY.minusDays(2))));
+
+        int calls = service.syncUser("u");
+
+        // HRV: 70 days in chunks of 30; the others only refresh the open days
+        verify(fetcher).fetch(token, DailyMetric.HRV, TODAY.minusDays(70), TODAY.minusDays(41));
+        verify(fetcher).fetch(token, DailyMetric.HRV, TODAY.minusDays(40), TODAY.minusDays(11));
+        verify(fetcher).fetch(token, DailyMetric.HRV, TODAY.minusDays(10), TODAY);
+        verify(fetcher).fetch(token, DailyMetric.STEPS, TODAY.minusDays(1), TODAY);
+        verify(fetcher).fetch(token, DailyMetric.SLEEP, TODAY.minusDays(1), TODAY);
+        assertEquals(7, calls);
+
+        verify(checkpoints).advance("u", DailyMetric.HRV, TODAY.minusDays(41));
+        verify(checkpoints).advance("u", DailyMetric.HRV, TODAY.minusDays(11));
+        verify(checkpoints).advance("u", DailyMetric.HRV, TODAY.minusDays(2));
+        // Open days are never checkpointed
+        verify(checkpoints, never()).advance(eq("u"), eq(DailyMetric.STEPS), any());
+    }
+
+    @Test
+    void firstSyncStartsFromTheInitialWindow() {
+        when(checkpoints.find("u")).thenReturn(Map.of());
+
+        service.syncUser("u");
+
+        verify(fetcher).fetch(token, DailyMetric.STEPS, TODAY.minusDays(29), TODAY);
+        verify(checkpoints).advance("u", DailyMetric.STEPS, TODAY.minusDays(2));
+    }
+
+    @Test
+    void stopsWhenOnlyTheReservedBudgetIsLeft() {
+        when(checkpoints.find("u")).thenReturn(Map.of(DailyMetric.STEPS, syncedThrough(TODAY.minusDays(100))));
+        when(rateLimitTracker.remaining("u")).thenReturn(31, 30);
+
+        int calls = service.syncUser("u");
+
+        assertEquals(1, calls);
+        verify(fetcher, times(1)).fetch(any(), any(), any(), any());
+    }
+
+    private static SyncCheckpointRepository.Checkpoint syncedThrough(LocalDate day) {
+        return new SyncCheckpointRepository.Checkpoint(day, null);
+    }
+}
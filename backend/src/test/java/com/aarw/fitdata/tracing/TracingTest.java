@@ -0,0 +1,107 @@
+package com.aarw.fitdata.tracing;
+
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationHandler;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TracingTest {
+
+    private final List<Observation.Context> stopped = new CopyOnWriteArrayList<>();
+    private ObservationRegistry registry;
+    private FanOut fanOut;
+
+    @BeforeEach
+    void setUp() {
+        registry = ObservationRegistry.create();
+        registry.observationConfig().observationHandler(new ObservationHandler<>() {
+            @Override
+            public boolean supportsContext(Observation.Context context) {
+                return true;
+            }
+
+            @Override
+            public void onStop(Observation.Context context) {
+                stopped.add(context);
+            }
+        });
+        fanOut = new FanOut(registry);
+    }
+
+    @Test
+    void taskIsObservedUnderTheSubmittingObservation() {
+        Observation request = Observation.start("http.server.requests", registry);
+        String seenInTask;
+        Observation.Scope scope = request.openScope();
+        try {
+            seenInTask = fanOut.supplyAsync("readiness.sleep",
+                    () -> registry.getCurrentObservation().getContext().getContextualName()).join();
+        } finally {
+            scope.close();
+            request.stop();
+        }
+
+        assertEquals("readiness.sleep", seenInTask);
+        Observation.Context task = stopped.stream()
+                .filter(c -> c.getName().equals("fanout.task"))
+                .findFirst()
+                .orElseThrow();
+        assertEquals("readiness.sleep", task.getLowCardinalityKeyValue("task").getValue());
+        assertSame(request, task.getParentObservation());
+    }
+
+    @Test
+    void cacheLookupsAreTaggedHitOrMiss() {
+        TracedCaffeineCacheManager cacheManager = new TracedCaffeineCacheManager(registry);
+        cacheManager.setCacheNames(List.of("fitbit_sleep"));
+        var cache = cacheManager.getCache("fitbit_sleep");
+
+        assertEquals("night", cache.get("u1-2026-03-10", () -> "night"));
+        assertEquals("night", cache.get("u1-2026-03-10", () -> fail("loaded twice")));
+
+        List<String> hits = stopped.stream()
+                .filter(c -> c.getName().equals("fitbit.cache"))
+                .map(c -> c.getLowCardinalityKeyValue("cache.hit").getValue())
+                .toList();
+        assertEquals(List.of("false", "true"), hits);
+    }
+
+    @Test
+    void concurrentLookupsShareOneLoadWithoutBlockingOtherKeys() throws Exception {
+        TracedCaffeineCacheManager cacheManager = new TracedCaffeineCacheManager(registry);
+        cacheManager.setCacheNames(List.of("fitbit_sleep"));
+        var cache = cacheManager.getCache("fitbit_sleep");
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger loads = new AtomicInteger();
+
+        CompletableFuture<String> first = CompletableFuture.supplyAsync(() -> cache.get("u1", () -> {
+            loads.incrementAndGet();
+            loading.countDown();
+            release.await();
+            return "night";
+        }));
+        assertTrue(loading.await(5, TimeUnit.SECONDS));
+        CompletableFuture<String> second = CompletableFuture.supplyAsync(() -> cache.get("u1", () -> {
+            loads.incrementAndGet();
+            return "other";
+        }));
+
+        // Another key loads while u1 is still loading
+        assertEquals("day", cache.get("u2", () -> "day"));
+        release.countDown();
+        assertEquals("night", first.get(5, TimeUnit.SECONDS));
+        assertEquals("night", second.get(5, TimeUnit.SECONDS));
+        assertEquals(1, loads.get());
+    }
+}
@@ -0,0 +1,38 @@
+import { fetchWithRetry } from "./fetchUtils";
+import type { FitbitProfileApiResponse } from "./profileApi";
+import type { ReadinessCardDto } from "./readinessApi";
+import type { StepsRange, StepsSeriesDto } from "./stepsApi";
+import type { WeightSeriesDto } from "./weightApi";
+import type { HeartRateIntradayDto } from "./heartrateIntradayApi";
+import type { SleepDto } from "./sleepApi";
+
+export type DashboardDto = {
+    selectedDate: string;
+    stepsRange: StepsRange;
+    weightRange: StepsRange;
+    profile: FitbitProfileApiResponse | null;
+    readiness: ReadinessCardDto | null;
+    steps: StepsSeriesDto | null;
+    weight: WeightSeriesDto | null;
+    heartRate: HeartRateIntradayDto | null;
+    sleep: SleepDto | null;
+};
+
+/**
+ * Loads every card of the day in a single request.
+ */
+export async function fetchDashboard(
+    params: { date: string; stepsRange: StepsRange; weightRange: StepsRange },
+    signal?: AbortSignal
+): Promise<DashboardDto> {
+    const { date, stepsRange, weightRange } = params;
+    const url = `/api/dashboard?date=${encodeURIComponent(date)}&stepsRange=${stepsRange}&weightRange=${weightRange}`;
+    const res = await fetchWithRetry(url, { signal });
+
+    if (!res.ok) {
+        const text = await res.text().catch(() => "");
+        throw new Error(`Failed to load dashboard: ${res.status} ${text}`);
+    }
+
+    return res.json();
+}
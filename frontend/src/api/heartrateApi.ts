@@ -1,5 +1,5 @@
 import { fetchWithRetry } from "./fetchUtils";
-import type { StepsRange } from "./stepsApi";
+import type { Granularity, StepsRange } from "./stepsApi";
 
 export type HeartRateDayDto = {
     date: string;
@@ -16,10 +16,13 @@ export type HeartRateRangeDto = {
     range: string;
     startDate: string;
     endDate: string;
+    granularity?: Granularity;
     points: Array<{
         date: string;
         restingHr: number | null;
-        zones: HeartRateDayDto["zones"];
+        zones: HeartRateDayDto["zones"] | null;
+        restingHrMin?: number;
+        restingHrMax?: number;
     }>;
 };
 
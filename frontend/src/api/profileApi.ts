@@ -7,7 +7,7 @@ export type UserProfileDto = {
     gender: string;
 };
 
-type FitbitProfileApiResponse = {
+export type FitbitProfileApiResponse = {
     user: {
         encodedId: string;
         fullName: string;
@@ -23,8 +23,10 @@ export async function fetchProfile(signal?: AbortSignal): Promise<UserProfileDto
         throw new Error(`Failed to load profile: ${res.status} ${text}`);
     }
 
-    const data: FitbitProfileApiResponse = await res.json();
+    return toUserProfile(await res.json());
+}
 
+export function toUserProfile(data: FitbitProfileApiResponse): UserProfileDto {
     return {
         id: data.user.encodedId,
         displayName: data.user.fullName,
@@ -8,6 +8,22 @@ export async function fetchSnapshot(id: string, signal?: AbortSignal) {
     return res.json();
 }
 
+type SnapshotJob = {
+    id: string;
+    status: "QUEUED" | "RUNNING" | "SUCCEEDED" | "FAILED";
+    snapshotId?: string;
+    error?: string;
+};
+
+// Below the 30s request timeout of fetchWithRetry
+const JOB_WAIT_SECONDS = 20;
+const JOB_MAX_POLLS = 15;
+
+/**
+ * Starts a snapshot build and waits for it to finish. The server answers right away with a job,
+ * which is then long-polled until it has succeeded or failed.
+ * Returns the id of the created snapshot.
+ */
 export async function createSnapshot(params: { selectedDate: string, stepsRange: string, weightRange: string }) {
     const { selectedDate, stepsRange, weightRange } = params;
     const url = `/api/snapshots?selectedDate=${selectedDate}&stepsRange=${stepsRange}&weightRange=${weightRange}`;
@@ -15,5 +31,18 @@ export async function createSnapshot(params: { selectedDate: string, stepsRange:
     if (!res.ok) {
         throw new Error("Failed to create snapshot");
     }
-    return res.json(); // Returns UUID string parsed from JSON
+
+    let job: SnapshotJob = await res.json();
+    for (let i = 0; i < JOB_MAX_POLLS && (job.status === "QUEUED" || job.status === "RUNNING"); i++) {
+        const poll = await fetchWithRetry(`/api/snapshots/jobs/${job.id}?wait=${JOB_WAIT_SECONDS}`, {}, 1);
+        if (!poll.ok) {
+            throw new Error("Failed to fetch snapshot job");
+        }
+        job = await poll.json();
+    }
+
+    if (job.status !== "SUCCEEDED" || !job.snapshotId) {
+        throw new Error(job.error || "Failed to create snapshot");
+    }
+    return job.snapshotId;
 }
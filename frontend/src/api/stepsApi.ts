@@ -4,13 +4,19 @@ export type StepsRange =
     | "LAST_7_DAYS"
     | "LAST_14_DAYS"
     | "CURRENT_WEEK"
-    | "LAST_30_DAYS";
+    | "LAST_30_DAYS"
+    | "LAST_90_DAYS"
+    | "LAST_6_MONTHS"
+    | "LAST_YEAR";
+
+export type Granularity = "DAY" | "WEEK" | "MONTH";
 
 export type StepsSeriesDto = {
     range: string;
     startDate: string;
     endDate: string;
-    points: Array<{ date: string; steps: number }>;
+    granularity?: Granularity;
+    points: Array<{ date: string; steps: number; min?: number; max?: number }>;
 };
 
 export async function fetchSteps(range: StepsRange, baseDate: string, signal?: AbortSignal): Promise<StepsSeriesDto> {
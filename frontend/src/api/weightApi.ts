@@ -1,11 +1,12 @@
 import { fetchWithRetry } from "./fetchUtils";
-import type { StepsRange } from "./stepsApi";
+import type { Granularity, StepsRange } from "./stepsApi";
 
 export type WeightSeriesDto = {
     range: string;
     startDate: string;
     endDate: string;
-    points: Array<{ date: string; weight: number }>;
+    granularity?: Granularity;
+    points: Array<{ date: string; weight: number; min?: number; max?: number }>;
 };
 
 export async function fetchWeight(range: StepsRange, baseDate: string, signal?: AbortSignal): Promise<WeightSeriesDto> {
@@ -15,6 +15,9 @@ const options: Array<{ value: StepsRange; label: string }> = [
     { value: "LAST_14_DAYS", label: "Last 14 days" },
     { value: "CURRENT_WEEK", label: "Current week" },
     { value: "LAST_30_DAYS", label: "Last 30 days" },
+    { value: "LAST_90_DAYS", label: "Last 90 days" },
+    { value: "LAST_6_MONTHS", label: "Last 6 months" },
+    { value: "LAST_YEAR", label: "Last year" },
 ];
 
 type Props = {
@@ -6,7 +6,8 @@ import { WeightChartCard } from "../components/WeightChartCard";
 import { HeartRateIntradayCard } from "../components/HeartRateIntradayCard";
 import { SleepChartCard } from "../components/SleepChartCard";
 import { ReadinessCard } from "../components/ReadinessCard";
-import { fetchProfile, type UserProfileDto } from "../api/profileApi";
+import { fetchProfile, toUserProfile, type UserProfileDto } from "../api/profileApi";
+import { fetchDashboard, type DashboardDto } from "../api/dashboardApi";
 import { fetchAuthStatus, logout } from "../api/authApi";
 import type { StepsRange } from "../api/stepsApi";
 import { createSnapshot, fetchSnapshot } from "../api/snapshotApi";
@@ -41,10 +42,16 @@ const defaultLayouts: any = {
     ],
 };
 
-function DashboardContent({selectedDate, range, setRange, weightRange, setWeightRange, layouts, onLayoutChange, snapshotData }: any) {
+function DashboardContent({selectedDate, range, setRange, weightRange, setWeightRange, layouts, onLayoutChange, snapshotData, dashboardData }: any) {
     const { containerRef, width } = useContainerWidth();
     const [mounted, setMounted] = useState(false);
 
+    // Cards start from the data loaded with the page as long as it matches what they show,
+    // and fetch on their own once the date or range changes. A snapshot is never refetched.
+    const preloaded = snapshotData ?? (dashboardData?.selectedDate === selectedDate ? dashboardData : null);
+    const stepsData = preloaded && (snapshotData || preloaded.stepsRange === range) ? preloaded.steps ?? undefined : undefined;
+    const weightData = preloaded && (snapshotData || preloaded.weightRange === weightRange) ? preloaded.weight ?? undefined : undefined;
+
     useEffect(() => {
         setMounted(true);
     }, []);
@@ -67,7 +74,7 @@ function DashboardContent({selectedDate, range, setRange, weightRange, setWeight
                                 <div className="w-8 h-1 bg-slate-700 rounded-full" />
                             </div>
                             <div className="flex-1 overflow-hidden">
-                                <ReadinessCard baseDate={selectedDate} initialData={snapshotData?.readiness} />
+                                <ReadinessCard baseDate={selectedDate} initialData={preloaded?.readiness ?? undefined} />
                             </div>
                         </div>
                     </div>
@@ -77,7 +84,7 @@ function DashboardContent({selectedDate, range, setRange, weightRange, setWeight
                                 <div className="w-8 h-1 bg-slate-700 rounded-full" />
                             </div>
                             <div className="flex-1 overflow-hidden">
-                                <StepsChartCard baseDate={selectedDate} range={range} onRangeChange={setRange} initialData={snapshotData?.steps} />
+                                <StepsChartCard baseDate={selectedDate} range={range} onRangeChange={setRange} initialData={stepsData} />
                             </div>
                         </div>
                     </div>
@@ -87,7 +94,7 @@ function DashboardContent({selectedDate, range, setRange, weightRange, setWeight
                                 <div className="w-8 h-1 bg-slate-700 rounded-full" />
                             </div>
                             <div className="flex-1 overflow-hidden">
-                                <WeightChartCard baseDate={selectedDate} range={weightRange} onRangeChange={setWeightRange} initialData={snapshotData?.weight} />
+                                <WeightChartCard baseDate={selectedDate} range={weightRange} onRangeChange={setWeightRange} initialData={weightData} />
                             </div>
                         </div>
                     </div>
@@ -97,7 +104,7 @@ function DashboardContent({selectedDate, range, setRange, weightRange, setWeight
                                 <div className="w-8 h-1 bg-slate-700 rounded-full" />
                             </div>
                             <div className="flex-1 overflow-hidden">
-                                <HeartRateIntradayCard baseDate={selectedDate} initialData={snapshotData?.heartRate} />
+                                <HeartRateIntradayCard baseDate={selectedDate} initialData={preloaded?.heartRate ?? undefined} />
                             </div>
                         </div>
                     </div>
@@ -107,7 +114,7 @@ function DashboardContent({selectedDate, range, setRange, weightRange, setWeight
                                 <div className="w-8 h-1 bg-slate-700 rounded-full" />
                             </div>
                             <div className="flex-1 overflow-hidden">
-                                <SleepChartCard baseDate={selectedDate} initialData={snapshotData?.sleep} />
+                                <SleepChartCard baseDate={selectedDate} initialData={preloaded?.sleep ?? undefined} />
                             </div>
                         </div>
                     </div>
@@ -132,6 +139,7 @@ export function Dashboard() {
     const [profile, setProfile] = useState<UserProfileDto | null>(null);
     const [loading, setLoading] = useState(true);
     const [snapshotData, setSnapshotData] = useState<any>(null);
+    const [dashboardData, setDashboardData] = useState<DashboardDto | null>(null);
     const [sharing, setSharing] = useState(false);
     const [shareUrl, setShareUrl] = useState<string | null>(null);
     const [showShareModal, setShowShareModal] = useState(false);
@@ -201,8 +209,16 @@ export function Dashboard() {
                 setIsAuthenticated(auth.authenticated);
 
                 if (auth.authenticated) {
-                    const data = await fetchProfile(controller.signal);
-                    setProfile(data);
+                    try {
+                        const data = await fetchDashboard({ date: selectedDate, stepsRange: range, weightRange }, controller.signal);
+                        setDashboardData(data);
+                        setProfile(data.profile ? toUserProfile(data.profile) : await fetchProfile(controller.signal));
+                    } catch (e) {
+                        if (e instanceof Error && e.name === "AbortError") throw e;
+                        // Without the combined response every card loads on its own
+                        console.error("Dashboard fetch failed, loading cards separately", e);
+                        setProfile(await fetchProfile(controller.signal));
+                    }
                 } else {
                     // Reset layouts when not authenticated to ensure clean state on next login
                     setLayouts(JSON.parse(JSON.stringify(defaultLayouts)));
@@ -250,6 +266,7 @@ export function Dashboard() {
             setIsAuthenticated(false);
             setProfile(null);
             setSnapshotData(null);
+            setDashboardData(null);
             // Reset layouts to default on logout
             setLayouts(JSON.parse(JSON.stringify(defaultLayouts)));
             // Remove share param if present
@@ -394,6 +411,7 @@ export function Dashboard() {
                             layouts={layouts}
                             onLayoutChange={onLayoutChange}
                             snapshotData={snapshotData}
+                            dashboardData={dashboardData}
                         />
                     </>
                 )}